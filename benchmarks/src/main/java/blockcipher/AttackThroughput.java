@@ -0,0 +1,89 @@
+package blockcipher;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the collisions and pre-images found per second: by @see
+ * BirthdayAttack and @see PreImageAttack as Stage 2 runs them, and by the
+ * parallel @see RhoCollisionFinder and @see PreImageSearch on a given number
+ * of threads. Each invocation finds COUNT results and the score is per result.
+ * 
+ * @author Joseph Lewis
+ *
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class AttackThroughput {
+	// The number of collisions or pre-images found by each invocation
+	static final int COUNT = 100;
+	static final byte[] DIGEST = { (byte) 0x03, (byte) 0x43 };
+
+	private long seed;
+	private PrintStream stdout;
+
+	/**
+	 * The number of threads of the parallel searches, or 0 for one per core.
+	 */
+	@State(Scope.Benchmark)
+	public static class Workers {
+		@Param({ "1", "2", "4", "0" })
+		int threads;
+	}
+
+	@Setup(Level.Trial)
+	public void setup() {
+		// The Stage 2 attacks report their progress on standard output
+		stdout = System.out;
+		System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() {
+		System.setOut(stdout);
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(COUNT)
+	public int[] birthdayAttack() {
+		return new BirthdayAttack(seed++).findCollisions(COUNT);
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(COUNT)
+	public int preImageAttack() {
+		return new PreImageAttack(DIGEST).getAvgAttempts();
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(COUNT)
+	public long[] rhoCollisions(Workers workers) {
+		return new RhoCollisionFinder(seed++).findCollisions(COUNT, workers.threads);
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(COUNT)
+	public int[] preImageSearch(Workers workers) {
+		return new PreImageSearch(workers.threads).find((int) (seed++ & 0xffff), COUNT);
+	}
+}
@@ -0,0 +1,47 @@
+package blockcipher;
+
+import java.io.IOException;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * The entry point of benchmarks.jar. It takes the usual JMH command line, but
+ * unless told otherwise it profiles the allocation rate and collections of
+ * every benchmark with the gc profiler and writes the results as JSON to
+ * jmh-result.json, so that runs can be compared.
+ * 
+ * @author Joseph Lewis
+ *
+ */
+public class BenchmarkRunner {
+
+	/**
+	 * @param args[]
+	 *            contains the JMH options, such as a benchmark pattern, -p
+	 *            threads=1,4 or -rf csv
+	 */
+	public static void main(String args[]) throws CommandLineOptionException, RunnerException, IOException {
+		CommandLineOptions options = new CommandLineOptions(args);
+		if (options.shouldHelp() || options.shouldList() || options.shouldListWithParams()
+				|| options.shouldListProfilers() || options.shouldListResultFormats()) {
+			// Leave the listings to the JMH front end
+			org.openjdk.jmh.Main.main(args);
+			return;
+		}
+		ChainedOptionsBuilder builder = new OptionsBuilder().parent(options);
+		if (!options.getResultFormat().hasValue()) {
+			builder.resultFormat(ResultFormatType.JSON);
+		}
+		if (options.getProfilers().isEmpty()) {
+			builder.addProfiler(GCProfiler.class);
+		}
+		new Runner(builder.build()).run();
+	}
+}
@@ -0,0 +1,62 @@
+package blockcipher;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the time to encrypt and decrypt a whole buffer with @see
+ * Comp343Cipher, for each engine and for buffers from a few blocks to 16MB.
+ * The cost per byte is the score divided by the size.
+ * 
+ * @author Joseph Lewis
+ *
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = { "--add-modules", "jdk.incubator.vector" })
+@State(Scope.Thread)
+public class BulkCipherThroughput {
+	@Param({ "table", "bitsliced", "vector" })
+	String engine;
+
+	@Param({ "64", "65536", "16777216" })
+	int size;
+
+	private Comp343Cipher cipher;
+	private byte[] in;
+	private byte[] out;
+
+	@Setup
+	public void setup() {
+		cipher = new Comp343Cipher(new byte[] { (byte) 0xab, (byte) 0xcd }, CipherEngine.forName(engine));
+		in = new byte[size];
+		out = new byte[size];
+		new Random(size).nextBytes(in);
+	}
+
+	@Benchmark
+	public byte[] encrypt() {
+		cipher.encrypt(in, 0, out, 0, size);
+		return out;
+	}
+
+	@Benchmark
+	public byte[] decrypt() {
+		cipher.decrypt(in, 0, out, 0, size);
+		return out;
+	}
+}
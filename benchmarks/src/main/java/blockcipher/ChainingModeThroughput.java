@@ -0,0 +1,80 @@
+package blockcipher;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the time to encrypt a buffer in CBC and CFB mode, and to decrypt
+ * it on the calling thread and split across the common pool. Encryption is
+ * serial by nature, so the gap between the two decryptions is the speedup of
+ * the parallel decryption.
+ *
+ * @author Joseph Lewis
+ *
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = { "--add-modules", "jdk.incubator.vector" })
+@State(Scope.Thread)
+public class ChainingModeThroughput {
+	@Param({ "cbc", "cfb" })
+	String mode;
+
+	@Param({ "65536", "67108864" })
+	int size;
+
+	private KeyedCipher cipher;
+	private byte[] iv;
+	private byte[] plain;
+	private byte[] encrypted;
+	private byte[] out;
+
+	@Setup
+	public void setup() {
+		cipher = KeyedCipher.of(0xabcd);
+		iv = ChainingMode.randomIv(2);
+		plain = new byte[size];
+		encrypted = new byte[size];
+		out = new byte[size];
+		new Random(size).nextBytes(plain);
+		create().encrypt(plain, 0, encrypted, 0, size);
+	}
+
+	private ChainingMode create() {
+		return mode.equals("cbc") ? new CbcMode(cipher, iv) : new CfbMode(cipher, iv);
+	}
+
+	@Benchmark
+	public byte[] encrypt() {
+		create().encrypt(plain, 0, out, 0, size);
+		return out;
+	}
+
+	@Benchmark
+	public byte[] serialDecrypt() {
+		ChainingMode chaining = create();
+		chaining.setPool(null);
+		chaining.decrypt(encrypted, 0, out, 0, size);
+		return out;
+	}
+
+	@Benchmark
+	public byte[] parallelDecrypt() {
+		create().decrypt(encrypted, 0, out, 0, size);
+		return out;
+	}
+}
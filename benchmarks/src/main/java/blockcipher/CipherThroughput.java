@@ -0,0 +1,71 @@
+package blockcipher;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the blocks encrypted and decrypted per second one at a time by
+ * @see Comp343Cipher, through both the byte array and the packed int
+ * interfaces, with each engine. Run with -t to measure several threads, each
+ * with its own cipher.
+ * 
+ * @author Joseph Lewis
+ *
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = { "--add-modules", "jdk.incubator.vector" })
+@State(Scope.Thread)
+public class CipherThroughput {
+	@Param({ "table", "bitsliced", "vector", "reference" })
+	String engine;
+
+	private Comp343Cipher cipher;
+	private byte[] block;
+	private int packed;
+
+	@Setup
+	public void setup() {
+		cipher = new Comp343Cipher(new byte[] { (byte) 0xab, (byte) 0xcd }, CipherEngine.forName(engine));
+		block = new byte[2];
+		new Random(343).nextBytes(block);
+	}
+
+	@Benchmark
+	public byte[] encrypt() {
+		block[1]++;
+		return cipher.encrypt(block);
+	}
+
+	@Benchmark
+	public byte[] decrypt() {
+		block[1]++;
+		return cipher.decrypt(block);
+	}
+
+	@Benchmark
+	public int encryptBlock() {
+		packed = (packed + 1) & 0xffff;
+		return cipher.encryptBlock(packed);
+	}
+
+	@Benchmark
+	public int decryptBlock() {
+		packed = (packed + 1) & 0xffff;
+		return cipher.decryptBlock(packed);
+	}
+}
@@ -0,0 +1,89 @@
+package blockcipher;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the compression function evaluations per second: @see
+ * Comp343Cipher#compression(byte[], byte[]) on byte arrays, each @see
+ * CompressionFunction one input at a time and in batches, and @see Comp343Hash
+ * over a 1MB message.
+ * 
+ * @author Joseph Lewis
+ *
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class CompressionThroughput {
+	// The inputs of a batch, and the blocks of the hashed message
+	static final int BATCH = 1 << 16;
+
+	@Param({ "plain", "davies-meyer", "matyas-meyer-oseas", "miyaguchi-preneel" })
+	String function;
+
+	private CompressionFunction compression;
+	private Comp343Cipher cipher;
+	private Comp343Hash hash;
+	private final byte[] m = new byte[2];
+	private final byte[] h = new byte[2];
+	private final int[] inputs = new int[BATCH];
+	private final int[] digests = new int[BATCH];
+	private final byte[] message = new byte[2 * BATCH];
+	private int x;
+
+	@Setup
+	public void setup() {
+		compression = CompressionFunction.forName(function);
+		cipher = new Comp343Cipher();
+		hash = new Comp343Hash(compression);
+		Random random = new Random(343);
+		for (int i = 0; i < BATCH; i++) {
+			inputs[i] = random.nextInt();
+		}
+		random.nextBytes(message);
+	}
+
+	@Benchmark
+	public byte[] compressionBytes() {
+		m[1]++;
+		h[0]++;
+		return cipher.compression(m, h);
+	}
+
+	@Benchmark
+	public int compress() {
+		x += 0x9e3779b9;
+		return compression.compress(x >>> 16, x & 0xffff);
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(BATCH)
+	public int[] compressBatch() {
+		compression.compress(inputs, 0, digests, 0, BATCH);
+		return digests;
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(BATCH)
+	public int hash() {
+		hash.update(message, 0, message.length);
+		return hash.digestInt();
+	}
+}
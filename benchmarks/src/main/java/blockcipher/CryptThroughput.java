@@ -0,0 +1,120 @@
+package blockcipher;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the time to encrypt a file of 1MB to 1GB with each way @see Crypt
+ * can run: loading it into the heap with Crypt#runCryptography(), mapping it
+ * on a given number of threads and streaming it with padding. The files are
+ * written under target/jmh in the working directory. The in-memory run holds
+ * the input and output in the heap, hence the 4GB heap.
+ * 
+ * @author Joseph Lewis
+ *
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 3)
+@Fork(value = 1, jvmArgsAppend = { "-Xmx4g" })
+@State(Scope.Benchmark)
+public class CryptThroughput {
+	// The directory of the files, relative to the working directory
+	static final String DIRECTORY = "target/jmh";
+	static final byte[] KEY = { (byte) 0xab, (byte) 0xcd };
+
+	@Param({ "1", "64", "1024" })
+	int megabytes;
+
+	private String plainName;
+	private String cipherName;
+	private PrintStream stdout;
+
+	/**
+	 * The number of threads of the memory-mapped run, or 0 for one per core.
+	 */
+	@State(Scope.Benchmark)
+	public static class Workers {
+		@Param({ "1", "2", "4", "0" })
+		int threads;
+	}
+
+	@Setup(Level.Trial)
+	public void setup() throws IOException {
+		Path directory = Crypt.getPath(DIRECTORY);
+		Files.createDirectories(directory);
+		plainName = DIRECTORY + "/plain-" + megabytes + "MB.bin";
+		cipherName = DIRECTORY + "/cipher-" + megabytes + "MB.bin";
+		Path plain = Crypt.getPath(plainName);
+		if (!Files.exists(plain) || Files.size(plain) != (long) megabytes << 20) {
+			Random random = new Random(megabytes);
+			byte[] chunk = new byte[1 << 20];
+			try (OutputStream out = Files.newOutputStream(plain)) {
+				for (int i = 0; i < megabytes; i++) {
+					random.nextBytes(chunk);
+					out.write(chunk);
+				}
+			}
+		}
+		// Crypt reports its progress on standard output
+		stdout = System.out;
+		System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() throws IOException {
+		System.setOut(stdout);
+		Files.deleteIfExists(Crypt.getPath(cipherName));
+	}
+
+	@Benchmark
+	public boolean runCryptography() throws IOException {
+		if (!Crypt.validateArguments(plainName, cipherName, "E")) {
+			return false;
+		}
+		Crypt.blockCipher = new Comp343Cipher(KEY);
+		Crypt.runCryptography();
+		return true;
+	}
+
+	@Benchmark
+	public boolean runMappedCryptography(Workers workers) throws IOException {
+		return Crypt.runMappedCryptography(plainName, cipherName, KEY, "E", workers.threads);
+	}
+
+	@Benchmark
+	public long streamingCryptography() throws IOException {
+		long written = 0;
+		try (InputStream in = new BlockCipherInputStream(Files.newInputStream(Crypt.getPath(plainName)),
+				KeyedCipher.of(KEY), true);
+				OutputStream out = Files.newOutputStream(Crypt.getPath(cipherName))) {
+			byte[] buffer = new byte[BlockCipherOutputStream.BUFFER_SIZE];
+			for (int n; (n = in.read(buffer)) >= 0;) {
+				out.write(buffer, 0, n);
+				written += n;
+			}
+		}
+		return written;
+	}
+}
@@ -0,0 +1,53 @@
+package blockcipher;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the keys per second of @see CycleAnalysis, encrypting and walking
+ * the codebooks of 1,024 keys per invocation, by engine and thread count.
+ * 
+ * @author Joseph Lewis
+ *
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = { "--add-modules", "jdk.incubator.vector" })
+@State(Scope.Benchmark)
+public class CycleAnalysisThroughput {
+	// The keys walked by each invocation
+	static final int KEYS = 1024;
+
+	@Param({ "table", "bitsliced", "vector" })
+	public String engine;
+
+	@Param({ "1", "2", "4", "0" })
+	public int threads;
+
+	private CycleAnalysis analysis;
+
+	@Setup
+	public void setup() {
+		analysis = new CycleAnalysis(threads, CipherEngine.forName(engine));
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(KEYS)
+	public CycleAnalysis.Result walk() {
+		return analysis.run(0, KEYS);
+	}
+}
@@ -0,0 +1,83 @@
+package blockcipher;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the keys set up per second: @see Permutation#keySchedule(byte[])
+ * alone, the same schedule and the packed round keys from @see RoundKeyTable,
+ * loading a key into a @see Comp343Cipher, creating a @see KeyedCipher
+ * and encrypting one block under a new key with the static @see
+ * Comp343Cipher#encrypt(int, int), as the attacks do. Each call takes the next
+ * key, so that nothing is cached.
+ * 
+ * @author Joseph Lewis
+ *
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class KeyScheduleThroughput {
+	private final byte[] key = new byte[2];
+	private Comp343Cipher cipher;
+	private int next;
+
+	@Setup
+	public void setup() {
+		cipher = new Comp343Cipher(key);
+	}
+
+	private byte[] nextKey() {
+		next = (next + 1) & 0xffff;
+		key[0] = (byte) (next >>> 8);
+		key[1] = (byte) next;
+		return key;
+	}
+
+	@Benchmark
+	public byte[] keySchedule() {
+		return Permutation.keySchedule(nextKey());
+	}
+
+	@Benchmark
+	public byte[] roundKeyTable() {
+		next = (next + 1) & 0xffff;
+		return RoundKeyTable.keySchedule(next);
+	}
+
+	@Benchmark
+	public long roundKeyLookup() {
+		next = (next * 0x9e3779b9 + 1) & 0xffff;
+		return RoundKeyTable.get(next);
+	}
+
+	@Benchmark
+	public boolean loadKey() {
+		return cipher.loadKey(nextKey());
+	}
+
+	@Benchmark
+	public KeyedCipher keyedCipher() {
+		next = (next + 1) & 0xffff;
+		return KeyedCipher.of(next);
+	}
+
+	@Benchmark
+	public int keyAgileEncrypt() {
+		next = (next + 1) & 0xffff;
+		return Comp343Cipher.encrypt(next, 0x6162);
+	}
+}
@@ -0,0 +1,65 @@
+package blockcipher;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the startup cost of @see RoundKeyTable: building the 512KB table
+ * on one thread and on the common pool, and mapping it from a cache file.
+ * Each is timed as a single shot in many forks, so the cold cost is included.
+ * 
+ * @author Joseph Lewis
+ *
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 0)
+@Measurement(iterations = 1)
+@Fork(20)
+@State(Scope.Benchmark)
+public class RoundKeyTableStartup {
+	private Path directory;
+	private Path cache;
+
+	@Setup
+	public void setup() throws IOException {
+		directory = Files.createTempDirectory("roundkeys");
+		cache = directory.resolve("roundkeys.bin");
+		RoundKeyTable.write(cache, RoundKeyTable.build(false));
+	}
+
+	@TearDown
+	public void tearDown() throws IOException {
+		Files.deleteIfExists(cache);
+		Files.deleteIfExists(directory);
+	}
+
+	@Benchmark
+	public long[] build() {
+		return RoundKeyTable.build(false);
+	}
+
+	@Benchmark
+	public long[] buildParallel() {
+		return RoundKeyTable.build(true);
+	}
+
+	@Benchmark
+	public long[] readCache() throws IOException {
+		return RoundKeyTable.read(cache);
+	}
+}
@@ -0,0 +1,47 @@
+package blockcipher;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the time of a full @see TrailSearch, the best trails of 1 to 8
+ * rounds from a new search, and of measuring a best 8-round trail over 64
+ * codebooks with @see TrailStatistics, at 1, 2 and 4 threads and one per core.
+ * 
+ * @author Joseph Lewis
+ *
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class TrailSearchTime {
+	@Param({ "DIFFERENTIAL", "LINEAR" })
+	public TrailSearch.Kind kind;
+
+	@Param({ "1", "2", "4", "0" })
+	public int threads;
+
+	@Benchmark
+	public TrailSearch.Trail search() {
+		return new TrailSearch(kind, threads).search(8);
+	}
+
+	@Benchmark
+	public TrailStatistics.Measurement measure() {
+		TrailSearch.Trail trail = new TrailSearch(kind, threads).search(8);
+		return new TrailStatistics(threads, new BitslicedEngine()).measure(trail, TrailStatistics.spreadKeys(64));
+	}
+}
@@ -0,0 +1,362 @@
+package blockcipher;
+
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.SplittableRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Runs many independent trials of the birthday and pre-image attacks on a
+ * @see CompressionFunction in parallel and reports the statistics of the
+ * attempts each took, next to the theoretical 2^(n/2) and 2^n figures for the
+ * n = 16 bit digest.
+ *
+ * Every trial draws from its own @see SplittableRandom, split in trial order
+ * from one seeded generator before any trial runs, and writes its attempts to
+ * its own slot. The statistics are computed from the sorted attempts on one
+ * thread, so a seeded run gives bit-identical results at any thread count.
+ * Nothing is printed while the trials run.
+ *
+ * @author Joseph Lewis
+ *
+ */
+public class AttackExperiment {
+	// The number of bits of the digest
+	static final int DIGEST_BITS = 16;
+	// The trials run by each task, which share one digest index
+	static final int TRIALS_PER_TASK = 64;
+	// The number of bins of the histogram of attempts
+	static final int BINS = 32;
+
+	/**
+	 * The attacks that can be run.
+	 */
+	public enum Attack {
+		BIRTHDAY("birthday", Math.pow(2, DIGEST_BITS / 2.0), Math.sqrt(Math.PI / 2 * (1 << DIGEST_BITS))),
+		PRE_IMAGE("pre-image", Math.pow(2, DIGEST_BITS), 1 << DIGEST_BITS);
+
+		final String label;
+		// The order of the attack, 2^(n/2) or 2^n
+		final double theoretical;
+		// The expected number of attempts for a random function
+		final double expected;
+
+		Attack(String label, double theoretical, double expected) {
+			this.label = label;
+			this.theoretical = theoretical;
+			this.expected = expected;
+		}
+	}
+
+	private final int threads;
+	private final CompressionFunction function;
+
+	/**
+	 * Constructor used to create a runner for the plain compression function.
+	 *
+	 * @param threads
+	 *            is the number of worker threads, or 0 for one per core
+	 */
+	public AttackExperiment(int threads) {
+		this(threads, new PlainCompression());
+	}
+
+	/**
+	 * Constructor used to create a runner for the given compression function.
+	 *
+	 * @param threads
+	 *            is the number of worker threads, or 0 for one per core
+	 * @param function
+	 *            is the compression function attacked
+	 */
+	public AttackExperiment(int threads, CompressionFunction function) {
+		if (threads < 0) {
+			throw new IllegalArgumentException("The thread count cannot be negative.");
+		}
+		this.threads = threads == 0 ? Runtime.getRuntime().availableProcessors() : threads;
+		this.function = function;
+	}
+
+	/**
+	 * Runs the trials of an attack.
+	 *
+	 * @param attack
+	 *            is the attack
+	 * @param trials
+	 *            is the number of trials, each finding one collision or
+	 *            pre-image
+	 * @param seed
+	 *            is the seed of the trials
+	 * @return the attempts of each trial and their statistics
+	 */
+	public Result run(Attack attack, int trials, long seed) {
+		if (trials < 1) {
+			throw new IllegalArgumentException("At least one trial must be run.");
+		}
+		// Split the streams in trial order, whatever the thread count
+		SplittableRandom root = new SplittableRandom(seed);
+		SplittableRandom[] randoms = new SplittableRandom[trials];
+		for (int t = 0; t < trials; t++) {
+			randoms[t] = root.split();
+		}
+		long[] attempts = new long[trials];
+		ForkJoinPool pool = new ForkJoinPool(threads);
+		try {
+			pool.invoke(new TrialTask(attack, function, randoms, attempts, 0, trials));
+		} finally {
+			pool.shutdown();
+		}
+		return new Result(attack, seed, attempts);
+	}
+
+	/**
+	 * Finds one collision by drawing random inputs into an index of digests.
+	 *
+	 * @param index
+	 *            holds for each digest the generation in the high half and the
+	 *            input in the low half
+	 * @param generation
+	 *            is the tag of this trial's entries, so that the index needs no
+	 *            clearing
+	 * @return the number of attempts, including the one that collided
+	 */
+	static long birthdayTrial(CompressionFunction function, SplittableRandom random, long[] index, long generation) {
+		long tag = generation << 32;
+		long attempts = 0;
+		while (true) {
+			int x = random.nextInt();
+			attempts++;
+			int d = function.compress(x >>> 16, x & 0xffff);
+			long slot = index[d];
+			if ((slot & 0xffffffff00000000L) == tag && (int) slot != x) {
+				return attempts;
+			}
+			index[d] = tag | (x & 0xffffffffL);
+		}
+	}
+
+	/**
+	 * Finds one pre-image of the digest of a random input by drawing random
+	 * inputs.
+	 *
+	 * @return the number of attempts, including the one that matched
+	 */
+	static long preImageTrial(CompressionFunction function, SplittableRandom random) {
+		int target = function.compress(random.nextInt(1 << 16), random.nextInt(1 << 16));
+		long attempts = 0;
+		while (true) {
+			int x = random.nextInt();
+			attempts++;
+			if (function.compress(x >>> 16, x & 0xffff) == target) {
+				return attempts;
+			}
+		}
+	}
+
+	/**
+	 * A task that runs the trials in [from, to), splitting the range in halves
+	 * until it is small enough.
+	 */
+	private static class TrialTask extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+		private final Attack attack;
+		private final CompressionFunction function;
+		private final SplittableRandom[] randoms;
+		private final long[] attempts;
+		private final int from;
+		private final int to;
+
+		TrialTask(Attack attack, CompressionFunction function, SplittableRandom[] randoms, long[] attempts, int from,
+				int to) {
+			this.attack = attack;
+			this.function = function;
+			this.randoms = randoms;
+			this.attempts = attempts;
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		protected void compute() {
+			if (to - from > TRIALS_PER_TASK) {
+				int mid = (from + to) >>> 1;
+				invokeAll(new TrialTask(attack, function, randoms, attempts, from, mid),
+						new TrialTask(attack, function, randoms, attempts, mid, to));
+				return;
+			}
+			long[] index = attack == Attack.BIRTHDAY ? new long[1 << DIGEST_BITS] : null;
+			for (int t = from; t < to; t++) {
+				attempts[t] = attack == Attack.BIRTHDAY ? birthdayTrial(function, randoms[t], index, t - from + 1)
+						: preImageTrial(function, randoms[t]);
+			}
+		}
+	}
+
+	/**
+	 * The attempts of every trial of an attack, with their mean, median,
+	 * percentiles, 95% confidence interval of the mean and histogram.
+	 */
+	public static class Result {
+		public final Attack attack;
+		public final long seed;
+		// The attempts of each trial, in trial order
+		private final long[] attempts;
+		// The same, in ascending order
+		private final long[] sorted;
+		public final double mean;
+		public final double standardDeviation;
+
+		Result(Attack attack, long seed, long[] attempts) {
+			this.attack = attack;
+			this.seed = seed;
+			this.attempts = attempts;
+			sorted = attempts.clone();
+			Arrays.sort(sorted);
+			// Sum in trial order, so the rounding never depends on the threads
+			double sum = 0;
+			for (long a : attempts) {
+				sum += a;
+			}
+			mean = sum / attempts.length;
+			double squares = 0;
+			for (long a : attempts) {
+				squares += (a - mean) * (a - mean);
+			}
+			standardDeviation = attempts.length > 1 ? Math.sqrt(squares / (attempts.length - 1)) : 0;
+		}
+
+		/**
+		 * @return the attempts of each trial, in trial order
+		 */
+		public long[] getAttempts() {
+			return attempts.clone();
+		}
+
+		public int getTrials() {
+			return attempts.length;
+		}
+
+		/**
+		 * Returns the attempts at a percentile, by the nearest-rank method.
+		 *
+		 * @param percentile
+		 *            the percentage, from 0 to 100
+		 * @return the attempts
+		 */
+		public long getPercentile(double percentile) {
+			int rank = (int) Math.ceil(Math.min(Math.max(percentile, 0), 100) / 100 * sorted.length);
+			return sorted[Math.max(rank, 1) - 1];
+		}
+
+		public long getMedian() {
+			return getPercentile(50);
+		}
+
+		/**
+		 * @return the half-width of the 95% confidence interval of the mean
+		 */
+		public double getConfidenceHalfWidth() {
+			return 1.96 * standardDeviation / Math.sqrt(attempts.length);
+		}
+
+		/**
+		 * Counts the trials in BINS bins of equal width from 1 to the most
+		 * attempts.
+		 *
+		 * @return the counts of each bin
+		 */
+		public long[] getHistogram() {
+			long[] bins = new long[BINS];
+			long width = getBinWidth();
+			for (long a : sorted) {
+				bins[(int) Math.min((a - 1) / width, BINS - 1)]++;
+			}
+			return bins;
+		}
+
+		/**
+		 * @return the width of each bin of the histogram
+		 */
+		public long getBinWidth() {
+			return Math.max(1, (sorted[sorted.length - 1] + BINS - 1) / BINS);
+		}
+
+		/**
+		 * The header of the rows of @see Result#toCsv().
+		 */
+		public static final String CSV_HEADER = "attack,trials,seed,mean,ci95_low,ci95_high,stddev,min,median,p90,p99,max,theoretical,expected";
+
+		/**
+		 * @return the statistics as one CSV row
+		 */
+		public String toCsv() {
+			return String.format(Locale.ROOT, "%s,%d,%d,%.3f,%.3f,%.3f,%.3f,%d,%d,%d,%d,%d,%.1f,%.1f",
+					attack.label, attempts.length, seed, mean, mean - getConfidenceHalfWidth(),
+					mean + getConfidenceHalfWidth(), standardDeviation, sorted[0], getMedian(), getPercentile(90),
+					getPercentile(99), sorted[sorted.length - 1], attack.theoretical, attack.expected);
+		}
+
+		/**
+		 * @return the statistics and histogram as a JSON object
+		 */
+		public String toJson() {
+			StringBuilder json = new StringBuilder();
+			json.append(String.format(Locale.ROOT,
+					"{\"attack\":\"%s\",\"trials\":%d,\"seed\":%d,\"mean\":%.3f,\"ci95\":[%.3f,%.3f],\"stddev\":%.3f,"
+							+ "\"min\":%d,\"median\":%d,\"p90\":%d,\"p99\":%d,\"max\":%d,\"theoretical\":%.1f,\"expected\":%.1f,"
+							+ "\"binWidth\":%d,\"histogram\":",
+					attack.label, attempts.length, seed, mean, mean - getConfidenceHalfWidth(),
+					mean + getConfidenceHalfWidth(), standardDeviation, sorted[0], getMedian(), getPercentile(90),
+					getPercentile(99), sorted[sorted.length - 1], attack.theoretical, attack.expected, getBinWidth()));
+			json.append(Arrays.toString(getHistogram()).replace(" ", "")).append('}');
+			return json.toString();
+		}
+
+		@Override
+		public String toString() {
+			return String.format(
+					"--- %s attack: %d trials ---\nMean attempts: %.1f (95%% CI %.1f to %.1f) | Median: %d | p90: %d | p99: %d | Max: %d\n"
+							+ "Theoretical: %.0f | Expected: %.1f",
+					attack.label, attempts.length, mean, mean - getConfidenceHalfWidth(),
+					mean + getConfidenceHalfWidth(), getMedian(), getPercentile(90), getPercentile(99),
+					sorted[sorted.length - 1], attack.theoretical, attack.expected);
+		}
+	}
+
+	/**
+	 * Runs both attacks and prints their statistics as text, CSV or JSON.
+	 *
+	 * @param args[]
+	 *            optionally contains the number of trials (default 1000), the
+	 *            thread count (default 0, one per core), the seed (default
+	 *            343) and the format: text, csv or json
+	 */
+	public static void main(String args[]) {
+		int trials = args.length > 0 ? Integer.parseInt(args[0]) : 1000;
+		int threads = args.length > 1 ? Integer.parseInt(args[1]) : 0;
+		long seed = args.length > 2 ? Long.parseLong(args[2]) : 343;
+		String format = args.length > 3 ? args[3] : "text";
+		AttackExperiment experiment = new AttackExperiment(threads);
+		Result[] results = new Result[Attack.values().length];
+		for (Attack attack : Attack.values()) {
+			results[attack.ordinal()] = experiment.run(attack, trials, seed);
+		}
+		if (format.equals("csv")) {
+			System.out.println(Result.CSV_HEADER);
+			for (Result result : results) {
+				System.out.println(result.toCsv());
+			}
+		} else if (format.equals("json")) {
+			StringBuilder json = new StringBuilder("[");
+			for (Result result : results) {
+				json.append(json.length() > 1 ? "," : "").append(result.toJson());
+			}
+			System.out.println(json.append(']'));
+		} else {
+			for (Result result : results) {
+				System.out.println(result);
+			}
+		}
+	}
+}
@@ -0,0 +1,74 @@
+package blockcipher;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+import blockcipher.AttackExperiment.Attack;
+import blockcipher.AttackExperiment.Result;
+
+/**
+ * A JUnit test class for AttackExperiment.
+ * 
+ * @author Joseph Lewis
+ *
+ */
+public class AttackExperimentTest {
+
+	/**
+	 * Checks that a seeded run gives the same attempts and statistics at every
+	 * thread count.
+	 */
+	@Test
+	public void reproducibleTest() {
+		for (Attack attack : Attack.values()) {
+			int trials = attack == Attack.BIRTHDAY ? 1000 : 100;
+			Result one = new AttackExperiment(1).run(attack, trials, 343);
+			for (int threads : new int[] { 2, 3, 8 }) {
+				Result many = new AttackExperiment(threads).run(attack, trials, 343);
+				assertArrayEquals(one.getAttempts(), many.getAttempts());
+				assertEquals(one.toJson(), many.toJson());
+				assertEquals(one.toCsv(), many.toCsv());
+			}
+			assertNotEquals(one.toCsv(), new AttackExperiment(1).run(attack, trials, 344).toCsv());
+		}
+	}
+
+	/**
+	 * Checks that the birthday attack takes about sqrt(pi/2 * 2^16) attempts.
+	 */
+	@Test
+	public void birthdayTest() {
+		Result result = new AttackExperiment(0).run(Attack.BIRTHDAY, 4000, 1);
+		assertEquals(Attack.BIRTHDAY.expected, result.mean, 4 * result.getConfidenceHalfWidth());
+		assertTrue(result.getPercentile(0) >= 2);
+		assertTrue(result.getMedian() <= result.getPercentile(90));
+		assertTrue(result.getPercentile(90) <= result.getPercentile(99));
+	}
+
+	/**
+	 * Test method for the percentiles and histogram of known attempts.
+	 */
+	@Test
+	public void statisticsTest() {
+		long[] attempts = new long[100];
+		for (int i = 0; i < attempts.length; i++) {
+			attempts[i] = 100 - i;
+		}
+		Result result = new Result(Attack.PRE_IMAGE, 0, attempts);
+		assertEquals(50.5, result.mean, 1e-9);
+		assertEquals(50, result.getMedian());
+		assertEquals(90, result.getPercentile(90));
+		assertEquals(100, result.getPercentile(100));
+		assertEquals(1, result.getPercentile(0));
+		assertEquals(4, result.getBinWidth());
+		long total = 0;
+		for (long count : result.getHistogram()) {
+			assertTrue(count <= 4);
+			total += count;
+		}
+		assertEquals(100, total);
+		assertTrue(result.toCsv().startsWith("pre-image,100,0,50.500,"));
+		assertEquals(Result.CSV_HEADER.split(",").length, result.toCsv().split(",").length);
+	}
+}
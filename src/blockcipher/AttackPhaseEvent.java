@@ -0,0 +1,37 @@
+package blockcipher;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * A Flight Recorder event for a phase of an attack, such as a collision or
+ * pre-image search, recorded by @see Metrics#attackPhase(AttackPhaseEvent,
+ * String, String, long, long, int).
+ *
+ * @author Joseph Lewis
+ *
+ */
+@Name("blockcipher.AttackPhase")
+@Label("Attack Phase")
+@Category("Block Cipher")
+@Description("A phase of an attack on the cipher or its compression function")
+class AttackPhaseEvent extends jdk.jfr.Event {
+	@Label("Attack")
+	String attack;
+
+	@Label("Phase")
+	String phase;
+
+	@Label("Results")
+	@Description("The collisions, pre-images or keys found")
+	long results;
+
+	@Label("Trials")
+	@Description("The evaluations made, or 0 when not counted")
+	long trials;
+
+	@Label("Threads")
+	int threads;
+}
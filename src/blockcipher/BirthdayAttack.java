@@ -1,6 +1,6 @@
 package blockcipher;
 
-import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Random;
 
 /**
@@ -9,34 +9,69 @@ import java.util.Random;
  * digest. There must be colliding inputs, such that Eh1(m1) = Eh2(m2), and this
  * is the mathematical basis for the attack.
  * 
+ * Any @see CompressionFunction can be attacked in place of the plain
+ * construction.
+ * 
+ * The trials are kept in an index with one slot per digest, holding the packed
+ * input (m << 16) | h that produced it, so each new digest is checked in O(1)
+ * and no trial allocates. The index is emptied after every collision.
+ * 
  * @author Joseph Lewis
- *
+ * 
  */
 public class BirthdayAttack {
+	// The number of digests, and so of slots in the index
+	static final int DIGESTS = 1 << 16;
+
 	// Decleare and initialise some variables
-	private Comp343Cipher bc;
-	private byte[] message1 = new byte[2];
-	private byte[] chaining_value1 = new byte[2];
-	private byte[] digest1 = new byte[2];
+	private Random random;
+	private CompressionFunction function;
+	// Each slot holds the generation in the high half and the packed (m, h)
+	// in the low half; a slot from an older generation is empty
+	private long[] index = new long[DIGESTS];
+	private long generation;
 
-	private ArrayList<String[]> pool;
+	// The trials to each collision and the colliding pairs of packed inputs
+	private int[] attempts;
+	private long[] collisions;
 	private int passAvg;
 
 	/**
 	 * Constructor method used for starting the birthday attack.
 	 */
 	public BirthdayAttack() {
-		// Create a new cipher instance
-		bc = new Comp343Cipher();
-		// Generate the first random m and h
-		pool = new ArrayList<String[]>();
-		new Random().nextBytes(message1);
-		new Random().nextBytes(chaining_value1);
-		passAvg = 0;
+		this(new Random().nextLong());
 		// Start looking for collisions
 		find100Collisions();
 	}
 
+	/**
+	 * Constructor method used for preparing a birthday attack whose trials are
+	 * drawn from a fixed seed, so that runs can be reproduced. The attack is
+	 * started by @see BirthdayAttack#findCollisions(int).
+	 * 
+	 * @param seed
+	 *            is the seed of the random trials
+	 */
+	public BirthdayAttack(long seed) {
+		this(seed, new PlainCompression());
+	}
+
+	/**
+	 * Constructor method used for preparing a reproducible birthday attack on
+	 * the given compression function.
+	 * 
+	 * @param seed
+	 *            is the seed of the random trials
+	 * @param function
+	 *            is the compression function attacked
+	 */
+	public BirthdayAttack(long seed, CompressionFunction function) {
+		random = new Random(seed);
+		this.function = function;
+		passAvg = 0;
+	}
+
 	/**
 	 * This method is parsed a byte array as a parameter and returns a hex
 	 * string for console display.
@@ -46,11 +81,56 @@ public class BirthdayAttack {
 	 * @return the hex string of the block
 	 */
 	public static String toHex(byte[] block) {
-		String hexString = "";
+		char[] hex = new char[2 + 2 * block.length];
+		hex[0] = '0';
+		hex[1] = 'x';
 		for (int i = 0; i < block.length; i++) {
-			hexString += Integer.toString((block[i] & 0xff) + 0x100, 16).substring(1);
+			hex[2 + 2 * i] = Character.forDigit((block[i] >>> 4) & 0x0f, 16);
+			hex[3 + 2 * i] = Character.forDigit(block[i] & 0x0f, 16);
 		}
-		return "0x" + hexString;
+		return new String(hex);
+	}
+
+	/**
+	 * Searches for the given number of collisions, each with a new empty index.
+	 * 
+	 * @param count
+	 *            is the number of collisions to find
+	 * @return the number of trials until each collision, including the trial
+	 *         that collided
+	 */
+	public int[] findCollisions(int count) {
+		AttackPhaseEvent event = new AttackPhaseEvent();
+		event.begin();
+		long trials = 0;
+		attempts = new int[count];
+		collisions = new long[count];
+		for (int c = 0; c < count; c++) {
+			// A new generation empties the index without clearing it
+			if (++generation == 1L << 32) {
+				Arrays.fill(index, 0);
+				generation = 1;
+			}
+			long tag = generation << 32;
+			int passes = 0;
+			while (true) {
+				// Draw m and h in one go as the packed input (m << 16) | h
+				int x = random.nextInt();
+				passes++;
+				int digest = function.compress(x >>> 16, x & 0xffff);
+				long slot = index[digest];
+				if ((slot & 0xffffffff00000000L) == tag && (int) slot != x) {
+					// A different input with the same digest is a collision
+					attempts[c] = passes;
+					trials += passes;
+					collisions[c] = (slot << 32) | (x & 0xffffffffL);
+					break;
+				}
+				index[digest] = tag | (x & 0xffffffffL);
+			}
+		}
+		Metrics.attackPhase(event, "birthday", "collisions", count, trials, 1);
+		return attempts;
 	}
 
 	/**
@@ -58,56 +138,51 @@ public class BirthdayAttack {
 	 * collisions created using the compression function.
 	 */
 	public void find100Collisions() {
-		ArrayList<Integer> attempts = new ArrayList<Integer>();
-		int passes = 0;
+		findCollisions(100);
+		passAvg = 0;
 		int most = -1;
 		int least = -1;
 		System.out.println("Printing the next 100 collisions...");
-		while (attempts.size() < 100) {
-			if (pool.isEmpty()) {
-				String[] tmp1 = { toHex(message1), toHex(chaining_value1), toHex(digest1) };
-				pool.add(tmp1);
+		StringBuilder out = new StringBuilder();
+		for (int c = 0; c < attempts.length; c++) {
+			// Print both inputs of the collision
+			int first = (int) (collisions[c] >>> 32);
+			int second = (int) collisions[c];
+			out.append(String.format("0x%04x 0x%04x%n0x%04x 0x%04x%ncollision%n", first >>> 16, first & 0xffff,
+					second >>> 16, second & 0xffff));
+			// Keep track of the most and lest passes for collisions
+			if (most == -1 || attempts[c] > most) {
+				most = attempts[c];
 			}
-			new Random().nextBytes(message1);
-			new Random().nextBytes(chaining_value1);
-			digest1 = bc.compression(message1, chaining_value1);
-			String[] tmp1 = { toHex(message1), toHex(chaining_value1), toHex(digest1) };
-			pool.add(tmp1);
-			// A pool of digests is used to find collisions, and a successful
-			// collision is printed
-			for (int i = 0; i < pool.size() - 1; i++) {
-				if (pool.get(pool.size() - 1)[2].equals(pool.get(i)[2])) {
-					System.out.println(pool.get(attempts.size())[0] + " " + pool.get(attempts.size())[1] + "\n"
-							+ pool.get(i)[0] + " " + pool.get(i)[1] + "\ncollision");
-					// Keep track of the most and lest passes for collisions
-					if (most == -1 || passes > most) {
-						most = passes;
-					}
-					if (least == -1 || passes < least) {
-						least = passes;
-					}
-					attempts.add(passes);
-					passes = 0;
-				}
+			if (least == -1 || attempts[c] < least) {
+				least = attempts[c];
 			}
-			passes++;
+			passAvg += attempts[c];
 		}
-		for (int i = 0; i < attempts.size(); i++) {
-			passAvg += attempts.get(i);
-		}
-		passAvg /= attempts.size();
+		System.out.print(out);
+		passAvg /= attempts.length;
 		// Print out some stats on the birthday attack
 		// Print the statistics of the attack to the console or command line /
 		// terminal
 		Double BA_TC = Math.pow(2, (16 / 2));
 		String BA_Stats = "--- Birthday Attack Statistics ---\n";
 		BA_Stats += "Theoretical complexity of the attack is: O(2^(n/2)) = " + BA_TC.intValue() + "\n";
-		BA_Stats += "First Collision: " + attempts.get(0) + " | Last Collision: " + attempts.get(attempts.size() - 1)
+		BA_Stats += "First Collision: " + attempts[0] + " | Last Collision: " + attempts[attempts.length - 1]
 				+ "\n";
 		BA_Stats += "Most attempts until collision: " + most + " | Least: " + least;
 		System.out.println(BA_Stats);
 	}
 
+	/**
+	 * Getter method that returns the colliding inputs of the last search, each
+	 * as the two packed inputs (m << 16) | h in the high and low halves.
+	 * 
+	 * @return the collisions
+	 */
+	public long[] getCollisions() {
+		return collisions;
+	}
+
 	/**
 	 * Getter method that returns the average number of attempts for each
 	 * collision in the attack.
@@ -0,0 +1,77 @@
+package blockcipher;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * A JUnit test class for BirthdayAttack, which checks the indexed search
+ * against a plain pool search on the same fixed seeds.
+ * 
+ * @author Joseph Lewis
+ *
+ */
+public class BirthdayAttackTest {
+
+	/**
+	 * Test method for @see {@link BirthdayAttack#findCollisions(int)}.
+	 */
+	@Test
+	public void findCollisionsTest() {
+		for (long seed = 1; seed <= 5; seed++) {
+			BirthdayAttack attack = new BirthdayAttack(seed);
+			int[] attempts = attack.findCollisions(100);
+			long[] collisions = attack.getCollisions();
+			// The reference search scans a pool that is emptied after each
+			// collision
+			Random random = new Random(seed);
+			for (int c = 0; c < 100; c++) {
+				ArrayList<int[]> pool = new ArrayList<int[]>();
+				int found = 0;
+				boolean collided = false;
+				while (!collided) {
+					int x = random.nextInt();
+					int digest = Comp343CipherTest.referenceEncrypt(x & 0xffff, x >>> 16);
+					for (int[] entry : pool) {
+						if (entry[1] == digest && entry[0] != x) {
+							found = entry[0];
+							collided = true;
+						}
+					}
+					pool.add(new int[] { x, digest });
+				}
+				assertEquals(pool.size(), attempts[c]);
+				assertEquals(found, (int) (collisions[c] >>> 32));
+				assertEquals(pool.get(pool.size() - 1)[0], (int) collisions[c]);
+			}
+		}
+	}
+
+	/**
+	 * Checks that every reported pair is a real collision.
+	 */
+	@Test
+	public void collisionTest() {
+		BirthdayAttack attack = new BirthdayAttack(343);
+		attack.findCollisions(1000);
+		for (long collision : attack.getCollisions()) {
+			int first = (int) (collision >>> 32);
+			int second = (int) collision;
+			assertNotEquals(first, second);
+			assertEquals(Comp343CipherTest.referenceEncrypt(first & 0xffff, first >>> 16),
+					Comp343CipherTest.referenceEncrypt(second & 0xffff, second >>> 16));
+		}
+	}
+
+	/**
+	 * Test method for @see {@link BirthdayAttack#toHex(byte[])}.
+	 */
+	@Test
+	public void toHexTest() {
+		assertEquals("0x00ab0f", BirthdayAttack.toHex(new byte[] { 0x00, (byte) 0xab, 0x0f }));
+		assertEquals("0x", BirthdayAttack.toHex(new byte[0]));
+	}
+}
@@ -0,0 +1,195 @@
+package blockcipher;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+
+/**
+ * A bitsliced engine that encrypts 64 blocks at once. The blocks are
+ * transposed into 16 <code>long</code> bit-planes, where each plane holds one bit
+ * position of all 64 blocks, so that every logical operation acts on all 64
+ * blocks. The
+ * S-box is evaluated as a circuit of AND and XOR gates, the rotation rotL(z, 2)
+ * is a renaming of planes and the round keys are XORed in as broadcast masks.
+ * There are no table lookups or branches on the data, so the bulk methods run
+ * in constant time; a final partial batch is zero-filled as it is loaded. A
+ * single block would cost a whole batch, so single blocks run on @see
+ * TableEngine, which is not constant time.
+ * 
+ * @author Joseph Lewis
+ *
+ */
+public class BitslicedEngine implements CipherEngine {
+	// The number of blocks in a batch, one per bit of a long
+	static final int LANES = 64;
+	// The size of a batch in bytes, and in longs of 4 blocks each
+	static final int BATCH_BYTES = 2 * LANES;
+	static final int PLANES = 16;
+	// Reads and writes 4 blocks at a time as a big-endian long
+	private static final VarHandle LONGS = MethodHandles.byteArrayViewVarHandle(long[].class, ByteOrder.BIG_ENDIAN);
+	// The bit-planes of each thread, so that the bulk methods never allocate
+	private static final ThreadLocal<long[]> STATE = ThreadLocal.withInitial(() -> new long[PLANES]);
+	// The engine used for single blocks
+	private final TableEngine scalar = new TableEngine();
+
+	public int encryptBlock(byte[] K, int block) {
+		return scalar.encryptBlock(K, block);
+	}
+
+	public int decryptBlock(byte[] K, int block) {
+		return scalar.decryptBlock(K, block);
+	}
+
+	@Override
+	public void encryptBlocks(byte[] K, byte[] in, int inOff, byte[] out, int outOff, int len) {
+		blocks(K, in, inOff, out, outOff, len, false);
+	}
+
+	@Override
+	public void decryptBlocks(byte[] K, byte[] in, int inOff, byte[] out, int outOff, int len) {
+		blocks(K, in, inOff, out, outOff, len, true);
+	}
+
+	private static void blocks(byte[] K, byte[] in, int inOff, byte[] out, int outOff, int len, boolean decrypt) {
+		long[] s = STATE.get();
+		int whole = len - len % BATCH_BYTES;
+		for (int i = 0; i < whole; i += BATCH_BYTES) {
+			for (int q = 0; q < PLANES; q++) {
+				s[q] = (long) LONGS.get(in, inOff + i + 8 * q);
+			}
+			// Decryption runs the rounds on the swapped halves, which is a
+			// renaming of planes
+			run(K, s, decrypt, decrypt);
+			for (int q = 0; q < PLANES; q++) {
+				LONGS.set(out, outOff + i + 8 * q, s[q]);
+			}
+		}
+		if (whole < len) {
+			// Load the final partial batch zero-filled, and store only its
+			// blocks
+			int tail = len - whole;
+			for (int q = 0; q < PLANES; q++) {
+				long v = 0;
+				for (int b = 8 * q; b < 8 * q + 8; b++) {
+					v = (v << 8) | (b < tail ? in[inOff + whole + b] & 0xff : 0);
+				}
+				s[q] = v;
+			}
+			run(K, s, decrypt, decrypt);
+			for (int b = 0; b < tail; b++) {
+				out[outOff + whole + b] = (byte) (s[b >>> 3] >>> (56 - 8 * (b & 7)));
+			}
+		}
+	}
+
+	/**
+	 * Runs the 8 rounds on a batch of 64 blocks in place. The batch is held in
+	 * 16 longs of 4 packed blocks each, the first block in the highest-order
+	 * 16 bits.
+	 * 
+	 * @param K
+	 *            the 8 round keys
+	 * @param s
+	 *            the batch of blocks
+	 * @param decrypt
+	 *            is true to run the round keys in reverse order
+	 * @param swap
+	 *            is true to swap the halves before and after the rounds
+	 */
+	static void run(byte[] K, long[] s, boolean decrypt, boolean swap) {
+		transpose(s);
+		if (swap) {
+			swapHalves(s);
+		}
+		rounds(K, s, decrypt);
+		if (swap) {
+			swapHalves(s);
+		}
+		transpose(s);
+	}
+
+	/**
+	 * Swaps the planes of the left and right halves.
+	 */
+	private static void swapHalves(long[] s) {
+		for (int b = 0; b < 8; b++) {
+			long t = s[b];
+			s[b] = s[b + 8];
+			s[b + 8] = t;
+		}
+	}
+
+	/**
+	 * Runs the 8 Feistel rounds on the bit-planes, where s[0-7] hold R and
+	 * s[8-15] hold L, lowest-order bit first. Rather than moving R into L each
+	 * round, the halves swap roles: even rounds update s[8-15] from s[0-7] and
+	 * odd rounds update s[0-7] from s[8-15].
+	 * 
+	 * @param K
+	 *            the 8 round keys
+	 * @param s
+	 *            the 16 bit-planes
+	 * @param decrypt
+	 *            is true to run the round keys in reverse order
+	 */
+	static void rounds(byte[] K, long[] s, boolean decrypt) {
+		for (int i = 0; i <= 7; i++) {
+			int k = K[decrypt ? 7 - i : i];
+			int src = (i & 1) << 3;
+			int dst = src ^ 8;
+			// y = R ^ K, with each key bit broadcast to a mask
+			long y0 = s[src] ^ -(k & 1);
+			long y1 = s[src + 1] ^ -((k >>> 1) & 1);
+			long y2 = s[src + 2] ^ -((k >>> 2) & 1);
+			long y3 = s[src + 3] ^ -((k >>> 3) & 1);
+			long y4 = s[src + 4] ^ -((k >>> 4) & 1);
+			long y5 = s[src + 5] ^ -((k >>> 5) & 1);
+			long y6 = s[src + 6] ^ -((k >>> 6) & 1);
+			long y7 = s[src + 7] ^ -((k >>> 7) & 1);
+			// L ^= rotL(z, 2), where bit b of the rotation is bit b - 2 of z, so
+			// each nibble of z is XORed straight into its rotated planes
+			sbox(y0, y1, y2, y3, s, dst + 2, dst + 3, dst + 4, dst + 5);
+			sbox(y4, y5, y6, y7, s, dst + 6, dst + 7, dst, dst + 1);
+		}
+	}
+
+	/**
+	 * The S-box as a circuit, from the algebraic normal form of each output
+	 * bit. The input nibble is x3 x2 x1 x0, and output bit b is XORed into
+	 * s[ob].
+	 */
+	static void sbox(long x0, long x1, long x2, long x3, long[] s, int o0, int o1, int o2, int o3) {
+		long t01 = x0 & x1;
+		long t02 = x0 & x2;
+		long t03 = x0 & x3;
+		long t12 = x1 & x2;
+		long t13 = x1 & x3;
+		long t23 = x2 & x3;
+		long t013 = t01 & x3;
+		long t123 = t12 & x3;
+		s[o0] ^= x0 ^ x1 ^ x2 ^ t01 ^ (t01 & x2) ^ t13 ^ t013 ^ t123;
+		s[o1] ^= x1 ^ t01 ^ t02 ^ t13 ^ t23 ^ (t02 & x3) ^ t123;
+		s[o2] ^= x3 ^ t01 ^ t02 ^ t12 ^ t13 ^ t013;
+		s[o3] ^= x1 ^ x2 ^ x3 ^ t03 ^ t13 ^ t23 ^ t123;
+	}
+
+	/**
+	 * Transposes the four 16x16 bit matrices held side by side in 16 longs, so
+	 * that bit c of each 16-bit group of s[q] becomes bit q of the same group
+	 * of s[c]. This turns 16 longs of 4 packed blocks into 16 bit-planes, and
+	 * back again.
+	 * 
+	 * @param s
+	 *            the 16 rows of the matrices
+	 */
+	static void transpose(long[] s) {
+		long m = 0x00ff00ff00ff00ffL;
+		for (int j = 8; j != 0; j >>>= 1, m ^= m << j) {
+			for (int k = 0; k < PLANES; k = ((k | j) + 1) & ~j) {
+				long t = ((s[k] >>> j) ^ s[k | j]) & m;
+				s[k] ^= t << j;
+				s[k | j] ^= t;
+			}
+		}
+	}
+}
@@ -0,0 +1,99 @@
+package blockcipher;
+
+import static org.junit.Assert.*;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.stream.IntStream;
+
+import org.junit.Test;
+
+/**
+ * A JUnit test class for BitslicedEngine, which cross-checks it against the
+ * reference engine, and against the table engine over the full 2^32 (key,
+ * block) space.
+ * 
+ * @author Joseph Lewis
+ *
+ */
+public class BitslicedEngineTest {
+	private BitslicedEngine bitsliced = new BitslicedEngine();
+
+	/**
+	 * Test method for @see {@link BitslicedEngine#sbox(long, long, long, long, long[], int, int, int, int)}.
+	 */
+	@Test
+	public void sboxCircuitTest() {
+		for (int x = 0; x < 16; x++) {
+			long[] s = new long[4];
+			BitslicedEngine.sbox(-(x & 1), -((x >>> 1) & 1), -((x >>> 2) & 1), -((x >>> 3) & 1), s, 0, 1, 2, 3);
+			int z = (int) ((s[0] & 1) | (s[1] & 2) | (s[2] & 4) | (s[3] & 8));
+			assertEquals("S-box differs for input " + x, Sbox.getOutput(x), z);
+		}
+	}
+
+	/**
+	 * Test method for @see {@link BitslicedEngine#encryptBlock(byte[], int)}
+	 * and {@link BitslicedEngine#decryptBlock(byte[], int)} against the
+	 * reference engine.
+	 */
+	@Test
+	public void referenceTest() {
+		ReferenceEngine reference = new ReferenceEngine();
+		Random random = new Random(343);
+		for (int i = 0; i < 20000; i++) {
+			int k = random.nextInt(0x10000);
+			int block = random.nextInt(0x10000);
+			byte[] K = Permutation.keySchedule(new byte[] { (byte) (k >>> 8), (byte) k });
+			assertEquals(reference.encryptBlock(K, block), bitsliced.encryptBlock(K, block));
+			assertEquals(reference.decryptBlock(K, block), bitsliced.decryptBlock(K, block));
+		}
+	}
+
+	/**
+	 * Test method for @see
+	 * {@link BitslicedEngine#encryptBlocks(byte[], byte[], int, byte[], int, int)}
+	 * and the decryption inverse with lengths that leave a partial batch.
+	 */
+	@Test
+	public void partialBatchTest() {
+		TableEngine table = new TableEngine();
+		byte[] K = Permutation.keySchedule(new byte[] { (byte) 0xb0, (byte) 0xb1 });
+		byte[] plain = new byte[1000];
+		new Random(1).nextBytes(plain);
+		for (int len = 0; len <= plain.length; len += 26) {
+			byte[] expected = new byte[len + 1];
+			byte[] actual = new byte[len + 1];
+			table.encryptBlocks(K, plain, 0, expected, 1, len);
+			bitsliced.encryptBlocks(K, plain, 0, actual, 1, len);
+			assertArrayEquals(expected, actual);
+			bitsliced.decryptBlocks(K, actual, 1, actual, 1, len);
+			for (int i = 0; i < len; i++) {
+				assertEquals(plain[i], actual[i + 1]);
+			}
+		}
+	}
+
+	/**
+	 * Cross-checks the bulk methods against the table engine, which is checked
+	 * against the reference engine by @see TableEngineTest, for every key and
+	 * every block.
+	 */
+	@Test
+	public void fullSpaceTest() {
+		final byte[] blocks = new byte[0x20000];
+		for (int block = 0; block < 0x10000; block++) {
+			blocks[2 * block] = (byte) (block >>> 8);
+			blocks[2 * block + 1] = (byte) block;
+		}
+		long mismatches = IntStream.range(0, 0x10000).parallel().filter(k -> {
+			byte[] K = Permutation.keySchedule(new byte[] { (byte) (k >>> 8), (byte) k });
+			byte[] expected = new byte[blocks.length];
+			byte[] actual = new byte[blocks.length];
+			new TableEngine().encryptBlocks(K, blocks, 0, expected, 0, blocks.length);
+			bitsliced.encryptBlocks(K, blocks, 0, actual, 0, blocks.length);
+			return !Arrays.equals(expected, actual);
+		}).count();
+		assertEquals("Keys with a differing block", 0, mismatches);
+	}
+}
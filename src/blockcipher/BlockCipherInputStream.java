@@ -0,0 +1,93 @@
+package blockcipher;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * An input stream that encrypts or decrypts the data read from another stream
+ * with a <code>Cipher</code>, using fixed-size buffers so that streams of any
+ * length are processed in constant memory. The padding of @see
+ * BlockStreamProcessor is added or removed at the end of the data.
+ * 
+ * @author Joseph Lewis
+ *
+ */
+public class BlockCipherInputStream extends InputStream {
+	private final InputStream in;
+	private final BlockStreamProcessor processor;
+	private final byte[] input = new byte[BlockCipherOutputStream.BUFFER_SIZE];
+	private final byte[] output;
+	private final byte[] single = new byte[1];
+	// The unread processed bytes are output[position, limit)
+	private int position;
+	private int limit;
+	private boolean eof;
+
+	/**
+	 * Constructor used to create a cipher input stream.
+	 * 
+	 * @param in
+	 *            is the stream the data is read from
+	 * @param cipher
+	 *            is the keyed cipher
+	 * @param encrypt
+	 *            is true to encrypt and false to decrypt the data read
+	 */
+	public BlockCipherInputStream(InputStream in, Cipher cipher, boolean encrypt) {
+		this.in = in;
+		this.processor = new BlockStreamProcessor(cipher, encrypt);
+		this.output = new byte[processor.getOutputSize(input.length)];
+	}
+
+	/**
+	 * Reads and processes input until some output is available or the data
+	 * ends.
+	 * 
+	 * @return false at the end of the data
+	 */
+	private boolean fill() throws IOException {
+		while (position == limit) {
+			if (eof) {
+				return false;
+			}
+			position = 0;
+			int n = in.read(input, 0, input.length);
+			if (n < 0) {
+				eof = true;
+				limit = processor.doFinal(output, 0);
+			} else {
+				limit = processor.update(input, 0, n, output, 0);
+			}
+		}
+		return true;
+	}
+
+	@Override
+	public int read() throws IOException {
+		return read(single, 0, 1) < 0 ? -1 : single[0] & 0xff;
+	}
+
+	@Override
+	public int read(byte[] b, int off, int len) throws IOException {
+		if (len == 0) {
+			return 0;
+		}
+		if (!fill()) {
+			return -1;
+		}
+		int n = Math.min(len, limit - position);
+		System.arraycopy(output, position, b, off, n);
+		position += n;
+		return n;
+	}
+
+	@Override
+	public int available() {
+		return limit - position;
+	}
+
+	@Override
+	public void close() throws IOException {
+		in.close();
+	}
+}
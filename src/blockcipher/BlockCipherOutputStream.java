@@ -0,0 +1,93 @@
+package blockcipher;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * An output stream that encrypts or decrypts everything written to it with a
+ * <code>Cipher</code> before passing it on, using a fixed-size buffer so that
+ * streams of any length are processed in constant memory. The padding of @see
+ * BlockStreamProcessor is added or removed when the stream is finished or
+ * closed.
+ * 
+ * @author Joseph Lewis
+ *
+ */
+public class BlockCipherOutputStream extends OutputStream {
+	// The number of input bytes processed per call to the cipher
+	static final int BUFFER_SIZE = 8192;
+
+	private final OutputStream out;
+	private final BlockStreamProcessor processor;
+	private final byte[] buffer;
+	private final byte[] single = new byte[1];
+	private boolean finished;
+
+	/**
+	 * Constructor used to create a cipher output stream.
+	 * 
+	 * @param out
+	 *            is the stream the processed data is written to
+	 * @param cipher
+	 *            is the keyed cipher
+	 * @param encrypt
+	 *            is true to encrypt and false to decrypt the data written
+	 */
+	public BlockCipherOutputStream(OutputStream out, Cipher cipher, boolean encrypt) {
+		this.out = out;
+		this.processor = new BlockStreamProcessor(cipher, encrypt);
+		this.buffer = new byte[processor.getOutputSize(BUFFER_SIZE)];
+	}
+
+	@Override
+	public void write(int b) throws IOException {
+		single[0] = (byte) b;
+		write(single, 0, 1);
+	}
+
+	@Override
+	public void write(byte[] b, int off, int len) throws IOException {
+		if (finished) {
+			throw new IOException("The stream has been finished.");
+		}
+		while (len > 0) {
+			int n = Math.min(len, BUFFER_SIZE);
+			int produced = processor.update(b, off, n, buffer, 0);
+			out.write(buffer, 0, produced);
+			off += n;
+			len -= n;
+		}
+	}
+
+	/**
+	 * Flushes the underlying stream. A partial block is held back until more
+	 * data is written or the stream is finished.
+	 */
+	@Override
+	public void flush() throws IOException {
+		out.flush();
+	}
+
+	/**
+	 * Writes the final block without closing the underlying stream.
+	 * 
+	 * @throws IOException
+	 *             if the ciphertext is truncated or its padding is invalid
+	 */
+	public void finish() throws IOException {
+		if (!finished) {
+			finished = true;
+			out.write(buffer, 0, processor.doFinal(buffer, 0));
+			out.flush();
+		}
+	}
+
+	@Override
+	public void close() throws IOException {
+		try {
+			finish();
+		} finally {
+			out.close();
+		}
+	}
+}
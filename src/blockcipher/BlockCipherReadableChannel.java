@@ -0,0 +1,87 @@
+package blockcipher;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.ReadableByteChannel;
+
+/**
+ * A channel that encrypts or decrypts the data read from another channel with
+ * a <code>Cipher</code>, using fixed-size buffers. The padding of @see
+ * BlockStreamProcessor is added or removed at the end of the data.
+ * 
+ * @author Joseph Lewis
+ *
+ */
+public class BlockCipherReadableChannel implements ReadableByteChannel {
+	private final ReadableByteChannel in;
+	private final BlockStreamProcessor processor;
+	private final ByteBuffer input = ByteBuffer.allocate(BlockCipherOutputStream.BUFFER_SIZE);
+	private final byte[] output;
+	// The unread processed bytes are output[position, limit)
+	private int position;
+	private int limit;
+	private boolean eof;
+	private boolean open = true;
+
+	/**
+	 * Constructor used to create a cipher channel.
+	 * 
+	 * @param in
+	 *            is the channel the data is read from
+	 * @param cipher
+	 *            is the keyed cipher
+	 * @param encrypt
+	 *            is true to encrypt and false to decrypt the data read
+	 */
+	public BlockCipherReadableChannel(ReadableByteChannel in, Cipher cipher, boolean encrypt) {
+		this.in = in;
+		this.processor = new BlockStreamProcessor(cipher, encrypt);
+		this.output = new byte[processor.getOutputSize(input.capacity())];
+	}
+
+	@Override
+	public int read(ByteBuffer dst) throws IOException {
+		if (!open) {
+			throw new ClosedChannelException();
+		}
+		int read = 0;
+		while (dst.hasRemaining()) {
+			if (position == limit) {
+				if (eof) {
+					break;
+				}
+				position = 0;
+				input.clear();
+				int n = in.read(input);
+				if (n < 0) {
+					eof = true;
+					limit = processor.doFinal(output, 0);
+				} else if (n == 0) {
+					// A non-blocking channel has nothing more for now
+					limit = 0;
+					break;
+				} else {
+					limit = processor.update(input.array(), 0, n, output, 0);
+				}
+				continue;
+			}
+			int n = Math.min(dst.remaining(), limit - position);
+			dst.put(output, position, n);
+			position += n;
+			read += n;
+		}
+		return read == 0 && eof && position == limit ? -1 : read;
+	}
+
+	@Override
+	public boolean isOpen() {
+		return open;
+	}
+
+	@Override
+	public void close() throws IOException {
+		open = false;
+		in.close();
+	}
+}
@@ -0,0 +1,133 @@
+package blockcipher;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * A JUnit test class for the cipher streams and channels, which checks that
+ * data of every length round-trips exactly whatever the size of the pieces it
+ * is written or read in.
+ * 
+ * @author Joseph Lewis
+ *
+ */
+public class BlockCipherStreamTest {
+	private KeyedCipher cipher = KeyedCipher.of(0xb0b1);
+
+	private static byte[] randomBytes(int len) {
+		byte[] b = new byte[len];
+		new Random(len).nextBytes(b);
+		return b;
+	}
+
+	private byte[] writeThrough(byte[] data, boolean encrypt, int piece) throws IOException {
+		ByteArrayOutputStream sink = new ByteArrayOutputStream();
+		OutputStream out = new BlockCipherOutputStream(sink, cipher, encrypt);
+		for (int i = 0; i < data.length; i += piece) {
+			if (piece == 1) {
+				out.write(data[i]);
+			} else {
+				out.write(data, i, Math.min(piece, data.length - i));
+			}
+		}
+		out.close();
+		return sink.toByteArray();
+	}
+
+	private byte[] readThrough(byte[] data, boolean encrypt, int piece) throws IOException {
+		ByteArrayOutputStream sink = new ByteArrayOutputStream();
+		InputStream in = new BlockCipherInputStream(new ByteArrayInputStream(data), cipher, encrypt);
+		byte[] buffer = new byte[piece];
+		for (int n; (n = in.read(buffer)) >= 0;) {
+			sink.write(buffer, 0, n);
+		}
+		in.close();
+		return sink.toByteArray();
+	}
+
+	/**
+	 * Test method for @see {@link BlockCipherOutputStream} and @see
+	 * {@link BlockCipherInputStream}.
+	 */
+	@Test
+	public void streamRoundTripTest() throws IOException {
+		int[] lengths = { 0, 1, 2, 3, 17, 8191, 8192, 8193, 50001 };
+		int[] pieces = { 1, 3, 4096, 65536 };
+		for (int length : lengths) {
+			byte[] plain = randomBytes(length);
+			// The padding always adds 1 or 2 bytes
+			byte[] expected = writeThrough(plain, true, 65536);
+			assertEquals(length + 2 - length % 2, expected.length);
+			for (int piece : pieces) {
+				assertArrayEquals(expected, writeThrough(plain, true, piece));
+				assertArrayEquals(expected, readThrough(plain, true, piece));
+				assertArrayEquals(plain, writeThrough(expected, false, piece));
+				assertArrayEquals(plain, readThrough(expected, false, piece));
+			}
+		}
+	}
+
+	/**
+	 * Checks that whole blocks are encrypted as by the bulk methods.
+	 */
+	@Test
+	public void matchesBulkTest() throws IOException {
+		byte[] plain = randomBytes(1000);
+		byte[] expected = new byte[plain.length];
+		cipher.encrypt(plain, 0, expected, 0, plain.length);
+		byte[] streamed = writeThrough(plain, true, 7);
+		assertArrayEquals(expected, Arrays.copyOf(streamed, plain.length));
+	}
+
+	/**
+	 * Test method for @see {@link BlockCipherWritableChannel} and @see
+	 * {@link BlockCipherReadableChannel}.
+	 */
+	@Test
+	public void channelRoundTripTest() throws IOException {
+		for (int length : new int[] { 0, 1, 2, 9999, 20000 }) {
+			byte[] plain = randomBytes(length);
+			ByteArrayOutputStream sink = new ByteArrayOutputStream();
+			WritableByteChannel out = new BlockCipherWritableChannel(Channels.newChannel(sink), cipher, true);
+			ByteBuffer direct = ByteBuffer.allocateDirect(length);
+			direct.put(plain).flip();
+			out.write(direct);
+			out.close();
+			byte[] encrypted = sink.toByteArray();
+			assertArrayEquals(writeThrough(plain, true, 4096), encrypted);
+			ReadableByteChannel in = new BlockCipherReadableChannel(
+					Channels.newChannel(new ByteArrayInputStream(encrypted)), cipher, false);
+			ByteBuffer result = ByteBuffer.allocate(length + 10);
+			ByteBuffer piece = ByteBuffer.allocateDirect(333);
+			while (in.read(piece) >= 0) {
+				piece.flip();
+				result.put(piece);
+				piece.clear();
+			}
+			in.close();
+			assertArrayEquals(plain, Arrays.copyOf(result.array(), result.position()));
+		}
+	}
+
+	/**
+	 * Checks that truncated ciphertext is rejected.
+	 */
+	@Test(expected = IOException.class)
+	public void truncatedTest() throws IOException {
+		byte[] encrypted = writeThrough(randomBytes(10), true, 10);
+		readThrough(Arrays.copyOf(encrypted, encrypted.length - 1), false, 10);
+	}
+}
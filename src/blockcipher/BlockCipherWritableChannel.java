@@ -0,0 +1,96 @@
+package blockcipher;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * A channel that encrypts or decrypts everything written to it with a
+ * <code>Cipher</code> before writing it to another channel, using a fixed-size
+ * buffer. The padding of @see BlockStreamProcessor is added or removed when
+ * the channel is closed.
+ * 
+ * @author Joseph Lewis
+ *
+ */
+public class BlockCipherWritableChannel implements WritableByteChannel {
+	private final WritableByteChannel out;
+	private final BlockStreamProcessor processor;
+	private final byte[] input = new byte[BlockCipherOutputStream.BUFFER_SIZE];
+	private final byte[] output;
+	private final ByteBuffer outputBuffer;
+	private boolean open = true;
+
+	/**
+	 * Constructor used to create a cipher channel.
+	 * 
+	 * @param out
+	 *            is the channel the processed data is written to
+	 * @param cipher
+	 *            is the keyed cipher
+	 * @param encrypt
+	 *            is true to encrypt and false to decrypt the data written
+	 */
+	public BlockCipherWritableChannel(WritableByteChannel out, Cipher cipher, boolean encrypt) {
+		this.out = out;
+		this.processor = new BlockStreamProcessor(cipher, encrypt);
+		this.output = new byte[processor.getOutputSize(input.length)];
+		this.outputBuffer = ByteBuffer.wrap(output);
+	}
+
+	@Override
+	public int write(ByteBuffer src) throws IOException {
+		if (!open) {
+			throw new ClosedChannelException();
+		}
+		int written = src.remaining();
+		while (src.hasRemaining()) {
+			int n = Math.min(src.remaining(), input.length);
+			int produced;
+			if (src.hasArray()) {
+				produced = processor.update(src.array(), src.arrayOffset() + src.position(), n, output, 0);
+				src.position(src.position() + n);
+			} else {
+				src.get(input, 0, n);
+				produced = processor.update(input, 0, n, output, 0);
+			}
+			drain(produced);
+		}
+		return written;
+	}
+
+	/**
+	 * Writes output[0, len) to the underlying channel.
+	 */
+	private void drain(int len) throws IOException {
+		outputBuffer.clear().limit(len);
+		while (outputBuffer.hasRemaining()) {
+			out.write(outputBuffer);
+		}
+	}
+
+	@Override
+	public boolean isOpen() {
+		return open;
+	}
+
+	/**
+	 * Writes the final block and closes the underlying channel.
+	 * 
+	 * @throws IOException
+	 *             if the ciphertext is truncated or its padding is invalid
+	 */
+	@Override
+	public void close() throws IOException {
+		if (!open) {
+			return;
+		}
+		open = false;
+		try {
+			drain(processor.doFinal(output, 0));
+		} finally {
+			out.close();
+		}
+	}
+}
@@ -0,0 +1,138 @@
+package blockcipher;
+
+import java.io.IOException;
+
+/**
+ * Runs a <code>Cipher</code> over data that arrives in pieces of any length,
+ * holding back at most one block between calls. Encryption pads the final
+ * block with n bytes of value n (1 to the block size), which is always present
+ * and so can always be stripped, making round trips exact for every length.
+ * Decryption holds back the last whole block until the end of the data, so
+ * that the padding can be checked and removed.
+ * 
+ * @author Joseph Lewis
+ *
+ */
+final class BlockStreamProcessor {
+	private final Cipher cipher;
+	private final boolean encrypt;
+	private final int blockSize;
+	// The bytes held back between calls, at most one block
+	private final byte[] held;
+	private int heldCount;
+
+	/**
+	 * Constructor used to create a processor.
+	 * 
+	 * @param cipher
+	 *            is the keyed cipher
+	 * @param encrypt
+	 *            is true to encrypt and false to decrypt
+	 */
+	BlockStreamProcessor(Cipher cipher, boolean encrypt) {
+		this.cipher = cipher;
+		this.encrypt = encrypt;
+		this.blockSize = cipher.getBlockSize();
+		this.held = new byte[blockSize];
+	}
+
+	/**
+	 * @return the block size of the cipher
+	 */
+	int getBlockSize() {
+		return blockSize;
+	}
+
+	/**
+	 * Returns the most bytes that @see BlockStreamProcessor#update(byte[], int,
+	 * int, byte[], int) or @see BlockStreamProcessor#doFinal(byte[], int) can
+	 * produce for len bytes of input.
+	 * 
+	 * @param len
+	 *            the number of input bytes
+	 * @return the size the output must have
+	 */
+	int getOutputSize(int len) {
+		return len + blockSize;
+	}
+
+	/**
+	 * Processes len bytes of input, writing every block that is complete to
+	 * out.
+	 * 
+	 * @return the number of bytes written to out
+	 */
+	int update(byte[] in, int off, int len, byte[] out, int outOff) {
+		int produced = 0;
+		if (heldCount > 0) {
+			// Complete the held block first
+			int n = Math.min(blockSize - heldCount, len);
+			System.arraycopy(in, off, held, heldCount, n);
+			heldCount += n;
+			off += n;
+			len -= n;
+			// A decrypted block is only released once more data follows it
+			if (heldCount < blockSize || (!encrypt && len == 0)) {
+				return 0;
+			}
+			process(held, 0, out, outOff, blockSize);
+			produced = blockSize;
+			heldCount = 0;
+		}
+		if (len == 0) {
+			return produced;
+		}
+		// Process the whole blocks in place, keeping the remainder; when
+		// decrypting between 1 and blockSize bytes are kept
+		int whole = encrypt ? len - len % blockSize : ((len - 1) / blockSize) * blockSize;
+		process(in, off, out, outOff + produced, whole);
+		produced += whole;
+		heldCount = len - whole;
+		System.arraycopy(in, off + whole, held, 0, heldCount);
+		return produced;
+	}
+
+	/**
+	 * Finishes the data, writing the padded final block when encrypting or the
+	 * unpadded final block when decrypting. The processor can then be reused.
+	 * 
+	 * @return the number of bytes written to out
+	 * @throws IOException
+	 *             if the ciphertext is truncated or its padding is invalid
+	 */
+	int doFinal(byte[] out, int outOff) throws IOException {
+		int count = heldCount;
+		heldCount = 0;
+		if (encrypt) {
+			int pad = blockSize - count;
+			for (int i = count; i < blockSize; i++) {
+				held[i] = (byte) pad;
+			}
+			process(held, 0, out, outOff, blockSize);
+			return blockSize;
+		}
+		if (count != blockSize) {
+			throw new IOException("The ciphertext is not a whole number of " + blockSize + "-byte blocks.");
+		}
+		process(held, 0, held, 0, blockSize);
+		int pad = held[blockSize - 1] & 0xff;
+		if (pad < 1 || pad > blockSize) {
+			throw new IOException("The ciphertext padding is invalid.");
+		}
+		for (int i = blockSize - pad; i < blockSize; i++) {
+			if ((held[i] & 0xff) != pad) {
+				throw new IOException("The ciphertext padding is invalid.");
+			}
+		}
+		System.arraycopy(held, 0, out, outOff, blockSize - pad);
+		return blockSize - pad;
+	}
+
+	private void process(byte[] in, int off, byte[] out, int outOff, int len) {
+		if (encrypt) {
+			cipher.encrypt(in, off, out, outOff, len);
+		} else {
+			cipher.decrypt(in, off, out, outOff, len);
+		}
+	}
+}
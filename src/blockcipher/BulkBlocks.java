@@ -0,0 +1,121 @@
+package blockcipher;
+
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+
+/**
+ * The bulk methods shared by @see Comp343Cipher and @see KeyedCipher, over the
+ * engine, round keys and codebook of a key. The codebook is used when it is
+ * not null and the engine otherwise, and the metrics count once per call.
+ *
+ * @author Joseph Lewis
+ *
+ */
+final class BulkBlocks {
+
+	private BulkBlocks() {
+	}
+
+	/**
+	 * Encrypt len bytes of plaintext from in into out without allocating.
+	 *
+	 * @see Cipher#encrypt(byte[], int, byte[], int, int)
+	 */
+	static void encrypt(CipherEngine engine, byte[] K, Codebook codebook, byte[] in, int inOff, byte[] out,
+			int outOff, int len) {
+		checkLength(len);
+		Metrics.encrypted(len >>> 1);
+		if (codebook != null) {
+			codebook.encryptBlocks(in, inOff, out, outOff, len);
+		} else {
+			engine.encryptBlocks(K, in, inOff, out, outOff, len);
+		}
+	}
+
+	/**
+	 * Decrypt len bytes of ciphertext from in into out without allocating.
+	 *
+	 * @see Cipher#decrypt(byte[], int, byte[], int, int)
+	 */
+	static void decrypt(CipherEngine engine, byte[] K, Codebook codebook, byte[] in, int inOff, byte[] out,
+			int outOff, int len) {
+		checkLength(len);
+		Metrics.decrypted(len >>> 1);
+		if (codebook != null) {
+			codebook.decryptBlocks(in, inOff, out, outOff, len);
+		} else {
+			engine.decryptBlocks(K, in, inOff, out, outOff, len);
+		}
+	}
+
+	/**
+	 * Encrypt the remaining bytes of src into dst without allocating. Direct
+	 * buffers are read and written in place, with no copy to the heap.
+	 *
+	 * @see Cipher#encrypt(ByteBuffer, ByteBuffer)
+	 */
+	static void encrypt(CipherEngine engine, byte[] K, Codebook codebook, ByteBuffer src, ByteBuffer dst) {
+		int len = src.remaining();
+		checkLength(len);
+		if (dst.remaining() < len) {
+			throw new BufferOverflowException();
+		}
+		int p = src.position();
+		int q = dst.position();
+		if (src.hasArray() && dst.hasArray() && !dst.isReadOnly()) {
+			encrypt(engine, K, codebook, src.array(), src.arrayOffset() + p, dst.array(), dst.arrayOffset() + q, len);
+		} else {
+			Metrics.encrypted(len >>> 1);
+			for (int i = 0; i < len; i += 2) {
+				int P = ((src.get(p + i) & 0xff) << 8) | (src.get(p + i + 1) & 0xff);
+				int C = codebook != null ? codebook.encryptBlock(P) : engine.encryptBlock(K, P);
+				dst.put(q + i, (byte) (C >>> 8));
+				dst.put(q + i + 1, (byte) C);
+			}
+		}
+		src.position(p + len);
+		dst.position(q + len);
+	}
+
+	/**
+	 * Decrypt the remaining bytes of src into dst without allocating. Direct
+	 * buffers are read and written in place, with no copy to the heap.
+	 *
+	 * @see Cipher#decrypt(ByteBuffer, ByteBuffer)
+	 */
+	static void decrypt(CipherEngine engine, byte[] K, Codebook codebook, ByteBuffer src, ByteBuffer dst) {
+		int len = src.remaining();
+		checkLength(len);
+		if (dst.remaining() < len) {
+			throw new BufferOverflowException();
+		}
+		int p = src.position();
+		int q = dst.position();
+		if (src.hasArray() && dst.hasArray() && !dst.isReadOnly()) {
+			decrypt(engine, K, codebook, src.array(), src.arrayOffset() + p, dst.array(), dst.arrayOffset() + q, len);
+		} else {
+			Metrics.decrypted(len >>> 1);
+			for (int i = 0; i < len; i += 2) {
+				// Decrypt the swapped halves and swap them back
+				int C = ((src.get(p + i + 1) & 0xff) << 8) | (src.get(p + i) & 0xff);
+				int P = codebook != null ? codebook.decryptBlock(C) : engine.decryptBlock(K, C);
+				dst.put(q + i, (byte) P);
+				dst.put(q + i + 1, (byte) (P >>> 8));
+			}
+		}
+		src.position(p + len);
+		dst.position(q + len);
+	}
+
+	/**
+	 * Checks that a length is a whole number of 2-byte blocks.
+	 *
+	 * @param len
+	 *            the number of bytes
+	 */
+	static void checkLength(int len) {
+		if (len < 0 || (len & 1) != 0) {
+			throw new IllegalArgumentException(len + " is not a whole number of 2-byte blocks.");
+		}
+	}
+}
@@ -0,0 +1,171 @@
+package blockcipher;
+
+import static org.junit.Assert.*;
+
+import java.lang.management.ManagementFactory;
+import java.nio.ByteBuffer;
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * A JUnit test class for the bulk block methods of the Cipher interface, which
+ * checks the allocation-free overrides in Comp343Cipher against the single
+ * block methods and the default implementations.
+ * 
+ * @author Joseph Lewis
+ *
+ */
+public class BulkCipherTest {
+	private byte key[] = { (byte) 0xb0, (byte) 0xb1 };
+	private Comp343Cipher blockCipher = new Comp343Cipher(key);
+
+	/**
+	 * Creates some random plaintext.
+	 */
+	private static byte[] randomBytes(int len) {
+		byte[] b = new byte[len];
+		new Random(len).nextBytes(b);
+		return b;
+	}
+
+	/**
+	 * Test method for @see
+	 * {@link Comp343Cipher#encrypt(byte[], int, byte[], int, int)}.
+	 */
+	@Test
+	public void arrayTest() {
+		byte[] plain = randomBytes(4096);
+		byte[] cipher = new byte[plain.length + 3];
+		blockCipher.encrypt(plain, 0, cipher, 3, plain.length);
+		for (int i = 0; i < plain.length; i += 2) {
+			byte[] block = blockCipher.encrypt(new byte[] { plain[i], plain[i + 1] });
+			assertEquals(block[0], cipher[i + 3]);
+			assertEquals(block[1], cipher[i + 4]);
+		}
+		byte[] decrypted = new byte[plain.length];
+		blockCipher.decrypt(cipher, 3, decrypted, 0, plain.length);
+		assertArrayEquals(plain, decrypted);
+		// Encrypt and decrypt in place
+		byte[] inPlace = plain.clone();
+		blockCipher.encrypt(inPlace, 0, inPlace, 0, inPlace.length);
+		blockCipher.decrypt(inPlace, 0, inPlace, 0, inPlace.length);
+		assertArrayEquals(plain, inPlace);
+	}
+
+	/**
+	 * Test method for @see
+	 * {@link Comp343Cipher#encrypt(ByteBuffer, ByteBuffer)} with heap and
+	 * direct buffers.
+	 */
+	@Test
+	public void byteBufferTest() {
+		byte[] plain = randomBytes(1024);
+		byte[] expected = new byte[plain.length];
+		blockCipher.encrypt(plain, 0, expected, 0, plain.length);
+		for (int i = 0; i < 4; i++) {
+			ByteBuffer src = (i & 1) == 0 ? ByteBuffer.allocate(plain.length) : ByteBuffer.allocateDirect(plain.length);
+			ByteBuffer dst = (i & 2) == 0 ? ByteBuffer.allocate(plain.length) : ByteBuffer.allocateDirect(plain.length);
+			src.put(plain).flip();
+			blockCipher.encrypt(src, dst);
+			assertFalse(src.hasRemaining());
+			assertFalse(dst.hasRemaining());
+			byte[] cipher = new byte[plain.length];
+			dst.flip();
+			dst.get(cipher);
+			assertArrayEquals(expected, cipher);
+			dst.flip();
+			src.clear();
+			blockCipher.decrypt(dst, src);
+			byte[] decrypted = new byte[plain.length];
+			src.flip();
+			src.get(decrypted);
+			assertArrayEquals(plain, decrypted);
+		}
+	}
+
+	/**
+	 * Test method for the default bulk methods of @see {@link Cipher}.
+	 */
+	@Test
+	public void defaultMethodTest() {
+		// A cipher that only implements the single block methods
+		Cipher wrapped = new Cipher() {
+			public boolean loadKey(byte[] k) {
+				return blockCipher.loadKey(k);
+			}
+
+			public boolean deleteKey() {
+				return blockCipher.deleteKey();
+			}
+
+			public byte[] encrypt(byte[] block) {
+				return blockCipher.encrypt(block);
+			}
+
+			public byte[] decrypt(byte[] block) {
+				return blockCipher.decrypt(block);
+			}
+
+			public byte[] decryptInverse(byte[] block) {
+				return blockCipher.decryptInverse(block);
+			}
+		};
+		byte[] plain = randomBytes(512);
+		byte[] expected = new byte[plain.length];
+		byte[] cipher = new byte[plain.length];
+		blockCipher.encrypt(plain, 0, expected, 0, plain.length);
+		wrapped.encrypt(plain, 0, cipher, 0, plain.length);
+		assertArrayEquals(expected, cipher);
+		ByteBuffer dst = ByteBuffer.allocateDirect(plain.length);
+		wrapped.decrypt(ByteBuffer.wrap(cipher), dst);
+		byte[] decrypted = new byte[plain.length];
+		dst.flip();
+		dst.get(decrypted);
+		assertArrayEquals(plain, decrypted);
+	}
+
+	/**
+	 * Test method for @see
+	 * {@link Comp343Cipher#encrypt(byte[], int, byte[], int, int)} with an odd
+	 * length.
+	 */
+	@Test(expected = IllegalArgumentException.class)
+	public void oddLengthTest() {
+		blockCipher.encrypt(new byte[3], 0, new byte[3], 0, 3);
+	}
+
+	/**
+	 * Checks that the bulk methods allocate nothing per block, using the
+	 * allocation counter of the current thread, with the table engine and with
+	 * the bitsliced engine on a length that leaves a partial batch.
+	 */
+	@Test
+	public void allocationTest() {
+		com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory
+				.getThreadMXBean();
+		long thread = Thread.currentThread().getId();
+		byte[] data = randomBytes((1 << 20) + 6);
+		ByteBuffer direct = ByteBuffer.allocateDirect(data.length);
+		ByteBuffer heap = ByteBuffer.wrap(data);
+		int blocks = data.length / 2;
+		for (int run = 0; run < 4; run++) {
+			Comp343Cipher blockCipher = new Comp343Cipher(key,
+					CipherEngine.forName(run < 2 ? "table" : "bitsliced"));
+			// Run once before measuring, so that the first use is not counted
+			blockCipher.encrypt(data, 0, data, 0, data.length);
+			long before = threads.getThreadAllocatedBytes(thread);
+			blockCipher.encrypt(data, 0, data, 0, data.length);
+			blockCipher.decrypt(data, 0, data, 0, data.length);
+			heap.clear();
+			direct.clear();
+			blockCipher.encrypt(heap, direct);
+			direct.flip();
+			heap.clear();
+			blockCipher.decrypt(direct, heap);
+			long allocated = threads.getThreadAllocatedBytes(thread) - before;
+			// A single allocation per block would be at least 16 bytes each
+			assertTrue("Allocated " + allocated + "B for " + blocks + " blocks", allocated < blocks);
+		}
+	}
+}
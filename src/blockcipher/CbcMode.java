@@ -0,0 +1,190 @@
+package blockcipher;
+
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+
+/**
+ * Cipher block chaining (CBC) mode, where each plaintext block is XORed with
+ * the previous ciphertext block before it is encrypted: C_i = E(P_i ^ C_i-1),
+ * with C_-1 the IV. Messages must be a whole number of blocks; use the padding
+ * of @see BlockCipherOutputStream for other lengths.
+ * 
+ * @author Joseph Lewis
+ *
+ */
+public class CbcMode extends ChainingMode {
+
+	/**
+	 * Constructor used to create a CBC mode instance.
+	 * 
+	 * @param cipher
+	 *            is the keyed cipher
+	 * @param iv
+	 *            is the initialisation vector, one block long
+	 */
+	public CbcMode(Cipher cipher, byte[] iv) {
+		super(cipher, iv);
+	}
+
+	@Override
+	protected void checkLength(int len) {
+		if (len < 0 || len % blockSize != 0) {
+			throw new IllegalArgumentException(len + " is not a whole number of " + blockSize + "-byte blocks.");
+		}
+	}
+
+	@Override
+	public void encrypt(byte[] in, int inOff, byte[] out, int outOff, int len) {
+		checkLength(len);
+		if (keyed != null) {
+			// Keep the previous ciphertext block packed in an int
+			int C = ((chain[0] & 0xff) << 8) | (chain[1] & 0xff);
+			for (int i = 0; i < len; i += 2) {
+				C = keyed.encryptBlock(C ^ (((in[inOff + i] & 0xff) << 8) | (in[inOff + i + 1] & 0xff)));
+				out[outOff + i] = (byte) (C >>> 8);
+				out[outOff + i + 1] = (byte) C;
+			}
+			chain[0] = (byte) (C >>> 8);
+			chain[1] = (byte) C;
+			return;
+		}
+		int b = blockSize;
+		byte[] prev = chain;
+		int prevOff = 0;
+		for (int i = 0; i < len; i += b) {
+			for (int k = 0; k < b; k++) {
+				out[outOff + i + k] = (byte) (in[inOff + i + k] ^ prev[prevOff + k]);
+			}
+			cipher.encrypt(out, outOff + i, out, outOff + i, b);
+			prev = out;
+			prevOff = outOff + i;
+		}
+		if (len > 0) {
+			System.arraycopy(out, outOff + len - b, chain, 0, b);
+		}
+	}
+
+	/**
+	 * Encrypt the remaining bytes of src into dst, continuing the chain and
+	 * advancing the position of both buffers. Direct buffers are read and
+	 * written in place, with no copy to the heap, and each block is read
+	 * before it is written, so dst may start at or before src in the same
+	 * memory.
+	 * 
+	 * @param src
+	 *            the plaintext, a whole number of blocks
+	 * @param dst
+	 *            the buffer the ciphertext is written to
+	 */
+	public void encrypt(ByteBuffer src, ByteBuffer dst) {
+		int len = src.remaining();
+		checkLength(len);
+		if (dst.remaining() < len) {
+			throw new BufferOverflowException();
+		}
+		int p = src.position();
+		int q = dst.position();
+		if (src.hasArray() && dst.hasArray() && !dst.isReadOnly()) {
+			encrypt(src.array(), src.arrayOffset() + p, dst.array(), dst.arrayOffset() + q, len);
+		} else if (keyed != null) {
+			int C = ((chain[0] & 0xff) << 8) | (chain[1] & 0xff);
+			for (int i = 0; i < len; i += 2) {
+				C = keyed.encryptBlock(C ^ (((src.get(p + i) & 0xff) << 8) | (src.get(p + i + 1) & 0xff)));
+				dst.put(q + i, (byte) (C >>> 8));
+				dst.put(q + i + 1, (byte) C);
+			}
+			chain[0] = (byte) (C >>> 8);
+			chain[1] = (byte) C;
+		} else {
+			int b = blockSize;
+			byte[] block = new byte[b];
+			for (int i = 0; i < len; i += b) {
+				src.get(p + i, block);
+				for (int k = 0; k < b; k++) {
+					block[k] ^= chain[k];
+				}
+				cipher.encrypt(block, 0, chain, 0, b);
+				dst.put(q + i, chain);
+			}
+		}
+		src.position(p + len);
+		dst.position(q + len);
+	}
+
+	/**
+	 * Decrypt the remaining bytes of src into dst on the calling thread,
+	 * continuing the chain and advancing the position of both buffers. Direct
+	 * buffers are read and written in place, with no copy to the heap, and
+	 * each block is read before it is written, so dst may start at or before
+	 * src in the same memory.
+	 * 
+	 * @param src
+	 *            the ciphertext, a whole number of blocks
+	 * @param dst
+	 *            the buffer the plaintext is written to
+	 */
+	public void decrypt(ByteBuffer src, ByteBuffer dst) {
+		int len = src.remaining();
+		checkLength(len);
+		if (dst.remaining() < len) {
+			throw new BufferOverflowException();
+		}
+		int p = src.position();
+		int q = dst.position();
+		if (src.hasArray() && dst.hasArray() && !dst.isReadOnly()) {
+			decrypt(src.array(), src.arrayOffset() + p, dst.array(), dst.arrayOffset() + q, len);
+		} else if (keyed != null) {
+			// P_i = D(C_i) ^ C_i-1, with C_i-1 kept packed in an int
+			int prev = ((chain[0] & 0xff) << 8) | (chain[1] & 0xff);
+			for (int i = 0; i < len; i += 2) {
+				int C = ((src.get(p + i) & 0xff) << 8) | (src.get(p + i + 1) & 0xff);
+				int P = keyed.decryptInverse(C) ^ prev;
+				dst.put(q + i, (byte) (P >>> 8));
+				dst.put(q + i + 1, (byte) P);
+				prev = C;
+			}
+			chain[0] = (byte) (prev >>> 8);
+			chain[1] = (byte) prev;
+		} else {
+			int b = blockSize;
+			byte[] block = new byte[b];
+			byte[] plain = new byte[b];
+			for (int i = 0; i < len; i += b) {
+				src.get(p + i, block);
+				cipher.decrypt(block, 0, plain, 0, b);
+				for (int k = 0; k < b; k++) {
+					plain[k] ^= chain[k];
+				}
+				dst.put(q + i, plain);
+				System.arraycopy(block, 0, chain, 0, b);
+			}
+		}
+		src.position(p + len);
+		dst.position(q + len);
+	}
+
+	@Override
+	protected void decryptChunk(byte[] prev, int prevOff, byte[] in, int inOff, byte[] out, int outOff, int len,
+			byte[] block) {
+		int b = blockSize;
+		if (keyed != null) {
+			// P_i = D(C_i) ^ C_i-1, working back so C_i-1 is still intact
+			for (int i = len - 2; i >= 0; i -= 2) {
+				byte[] c = i == 0 ? prev : in;
+				int j = i == 0 ? prevOff : inOff + i - 2;
+				int P = keyed.decryptInverse(((in[inOff + i] & 0xff) << 8) | (in[inOff + i + 1] & 0xff));
+				out[outOff + i] = (byte) ((P >>> 8) ^ c[j]);
+				out[outOff + i + 1] = (byte) (P ^ c[j + 1]);
+			}
+			return;
+		}
+		// P_i = D(C_i) ^ C_i-1, working back so C_i-1 is still intact
+		for (int i = len - b; i >= 0; i -= b) {
+			cipher.decrypt(in, inOff + i, block, 0, b);
+			for (int k = 0; k < b; k++) {
+				byte c = i == 0 ? prev[prevOff + k] : in[inOff + i - b + k];
+				out[outOff + i + k] = (byte) (block[k] ^ c);
+			}
+		}
+	}
+}
@@ -0,0 +1,107 @@
+package blockcipher;
+
+/**
+ * Cipher feedback (CFB) mode with a full-block feedback, where the previous
+ * ciphertext block is encrypted to give the keystream for the next block: C_i
+ * = P_i ^ E(C_i-1), with C_-1 the IV. Only the encryption function of the
+ * cipher is used, and the final block of a message may be partial, so no
+ * padding is needed; a message cannot be continued after a partial block.
+ * 
+ * @author Joseph Lewis
+ *
+ */
+public class CfbMode extends ChainingMode {
+	// The keystream block, reused by encryption
+	private final byte[] keystream;
+	// Set once a partial block has ended the message
+	private boolean finished;
+
+	/**
+	 * Constructor used to create a CFB mode instance.
+	 * 
+	 * @param cipher
+	 *            is the keyed cipher
+	 * @param iv
+	 *            is the initialisation vector, one block long
+	 */
+	public CfbMode(Cipher cipher, byte[] iv) {
+		super(cipher, iv);
+		keystream = new byte[blockSize];
+	}
+
+	@Override
+	protected void checkLength(int len) {
+		if (len < 0) {
+			throw new IllegalArgumentException("The length cannot be negative.");
+		}
+		if (finished) {
+			throw new IllegalStateException("The message has ended with a partial block.");
+		}
+		if (len % blockSize != 0) {
+			finished = true;
+		}
+	}
+
+	@Override
+	public void encrypt(byte[] in, int inOff, byte[] out, int outOff, int len) {
+		checkLength(len);
+		if (keyed != null) {
+			// Keep the previous ciphertext block packed in an int
+			int C = ((chain[0] & 0xff) << 8) | (chain[1] & 0xff);
+			for (int i = 0; i < len; i += 2) {
+				int K = keyed.encryptBlock(C);
+				out[outOff + i] = (byte) (in[inOff + i] ^ (K >>> 8));
+				if (i + 1 == len) {
+					return;
+				}
+				out[outOff + i + 1] = (byte) (in[inOff + i + 1] ^ K);
+				C = ((out[outOff + i] & 0xff) << 8) | (out[outOff + i + 1] & 0xff);
+			}
+			chain[0] = (byte) (C >>> 8);
+			chain[1] = (byte) C;
+			return;
+		}
+		int b = blockSize;
+		for (int i = 0; i < len; i += b) {
+			cipher.encrypt(chain, 0, keystream, 0, b);
+			int n = Math.min(b, len - i);
+			for (int k = 0; k < n; k++) {
+				out[outOff + i + k] = (byte) (in[inOff + i + k] ^ keystream[k]);
+			}
+			if (n == b) {
+				System.arraycopy(out, outOff + i, chain, 0, b);
+			}
+		}
+	}
+
+	@Override
+	protected void decryptChunk(byte[] prev, int prevOff, byte[] in, int inOff, byte[] out, int outOff, int len,
+			byte[] block) {
+		int b = blockSize;
+		if (keyed != null) {
+			// P_i = C_i ^ E(C_i-1), working back so C_i-1 is still intact
+			for (int i = ((len - 1) / 2) * 2; i >= 0; i -= 2) {
+				byte[] c = i == 0 ? prev : in;
+				int j = i == 0 ? prevOff : inOff + i - 2;
+				int K = keyed.encryptBlock(((c[j] & 0xff) << 8) | (c[j + 1] & 0xff));
+				out[outOff + i] = (byte) (in[inOff + i] ^ (K >>> 8));
+				if (i + 1 < len) {
+					out[outOff + i + 1] = (byte) (in[inOff + i + 1] ^ K);
+				}
+			}
+			return;
+		}
+		// P_i = C_i ^ E(C_i-1), working back so C_i-1 is still intact
+		for (int i = ((len - 1) / b) * b; i >= 0; i -= b) {
+			if (i == 0) {
+				cipher.encrypt(prev, prevOff, block, 0, b);
+			} else {
+				cipher.encrypt(in, inOff + i - b, block, 0, b);
+			}
+			int n = Math.min(b, len - i);
+			for (int k = 0; k < n; k++) {
+				out[outOff + i + k] = (byte) (in[inOff + i + k] ^ block[k]);
+			}
+		}
+	}
+}
@@ -0,0 +1,188 @@
+package blockcipher;
+
+import java.security.SecureRandom;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * The common parts of the chained modes of operation over a
+ * <code>Cipher</code>, where each block depends on the ciphertext of the
+ * previous block, or on the IV for the first block. The chain carries across
+ * calls, so a message can be processed in pieces. Encryption is inherently
+ * serial, but every plaintext block can be recovered from two ciphertext
+ * blocks, so large buffers are decrypted in parallel chunks on a ForkJoin
+ * pool. An instance holds the chain, so it must not be shared between threads.
+ * 
+ * @author Joseph Lewis
+ *
+ */
+public abstract class ChainingMode {
+	// The number of bytes each decryption task handles
+	static final int CHUNK_SIZE = 1 << 16;
+
+	protected final Cipher cipher;
+	protected final int blockSize;
+	// The cipher as a KeyedCipher, whose packed 2-byte blocks give the modes
+	// a tight loop, or null for any other cipher
+	protected final KeyedCipher keyed;
+	// The IV, then the last ciphertext block processed
+	protected final byte[] chain;
+	// The pool decryption runs on, or null to decrypt serially
+	private ForkJoinPool pool = ForkJoinPool.commonPool();
+
+	/**
+	 * Constructor used to create a chained mode.
+	 * 
+	 * @param cipher
+	 *            is the keyed cipher, which must be safe to share between
+	 *            threads for parallel decryption
+	 * @param iv
+	 *            is the initialisation vector, one block long
+	 */
+	protected ChainingMode(Cipher cipher, byte[] iv) {
+		this.cipher = cipher;
+		this.blockSize = cipher.getBlockSize();
+		this.keyed = cipher instanceof KeyedCipher ? (KeyedCipher) cipher : null;
+		if (iv == null || iv.length != blockSize) {
+			throw new IllegalArgumentException("The IV must be " + blockSize + " bytes long.");
+		}
+		this.chain = iv.clone();
+	}
+
+	/**
+	 * Generates a random IV. An IV should never be reused with the same key.
+	 * 
+	 * @param blockSize
+	 *            is the block size of the cipher
+	 * @return the random IV
+	 */
+	public static byte[] randomIv(int blockSize) {
+		byte[] iv = new byte[blockSize];
+		new SecureRandom().nextBytes(iv);
+		return iv;
+	}
+
+	/**
+	 * Sets the pool that decryption runs on.
+	 * 
+	 * @param pool
+	 *            is the pool, or null to decrypt on the calling thread
+	 */
+	public void setPool(ForkJoinPool pool) {
+		this.pool = pool;
+	}
+
+	/**
+	 * Encrypt len bytes of plaintext from in into out, continuing the chain.
+	 * The ranges may be the same, for in-place encryption.
+	 */
+	public abstract void encrypt(byte[] in, int inOff, byte[] out, int outOff, int len);
+
+	/**
+	 * Checks that a length can be processed by the mode.
+	 * 
+	 * @param len
+	 *            the number of bytes
+	 */
+	protected abstract void checkLength(int len);
+
+	/**
+	 * Decrypts the blocks of one chunk, from the last block to the first, so
+	 * that in-place decryption only overwrites ciphertext that is no longer
+	 * needed.
+	 * 
+	 * @param prev
+	 *            holds the ciphertext block before the chunk
+	 * @param prevOff
+	 *            the offset of that block in prev
+	 * @param block
+	 *            is a one block scratch array
+	 */
+	protected abstract void decryptChunk(byte[] prev, int prevOff, byte[] in, int inOff, byte[] out, int outOff,
+			int len, byte[] block);
+
+	/**
+	 * Decrypt len bytes of ciphertext from in into out, continuing the chain.
+	 * The ranges may be the same, for in-place decryption, but must not
+	 * otherwise overlap.
+	 * 
+	 * @param in
+	 *            the ciphertext
+	 * @param inOff
+	 *            the offset of the first ciphertext byte
+	 * @param out
+	 *            the array the plaintext is written to
+	 * @param outOff
+	 *            the offset of the first plaintext byte
+	 * @param len
+	 *            the number of bytes
+	 */
+	public void decrypt(final byte[] in, final int inOff, final byte[] out, final int outOff, int len) {
+		checkLength(len);
+		if (len == 0) {
+			return;
+		}
+		int chunks = (len + CHUNK_SIZE - 1) / CHUNK_SIZE;
+		// Save the ciphertext block before each chunk, and the block that
+		// continues the chain, before any of them can be overwritten
+		final byte[] prevs = new byte[chunks * blockSize];
+		System.arraycopy(chain, 0, prevs, 0, blockSize);
+		for (int j = 1; j < chunks; j++) {
+			System.arraycopy(in, inOff + j * CHUNK_SIZE - blockSize, prevs, j * blockSize, blockSize);
+		}
+		int last = len - len % blockSize - blockSize;
+		if (last >= 0) {
+			System.arraycopy(in, inOff + last, chain, 0, blockSize);
+		}
+		if (pool == null || chunks == 1) {
+			byte[] block = new byte[blockSize];
+			for (int j = 0; j < chunks; j++) {
+				int s = j * CHUNK_SIZE;
+				decryptChunk(prevs, j * blockSize, in, inOff + s, out, outOff + s, Math.min(CHUNK_SIZE, len - s),
+						block);
+			}
+		} else {
+			pool.invoke(new ChunkTask(prevs, in, inOff, out, outOff, len, 0, chunks));
+		}
+	}
+
+	/**
+	 * A task that decrypts the chunks in [from, to), splitting the range in
+	 * halves until a single chunk is left.
+	 */
+	private class ChunkTask extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+		private final byte[] prevs;
+		private final byte[] in;
+		private final int inOff;
+		private final byte[] out;
+		private final int outOff;
+		private final int len;
+		private final int from;
+		private final int to;
+
+		ChunkTask(byte[] prevs, byte[] in, int inOff, byte[] out, int outOff, int len, int from, int to) {
+			this.prevs = prevs;
+			this.in = in;
+			this.inOff = inOff;
+			this.out = out;
+			this.outOff = outOff;
+			this.len = len;
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		protected void compute() {
+			if (to - from > 1) {
+				int middle = (from + to) >>> 1;
+				invokeAll(new ChunkTask(prevs, in, inOff, out, outOff, len, from, middle),
+						new ChunkTask(prevs, in, inOff, out, outOff, len, middle, to));
+				return;
+			}
+			int s = from * CHUNK_SIZE;
+			decryptChunk(prevs, from * blockSize, in, inOff + s, out, outOff + s, Math.min(CHUNK_SIZE, len - s),
+					new byte[blockSize]);
+		}
+	}
+}
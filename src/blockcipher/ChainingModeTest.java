@@ -0,0 +1,149 @@
+package blockcipher;
+
+import static org.junit.Assert.*;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * A JUnit test class for CbcMode and CfbMode, which checks round trips at many
+ * sizes, that serial and parallel decryption agree, and that a message can be
+ * processed in pieces or in place.
+ * 
+ * @author Joseph Lewis
+ *
+ */
+public class ChainingModeTest {
+	private KeyedCipher cipher = KeyedCipher.of(0xb0b1);
+	private byte[] iv = { 0x12, 0x34 };
+	private int[] sizes = { 0, 2, 4, 6, 100, 4096, ChainingMode.CHUNK_SIZE - 2, ChainingMode.CHUNK_SIZE,
+			ChainingMode.CHUNK_SIZE + 2, ChainingMode.CHUNK_SIZE * 5 + 38 };
+
+	private static byte[] randomBytes(int len) {
+		byte[] b = new byte[len];
+		new Random(len).nextBytes(b);
+		return b;
+	}
+
+	private void roundTrip(boolean cbc, int size) {
+		byte[] plain = randomBytes(size);
+		byte[] encrypted = new byte[size];
+		ChainingMode mode = cbc ? new CbcMode(cipher, iv) : new CfbMode(cipher, iv);
+		mode.encrypt(plain, 0, encrypted, 0, size);
+		// Decrypt serially, in parallel and in place
+		byte[] serial = new byte[size];
+		ChainingMode decryptor = cbc ? new CbcMode(cipher, iv) : new CfbMode(cipher, iv);
+		decryptor.setPool(null);
+		decryptor.decrypt(encrypted, 0, serial, 0, size);
+		assertArrayEquals("Serial round trip of " + size + "B", plain, serial);
+		byte[] parallel = encrypted.clone();
+		decryptor = cbc ? new CbcMode(cipher, iv) : new CfbMode(cipher, iv);
+		decryptor.decrypt(parallel, 0, parallel, 0, size);
+		assertArrayEquals("Parallel in-place round trip of " + size + "B", plain, parallel);
+	}
+
+	/**
+	 * Test method for @see {@link CbcMode}.
+	 */
+	@Test
+	public void cbcRoundTripTest() {
+		for (int size : sizes) {
+			roundTrip(true, size);
+		}
+	}
+
+	/**
+	 * Test method for @see {@link CfbMode}, including partial final blocks.
+	 */
+	@Test
+	public void cfbRoundTripTest() {
+		for (int size : sizes) {
+			roundTrip(false, size);
+			roundTrip(false, size + 1);
+		}
+	}
+
+	/**
+	 * Checks the first blocks against the definitions of the modes.
+	 */
+	@Test
+	public void definitionTest() {
+		byte[] plain = { 'a', 'b', 'c', 'd' };
+		byte[] cbc = new byte[4];
+		new CbcMode(cipher, iv).encrypt(plain, 0, cbc, 0, 4);
+		byte[] c0 = cipher.encrypt(new byte[] { (byte) ('a' ^ iv[0]), (byte) ('b' ^ iv[1]) });
+		byte[] c1 = cipher.encrypt(new byte[] { (byte) ('c' ^ c0[0]), (byte) ('d' ^ c0[1]) });
+		assertArrayEquals(new byte[] { c0[0], c0[1], c1[0], c1[1] }, cbc);
+		byte[] cfb = new byte[4];
+		new CfbMode(cipher, iv).encrypt(plain, 0, cfb, 0, 4);
+		byte[] k0 = cipher.encrypt(iv);
+		byte[] k1 = cipher.encrypt(new byte[] { cfb[0], cfb[1] });
+		assertArrayEquals(new byte[] { (byte) ('a' ^ k0[0]), (byte) ('b' ^ k0[1]), (byte) ('c' ^ k1[0]),
+				(byte) ('d' ^ k1[1]) }, cfb);
+	}
+
+	/**
+	 * Checks that the chain carries across calls.
+	 */
+	@Test
+	public void piecesTest() {
+		byte[] plain = randomBytes(ChainingMode.CHUNK_SIZE * 3);
+		for (boolean cbc : new boolean[] { true, false }) {
+			byte[] whole = new byte[plain.length];
+			(cbc ? new CbcMode(cipher, iv) : new CfbMode(cipher, iv)).encrypt(plain, 0, whole, 0, plain.length);
+			byte[] pieces = new byte[plain.length];
+			ChainingMode mode = cbc ? new CbcMode(cipher, iv) : new CfbMode(cipher, iv);
+			mode.encrypt(plain, 0, pieces, 0, 1000);
+			mode.encrypt(plain, 1000, pieces, 1000, plain.length - 1000);
+			assertArrayEquals(whole, pieces);
+			byte[] decrypted = new byte[plain.length];
+			mode = cbc ? new CbcMode(cipher, iv) : new CfbMode(cipher, iv);
+			mode.decrypt(whole, 0, decrypted, 0, 70000);
+			mode.decrypt(whole, 70000, decrypted, 70000, plain.length - 70000);
+			assertArrayEquals(plain, decrypted);
+		}
+	}
+
+	/**
+	 * Checks that a random IV has the block size and that a wrong IV is
+	 * rejected.
+	 */
+	/**
+	 * Test method for @see {@link CbcMode#encrypt(ByteBuffer, ByteBuffer)} and
+	 * @see {@link CbcMode#decrypt(ByteBuffer, ByteBuffer)} on direct buffers,
+	 * in pieces and in place, against the array methods.
+	 */
+	@Test
+	public void byteBufferTest() {
+		byte[] plain = randomBytes(4098);
+		byte[] expected = new byte[plain.length];
+		new CbcMode(cipher, iv).encrypt(plain, 0, expected, 0, plain.length);
+		ByteBuffer buffer = ByteBuffer.allocateDirect(plain.length);
+		buffer.put(plain).flip();
+		CbcMode mode = new CbcMode(cipher, iv);
+		ByteBuffer piece = buffer.duplicate();
+		piece.limit(1000);
+		mode.encrypt(piece, buffer.duplicate());
+		piece.limit(plain.length);
+		mode.encrypt(piece, buffer.duplicate().position(1000));
+		byte[] encrypted = new byte[plain.length];
+		buffer.duplicate().get(encrypted);
+		assertArrayEquals(expected, encrypted);
+		ByteBuffer decrypted = ByteBuffer.allocateDirect(plain.length);
+		new CbcMode(cipher, iv).decrypt(buffer, decrypted);
+		assertFalse(buffer.hasRemaining());
+		byte[] actual = new byte[plain.length];
+		decrypted.flip().get(actual);
+		assertArrayEquals(plain, actual);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void ivTest() {
+		assertEquals(2, ChainingMode.randomIv(2).length);
+		assertFalse(Arrays.equals(ChainingMode.randomIv(2), null));
+		new CbcMode(cipher, new byte[3]);
+	}
+}
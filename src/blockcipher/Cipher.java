@@ -1,5 +1,7 @@
 package blockcipher;
 
+import java.nio.ByteBuffer;
+
 /**
  * Generic cipher interface
  */
@@ -41,4 +43,171 @@ public interface Cipher {
 	 */
 	public byte[] decrypt(byte[] block);
 
+	/**
+	 * Decrypt a block of ciphertext from @see Cipher#encrypt(byte[]) back to
+	 * its plaintext. The bulk methods decrypt each block with this. The
+	 * default implementation is @see Cipher#decrypt(byte[]), for a cipher
+	 * whose decrypt is the inverse of its encrypt.
+	 * 
+	 * @param block
+	 * @return the block of plaintext
+	 */
+	public default byte[] decryptInverse(byte[] block) {
+		return decrypt(block);
+	}
+
+	/**
+	 * Getter method that returns the size of a block in bytes. The bulk
+	 * methods process whole blocks of this size.
+	 * 
+	 * @return the block size, by default the 2-byte block
+	 */
+	public default int getBlockSize() {
+		return 2;
+	}
+
+	/**
+	 * Encrypt len bytes of plaintext from in, starting at inOff, into out,
+	 * starting at outOff. The ranges may be the same, for in-place encryption.
+	 * The default implementation encrypts one block at a time through @see
+	 * Cipher#encrypt(byte[]).
+	 * 
+	 * @param in
+	 *            the plaintext
+	 * @param inOff
+	 *            the offset of the first plaintext byte
+	 * @param out
+	 *            the array the ciphertext is written to
+	 * @param outOff
+	 *            the offset of the first ciphertext byte
+	 * @param len
+	 *            the number of bytes, a multiple of the block size
+	 */
+	public default void encrypt(byte[] in, int inOff, byte[] out, int outOff, int len) {
+		int size = getBlockSize();
+		checkBlocks(size, len);
+		byte[] block = new byte[size];
+		for (int i = 0; i < len; i += size) {
+			System.arraycopy(in, inOff + i, block, 0, size);
+			System.arraycopy(encrypt(block), 0, out, outOff + i, size);
+		}
+	}
+
+	/**
+	 * Decrypt len bytes of ciphertext from in, starting at inOff, into out,
+	 * starting at outOff, so that it reverses @see Cipher#encrypt(byte[], int,
+	 * byte[], int, int). The default implementation decrypts one block at a
+	 * time through @see Cipher#decryptInverse(byte[]).
+	 * 
+	 * @param in
+	 *            the ciphertext
+	 * @param inOff
+	 *            the offset of the first ciphertext byte
+	 * @param out
+	 *            the array the plaintext is written to
+	 * @param outOff
+	 *            the offset of the first plaintext byte
+	 * @param len
+	 *            the number of bytes, a multiple of the block size
+	 */
+	public default void decrypt(byte[] in, int inOff, byte[] out, int outOff, int len) {
+		int size = getBlockSize();
+		checkBlocks(size, len);
+		byte[] block = new byte[size];
+		for (int i = 0; i < len; i += size) {
+			System.arraycopy(in, inOff + i, block, 0, size);
+			System.arraycopy(decryptInverse(block), 0, out, outOff + i, size);
+		}
+	}
+
+	/**
+	 * Encrypt the remaining bytes of src into dst, advancing the position of
+	 * both buffers. Heap and direct buffers are both supported.
+	 * 
+	 * @param src
+	 *            the plaintext, with a multiple of the block size remaining
+	 * @param dst
+	 *            the buffer the ciphertext is written to
+	 */
+	public default void encrypt(ByteBuffer src, ByteBuffer dst) {
+		int len = src.remaining();
+		if (src.hasArray() && dst.hasArray() && !dst.isReadOnly()) {
+			checkRoom(len, dst);
+			encrypt(src.array(), src.arrayOffset() + src.position(), dst.array(), dst.arrayOffset() + dst.position(),
+					len);
+			src.position(src.position() + len);
+			dst.position(dst.position() + len);
+			return;
+		}
+		int size = getBlockSize();
+		checkBlocks(size, len);
+		checkRoom(len, dst);
+		byte[] block = new byte[size];
+		while (src.hasRemaining()) {
+			src.get(block);
+			dst.put(encrypt(block));
+		}
+	}
+
+	/**
+	 * Decrypt the remaining bytes of src into dst, advancing the position of
+	 * both buffers. Heap and direct buffers are both supported.
+	 * 
+	 * @param src
+	 *            the ciphertext, with a multiple of the block size remaining
+	 * @param dst
+	 *            the buffer the plaintext is written to
+	 */
+	public default void decrypt(ByteBuffer src, ByteBuffer dst) {
+		int len = src.remaining();
+		if (src.hasArray() && dst.hasArray() && !dst.isReadOnly()) {
+			checkRoom(len, dst);
+			decrypt(src.array(), src.arrayOffset() + src.position(), dst.array(), dst.arrayOffset() + dst.position(),
+					len);
+			src.position(src.position() + len);
+			dst.position(dst.position() + len);
+			return;
+		}
+		int size = getBlockSize();
+		checkBlocks(size, len);
+		checkRoom(len, dst);
+		byte[] block = new byte[size];
+		while (src.hasRemaining()) {
+			src.get(block);
+			dst.put(decryptInverse(block));
+		}
+	}
+
+	/**
+	 * Checks that a length is made of whole blocks.
+	 * 
+	 * @param size
+	 *            the block size
+	 * @param len
+	 *            the number of bytes
+	 * @throws IllegalArgumentException
+	 *             if len is negative or not a multiple of size
+	 */
+	private static void checkBlocks(int size, int len) {
+		if (len < 0 || len % size != 0) {
+			throw new IllegalArgumentException(len + " is not a whole number of " + size + "-byte blocks.");
+		}
+	}
+
+	/**
+	 * Checks that a buffer has room for the output.
+	 * 
+	 * @param len
+	 *            the number of bytes to be written
+	 * @param dst
+	 *            the output buffer
+	 * @throws java.nio.BufferOverflowException
+	 *             if dst has less than len bytes remaining
+	 */
+	private static void checkRoom(int len, ByteBuffer dst) {
+		if (dst.remaining() < len) {
+			throw new java.nio.BufferOverflowException();
+		}
+	}
+
 }
\ No newline at end of file
@@ -0,0 +1,135 @@
+package blockcipher;
+
+/**
+ * An engine performs the 8 Feistel rounds of <code>Comp343Cipher</code> on a
+ * single 16-bit block. Blocks are packed into an int as (L << 8) | R, so that
+ * the block {L, R} used by @see Comp343Cipher#encrypt(byte[]) maps to the
+ * high-order and lowest-order bytes respectively.
+ * 
+ * The engine used by default is chosen with the system property
+ * <code>blockcipher.engine</code>, see @see CipherEngine#forName(String).
+ * 
+ * @author Joseph Lewis
+ *
+ */
+public interface CipherEngine {
+
+	/**
+	 * Returns a new engine by name: "reference" for @see ReferenceEngine,
+	 * "table" for @see TableEngine, "bitsliced" for @see BitslicedEngine or
+	 * "vector" for @see VectorEngine.
+	 * 
+	 * @param name
+	 *            is the name of the engine
+	 * @return the engine
+	 * @throws IllegalArgumentException
+	 *             if there is no engine with the name
+	 * @throws UnsupportedOperationException
+	 *             if the vector engine is asked for without the Vector API
+	 */
+	public static CipherEngine forName(String name) {
+		switch (name) {
+		case "reference":
+			return new ReferenceEngine();
+		case "table":
+			return new TableEngine();
+		case "bitsliced":
+			return new BitslicedEngine();
+		case "vector":
+			try {
+				return new VectorEngine();
+			} catch (NoClassDefFoundError e) {
+				throw new UnsupportedOperationException(
+						"The vector engine needs the option --add-modules jdk.incubator.vector.", e);
+			}
+		default:
+			throw new IllegalArgumentException("'" + name + "' is not a cipher engine.");
+		}
+	}
+
+	/**
+	 * Returns a new instance of the default engine, named by the system
+	 * property <code>blockcipher.engine</code>, or the table engine if it is not
+	 * set.
+	 * 
+	 * @return the engine
+	 */
+	public static CipherEngine getDefault() {
+		return forName(System.getProperty("blockcipher.engine", "table"));
+	}
+
+	/**
+	 * Encrypt a packed block with the given round keys.
+	 * 
+	 * @param K
+	 *            the 8 round keys produced by @see Permutation#keySchedule(byte[])
+	 * @param block
+	 *            the packed block (L << 8) | R
+	 * @return the packed block of ciphertext
+	 */
+	public int encryptBlock(byte[] K, int block);
+
+	/**
+	 * Decrypt a packed block with the given round keys. The rounds are run with
+	 * the round keys in reverse order, matching @see Comp343Cipher#decrypt(byte[]).
+	 * 
+	 * @param K
+	 *            the 8 round keys produced by @see Permutation#keySchedule(byte[])
+	 * @param block
+	 *            the packed block (L << 8) | R
+	 * @return the packed block of plaintext
+	 */
+	public int decryptBlock(byte[] K, int block);
+
+	/**
+	 * Encrypt len bytes from in, starting at inOff, into out, starting at
+	 * outOff, two bytes {L, R} at a time. The ranges may be the same.
+	 * 
+	 * @param K
+	 *            the 8 round keys produced by @see Permutation#keySchedule(byte[])
+	 * @param in
+	 *            the plaintext
+	 * @param inOff
+	 *            the offset of the first plaintext byte
+	 * @param out
+	 *            the array the ciphertext is written to
+	 * @param outOff
+	 *            the offset of the first ciphertext byte
+	 * @param len
+	 *            the number of bytes, a multiple of 2
+	 */
+	public default void encryptBlocks(byte[] K, byte[] in, int inOff, byte[] out, int outOff, int len) {
+		for (int i = 0; i < len; i += 2) {
+			int C = encryptBlock(K, ((in[inOff + i] & 0xff) << 8) | (in[inOff + i + 1] & 0xff));
+			out[outOff + i] = (byte) (C >>> 8);
+			out[outOff + i + 1] = (byte) C;
+		}
+	}
+
+	/**
+	 * Decrypt len bytes from in, starting at inOff, into out, starting at
+	 * outOff, so that it reverses @see CipherEngine#encryptBlocks(byte[],
+	 * byte[], int, byte[], int, int). The rounds are run on the swapped halves
+	 * of each block, which are swapped back afterwards.
+	 * 
+	 * @param K
+	 *            the 8 round keys produced by @see Permutation#keySchedule(byte[])
+	 * @param in
+	 *            the ciphertext
+	 * @param inOff
+	 *            the offset of the first ciphertext byte
+	 * @param out
+	 *            the array the plaintext is written to
+	 * @param outOff
+	 *            the offset of the first plaintext byte
+	 * @param len
+	 *            the number of bytes, a multiple of 2
+	 */
+	public default void decryptBlocks(byte[] K, byte[] in, int inOff, byte[] out, int outOff, int len) {
+		for (int i = 0; i < len; i += 2) {
+			int P = decryptBlock(K, ((in[inOff + i + 1] & 0xff) << 8) | (in[inOff + i] & 0xff));
+			out[outOff + i] = (byte) P;
+			out[outOff + i + 1] = (byte) (P >>> 8);
+		}
+	}
+}
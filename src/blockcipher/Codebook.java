@@ -0,0 +1,110 @@
+package blockcipher;
+
+/**
+ * The full codebook of <code>Comp343Cipher</code> under a single key. As the
+ * block is only 16 bits, the whole permutation fits in a 64K-entry short
+ * array, so encryption and decryption become a single indexed load.
+ * 
+ * @author Joseph Lewis
+ *
+ */
+public class Codebook {
+	// Declare the key the codebook was built for
+	private final int key;
+	// The ciphertext of every block
+	private final short[] encryptTable;
+	// The plaintext of every block, in the byte order used by decryptBlock
+	private final short[] decryptTable;
+
+	/**
+	 * Constructor used to build the forward and inverse codebooks by running
+	 * every block through the engine once.
+	 * 
+	 * @param key
+	 *            is the 16-bit key, packed as (k[0] << 8) | k[1]
+	 * @param engine
+	 *            is the engine used to encrypt each block
+	 */
+	public Codebook(int key, CipherEngine engine) {
+		this.key = key & 0xffff;
+		byte[] K = RoundKeyTable.keySchedule(key);
+		encryptTable = new short[0x10000];
+		decryptTable = new short[0x10000];
+		for (int block = 0; block < 0x10000; block++) {
+			int C = engine.encryptBlock(K, block);
+			encryptTable[block] = (short) C;
+			// Decryption runs the rounds in reverse on the swapped halves, so
+			// the inverse is stored with both sides swapped
+			decryptTable[swap(C)] = (short) swap(block);
+		}
+	}
+
+	/**
+	 * Swaps the left and right halves of a packed block.
+	 * 
+	 * @param block
+	 *            the packed block (L << 8) | R
+	 * @return the packed block (R << 8) | L
+	 */
+	static int swap(int block) {
+		return ((block & 0xff) << 8) | ((block >>> 8) & 0xff);
+	}
+
+	/**
+	 * Encrypt a packed block with a single table load.
+	 * 
+	 * @param block
+	 *            the packed block (L << 8) | R
+	 * @return the packed block of ciphertext
+	 */
+	public int encryptBlock(int block) {
+		return encryptTable[block & 0xffff] & 0xffff;
+	}
+
+	/**
+	 * Decrypt a packed block with a single table load, matching @see
+	 * CipherEngine#decryptBlock(byte[], int).
+	 * 
+	 * @param block
+	 *            the packed block (L << 8) | R
+	 * @return the packed block of plaintext
+	 */
+	public int decryptBlock(int block) {
+		return decryptTable[block & 0xffff] & 0xffff;
+	}
+
+	/**
+	 * Encrypt len bytes from in into out with one table load per block, as in
+	 * @see CipherEngine#encryptBlocks(byte[], byte[], int, byte[], int, int).
+	 */
+	public void encryptBlocks(byte[] in, int inOff, byte[] out, int outOff, int len) {
+		short[] table = encryptTable;
+		for (int i = 0; i < len; i += 2) {
+			int C = table[((in[inOff + i] & 0xff) << 8) | (in[inOff + i + 1] & 0xff)];
+			out[outOff + i] = (byte) (C >>> 8);
+			out[outOff + i + 1] = (byte) C;
+		}
+	}
+
+	/**
+	 * Decrypt len bytes from in into out with one table load per block, as in
+	 * @see CipherEngine#decryptBlocks(byte[], byte[], int, byte[], int, int).
+	 */
+	public void decryptBlocks(byte[] in, int inOff, byte[] out, int outOff, int len) {
+		short[] table = decryptTable;
+		for (int i = 0; i < len; i += 2) {
+			int P = table[((in[inOff + i + 1] & 0xff) << 8) | (in[inOff + i] & 0xff)];
+			out[outOff + i] = (byte) P;
+			out[outOff + i + 1] = (byte) (P >>> 8);
+		}
+	}
+
+	/**
+	 * Getter method that returns the key the codebook was built for.
+	 * 
+	 * @return the 16-bit key
+	 */
+	public int getKey() {
+		return key;
+	}
+}
@@ -0,0 +1,131 @@
+package blockcipher;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A bounded, thread-safe LRU cache of codebooks keyed by the 16-bit key, so
+ * that repeatedly used keys do not rebuild their codebooks. Each codebook uses
+ * 256KB, so the capacity bounds the memory used by the cache.
+ * 
+ * @author Joseph Lewis
+ *
+ */
+public class CodebookCache {
+	// The cache shared by every cipher that does not supply its own
+	private static final CodebookCache shared = new CodebookCache(16);
+
+	private final int capacity;
+	private final LinkedHashMap<Integer, Codebook> codebooks;
+	// Cache statistics
+	private long hits;
+	private long misses;
+	private long evictions;
+
+	/**
+	 * Constructor used to create an empty cache.
+	 * 
+	 * @param capacity
+	 *            is the maximum number of codebooks held at once
+	 */
+	public CodebookCache(int capacity) {
+		if (capacity < 1) {
+			throw new IllegalArgumentException("The cache capacity must be at least 1.");
+		}
+		this.capacity = capacity;
+		// An access ordered map evicts the least recently used codebook
+		codebooks = new LinkedHashMap<Integer, Codebook>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<Integer, Codebook> eldest) {
+				if (size() > CodebookCache.this.capacity) {
+					evictions++;
+					return true;
+				}
+				return false;
+			}
+		};
+	}
+
+	/**
+	 * Getter method that returns the cache shared across the program.
+	 * 
+	 * @return the shared cache
+	 */
+	public static CodebookCache getShared() {
+		return shared;
+	}
+
+	/**
+	 * Returns the codebook for the key, building it with the engine on a miss.
+	 * The build happens under the lock so a key is never built twice.
+	 * 
+	 * @param key
+	 *            is the 16-bit key, packed as (k[0] << 8) | k[1]
+	 * @param engine
+	 *            is the engine used to build a missing codebook
+	 * @return the codebook for the key
+	 */
+	public synchronized Codebook get(int key, CipherEngine engine) {
+		Integer k = key & 0xffff;
+		Codebook codebook = codebooks.get(k);
+		Metrics.codebookLookup(codebook != null);
+		if (codebook != null) {
+			hits++;
+			return codebook;
+		}
+		misses++;
+		codebook = new Codebook(k, engine);
+		codebooks.put(k, codebook);
+		return codebook;
+	}
+
+	/**
+	 * Removes every codebook from the cache. The statistics are kept.
+	 */
+	public synchronized void clear() {
+		codebooks.clear();
+	}
+
+	/**
+	 * @return the number of codebooks in the cache
+	 */
+	public synchronized int size() {
+		return codebooks.size();
+	}
+
+	/**
+	 * @return the maximum number of codebooks held at once
+	 */
+	public int getCapacity() {
+		return capacity;
+	}
+
+	/**
+	 * @return the number of lookups that found a codebook
+	 */
+	public synchronized long getHits() {
+		return hits;
+	}
+
+	/**
+	 * @return the number of lookups that built a codebook
+	 */
+	public synchronized long getMisses() {
+		return misses;
+	}
+
+	/**
+	 * @return the number of codebooks evicted to respect the capacity
+	 */
+	public synchronized long getEvictions() {
+		return evictions;
+	}
+
+	@Override
+	public synchronized String toString() {
+		return "Codebook cache: " + codebooks.size() + "/" + capacity + " | Hits: " + hits + " | Misses: " + misses
+				+ " | Evictions: " + evictions;
+	}
+}
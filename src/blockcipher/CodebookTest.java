@@ -0,0 +1,68 @@
+package blockcipher;
+
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+/**
+ * A JUnit test class for Codebook and CodebookCache, which checks that the
+ * codebook mode of Comp343Cipher gives the same blocks as the engine and that
+ * the cache evicts the least recently used codebook.
+ * 
+ * @author Joseph Lewis
+ *
+ */
+public class CodebookTest {
+	private TableEngine engine = new TableEngine();
+
+	/**
+	 * Test method for @see {@link Codebook#encryptBlock(int)} and
+	 * {@link Codebook#decryptBlock(int)}.
+	 */
+	@Test
+	public void codebookTest() {
+		byte key[] = { (byte) 0xb0, (byte) 0xb1 };
+		byte[] K = Permutation.keySchedule(key);
+		Codebook codebook = new Codebook(0xb0b1, engine);
+		for (int block = 0; block < 0x10000; block++) {
+			assertEquals(engine.encryptBlock(K, block), codebook.encryptBlock(block));
+			assertEquals(engine.decryptBlock(K, block), codebook.decryptBlock(block));
+		}
+	}
+
+	/**
+	 * Test method for @see {@link Comp343Cipher#setCodebookCache(CodebookCache)}.
+	 */
+	@Test
+	public void codebookModeTest() {
+		byte key[] = { (byte) 0xfc, (byte) 0x39 };
+		Comp343Cipher plain = new Comp343Cipher(key);
+		Comp343Cipher cached = new Comp343Cipher(key);
+		cached.setCodebookCache(new CodebookCache(2));
+		for (int block = 0; block < 0x10000; block += 7) {
+			byte[] b = { (byte) (block >>> 8), (byte) block };
+			assertArrayEquals(plain.encrypt(b), cached.encrypt(b));
+			assertArrayEquals(plain.decrypt(b), cached.decrypt(b));
+		}
+	}
+
+	/**
+	 * Test method for @see {@link CodebookCache#get(int, CipherEngine)}.
+	 */
+	@Test
+	public void cacheTest() {
+		CodebookCache cache = new CodebookCache(2);
+		Codebook first = cache.get(1, engine);
+		cache.get(2, engine);
+		// Key 1 becomes the most recently used, so key 2 is evicted
+		assertSame(first, cache.get(1, engine));
+		cache.get(3, engine);
+		assertEquals(2, cache.size());
+		assertEquals(1, cache.getHits());
+		assertEquals(3, cache.getMisses());
+		assertEquals(1, cache.getEvictions());
+		assertSame(first, cache.get(1, engine));
+		cache.get(2, engine);
+		assertEquals(4, cache.getMisses());
+		assertEquals(2, cache.getEvictions());
+	}
+}
@@ -1,39 +1,68 @@
 package blockcipher;
 
+import java.nio.ByteBuffer;
+
 /**
  * This method implements the Cipher interface with algorithms to encrypt and
  * decrypt blocks of bits.
+ * An instance holds the loaded key, so it must not be shared between threads
+ * that load keys; use @see KeyedCipher for an immutable, shareable cipher.
  *
  * @author Joseph Lewis
  */
 public class Comp343Cipher implements Cipher {
-	// Declare variables
-	private Sbox sbox;
+	// Declare the engine that runs the Feistel rounds
+	private CipherEngine engine;
 	// Declare the initial key
 	private byte[] key;
 	// Declare the 8 round keys
 	private byte[] K;
-	// Declare the left and right blocks
-	private byte[] L;
-	private byte[] R;
+	// Declare the codebook cache, null unless codebook mode is enabled
+	private CodebookCache codebooks;
+	// Declare the codebook of the loaded key in codebook mode
+	private Codebook codebook;
 
 	/**
 	 * Constructor used to create an instance of Comp343Cipher.
 	 */
 	public Comp343Cipher() {
-		sbox = new Sbox();
+		this(CipherEngine.getDefault());
+	}
+
+	/**
+	 * Constructor used to create an instance of Comp343Cipher that runs its
+	 * rounds with the given engine.
+	 * 
+	 * @param engine
+	 *            is the engine used to encrypt and decrypt blocks
+	 */
+	public Comp343Cipher(CipherEngine engine) {
+		this.engine = engine;
 	}
 
 	/**
 	 * The constructor for the class, that loads the key and initialises the
-	 * S-box.
+	 * default engine.
 	 * 
 	 * @param k
 	 *            is the key to be loaded
 	 */
 	public Comp343Cipher(byte[] k) {
+		this(k, CipherEngine.getDefault());
+	}
+
+	/**
+	 * The constructor for the class, that loads the key and runs its rounds
+	 * with the given engine.
+	 * 
+	 * @param k
+	 *            is the key to be loaded
+	 * @param engine
+	 *            is the engine used to encrypt and decrypt blocks
+	 */
+	public Comp343Cipher(byte[] k, CipherEngine engine) {
+		this.engine = engine;
 		loadKey(k);
-		sbox = new Sbox();
 	}
 
 	/**
@@ -49,10 +78,29 @@ public class Comp343Cipher implements Cipher {
 		}
 		// Load the given key
 		key = k;
-		K = Permutation.keySchedule(key);
+		K = RoundKeyTable.keySchedule(((k[0] & 0xff) << 8) | (k[1] & 0xff));
+		Metrics.keyLoaded();
+		// Look up or build the full codebook when in codebook mode
+		codebook = codebooks == null ? null : codebooks.get(((k[0] & 0xff) << 8) | (k[1] & 0xff), engine);
 		return true;
 	}
 
+	/**
+	 * Enables codebook mode, in which loading a key builds (or fetches from the
+	 * cache) the forward and inverse codebooks, so that encryption and
+	 * decryption become a single indexed load. A null cache disables it.
+	 * 
+	 * @param cache
+	 *            is the cache the codebooks are taken from, or null
+	 */
+	public void setCodebookCache(CodebookCache cache) {
+		codebooks = cache;
+		codebook = null;
+		if (cache != null && key != null) {
+			codebook = cache.get(((key[0] & 0xff) << 8) | (key[1] & 0xff), engine);
+		}
+	}
+
 	/**
 	 * Delete the key from the Cipher
 	 * 
@@ -62,6 +110,7 @@ public class Comp343Cipher implements Cipher {
 	public boolean deleteKey() {
 		// Set the key to null
 		key = null;
+		codebook = null;
 		return true;
 	}
 
@@ -73,62 +122,131 @@ public class Comp343Cipher implements Cipher {
 	 * @return the block of ciphertext
 	 */
 	public byte[] encrypt(byte[] block) {
-		// Split the block into left and right blocks
-		// Initialise and instantiate L with the byte at block[0] and R with the
-		// byte at block[1]
-		L = new byte[9];
-		R = new byte[9];
-		L[0] = block[0];
-		R[0] = block[1];
-		// Encrypt the block using the S-box and permutations
-		for (int i = 0; i <= 7; i++) {
-			byte y = (byte) (R[i] ^ K[i]);
-			// Convert the bytes into nibbles
-			@SuppressWarnings("static-access")
-			byte highZ = (byte) sbox.getOutput(Permutation.convert(y)[1]);
-			@SuppressWarnings("static-access")
-			byte lowZ = (byte) sbox.getOutput(Permutation.convert(y)[0]);
-			// Consolidate the highest-order and lowest-order bits
-			byte z = Permutation.consolidate(highZ, lowZ);
-			// The permutation is a rotation of the bits of the argument by 2
-			// positions left
-			L[i + 1] = R[i];
-			R[i + 1] = (byte) (L[i] ^ Permutation.rotL(z, 2));
-		}
-		return new byte[] { L[8], R[8] };
+		// Pack the left and right blocks, L = block[0] and R = block[1]
+		int C = encryptBlock(((block[0] & 0xff) << 8) | (block[1] & 0xff));
+		return new byte[] { (byte) (C >>> 8), (byte) C };
+	}
+
+	/**
+	 * Encrypt a packed block (L << 8) | R with the loaded key.
+	 * 
+	 * @param block
+	 *            the packed block of plaintext
+	 * @return the packed block of ciphertext
+	 */
+	public int encryptBlock(int block) {
+		Metrics.encrypted(1);
+		Codebook cb = codebook;
+		return cb != null ? cb.encryptBlock(block) : engine.encryptBlock(K, block);
 	}
 
 	/**
 	 * Decrypt a block of ciphertext using a key scheduling algorithm along with
-	 * a defined S-box.
+	 * a defined S-box. The halves are not swapped, so this only inverts @see
+	 * Comp343Cipher#encrypt(byte[]) on the swapped block; @see
+	 * Comp343Cipher#decryptInverse(byte[]) inverts it directly.
 	 * 
 	 * @param block
 	 * @return the block of plaintext
 	 */
 	public byte[] decrypt(byte[] block) {
-		// Split the block into left and right blocks
-		// Initialise and instantiate L with the byte at block[0] and R with the
-		// byte at block[1]
-		byte[] L = new byte[9];
-		byte[] R = new byte[9];
-		L[0] = block[0];
-		R[0] = block[1];
-		// Encrypt the block using the S-box and permutations
-		for (int i = 0; i <= 7; i++) {
-			byte y = (byte) (R[i] ^ K[K.length - i - 1]);
-			// Convert the bytes into nibbles
-			@SuppressWarnings("static-access")
-			byte highZ = (byte) sbox.getOutput(Permutation.convert(y)[1]);
-			@SuppressWarnings("static-access")
-			byte lowZ = (byte) sbox.getOutput(Permutation.convert(y)[0]);
-			// Consolidate the highest-order and lowest-order bits
-			byte z = Permutation.consolidate(highZ, lowZ);
-			// The permutation is a rotation of the bits of the argument by 2
-			// positions left
-			L[i + 1] = R[i];
-			R[i + 1] = (byte) (L[i] ^ Permutation.rotL(z, 2));
-		}
-		return new byte[] { L[8], R[8] };
+		// Pack the left and right blocks, L = block[0] and R = block[1]
+		int P = decryptBlock(((block[0] & 0xff) << 8) | (block[1] & 0xff));
+		return new byte[] { (byte) (P >>> 8), (byte) P };
+	}
+
+	/**
+	 * Decrypt a block of ciphertext from @see Comp343Cipher#encrypt(byte[])
+	 * back to its plaintext.
+	 * 
+	 * @see Cipher#decryptInverse(byte[])
+	 */
+	@Override
+	public byte[] decryptInverse(byte[] block) {
+		int P = decryptInverse(((block[0] & 0xff) << 8) | (block[1] & 0xff));
+		return new byte[] { (byte) (P >>> 8), (byte) P };
+	}
+
+	/**
+	 * Decrypt a packed block of ciphertext from @see
+	 * Comp343Cipher#encryptBlock(int) back to its plaintext. The last round of
+	 * encryption does not swap the halves, so this is @see
+	 * Comp343Cipher#decryptBlock(int) with the halves swapped before and
+	 * after.
+	 * 
+	 * @param block
+	 *            the packed block of ciphertext
+	 * @return the packed block of plaintext
+	 */
+	public int decryptInverse(int block) {
+		return Codebook.swap(decryptBlock(Codebook.swap(block)));
+	}
+
+	/**
+	 * Decrypt a packed block (L << 8) | R with the loaded key, running the
+	 * rounds with the round keys in reverse order.
+	 * 
+	 * @param block
+	 *            the packed block of ciphertext
+	 * @return the packed block of plaintext
+	 */
+	public int decryptBlock(int block) {
+		Metrics.decrypted(1);
+		Codebook cb = codebook;
+		return cb != null ? cb.decryptBlock(block) : engine.decryptBlock(K, block);
+	}
+
+	/**
+	 * Encrypt len bytes of plaintext from in into out without allocating,
+	 * through the codebook in codebook mode and the engine otherwise.
+	 * 
+	 * @see Cipher#encrypt(byte[], int, byte[], int, int)
+	 */
+	@Override
+	public void encrypt(byte[] in, int inOff, byte[] out, int outOff, int len) {
+		BulkBlocks.encrypt(engine, K, codebook, in, inOff, out, outOff, len);
+	}
+
+	/**
+	 * Decrypt len bytes of ciphertext from in into out without allocating,
+	 * through the codebook in codebook mode and the engine otherwise.
+	 * 
+	 * @see Cipher#decrypt(byte[], int, byte[], int, int)
+	 */
+	@Override
+	public void decrypt(byte[] in, int inOff, byte[] out, int outOff, int len) {
+		BulkBlocks.decrypt(engine, K, codebook, in, inOff, out, outOff, len);
+	}
+
+	/**
+	 * Encrypt the remaining bytes of src into dst without allocating. Direct
+	 * buffers are read and written in place, with no copy to the heap.
+	 * 
+	 * @see Cipher#encrypt(ByteBuffer, ByteBuffer)
+	 */
+	@Override
+	public void encrypt(ByteBuffer src, ByteBuffer dst) {
+		BulkBlocks.encrypt(engine, K, codebook, src, dst);
+	}
+
+	/**
+	 * Decrypt the remaining bytes of src into dst without allocating. Direct
+	 * buffers are read and written in place, with no copy to the heap.
+	 * 
+	 * @see Cipher#decrypt(ByteBuffer, ByteBuffer)
+	 */
+	@Override
+	public void decrypt(ByteBuffer src, ByteBuffer dst) {
+		BulkBlocks.decrypt(engine, K, codebook, src, dst);
+	}
+
+	/**
+	 * Getter method that returns the engine used to run the Feistel rounds.
+	 * 
+	 * @return the engine
+	 */
+	public CipherEngine getEngine() {
+		return engine;
 	}
 
 	/**
@@ -142,10 +260,194 @@ public class Comp343Cipher implements Cipher {
 	 */
 
 	public byte[] compression(byte[] m, byte[] h) {
-		// Load the chaining variable
-		loadKey(h);
-		byte[] H = encrypt(m);
+		// Use the chaining variable as the key, without loading it, so that the
+		// loaded key is untouched and one instance can be shared by threads
+		int H = compress(((m[0] & 0xff) << 8) | (m[1] & 0xff), ((h[0] & 0xff) << 8) | (h[1] & 0xff));
 		// Return the digest 'H' that is generated from Eh(m)=H
-		return H;
+		return new byte[] { (byte) (H >>> 8), (byte) H };
+	}
+
+	/**
+	 * Encrypt a packed block (L << 8) | R under a packed key (k[0] << 8) | k[1]
+	 * without loading it. The round keys are a single load from @see
+	 * RoundKeyTable and nothing is allocated, so the key can change on every
+	 * call.
+	 * 
+	 * @param key
+	 *            the packed key
+	 * @param block
+	 *            the packed block of plaintext
+	 * @return the packed block of ciphertext, as from @see
+	 *         Comp343Cipher#encryptBlock(int)
+	 */
+	public static int encrypt(int key, int block) {
+		return encryptRounds(RoundKeyTable.get(key), block);
+	}
+
+	/**
+	 * Decrypt a packed block under a packed key without loading it, so that
+	 * decrypt(key, encrypt(key, block)) == block, as from @see
+	 * Comp343Cipher#decryptInverse(int).
+	 * 
+	 * @param key
+	 *            the packed key
+	 * @param block
+	 *            the packed block of ciphertext
+	 * @return the packed block of plaintext
+	 */
+	public static int decrypt(int key, int block) {
+		return decryptRounds(RoundKeyTable.get(key), block);
+	}
+
+	/**
+	 * Returns one round key of the packed round keys of @see
+	 * RoundKeyTable#get(int).
+	 * 
+	 * @param roundKeys
+	 *            the 8 round keys, K[i] in bits 8i to 8i + 7
+	 * @param i
+	 *            the round, from 0 to 7
+	 * @return the round key K[i]
+	 */
+	private static int roundKey(long roundKeys, int i) {
+		return (int) (roundKeys >>> (i << 3)) & 0xff;
+	}
+
+	/**
+	 * Runs the 8 rounds on a packed block with the table engine's round
+	 * function, two rounds at a time so that the halves never need swapping.
+	 * The single and batch forms share it, and the JIT unrolls it.
+	 * 
+	 * @param roundKeys
+	 *            the packed round keys of @see RoundKeyTable#get(int)
+	 * @param block
+	 *            the packed block of plaintext
+	 * @return the packed block of ciphertext
+	 */
+	static int encryptRounds(long roundKeys, int block) {
+		int[] F = TableEngine.F;
+		int L = (block >>> 8) & 0xff;
+		int R = block & 0xff;
+		L ^= F[R ^ roundKey(roundKeys, 0)];
+		R ^= F[L ^ roundKey(roundKeys, 1)];
+		L ^= F[R ^ roundKey(roundKeys, 2)];
+		R ^= F[L ^ roundKey(roundKeys, 3)];
+		L ^= F[R ^ roundKey(roundKeys, 4)];
+		R ^= F[L ^ roundKey(roundKeys, 5)];
+		L ^= F[R ^ roundKey(roundKeys, 6)];
+		R ^= F[L ^ roundKey(roundKeys, 7)];
+		// After an even number of rounds the halves are back in place
+		return (L << 8) | R;
+	}
+
+	/**
+	 * Undoes the rounds of @see Comp343Cipher#encryptRounds(long, int), from
+	 * the last to the first.
+	 * 
+	 * @param roundKeys
+	 *            the packed round keys of @see RoundKeyTable#get(int)
+	 * @param block
+	 *            the packed block of ciphertext
+	 * @return the packed block of plaintext
+	 */
+	static int decryptRounds(long roundKeys, int block) {
+		int[] F = TableEngine.F;
+		int L = (block >>> 8) & 0xff;
+		int R = block & 0xff;
+		R ^= F[L ^ roundKey(roundKeys, 7)];
+		L ^= F[R ^ roundKey(roundKeys, 6)];
+		R ^= F[L ^ roundKey(roundKeys, 5)];
+		L ^= F[R ^ roundKey(roundKeys, 4)];
+		R ^= F[L ^ roundKey(roundKeys, 3)];
+		L ^= F[R ^ roundKey(roundKeys, 2)];
+		R ^= F[L ^ roundKey(roundKeys, 1)];
+		L ^= F[R ^ roundKey(roundKeys, 0)];
+		return (L << 8) | R;
+	}
+
+	/**
+	 * The compression function Eh(m) on packed 16-bit values, without
+	 * allocating.
+	 * 
+	 * @param m
+	 *            the packed message block
+	 * @param h
+	 *            the packed chaining value, which is the key
+	 * @return the packed digest
+	 */
+	public static int compress(int m, int h) {
+		return encrypt(h, m);
+	}
+
+	/**
+	 * Encrypt len packed blocks under one packed key, whose round keys are
+	 * loaded once. The arrays may be the same.
+	 * 
+	 * @param key
+	 *            the packed key
+	 * @param in
+	 *            the packed blocks of plaintext
+	 * @param inOff
+	 *            the index of the first block
+	 * @param out
+	 *            receives the packed blocks of ciphertext
+	 * @param outOff
+	 *            the index of the first output
+	 * @param len
+	 *            the number of blocks
+	 */
+	public static void encrypt(int key, int[] in, int inOff, int[] out, int outOff, int len) {
+		long roundKeys = RoundKeyTable.get(key);
+		for (int i = 0; i < len; i++) {
+			out[outOff + i] = encryptRounds(roundKeys, in[inOff + i]);
+		}
+	}
+
+	/**
+	 * Decrypt len packed blocks under one packed key, whose round keys are
+	 * loaded once, as @see Comp343Cipher#decrypt(int, int). The arrays may be
+	 * the same.
+	 * 
+	 * @param key
+	 *            the packed key
+	 * @param in
+	 *            the packed blocks of ciphertext
+	 * @param inOff
+	 *            the index of the first block
+	 * @param out
+	 *            receives the packed blocks of plaintext
+	 * @param outOff
+	 *            the index of the first output
+	 * @param len
+	 *            the number of blocks
+	 */
+	public static void decrypt(int key, int[] in, int inOff, int[] out, int outOff, int len) {
+		long roundKeys = RoundKeyTable.get(key);
+		for (int i = 0; i < len; i++) {
+			out[outOff + i] = decryptRounds(roundKeys, in[inOff + i]);
+		}
+	}
+
+	/**
+	 * The compression function over len packed inputs (m << 16) | h, each with
+	 * its own key, as in @see CompressionFunction#compress(int[], int, int[],
+	 * int, int). The arrays may be the same.
+	 * 
+	 * @param inputs
+	 *            the packed inputs
+	 * @param inOff
+	 *            the index of the first input
+	 * @param digests
+	 *            receives the packed digests
+	 * @param outOff
+	 *            the index of the first digest
+	 * @param len
+	 *            the number of inputs
+	 */
+	public static void compress(int[] inputs, int inOff, int[] digests, int outOff, int len) {
+		for (int i = 0; i < len; i++) {
+			int x = inputs[inOff + i];
+			digests[outOff + i] = encrypt(x & 0xffff, x >>> 16);
+		}
 	}
 }
@@ -0,0 +1,485 @@
+package blockcipher;
+
+import java.nio.ByteBuffer;
+import java.security.AlgorithmParameters;
+import java.security.InvalidAlgorithmParameterException;
+import java.security.InvalidKeyException;
+import java.security.Key;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.security.spec.AlgorithmParameterSpec;
+import java.security.spec.InvalidParameterSpecException;
+import java.util.Arrays;
+
+import javax.crypto.BadPaddingException;
+import javax.crypto.CipherSpi;
+import javax.crypto.IllegalBlockSizeException;
+import javax.crypto.NoSuchPaddingException;
+import javax.crypto.ShortBufferException;
+import javax.crypto.spec.IvParameterSpec;
+
+/**
+ * The <code>javax.crypto.Cipher</code> implementation of the "COMP343"
+ * algorithm, registered by @see Comp343Provider. It runs the block cipher in
+ * ECB, CBC (@see CbcMode) or CTR (@see CtrMode) mode, with PKCS5Padding (n
+ * bytes of value n, as in @see BlockCipherOutputStream) or NoPadding, and
+ * defaults to ECB with PKCS5Padding. CTR only allows NoPadding, and as in @see
+ * CtrMode a message is limited to 128KB and the IV must be changed after each
+ * message encrypted.
+ *
+ * Between calls only the odd byte of an unfinished block is held back, plus
+ * the last whole block when decrypting with padding, as it may hold the
+ * padding. Direct ByteBuffers are processed in place, without a heap copy. The
+ * IV of CBC and CTR is read with <code>getIV()</code>; no AlgorithmParameters
+ * are produced.
+ *
+ * @author Joseph Lewis
+ *
+ */
+public class Comp343CipherSpi extends CipherSpi {
+	private static final int ECB = 0;
+	private static final int CBC = 1;
+	private static final int CTR = 2;
+
+	private int mode = ECB;
+	private boolean padding = true;
+	private boolean encrypting;
+	private KeyedCipher cipher;
+	private byte[] iv;
+	private CbcMode cbc;
+	private CtrMode ctr;
+	// The position of the next byte in CTR mode
+	private long position;
+	// Set once a CTR message is encrypted, until a new IV is given
+	private boolean ivUsed;
+	// The bytes held back between calls
+	private final byte[] held = new byte[3];
+	private int heldLength;
+	// Scratch space for the blocks that span the held bytes and the input
+	private final byte[] scratch = new byte[4];
+
+	@Override
+	protected void engineSetMode(String name) throws NoSuchAlgorithmException {
+		switch (name.toUpperCase()) {
+		case "ECB":
+			mode = ECB;
+			break;
+		case "CBC":
+			mode = CBC;
+			break;
+		case "CTR":
+			mode = CTR;
+			break;
+		default:
+			throw new NoSuchAlgorithmException("'" + name + "' is not a supported mode.");
+		}
+	}
+
+	@Override
+	protected void engineSetPadding(String name) throws NoSuchPaddingException {
+		switch (name.toUpperCase()) {
+		case "NOPADDING":
+			padding = false;
+			break;
+		case "PKCS5PADDING":
+			if (mode == CTR) {
+				throw new NoSuchPaddingException("CTR mode must be used with NoPadding.");
+			}
+			padding = true;
+			break;
+		default:
+			throw new NoSuchPaddingException("'" + name + "' is not a supported padding.");
+		}
+	}
+
+	@Override
+	protected int engineGetBlockSize() {
+		return 2;
+	}
+
+	@Override
+	protected int engineGetKeySize(Key key) throws InvalidKeyException {
+		return 8 * checkKey(key).length;
+	}
+
+	@Override
+	protected int engineGetOutputSize(int inputLen) {
+		if (mode == CTR) {
+			return inputLen;
+		}
+		int total = heldLength + inputLen;
+		return encrypting && padding ? (total & ~1) + 2 : total;
+	}
+
+	@Override
+	protected byte[] engineGetIV() {
+		return iv == null ? null : iv.clone();
+	}
+
+	@Override
+	protected AlgorithmParameters engineGetParameters() {
+		return null;
+	}
+
+	@Override
+	protected void engineInit(int opmode, Key key, SecureRandom random) throws InvalidKeyException {
+		try {
+			init(opmode, key, null, random);
+		} catch (InvalidAlgorithmParameterException e) {
+			throw new InvalidKeyException(e.getMessage(), e);
+		}
+	}
+
+	@Override
+	protected void engineInit(int opmode, Key key, AlgorithmParameterSpec params, SecureRandom random)
+			throws InvalidKeyException, InvalidAlgorithmParameterException {
+		if (params != null && !(params instanceof IvParameterSpec)) {
+			throw new InvalidAlgorithmParameterException("Only an IvParameterSpec is accepted.");
+		}
+		init(opmode, key, params == null ? null : ((IvParameterSpec) params).getIV(), random);
+	}
+
+	@Override
+	protected void engineInit(int opmode, Key key, AlgorithmParameters params, SecureRandom random)
+			throws InvalidKeyException, InvalidAlgorithmParameterException {
+		try {
+			init(opmode, key, params == null ? null : params.getParameterSpec(IvParameterSpec.class).getIV(),
+					random);
+		} catch (InvalidParameterSpecException e) {
+			throw new InvalidAlgorithmParameterException(e.getMessage(), e);
+		}
+	}
+
+	private void init(int opmode, Key key, byte[] ivBytes, SecureRandom random)
+			throws InvalidKeyException, InvalidAlgorithmParameterException {
+		if (opmode != javax.crypto.Cipher.ENCRYPT_MODE && opmode != javax.crypto.Cipher.DECRYPT_MODE) {
+			throw new UnsupportedOperationException("Only ENCRYPT_MODE and DECRYPT_MODE are supported.");
+		}
+		byte[] k = checkKey(key);
+		encrypting = opmode == javax.crypto.Cipher.ENCRYPT_MODE;
+		if (mode == ECB) {
+			if (ivBytes != null) {
+				throw new InvalidAlgorithmParameterException("ECB mode does not take an IV.");
+			}
+		} else if (ivBytes == null) {
+			if (!encrypting) {
+				throw new InvalidAlgorithmParameterException("Decryption needs the IV.");
+			}
+			ivBytes = new byte[2];
+			(random == null ? new SecureRandom() : random).nextBytes(ivBytes);
+		} else if (ivBytes.length != 2) {
+			throw new InvalidAlgorithmParameterException("The IV must be 2 bytes long.");
+		}
+		cipher = KeyedCipher.of(k);
+		iv = ivBytes == null ? null : ivBytes.clone();
+		ivUsed = false;
+		reset();
+	}
+
+	private static byte[] checkKey(Key key) throws InvalidKeyException {
+		byte[] k = key == null ? null : key.getEncoded();
+		if (k == null || k.length != 2) {
+			throw new InvalidKeyException("The key must be 2 bytes long.");
+		}
+		return k;
+	}
+
+	/**
+	 * Returns the cipher to the state it had after it was initialised.
+	 */
+	private void reset() {
+		heldLength = 0;
+		position = 0;
+		if (mode == CBC) {
+			cbc = new CbcMode(cipher, iv);
+		} else if (mode == CTR) {
+			ctr = new CtrMode(cipher, ((iv[0] & 0xff) << 8) | (iv[1] & 0xff));
+		}
+	}
+
+	/**
+	 * The number of bytes the next update of len bytes writes.
+	 */
+	private int updateLength(int len) {
+		if (mode == CTR) {
+			return len;
+		}
+		int total = heldLength + len;
+		return total - keep(total);
+	}
+
+	/**
+	 * The number of bytes to hold back out of total.
+	 */
+	private int keep(int total) {
+		return (total & 1) + (!encrypting && padding && total >= 2 ? 2 : 0);
+	}
+
+	@Override
+	protected byte[] engineUpdate(byte[] input, int inputOffset, int inputLen) {
+		byte[] output = new byte[updateLength(inputLen)];
+		update(input, inputOffset, inputLen, output, 0);
+		return output;
+	}
+
+	@Override
+	protected int engineUpdate(byte[] input, int inputOffset, int inputLen, byte[] output, int outputOffset)
+			throws ShortBufferException {
+		int n = updateLength(inputLen);
+		if (output.length - outputOffset < n) {
+			throw new ShortBufferException(n + " bytes of output are needed.");
+		}
+		return update(input, inputOffset, inputLen, output, outputOffset);
+	}
+
+	@Override
+	protected byte[] engineDoFinal(byte[] input, int inputOffset, int inputLen)
+			throws IllegalBlockSizeException, BadPaddingException {
+		byte[] output = new byte[engineGetOutputSize(inputLen)];
+		int n = doFinal(input, inputOffset, inputLen, output, 0);
+		return n == output.length ? output : Arrays.copyOf(output, n);
+	}
+
+	@Override
+	protected int engineDoFinal(byte[] input, int inputOffset, int inputLen, byte[] output, int outputOffset)
+			throws ShortBufferException, IllegalBlockSizeException, BadPaddingException {
+		int n = finalLength(inputLen);
+		if (output.length - outputOffset < n) {
+			throw new ShortBufferException(n + " bytes of output are needed.");
+		}
+		return doFinal(input, inputOffset, inputLen, output, outputOffset);
+	}
+
+	/**
+	 * The most bytes the final call with len bytes writes.
+	 */
+	private int finalLength(int len) {
+		int total = heldLength + len;
+		return mode != CTR && !encrypting && padding && total >= 2 ? total - 1 : engineGetOutputSize(len);
+	}
+
+	private int update(byte[] in, int inOff, int len, byte[] out, int outOff) {
+		if (cipher == null) {
+			throw new IllegalStateException("The cipher has not been initialised.");
+		}
+		// The streams finish with no input, and possibly a null array
+		if (len == 0) {
+			return 0;
+		}
+		int n = updateLength(len);
+		// Only exact in-place processing is safe, so copy overlapping input
+		if (in == out && inOff < outOff + n && outOff < inOff + len && (inOff != outOff || heldLength > 0)) {
+			in = Arrays.copyOfRange(in, inOff, inOff + len);
+			inOff = 0;
+		}
+		if (mode == CTR) {
+			checkCounter(len);
+			ctr.decrypt(position, in, inOff, out, outOff, len);
+			position += len;
+			return len;
+		}
+		if (n > 0) {
+			// Finish the block that spans the held bytes and the input
+			int fromHeld = Math.min(heldLength, n);
+			int head = fromHeld + (fromHeld & 1);
+			int fromIn = head - fromHeld;
+			System.arraycopy(held, 0, scratch, 0, fromHeld);
+			System.arraycopy(in, inOff, scratch, fromHeld, fromIn);
+			transform(scratch, 0, out, outOff, head);
+			transform(in, inOff + fromIn, out, outOff + head, n - head);
+			// Keep the unused held bytes, then the rest of the input
+			System.arraycopy(held, fromHeld, held, 0, heldLength - fromHeld);
+			heldLength -= fromHeld;
+			inOff += fromIn + n - head;
+			len -= fromIn + n - head;
+		}
+		System.arraycopy(in, inOff, held, heldLength, len);
+		heldLength += len;
+		return Math.max(n, 0);
+	}
+
+	private int doFinal(byte[] in, int inOff, int len, byte[] out, int outOff)
+			throws IllegalBlockSizeException, BadPaddingException {
+		try {
+			int n = update(in, inOff, len, out, outOff);
+			return n + finish(out, outOff + n);
+		} finally {
+			if (mode == CTR && encrypting) {
+				ivUsed = true;
+			}
+			reset();
+		}
+	}
+
+	/**
+	 * Writes the last block from the held bytes, adding or removing the
+	 * padding.
+	 *
+	 * @return the number of bytes written
+	 */
+	private int finish(byte[] out, int outOff) throws IllegalBlockSizeException, BadPaddingException {
+		if (mode == CTR) {
+			return 0;
+		}
+		if (!padding) {
+			if (heldLength != 0) {
+				throw new IllegalBlockSizeException("The input is not a whole number of 2-byte blocks.");
+			}
+			return 0;
+		}
+		if (encrypting) {
+			// Pad with n bytes of value n
+			if (heldLength == 1) {
+				scratch[0] = held[0];
+				scratch[1] = 1;
+			} else {
+				scratch[0] = 2;
+				scratch[1] = 2;
+			}
+			transform(scratch, 0, out, outOff, 2);
+			return 2;
+		}
+		if (heldLength != 2) {
+			throw new IllegalBlockSizeException("The ciphertext is not a whole, non-empty number of 2-byte blocks.");
+		}
+		transform(held, 0, scratch, 0, 2);
+		if (scratch[1] == 1) {
+			out[outOff] = scratch[0];
+			return 1;
+		}
+		if (scratch[1] == 2 && scratch[0] == 2) {
+			return 0;
+		}
+		throw new BadPaddingException("The padding is invalid.");
+	}
+
+	/**
+	 * Runs len bytes, a whole number of blocks, through ECB or CBC.
+	 */
+	private void transform(byte[] in, int inOff, byte[] out, int outOff, int len) {
+		if (len == 0) {
+			return;
+		}
+		if (mode == CBC) {
+			if (encrypting) {
+				cbc.encrypt(in, inOff, out, outOff, len);
+			} else {
+				cbc.decrypt(in, inOff, out, outOff, len);
+			}
+		} else if (encrypting) {
+			cipher.encrypt(in, inOff, out, outOff, len);
+		} else {
+			cipher.decrypt(in, inOff, out, outOff, len);
+		}
+	}
+
+	private void checkCounter(int len) {
+		if (encrypting && ivUsed) {
+			throw new IllegalStateException("CTR encryption needs a new IV for each message.");
+		}
+		if (position + len > CtrMode.MAX_LENGTH) {
+			throw new IllegalStateException("The counter would wrap around after " + CtrMode.MAX_LENGTH
+					+ "B, which would reuse the keystream.");
+		}
+	}
+
+	@Override
+	protected int engineUpdate(ByteBuffer input, ByteBuffer output) throws ShortBufferException {
+		if (input.hasArray() && output.hasArray() && !output.isReadOnly()) {
+			return super.engineUpdate(input, output);
+		}
+		int n = updateLength(input.remaining());
+		if (output.remaining() < n) {
+			throw new ShortBufferException(n + " bytes of output are needed.");
+		}
+		return update(input, output);
+	}
+
+	@Override
+	protected int engineDoFinal(ByteBuffer input, ByteBuffer output)
+			throws ShortBufferException, IllegalBlockSizeException, BadPaddingException {
+		if (input.hasArray() && output.hasArray() && !output.isReadOnly()) {
+			return super.engineDoFinal(input, output);
+		}
+		int n = finalLength(input.remaining());
+		if (output.remaining() < n) {
+			throw new ShortBufferException(n + " bytes of output are needed.");
+		}
+		try {
+			n = update(input, output);
+			byte[] last = new byte[2];
+			int m = finish(last, 0);
+			output.put(last, 0, m);
+			return n + m;
+		} finally {
+			if (mode == CTR && encrypting) {
+				ivUsed = true;
+			}
+			reset();
+		}
+	}
+
+	/**
+	 * Processes the remaining bytes of input into output with the ByteBuffer
+	 * methods of the modes, which read and write direct buffers in place, with
+	 * no copy to the heap. The block that spans the held bytes and the input is
+	 * run through the scratch space first. The bytes to hold back are saved
+	 * before any output is written, and every block is read before it is
+	 * written, so the output may share memory with the input as long as each
+	 * block is written no later than it was read from, as when a buffer is
+	 * processed in place through a duplicate of it.
+	 */
+	private int update(ByteBuffer input, ByteBuffer output) {
+		if (cipher == null) {
+			throw new IllegalStateException("The cipher has not been initialised.");
+		}
+		int len = input.remaining();
+		int p = input.position();
+		int q = output.position();
+		if (mode == CTR) {
+			checkCounter(len);
+			ctr.decrypt(position, input, output);
+			position += len;
+			return len;
+		}
+		int total = heldLength + len;
+		int n = total - keep(total);
+		int fromHeld = Math.min(heldLength, n);
+		int head = n > 0 ? fromHeld + (fromHeld & 1) : 0;
+		int fromIn = head - fromHeld;
+		System.arraycopy(held, 0, scratch, 0, fromHeld);
+		input.get(p, scratch, fromHeld, fromIn);
+		// Hold back the bytes after the n written, in order, which never
+		// overwrites a held byte that is still to be moved
+		for (int k = n; k < total; k++) {
+			held[k - n] = k < heldLength ? held[k] : input.get(p + k - heldLength);
+		}
+		heldLength = total - n;
+		transform(scratch, 0, scratch, 0, head);
+		output.put(q, scratch, 0, head);
+		if (n > head) {
+			transform(input.slice(p + fromIn, n - head), output.slice(q + head, n - head));
+		}
+		input.position(p + len);
+		output.position(q + n);
+		return n;
+	}
+
+	/**
+	 * Runs the remaining bytes of src, a whole number of blocks, into dst
+	 * through ECB or CBC.
+	 */
+	private void transform(ByteBuffer src, ByteBuffer dst) {
+		if (mode == CBC) {
+			if (encrypting) {
+				cbc.encrypt(src, dst);
+			} else {
+				cbc.decrypt(src, dst);
+			}
+		} else if (encrypting) {
+			cipher.encrypt(src, dst);
+		} else {
+			cipher.decrypt(src, dst);
+		}
+	}
+}
@@ -18,6 +18,22 @@ public class Comp343CipherTest {
 	private String k = "0xb0b1";
 	private Comp343Cipher blockCipherTest = new Comp343Cipher(Crypt.createByteArray(k));
 
+	/**
+	 * Encrypts a packed block with the reference engine under the round keys
+	 * of @see Permutation#keySchedule(byte[]), so that the fast paths can be
+	 * checked against a result that shares none of their code.
+	 * 
+	 * @param key
+	 *            the packed key (k[0] << 8) | k[1]
+	 * @param block
+	 *            the packed block (L << 8) | R
+	 * @return the packed block of ciphertext
+	 */
+	static int referenceEncrypt(int key, int block) {
+		byte[] K = Permutation.keySchedule(new byte[] { (byte) (key >>> 8), (byte) key });
+		return new ReferenceEngine().encryptBlock(K, block);
+	}
+
 	/**
 	 * Test method for @see {@link Comp343Cipher#loadKey(byte[])}.
 	 */
@@ -140,4 +156,55 @@ public class Comp343CipherTest {
 		// Test that the decrypted ciphertext is equivalent to the plain
 		assertArrayEquals("The decrypted ciphertext is  equilivlant to the plaintext", decrypted, plainText);
 	}
+
+	/**
+	 * Test method for @see {@link Comp343Cipher#encrypt(int, int)} and @see
+	 * {@link Comp343Cipher#decrypt(int, int)}.
+	 */
+	@Test
+	public final void keyAgileTest() {
+		for (int k = 0; k < 0x10000; k += 0x0101) {
+			Comp343Cipher cipher = new Comp343Cipher(new byte[] { (byte) (k >>> 8), (byte) k });
+			for (int block = 0; block < 0x10000; block += 0x0fed) {
+				int C = Comp343Cipher.encrypt(k, block);
+				assertEquals(cipher.encryptBlock(block), C);
+				assertEquals(referenceEncrypt(k, block), C);
+				assertEquals(block, Comp343Cipher.decrypt(k, C));
+				assertEquals(block, cipher.decryptInverse(C));
+			}
+		}
+	}
+
+	/**
+	 * Test method for @see {@link Comp343Cipher#compress(int, int)} and the
+	 * batch forms.
+	 */
+	@Test
+	public final void batchTest() {
+		java.util.Random random = new java.util.Random(343);
+		int[] inputs = new int[4099];
+		for (int i = 0; i < inputs.length; i++) {
+			inputs[i] = random.nextInt();
+		}
+		int[] digests = new int[inputs.length + 2];
+		Comp343Cipher.compress(inputs, 1, digests, 2, inputs.length - 1);
+		for (int i = 1; i < inputs.length; i++) {
+			int m = inputs[i] >>> 16;
+			int h = inputs[i] & 0xffff;
+			assertEquals(Comp343Cipher.compress(m, h), digests[i + 1]);
+			assertEquals(referenceEncrypt(h, m), digests[i + 1]);
+		}
+		int[] blocks = new int[inputs.length];
+		for (int i = 0; i < blocks.length; i++) {
+			blocks[i] = inputs[i] & 0xffff;
+		}
+		int[] encrypted = new int[blocks.length];
+		Comp343Cipher.encrypt(0xb0b1, blocks, 0, encrypted, 0, blocks.length);
+		for (int i = 0; i < blocks.length; i++) {
+			assertEquals(referenceEncrypt(0xb0b1, blocks[i]), encrypted[i]);
+		}
+		// In place
+		Comp343Cipher.decrypt(0xb0b1, encrypted, 0, encrypted, 0, encrypted.length);
+		assertArrayEquals(blocks, encrypted);
+	}
 }
@@ -0,0 +1,210 @@
+package blockcipher;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * A Merkle-Damgard hash built on the compression function of @see
+ * Comp343Cipher#compression(byte[], byte[]). The chaining value starts at a
+ * fixed IV and every 2-byte message block m turns it into Eh(m), giving a
+ * 16-bit digest. The message is padded with a 0x80 byte, a zero byte if needed
+ * to end on a block, and the message length in bits as a 64-bit big-endian
+ * number, so that messages of different lengths are never hashed alike. Any
+ * @see CompressionFunction can be iterated in place of the plain construction.
+ *
+ * The state is kept in primitive ints and the round keys of each chaining
+ * value are a single load from @see RoundKeyTable, so hashing allocates
+ * nothing per block. An instance is not thread-safe.
+ *
+ * @author Joseph Lewis
+ *
+ */
+public class Comp343Hash {
+	// The initial chaining value
+	static final int IV = 0x0343;
+	// The size of the window mapped at a time when hashing a file
+	static final int MAP_SIZE = 1 << 26;
+
+	// The compression function iterated
+	private final CompressionFunction function;
+	// The chaining value
+	private int h;
+	// The first byte of an unfinished block, or -1
+	private int pending;
+	// The number of bytes hashed
+	private long length;
+
+	/**
+	 * Constructor used to create a hash at its initial state.
+	 */
+	public Comp343Hash() {
+		this(new PlainCompression());
+	}
+
+	/**
+	 * Constructor used to create a hash that iterates the given compression
+	 * function.
+	 *
+	 * @param function
+	 *            is the compression function
+	 */
+	public Comp343Hash(CompressionFunction function) {
+		this.function = function;
+		reset();
+	}
+
+	/**
+	 * Resets the hash to its initial state.
+	 */
+	public void reset() {
+		h = IV;
+		pending = -1;
+		length = 0;
+	}
+
+	/**
+	 * Returns a copy of the hash in its current state.
+	 *
+	 * @return the copy
+	 */
+	public Comp343Hash copy() {
+		Comp343Hash copy = new Comp343Hash(function);
+		copy.h = h;
+		copy.pending = pending;
+		copy.length = length;
+		return copy;
+	}
+
+	/**
+	 * Hashes one byte.
+	 *
+	 * @param b
+	 *            the byte
+	 */
+	public void update(byte b) {
+		length++;
+		if (pending < 0) {
+			pending = b & 0xff;
+		} else {
+			h = function.compress((pending << 8) | (b & 0xff), h);
+			pending = -1;
+		}
+	}
+
+	/**
+	 * Hashes len bytes of an array.
+	 *
+	 * @param in
+	 *            the array
+	 * @param off
+	 *            the offset of the first byte
+	 * @param len
+	 *            the number of bytes
+	 */
+	public void update(byte[] in, int off, int len) {
+		if (off < 0 || len < 0 || off > in.length - len) {
+			throw new IndexOutOfBoundsException();
+		}
+		int end = off + len;
+		// Finish the unfinished block first
+		if (pending >= 0 && off < end) {
+			update(in[off++]);
+		}
+		length += (end - off) & ~1;
+		int state = h;
+		for (; off + 1 < end; off += 2) {
+			state = function.compress(((in[off] & 0xff) << 8) | (in[off + 1] & 0xff), state);
+		}
+		h = state;
+		if (off < end) {
+			update(in[off]);
+		}
+	}
+
+	/**
+	 * Hashes the remaining bytes of a buffer. Direct buffers are read in place.
+	 *
+	 * @param src
+	 *            the buffer, whose position is moved to its limit
+	 */
+	public void update(ByteBuffer src) {
+		if (src.hasArray()) {
+			int p = src.position();
+			update(src.array(), src.arrayOffset() + p, src.remaining());
+			src.position(src.limit());
+			return;
+		}
+		int p = src.position();
+		int end = src.limit();
+		if (pending >= 0 && p < end) {
+			update(src.get(p++));
+		}
+		length += (end - p) & ~1;
+		boolean bigEndian = src.order() == ByteOrder.BIG_ENDIAN;
+		int state = h;
+		for (; p + 1 < end; p += 2) {
+			short block = src.getShort(p);
+			state = function.compress((bigEndian ? block : Short.reverseBytes(block)) & 0xffff, state);
+		}
+		h = state;
+		if (p < end) {
+			update(src.get(p));
+		}
+		src.position(end);
+	}
+
+	/**
+	 * Pads the message, returns the digest and resets the hash.
+	 *
+	 * @return the 2-byte digest
+	 */
+	public byte[] digest() {
+		int d = digestInt();
+		return new byte[] { (byte) (d >>> 8), (byte) d };
+	}
+
+	/**
+	 * Pads the message, returns the packed digest and resets the hash.
+	 *
+	 * @return the 16-bit digest
+	 */
+	public int digestInt() {
+		long bits = length << 3;
+		int state = h;
+		// The 0x80 byte either ends the unfinished block or starts a new one
+		// that ends with a zero byte
+		state = function.compress(pending >= 0 ? (pending << 8) | 0x80 : 0x8000, state);
+		for (int shift = 48; shift >= 0; shift -= 16) {
+			state = function.compress((int) (bits >>> shift) & 0xffff, state);
+		}
+		reset();
+		return state;
+	}
+
+	/**
+	 * Hashes a whole file, mapping it into memory a window at a time.
+	 *
+	 * @param file
+	 *            the file to hash
+	 * @return the 2-byte digest
+	 * @throws IOException
+	 *             if the file cannot be read
+	 */
+	public static byte[] hashFile(Path file) throws IOException {
+		Comp343Hash hash = new Comp343Hash();
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+			long size = channel.size();
+			for (long position = 0; position < size; position += MAP_SIZE) {
+				MappedByteBuffer window = channel.map(FileChannel.MapMode.READ_ONLY, position,
+						Math.min(MAP_SIZE, size - position));
+				hash.update(window);
+			}
+		}
+		return hash.digest();
+	}
+}
@@ -0,0 +1,122 @@
+package blockcipher;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * A JUnit test class for Comp343Hash, which checks the digests against the
+ * chaining of Comp343Cipher#compression(byte[], byte[]) over the padded
+ * message, however the message is split between updates.
+ * 
+ * @author Joseph Lewis
+ *
+ */
+public class Comp343HashTest {
+
+	/**
+	 * Hashes a message block by block with the byte array compression.
+	 */
+	private static byte[] reference(byte[] message) {
+		int padded = message.length + 1 + ((message.length + 1) & 1) + 8;
+		byte[] blocks = Arrays.copyOf(message, padded);
+		blocks[message.length] = (byte) 0x80;
+		long bits = (long) message.length << 3;
+		for (int i = 0; i < 8; i++) {
+			blocks[padded - 1 - i] = (byte) (bits >>> (8 * i));
+		}
+		Comp343Cipher cipher = new Comp343Cipher();
+		byte[] h = { (byte) (Comp343Hash.IV >>> 8), (byte) Comp343Hash.IV };
+		for (int i = 0; i < padded; i += 2) {
+			h = cipher.compression(new byte[] { blocks[i], blocks[i + 1] }, h);
+		}
+		return h;
+	}
+
+	/**
+	 * Test method for @see {@link Comp343Hash#update(byte[], int, int)} and
+	 * {@link Comp343Hash#digest()}.
+	 */
+	@Test
+	public void digestTest() {
+		Random random = new Random(343);
+		Comp343Hash hash = new Comp343Hash();
+		for (int length = 0; length < 300; length++) {
+			byte[] message = new byte[length];
+			random.nextBytes(message);
+			byte[] expected = reference(message);
+			hash.update(message, 0, length);
+			assertArrayEquals(expected, hash.digest());
+			// Split the message at a random point and feed one byte alone
+			int split = random.nextInt(length + 1);
+			hash.update(message, 0, split);
+			if (split < length) {
+				hash.update(message[split]);
+				hash.update(message, split + 1, length - split - 1);
+			}
+			assertArrayEquals(expected, hash.digest());
+		}
+	}
+
+	/**
+	 * Test method for @see {@link Comp343Hash#update(ByteBuffer)} with heap
+	 * and direct buffers.
+	 */
+	@Test
+	public void byteBufferTest() {
+		byte[] message = new byte[1001];
+		new Random(1).nextBytes(message);
+		byte[] expected = reference(message);
+		Comp343Hash hash = new Comp343Hash();
+		hash.update(ByteBuffer.wrap(message));
+		assertArrayEquals(expected, hash.digest());
+		ByteBuffer direct = ByteBuffer.allocateDirect(message.length);
+		direct.put(message).flip();
+		hash.update(direct.duplicate().limit(3));
+		hash.update(direct.duplicate().position(3).order(ByteOrder.LITTLE_ENDIAN));
+		assertArrayEquals(expected, hash.digest());
+	}
+
+	/**
+	 * Test method for @see {@link Comp343MessageDigest}.
+	 */
+	@Test
+	public void messageDigestTest() throws CloneNotSupportedException {
+		byte[] message = "The quick brown fox jumps over the lazy dog".getBytes();
+		MessageDigest digest = new Comp343MessageDigest();
+		assertEquals(2, digest.getDigestLength());
+		digest.update(message, 0, 10);
+		MessageDigest copy = (MessageDigest) digest.clone();
+		digest.update(message, 10, message.length - 10);
+		copy.update(message, 10, message.length - 10);
+		byte[] expected = reference(message);
+		assertArrayEquals(expected, digest.digest());
+		assertArrayEquals(expected, copy.digest());
+		assertArrayEquals(expected, digest.digest(message));
+	}
+
+	/**
+	 * Test method for @see {@link Comp343Hash#hashFile(Path)}.
+	 */
+	@Test
+	public void hashFileTest() throws IOException {
+		byte[] message = new byte[100001];
+		new Random(2).nextBytes(message);
+		Path file = Files.createTempFile("hash", ".txt");
+		try {
+			Files.write(file, message);
+			assertArrayEquals(reference(message), Comp343Hash.hashFile(file));
+		} finally {
+			Files.delete(file);
+		}
+	}
+}
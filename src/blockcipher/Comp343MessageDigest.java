@@ -0,0 +1,63 @@
+package blockcipher;
+
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+
+/**
+ * Adapts @see Comp343Hash to <code>java.security.MessageDigest</code>, under
+ * the algorithm name "COMP343", so that it can be used wherever a message
+ * digest is expected.
+ *
+ * @author Joseph Lewis
+ *
+ */
+public class Comp343MessageDigest extends MessageDigest implements Cloneable {
+	// The name of the algorithm
+	public static final String ALGORITHM = "COMP343";
+
+	private Comp343Hash hash = new Comp343Hash();
+
+	/**
+	 * Constructor used to create a message digest at its initial state.
+	 */
+	public Comp343MessageDigest() {
+		super(ALGORITHM);
+	}
+
+	@Override
+	protected int engineGetDigestLength() {
+		return 2;
+	}
+
+	@Override
+	protected void engineUpdate(byte input) {
+		hash.update(input);
+	}
+
+	@Override
+	protected void engineUpdate(byte[] input, int offset, int len) {
+		hash.update(input, offset, len);
+	}
+
+	@Override
+	protected void engineUpdate(ByteBuffer input) {
+		hash.update(input);
+	}
+
+	@Override
+	protected byte[] engineDigest() {
+		return hash.digest();
+	}
+
+	@Override
+	protected void engineReset() {
+		hash.reset();
+	}
+
+	@Override
+	public Object clone() throws CloneNotSupportedException {
+		Comp343MessageDigest copy = (Comp343MessageDigest) super.clone();
+		copy.hash = hash.copy();
+		return copy;
+	}
+}
@@ -0,0 +1,34 @@
+package blockcipher;
+
+import java.security.Provider;
+
+/**
+ * A <code>java.security.Provider</code> named "COMP343" that plugs the block
+ * cipher and its hash into the Java Cryptography Architecture. It registers
+ * the cipher "COMP343", in the transformations
+ * "COMP343/ECB|CBC|CTR/NoPadding|PKCS5Padding", through @see
+ * Comp343CipherSpi, and the message digest "COMP343" through @see
+ * Comp343MessageDigest. Keys are any <code>SecretKey</code> whose encoding is
+ * the 2-byte key, such as <code>new SecretKeySpec(k, "COMP343")</code>.
+ * 
+ * @author Joseph Lewis
+ *
+ */
+public class Comp343Provider extends Provider {
+	private static final long serialVersionUID = 1L;
+	// The name of the provider and of its algorithms
+	public static final String NAME = "COMP343";
+
+	/**
+	 * Constructor used to create the provider, which can then be added with
+	 * <code>Security.addProvider</code> or passed to <code>getInstance</code>.
+	 */
+	public Comp343Provider() {
+		super(NAME, "1.0", "COMP343 block cipher (ECB, CBC and CTR) and Merkle-Damgard hash");
+		put("Cipher." + NAME, Comp343CipherSpi.class.getName());
+		put("Cipher." + NAME + " SupportedModes", "ECB|CBC|CTR");
+		put("Cipher." + NAME + " SupportedPaddings", "NOPADDING|PKCS5PADDING");
+		put("Cipher." + NAME + " SupportedKeyFormats", "RAW");
+		put("MessageDigest." + NAME, Comp343MessageDigest.class.getName());
+	}
+}
@@ -0,0 +1,239 @@
+package blockcipher;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.util.Arrays;
+import java.util.Random;
+
+import javax.crypto.BadPaddingException;
+import javax.crypto.Cipher;
+import javax.crypto.CipherInputStream;
+import javax.crypto.CipherOutputStream;
+import javax.crypto.spec.IvParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+
+import org.junit.Test;
+
+/**
+ * A JUnit test class for Comp343Provider and Comp343CipherSpi, which checks
+ * every mode and padding against the modes of this package, with the input
+ * fed in chunks from 1 byte to megabytes, through arrays, direct buffers and
+ * the javax.crypto streams.
+ * 
+ * @author Joseph Lewis
+ *
+ */
+public class Comp343ProviderTest {
+	private static final Comp343Provider PROVIDER = new Comp343Provider();
+	private static final SecretKeySpec KEY = new SecretKeySpec(new byte[] { (byte) 0xab, (byte) 0xcd }, "COMP343");
+	private static final IvParameterSpec IV = new IvParameterSpec(new byte[] { 0x12, 0x34 });
+	private static final String[] TRANSFORMATIONS = { "COMP343/ECB/NoPadding", "COMP343/ECB/PKCS5Padding",
+			"COMP343/CBC/NoPadding", "COMP343/CBC/PKCS5Padding", "COMP343/CTR/NoPadding" };
+	private static final int[] CHUNKS = { 1, 2, 3, 7, 64, 4095, 1 << 20 };
+
+	private static Cipher init(String transformation, int opmode) throws GeneralSecurityException {
+		Cipher cipher = Cipher.getInstance(transformation, PROVIDER);
+		if (transformation.contains("ECB")) {
+			cipher.init(opmode, KEY);
+		} else {
+			cipher.init(opmode, KEY, IV);
+		}
+		return cipher;
+	}
+
+	/**
+	 * Encrypts a message with the modes of this package.
+	 */
+	private static byte[] reference(String transformation, byte[] plain) {
+		KeyedCipher keyed = KeyedCipher.of(0xabcd);
+		byte[] padded = plain;
+		if (transformation.endsWith("PKCS5Padding")) {
+			int n = 2 - plain.length % 2;
+			padded = Arrays.copyOf(plain, plain.length + n);
+			Arrays.fill(padded, plain.length, padded.length, (byte) n);
+		}
+		byte[] out = new byte[padded.length];
+		if (transformation.contains("ECB")) {
+			keyed.encrypt(padded, 0, out, 0, padded.length);
+		} else if (transformation.contains("CBC")) {
+			new CbcMode(keyed, IV.getIV()).encrypt(padded, 0, out, 0, padded.length);
+		} else {
+			new CtrMode(keyed, 0x1234).encrypt(padded, 0, out, 0, padded.length);
+		}
+		return out;
+	}
+
+	/**
+	 * Runs a message through a cipher in chunks with update and doFinal.
+	 */
+	private static byte[] run(Cipher cipher, byte[] in, int chunk) throws GeneralSecurityException {
+		byte[] out = new byte[cipher.getOutputSize(in.length)];
+		int n = 0;
+		int off = 0;
+		for (; off + chunk < in.length; off += chunk) {
+			n += cipher.update(in, off, chunk, out, n);
+		}
+		n += cipher.doFinal(in, off, in.length - off, out, n);
+		return Arrays.copyOf(out, n);
+	}
+
+	private static int maxLength(String transformation) {
+		return transformation.contains("CTR") ? (int) CtrMode.MAX_LENGTH : 3 << 20;
+	}
+
+	/**
+	 * Test method for update and doFinal over arrays with every chunk size.
+	 */
+	@Test
+	public void roundTripTest() throws GeneralSecurityException {
+		Random random = new Random(343);
+		for (String transformation : TRANSFORMATIONS) {
+			boolean whole = transformation.endsWith("NoPadding") && !transformation.contains("CTR");
+			for (int length : new int[] { 0, 1, 2, 3, 1001, 65536, maxLength(transformation) }) {
+				if (whole && length % 2 == 1) {
+					length--;
+				}
+				byte[] plain = new byte[length];
+				random.nextBytes(plain);
+				byte[] expected = reference(transformation, plain);
+				for (int chunk : CHUNKS) {
+					if (chunk > 2 * length + 8 && chunk != CHUNKS[CHUNKS.length - 1]) {
+						continue;
+					}
+					byte[] encrypted = run(init(transformation, Cipher.ENCRYPT_MODE), plain, chunk);
+					assertArrayEquals(transformation + " " + length + " " + chunk, expected, encrypted);
+					byte[] decrypted = run(init(transformation, Cipher.DECRYPT_MODE), encrypted, chunk);
+					assertArrayEquals(transformation + " " + length + " " + chunk, plain, decrypted);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Test method for update and doFinal over direct buffers, both to another
+	 * buffer and in place.
+	 */
+	@Test
+	public void directBufferTest() throws GeneralSecurityException {
+		byte[] plain = new byte[100001];
+		new Random(1).nextBytes(plain);
+		for (String transformation : TRANSFORMATIONS) {
+			byte[] message = transformation.equals("COMP343/ECB/NoPadding")
+					|| transformation.equals("COMP343/CBC/NoPadding") ? Arrays.copyOf(plain, plain.length - 1) : plain;
+			byte[] expected = reference(transformation, message);
+			for (int chunk : new int[] { 1, 3, 4096 }) {
+				ByteBuffer src = ByteBuffer.allocateDirect(message.length);
+				src.put(message).flip();
+				ByteBuffer dst = ByteBuffer.allocateDirect(expected.length);
+				Cipher cipher = init(transformation, Cipher.ENCRYPT_MODE);
+				while (src.remaining() > chunk) {
+					ByteBuffer piece = src.duplicate();
+					piece.limit(piece.position() + chunk);
+					cipher.update(piece, dst);
+					src.position(piece.position());
+				}
+				cipher.doFinal(src, dst);
+				byte[] encrypted = new byte[dst.flip().remaining()];
+				dst.get(encrypted);
+				assertArrayEquals(transformation + " " + chunk, expected, encrypted);
+				// Decrypt in place, with the output buffer over the input
+				ByteBuffer buffer = ByteBuffer.allocateDirect(encrypted.length);
+				buffer.put(encrypted).flip();
+				ByteBuffer out = buffer.duplicate();
+				cipher = init(transformation, Cipher.DECRYPT_MODE);
+				while (buffer.remaining() > chunk) {
+					ByteBuffer piece = buffer.duplicate();
+					piece.limit(piece.position() + chunk);
+					cipher.update(piece, out);
+					buffer.position(piece.position());
+				}
+				cipher.doFinal(buffer, out);
+				byte[] decrypted = new byte[out.position()];
+				out.flip();
+				out.get(decrypted);
+				assertArrayEquals(transformation + " " + chunk, message, decrypted);
+			}
+		}
+	}
+
+	/**
+	 * Test method for the javax.crypto streams.
+	 */
+	@Test
+	public void streamTest() throws GeneralSecurityException, IOException {
+		byte[] plain = new byte[54321];
+		new Random(2).nextBytes(plain);
+		for (String transformation : new String[] { "COMP343/ECB/PKCS5Padding", "COMP343/CBC/PKCS5Padding",
+				"COMP343/CTR/NoPadding" }) {
+			ByteArrayOutputStream sink = new ByteArrayOutputStream();
+			try (OutputStream out = new CipherOutputStream(sink, init(transformation, Cipher.ENCRYPT_MODE))) {
+				for (int off = 0; off < plain.length; off += 777) {
+					out.write(plain, off, Math.min(777, plain.length - off));
+				}
+			}
+			assertArrayEquals(reference(transformation, plain), sink.toByteArray());
+			ByteArrayOutputStream decrypted = new ByteArrayOutputStream();
+			try (InputStream in = new CipherInputStream(new ByteArrayInputStream(sink.toByteArray()),
+					init(transformation, Cipher.DECRYPT_MODE))) {
+				byte[] buffer = new byte[333];
+				for (int n; (n = in.read(buffer)) >= 0;) {
+					decrypted.write(buffer, 0, n);
+				}
+			}
+			assertArrayEquals(plain, decrypted.toByteArray());
+		}
+	}
+
+	/**
+	 * Checks that CBC and CTR generate an IV when none is given.
+	 */
+	@Test
+	public void generatedIvTest() throws GeneralSecurityException {
+		Cipher cipher = Cipher.getInstance("COMP343/CBC/PKCS5Padding", PROVIDER);
+		cipher.init(Cipher.ENCRYPT_MODE, KEY);
+		byte[] iv = cipher.getIV();
+		assertEquals(2, iv.length);
+		byte[] encrypted = cipher.doFinal("attack at dawn".getBytes());
+		cipher.init(Cipher.DECRYPT_MODE, KEY, new IvParameterSpec(iv));
+		assertArrayEquals("attack at dawn".getBytes(), cipher.doFinal(encrypted));
+		assertNull(Cipher.getInstance("COMP343", PROVIDER).getIV());
+	}
+
+	/**
+	 * Checks that a corrupted final block is reported as bad padding.
+	 */
+	@Test(expected = BadPaddingException.class)
+	public void badPaddingTest() throws GeneralSecurityException {
+		Cipher cipher = init("COMP343/ECB/PKCS5Padding", Cipher.DECRYPT_MODE);
+		cipher.doFinal(KeyedCipher.of(0xabcd).encrypt(new byte[] { 0, 3 }));
+	}
+
+	/**
+	 * Checks that a CTR IV is not reused for a second message.
+	 */
+	@Test(expected = IllegalStateException.class)
+	public void ctrReuseTest() throws GeneralSecurityException {
+		Cipher cipher = init("COMP343/CTR/NoPadding", Cipher.ENCRYPT_MODE);
+		cipher.doFinal(new byte[10]);
+		cipher.doFinal(new byte[10]);
+	}
+
+	/**
+	 * Test method for the registered message digest.
+	 */
+	@Test
+	public void messageDigestTest() throws GeneralSecurityException {
+		MessageDigest digest = MessageDigest.getInstance("COMP343", PROVIDER);
+		Comp343Hash hash = new Comp343Hash();
+		hash.update(new byte[] { 1, 2, 3 }, 0, 3);
+		assertArrayEquals(hash.digest(), digest.digest(new byte[] { 1, 2, 3 }));
+	}
+}
@@ -0,0 +1,74 @@
+package blockcipher;
+
+/**
+ * A compression function maps a 16-bit message block m and a 16-bit chaining
+ * value h to a 16-bit digest, built from the block cipher of
+ * <code>Comp343Cipher</code>. Inputs are packed into an int as (m << 16) | h and
+ * blocks, keys and digests as 16-bit ints, as in @see Comp343Cipher#encrypt(int,
+ * int).
+ * 
+ * @author Joseph Lewis
+ *
+ */
+public interface CompressionFunction {
+
+	/**
+	 * Returns a new compression function by name: "plain" for @see
+	 * PlainCompression, "davies-meyer" for @see DaviesMeyer,
+	 * "matyas-meyer-oseas" for @see MatyasMeyerOseas or "miyaguchi-preneel"
+	 * for @see MiyaguchiPreneel.
+	 * 
+	 * @param name
+	 *            is the name of the construction
+	 * @return the compression function
+	 * @throws IllegalArgumentException
+	 *             if there is no construction with the name
+	 */
+	public static CompressionFunction forName(String name) {
+		switch (name) {
+		case "plain":
+			return new PlainCompression();
+		case "davies-meyer":
+			return new DaviesMeyer();
+		case "matyas-meyer-oseas":
+			return new MatyasMeyerOseas();
+		case "miyaguchi-preneel":
+			return new MiyaguchiPreneel();
+		default:
+			throw new IllegalArgumentException("'" + name + "' is not a compression function.");
+		}
+	}
+
+	/**
+	 * Compresses a message block and a chaining value.
+	 * 
+	 * @param m
+	 *            the 16-bit message block
+	 * @param h
+	 *            the 16-bit chaining value
+	 * @return the 16-bit digest
+	 */
+	public int compress(int m, int h);
+
+	/**
+	 * Compresses len packed inputs (m << 16) | h from inputs, starting at inOff,
+	 * into digests, starting at outOff, without allocating.
+	 * 
+	 * @param inputs
+	 *            the packed inputs
+	 * @param inOff
+	 *            the offset of the first input
+	 * @param digests
+	 *            the array the digests are written to
+	 * @param outOff
+	 *            the offset of the first digest
+	 * @param len
+	 *            the number of inputs
+	 */
+	public default void compress(int[] inputs, int inOff, int[] digests, int outOff, int len) {
+		for (int i = 0; i < len; i++) {
+			int x = inputs[inOff + i];
+			digests[outOff + i] = compress(x >>> 16, x & 0xffff);
+		}
+	}
+}
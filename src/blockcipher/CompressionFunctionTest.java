@@ -0,0 +1,106 @@
+package blockcipher;
+
+import static org.junit.Assert.*;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * A JUnit test class for the compression functions, which checks each
+ * construction against Comp343Cipher and the batch method against the
+ * single-block one.
+ * 
+ * @author Joseph Lewis
+ *
+ */
+public class CompressionFunctionTest {
+	private static final String[] NAMES = { "plain", "davies-meyer", "matyas-meyer-oseas", "miyaguchi-preneel" };
+
+	/**
+	 * Encrypts a packed block with a packed key through the byte array API.
+	 */
+	private static int encrypt(int key, int block) {
+		byte[] C = new Comp343Cipher(new byte[] { (byte) (key >>> 8), (byte) key })
+				.encrypt(new byte[] { (byte) (block >>> 8), (byte) block });
+		return ((C[0] & 0xff) << 8) | (C[1] & 0xff);
+	}
+
+	/**
+	 * Test method for @see {@link CompressionFunction#compress(int, int)}.
+	 */
+	@Test
+	public void constructionTest() {
+		Random random = new Random(343);
+		for (int i = 0; i < 1000; i++) {
+			int m = random.nextInt() & 0xffff;
+			int h = random.nextInt() & 0xffff;
+			assertEquals(encrypt(h, m), CompressionFunction.forName("plain").compress(m, h));
+			assertEquals(encrypt(m, h) ^ h, CompressionFunction.forName("davies-meyer").compress(m, h));
+			assertEquals(encrypt(h, m) ^ m, CompressionFunction.forName("matyas-meyer-oseas").compress(m, h));
+			assertEquals(encrypt(h, m) ^ m ^ h, CompressionFunction.forName("miyaguchi-preneel").compress(m, h));
+		}
+		byte[] digest = new Comp343Cipher().compression(new byte[] { 0x12, 0x34 }, new byte[] { 0x56, 0x78 });
+		assertEquals(((digest[0] & 0xff) << 8) | (digest[1] & 0xff), new PlainCompression().compress(0x1234, 0x5678));
+	}
+
+	/**
+	 * Test method for @see
+	 * {@link CompressionFunction#compress(int[], int, int[], int, int)}.
+	 */
+	@Test
+	public void batchTest() {
+		int[] inputs = new int[1000];
+		Random random = new Random(1);
+		for (int i = 0; i < inputs.length; i++) {
+			inputs[i] = random.nextInt();
+		}
+		for (String name : NAMES) {
+			CompressionFunction function = CompressionFunction.forName(name);
+			int[] digests = new int[inputs.length + 2];
+			function.compress(inputs, 3, digests, 2, inputs.length - 3);
+			for (int i = 3; i < inputs.length; i++) {
+				assertEquals(function.compress(inputs[i] >>> 16, inputs[i] & 0xffff), digests[i - 1]);
+			}
+		}
+	}
+
+	/**
+	 * Checks that the attacks and the hash accept every construction.
+	 */
+	@Test
+	public void attackTest() {
+		for (String name : NAMES) {
+			CompressionFunction function = CompressionFunction.forName(name);
+			BirthdayAttack attack = new BirthdayAttack(1, function);
+			attack.findCollisions(20);
+			long[] collisions = attack.getCollisions();
+			collisions = Arrays.copyOf(collisions, collisions.length + 1);
+			collisions[collisions.length - 1] = new RhoCollisionFinder(2, function).findCollision();
+			for (long collision : collisions) {
+				int a = (int) (collision >>> 32);
+				int b = (int) collision;
+				assertNotEquals(a, b);
+				assertEquals(function.compress(a >>> 16, a & 0xffff), function.compress(b >>> 16, b & 0xffff));
+			}
+			int[] inputs = new int[4];
+			int[] digests = new int[4];
+			for (int i = 0; i < 4; i++) {
+				inputs[i] = i << 16;
+			}
+			function.compress(inputs, 0, digests, 0, 4);
+			int[] found = new PreImageSearch(1, function).find(digests[3], 1);
+			assertEquals(1, found.length);
+			assertEquals(digests[3], function.compress(found[0] >>> 16, found[0] & 0xffff));
+			Comp343Hash hash = new Comp343Hash(function);
+			hash.update(new byte[] { 1, 2, 3 }, 0, 3);
+			int d = function.compress(0x0102, Comp343Hash.IV);
+			d = function.compress(0x0380, d);
+			for (int i = 0; i < 3; i++) {
+				d = function.compress(0, d);
+			}
+			assertEquals(function.compress(24, d), hash.digestInt());
+		}
+	}
+}
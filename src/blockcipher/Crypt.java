@@ -1,9 +1,13 @@
 package blockcipher;
 
 import java.io.File;
+import java.io.FilterInputStream;
+import java.io.FilterOutputStream;
 import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
@@ -14,7 +18,8 @@ import java.util.Random;
  * parsed into the program. <code>Crypt</code> is used to create an instance of
  * <code>Comp343Cipher</code> to run the cryptographic process with given files,
  * a key and command in Stage 1, or run birthday and pre-image attacks for Stage
- * 2.
+ * 2. Given a file and the command H, it prints the @see Comp343Hash digest of
+ * the file.
  * 
  * @author Joseph Lewis
  *
@@ -29,12 +34,16 @@ public class Crypt {
 	private static byte[] m;
 	// Ciphertext byte array
 	private static byte[] c;
+	// Files with at least this many blocks are run through the full codebook
+	static final int CODEBOOK_THRESHOLD = 1 << 16;
 
 	/**
 	 * A method used to validate the arguments given by the user and catch any
-	 * exception caused due to errors. The plaintext byte array m and ciphertext
-	 * byte array c are loaded with the data contained in the text files, while
-	 * the command argument is checked for validity.
+	 * exception caused due to errors. The command argument is checked for
+	 * validity, then only the input file of the command is loaded: the
+	 * plaintext byte array m when encrypting or the ciphertext byte array c
+	 * when decrypting. The output file is never read, as it is about to be
+	 * overwritten.
 	 * 
 	 * @param plainArg
 	 *            contains the plaintext filename
@@ -48,20 +57,6 @@ public class Crypt {
 	 */
 	public static boolean validateArguments(String plainArg, String cipherArg, String commandArg) throws IOException {
 		try {
-			// Parse the plaintext file and load it into the byte array m
-			Path textPath = Paths.get(System.getProperty("user.dir") + File.separator + plainArg);
-			byte[] plainClone = Files.readAllBytes(textPath);
-			if (plainClone.length % 2 == 1) {
-				m = new byte[plainClone.length + 1];
-				System.arraycopy(plainClone, 0, m, 0, plainClone.length);
-			} else {
-				m = plainClone.clone();
-			}
-			plainFileName = plainArg;
-			// Parse the ciphertext file and load it into the byte array c
-			textPath = Paths.get(System.getProperty("user.dir") + File.separator + cipherArg);
-			c = Files.readAllBytes(textPath);
-			cipherFileName = cipherArg;
 			// Validate the command argument
 			if (!(commandArg.equals("E") || commandArg.equals("D"))) {
 				System.out.println("'" + commandArg
@@ -69,6 +64,21 @@ public class Crypt {
 				return false;
 			}
 			command = commandArg;
+			plainFileName = plainArg;
+			cipherFileName = cipherArg;
+			if (command.equals("E")) {
+				// Parse the plaintext file and load it into the byte array m
+				byte[] plainClone = Files.readAllBytes(getPath(plainArg));
+				if (plainClone.length % 2 == 1) {
+					m = new byte[plainClone.length + 1];
+					System.arraycopy(plainClone, 0, m, 0, plainClone.length);
+				} else {
+					m = plainClone;
+				}
+			} else {
+				// Parse the ciphertext file and load it into the byte array c
+				c = Files.readAllBytes(getPath(cipherArg));
+			}
 		} catch (FileNotFoundException e) {
 			// A FileNotFoundException will be caught if a file is not found
 			System.out.println("The file '" + e.getMessage() + "' could not be found.");
@@ -81,6 +91,17 @@ public class Crypt {
 		return true;
 	}
 
+	/**
+	 * Resolves a file name against the working directory.
+	 * 
+	 * @param fileName
+	 *            is the file name given as an argument
+	 * @return the path of the file
+	 */
+	static Path getPath(String fileName) {
+		return Paths.get(System.getProperty("user.dir") + File.separator + fileName);
+	}
+
 	/**
 	 * This method creates a 2-byte array representation of a given hexadecimal
 	 * string.
@@ -108,24 +129,29 @@ public class Crypt {
 	static void runCryptography() throws IOException {
 		// A byte array containing the output dependent on the command argument
 		byte[] O;
+		FileJobEvent event = new FileJobEvent();
+		event.begin();
+		long start = Metrics.start();
+		// Building the codebook costs one pass over the block space, which is
+		// repaid once the file holds as many blocks
+		if ((command.equals("E") ? m.length : c.length) / 2 >= CODEBOOK_THRESHOLD) {
+			blockCipher.setCodebookCache(CodebookCache.getShared());
+		}
 		if (command.equals("E")) {
 			O = new byte[m.length];
 			System.out.println("Encrypting text blocks from " + plainFileName + "...");
-			for (int i = 0; i < m.length - 1; i += 2) {
-				byte[] block = blockCipher.encrypt(new byte[] { m[i], m[i + 1] });
-				O[i] = block[0];
-				O[i + 1] = block[1];
-			}
+			blockCipher.encrypt(m, 0, O, 0, m.length);
 			writeToFile(O, cipherFileName);
+			Metrics.fileJob(event, start, "encrypt", m.length, O.length, 1);
 		} else {
 			O = new byte[c.length];
 			System.out.println("Decrypting text blocks from " + cipherFileName + "...");
-			for (int i = c.length - 1; i > 0; i -= 2) {
-				byte[] block = blockCipher.decrypt(new byte[] { c[i], c[i - 1] });
-				O[i] = block[0];
-				O[i - 1] = block[1];
-			}
+			// The blocks are aligned to the end of the file, so an odd leading
+			// byte is skipped
+			int off = c.length % 2;
+			blockCipher.decrypt(c, off, O, off, c.length - off);
 			writeToFile(O, plainFileName);
+			Metrics.fileJob(event, start, "decrypt", c.length, O.length, 1);
 		}
 	}
 
@@ -141,7 +167,7 @@ public class Crypt {
 	 *             if a read or write error occurs
 	 */
 	public static void writeToFile(byte[] O, String outputFileName) throws IOException {
-		File pathOfFile = new File(System.getProperty("user.dir") + File.separator + outputFileName);
+		File pathOfFile = getPath(outputFileName).toFile();
 		FileOutputStream fos = new FileOutputStream(pathOfFile);
 		System.out.println("Writing blocks to " + outputFileName + "...");
 		fos.write(O);
@@ -150,40 +176,230 @@ public class Crypt {
 		fos.close();
 	}
 	
-	/*public static void main(String args[]) throws IOException {
-	// Dummy arguments used purely for testing purposes in Stage 1
-	// args = new String[4];
-	// args[0] = "plain.txt";
-	// args[1] = "cipher.txt";
-	// args[2] = "0xb0b1";
-	// args[3] = "E";
+	/**
+	 * Encrypts or decrypts a file of any size with @see ParallelFileCipher,
+	 * which maps the input and output files instead of loading them into the
+	 * heap and processes them on the given number of threads.
+	 * 
+	 * @param plainArg
+	 *            contains the plaintext filename
+	 * @param cipherArg
+	 *            contains the ciphertext filename
+	 * @param key
+	 *            is the 2-byte key
+	 * @param commandArg
+	 *            is the command argument
+	 * @param threads
+	 *            is the number of threads, or 0 for one per core
+	 * @return true on success
+	 * @throws IOException
+	 *             if a read or write error occurs
+	 */
+	static boolean runMappedCryptography(String plainArg, String cipherArg, byte[] key, String commandArg,
+			int threads) throws IOException {
+		if (!(commandArg.equals("E") || commandArg.equals("D"))) {
+			System.out.println("'" + commandArg
+					+ "' is not a valid argument.\nUse the command 'E' to encypt or 'D' to decrypt text.");
+			return false;
+		}
+		boolean encrypt = commandArg.equals("E");
+		Path input = getPath(encrypt ? plainArg : cipherArg);
+		Path output = getPath(encrypt ? cipherArg : plainArg);
+		if (!Files.isReadable(input)) {
+			System.out.println("The file '" + input + "' could not be read.");
+			return false;
+		}
+		if (Files.exists(output) && Files.isSameFile(input, output)) {
+			System.out.println("The input and output files must be different.");
+			return false;
+		}
+		ParallelFileCipher fileCipher = new ParallelFileCipher(KeyedCipher.of(key), threads);
+		System.out.println((encrypt ? "Encrypting" : "Decrypting") + " text blocks from " + input.getFileName()
+				+ "...");
+		long written = encrypt ? fileCipher.encrypt(input, output) : fileCipher.decrypt(input, output);
+		System.out.println("Process complete...\n" + written + "B were successfully written to '" + output + "'.");
+		return true;
+	}
 
-	// Assign the file names to variables for verbose feedback
+	/**
+	 * Encrypts or decrypts a stream of any length in constant memory with @see
+	 * BlockCipherInputStream, padding the final block so that odd lengths
+	 * round-trip exactly. A file name of "-" stands for standard input or
+	 * output, so data can be piped through the cipher; progress is reported on
+	 * standard error so it never mixes with the data.
+	 * 
+	 * @param plainArg
+	 *            contains the plaintext filename, or "-"
+	 * @param cipherArg
+	 *            contains the ciphertext filename, or "-"
+	 * @param key
+	 *            is the 2-byte key
+	 * @param commandArg
+	 *            is the command argument
+	 * @return true on success
+	 * @throws IOException
+	 *             if a file cannot be opened
+	 */
+	static boolean runStreamingCryptography(String plainArg, String cipherArg, byte[] key, String commandArg)
+			throws IOException {
+		if (!(commandArg.equals("E") || commandArg.equals("D"))) {
+			System.err.println("'" + commandArg
+					+ "' is not a valid argument.\nUse the command 'E' to encypt or 'D' to decrypt text.");
+			return false;
+		}
+		boolean encrypt = commandArg.equals("E");
+		String inputArg = encrypt ? plainArg : cipherArg;
+		String outputArg = encrypt ? cipherArg : plainArg;
+		long written = 0;
+		try (InputStream in = openInput(inputArg); OutputStream out = openOutput(outputArg)) {
+			System.err.println((encrypt ? "Encrypting" : "Decrypting") + " stream from " + inputArg + "...");
+			try (InputStream cipherIn = new BlockCipherInputStream(in, KeyedCipher.of(key), encrypt)) {
+				byte[] buffer = new byte[BlockCipherOutputStream.BUFFER_SIZE];
+				for (int n; (n = cipherIn.read(buffer)) >= 0;) {
+					out.write(buffer, 0, n);
+					written += n;
+				}
+			} catch (IOException e) {
+				// Report the error on standard error, as standard output may be
+				// the data
+				System.err.println("The stream could not be processed: " + e.getMessage());
+				return false;
+			}
+		}
+		System.err.println("Process complete...\n" + written + "B were successfully written to '" + outputArg + "'.");
+		return true;
+	}
+
+	/**
+	 * Opens a file for reading, or standard input for "-". Closing the stream
+	 * of standard input leaves standard input open.
+	 * 
+	 * @param arg
+	 *            contains the filename, or "-"
+	 * @return the input stream
+	 * @throws IOException
+	 *             if the file cannot be opened
+	 */
+	private static InputStream openInput(String arg) throws IOException {
+		if (!arg.equals("-")) {
+			return Files.newInputStream(getPath(arg));
+		}
+		return new FilterInputStream(System.in) {
+			@Override
+			public void close() {
+			}
+		};
+	}
+
+	/**
+	 * Opens a file for writing, or standard output for "-". Closing the stream
+	 * of standard output only flushes it.
+	 * 
+	 * @param arg
+	 *            contains the filename, or "-"
+	 * @return the output stream
+	 * @throws IOException
+	 *             if the file cannot be opened
+	 */
+	private static OutputStream openOutput(String arg) throws IOException {
+		if (!arg.equals("-")) {
+			return Files.newOutputStream(getPath(arg));
+		}
+		return new FilterOutputStream(System.out) {
+			@Override
+			public void write(byte[] b, int off, int len) throws IOException {
+				out.write(b, off, len);
+			}
+
+			@Override
+			public void close() throws IOException {
+				flush();
+			}
+		};
+	}
+
+	/**
+	 * The Main method used for Stage 1, which encrypts or decrypts a file with
+	 * the syntax: java -jar Crypt.jar plain.txt cipher.txt 0xabcd E [threads].
+	 * Without the optional thread count the files are processed in memory;
+	 * with it they are memory-mapped and processed on that many threads (0 for
+	 * one per core). A file name of "-" selects the padded streaming mode on
+	 * standard input or output. Without arguments the Stage 2 attacks are run.
+	 * 
+	 * @param args[]
+	 *            contains the filenames, initial cryptographic key, command and
+	 *            optional thread count
+	 */
+	public static void main(String args[]) {
+		if (args.length == 2 && args[1].equals("H")) {
+			try {
+				runHash(args[0]);
+			} catch (IOException e) {
+				System.out.println("The file '" + args[0] + "' could not be read.");
+			}
+			return;
+		}
+		if (args.length < 4) {
+			runAttacks();
+			return;
+		}
 		try {
-			// Run the block cipher if validateArguments returns true
-			if (validateArguments(args[0], args[1], args[3])) {
+			if (args[0].equals("-") || args[1].equals("-")) {
+				// Stream the data through the block cipher
+				if (!runStreamingCryptography(args[0], args[1], createByteArray(args[2]), args[3])) {
+					System.err.println("Process failed...");
+				}
+			} else if (args.length > 4) {
+				// Run the memory-mapped block cipher on the given thread count
+				if (!runMappedCryptography(args[0], args[1], createByteArray(args[2]), args[3],
+						Integer.parseInt(args[4]))) {
+					System.err.println("Process failed...");
+				}
+			} else if (validateArguments(args[0], args[1], args[3])) {
+				// Run the block cipher if validateArguments returns true
 				blockCipher = new Comp343Cipher(createByteArray(args[2]));
 				runCryptography();
 			} else {
-				System.out.println("Process failed...");
+				System.err.println("Process failed...");
 			}
+		} catch (IOException e) {
+			// A file could not be read, written or mapped, which is not a
+			// problem with the arguments
+			System.err.println("The files could not be processed: " + e.getMessage());
+			System.err.println("Process failed...");
 		} catch (Exception e) {
-		System.out.println(
-				"One or more arguments are invalid...\nUse the syntax: java -jar Crypt.jar plain.txt cipher.txt 0xabcd E");
+			System.out.println(
+					"One or more arguments are invalid...\nUse the syntax: java -jar Crypt.jar plain.txt cipher.txt 0xabcd E [threads]\nor: java -jar Crypt.jar file.txt H");
+		}
+		if (Metrics.ENABLED) {
+			// Report on standard error, as standard output may be the data
+			System.err.println(Metrics.snapshot());
 		}
-	}*/
+	}
 
 	/**
-	 * The Main method used for Stage 2. Random byte arrays are generated to be
+	 * Prints the digest of a file, which is memory-mapped rather than read
+	 * into the heap.
+	 * 
+	 * @param fileArg
+	 *            contains the filename
+	 * @return the 2-byte digest
+	 * @throws IOException
+	 *             if the file cannot be read
+	 */
+	static byte[] runHash(String fileArg) throws IOException {
+		byte[] digest = Comp343Hash.hashFile(getPath(fileArg));
+		System.out.println(BirthdayAttack.toHex(digest) + "  " + fileArg);
+		return digest;
+	}
+
+	/**
+	 * The method used for Stage 2. Random byte arrays are generated to be
 	 * used as parameters for @see Comp343Cipher#compression(byte[] m, byte[] h)
 	 * and random digests are then generated for the exploration of separate
 	 * birthday pre-image cryptographic attacks.
-	 *
-	 * @param args[]
-	 *            contains the filenames, initial cryptographic key and command
-	 *            (Used only in Stage 1)
 	 */
-	public static void main(String args[]) {
+	static void runAttacks() {
 		// Print some information about the program
 		String info = "Welcome to Stage 2 of COMP343 Assignment 1, S1 2016.\n";
 		info += "Author: Joseph Lewis\n";
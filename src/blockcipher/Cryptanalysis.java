@@ -0,0 +1,106 @@
+package blockcipher;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Locale;
+
+/**
+ * Runs the differential and linear analysis of <code>Comp343Cipher</code>:
+ * the DDT and LAT of the S-box and round function from
+ * @see DistributionTables, the best trails of 1 to r rounds from
+ * @see TrailSearch, and the measurement of each best trail over whole
+ * codebooks by @see TrailStatistics.
+ *
+ * The tables are written as CSV to an output directory: sbox-ddt.csv,
+ * sbox-lat.csv, round-ddt.csv and round-lat.csv, trails.csv with every round
+ * of every best trail, and measurements.csv with one row per trail. A summary
+ * is printed.
+ *
+ * @author Joseph Lewis
+ *
+ */
+public class Cryptanalysis {
+
+	/**
+	 * Writes the DDT and LAT of the S-box and round function.
+	 *
+	 * @param directory
+	 *            the output directory, which is created if needed
+	 * @throws IOException
+	 *             if a table cannot be written
+	 */
+	public static void writeTables(Path directory) throws IOException {
+		Files.createDirectories(directory);
+		int[] S = DistributionTables.sbox();
+		int[] F = DistributionTables.roundFunction();
+		writeTable(directory.resolve("sbox-ddt.csv"), DistributionTables.ddt(S));
+		writeTable(directory.resolve("sbox-lat.csv"), DistributionTables.lat(S));
+		writeTable(directory.resolve("round-ddt.csv"), DistributionTables.ddt(F));
+		writeTable(directory.resolve("round-lat.csv"), DistributionTables.lat(F));
+	}
+
+	private static void writeTable(Path file, int[][] table) throws IOException {
+		try (Writer out = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+			DistributionTables.writeCsv(table, out);
+		}
+	}
+
+	/**
+	 * Runs the analysis.
+	 *
+	 * @param args[]
+	 *            optionally contains the number of rounds (default 8), the
+	 *            thread count (default 0, one per core), the number of keys
+	 *            each trail is measured under (default 256) and the output
+	 *            directory (default analysis)
+	 */
+	public static void main(String args[]) throws IOException {
+		int rounds = args.length > 0 ? Integer.parseInt(args[0]) : TrailStatistics.ROUNDS;
+		int threads = args.length > 1 ? Integer.parseInt(args[1]) : 0;
+		int keys = args.length > 2 ? Integer.parseInt(args[2]) : 256;
+		Path directory = Paths.get(args.length > 3 ? args[3] : "analysis");
+		if (rounds < 1 || rounds > TrailStatistics.ROUNDS) {
+			throw new IllegalArgumentException("The rounds must be from 1 to " + TrailStatistics.ROUNDS + ".");
+		}
+
+		writeTables(directory);
+		int[] S = DistributionTables.sbox();
+		int[] F = DistributionTables.roundFunction();
+		System.out.println(String.format(Locale.ROOT,
+				"S-box: differential uniformity %d/16, linearity %d/8 | Round function: differential uniformity %d/256, linearity %d/128",
+				DistributionTables.maxNontrivial(DistributionTables.ddt(S)),
+				DistributionTables.maxNontrivial(DistributionTables.lat(S)),
+				DistributionTables.maxNontrivial(DistributionTables.ddt(F)),
+				DistributionTables.maxNontrivial(DistributionTables.lat(F))));
+
+		TrailStatistics statistics = new TrailStatistics(threads);
+		int[] measured = TrailStatistics.spreadKeys(keys);
+		StringBuilder trails = new StringBuilder(TrailSearch.Trail.CSV_HEADER).append(System.lineSeparator());
+		StringBuilder measurements = new StringBuilder(TrailStatistics.Measurement.CSV_HEADER)
+				.append(System.lineSeparator());
+		for (TrailSearch.Kind kind : TrailSearch.Kind.values()) {
+			TrailSearch search = new TrailSearch(kind, threads);
+			long start = System.nanoTime();
+			search.search(rounds);
+			System.out.println(String.format(Locale.ROOT, "Searched the %s trails of 1 to %d rounds in %.1fms",
+					kind.label, rounds, (System.nanoTime() - start) / 1e6));
+			for (int r = 1; r <= rounds; r++) {
+				TrailSearch.Trail trail = search.search(r);
+				TrailStatistics.Measurement measurement = statistics.measure(trail, measured);
+				trails.append(trail.toCsv());
+				measurements.append(measurement.toCsv()).append(System.lineSeparator());
+				if (r == rounds) {
+					System.out.println(trail);
+					System.out.println(measurement);
+				}
+			}
+		}
+		Files.write(directory.resolve("trails.csv"), trails.toString().getBytes(StandardCharsets.UTF_8));
+		Files.write(directory.resolve("measurements.csv"), measurements.toString().getBytes(StandardCharsets.UTF_8));
+		System.out.println("The tables were written to " + directory.toAbsolutePath());
+	}
+}
@@ -0,0 +1,301 @@
+package blockcipher;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Counter (CTR) mode over <code>Comp343Cipher</code>. The keystream block for
+ * block i of a message is the encryption of the 16-bit counter (iv + i) mod
+ * 2^16, so any range of the keystream can be produced on its own, in parallel
+ * and without touching the rest of the message.
+ * <p>
+ * As the block is only 16 bits, a key has just 2^16 keystream blocks, and a
+ * counter that wrapped around would repeat the keystream from the start of the
+ * message. A message is therefore limited to @see CtrMode#MAX_LENGTH bytes
+ * (128KB), and an instance refuses to encrypt past that point or to encrypt
+ * any position twice. Every keystream block of a key is used by a message of
+ * the maximum length, so a key must only encrypt one message.
+ * 
+ * @author Joseph Lewis
+ *
+ */
+public class CtrMode {
+	// The number of distinct counters, and so of keystream blocks
+	public static final int MAX_BLOCKS = 1 << 16;
+	// The most bytes a message can hold before the counter wraps around
+	public static final long MAX_LENGTH = 2L * MAX_BLOCKS;
+	// Ranges with at least this many bytes are split across the pool
+	static final int PARALLEL_THRESHOLD = 1 << 14;
+
+	private final KeyedCipher cipher;
+	private final int iv;
+	// The position of the next byte to encrypt
+	private long encrypted;
+
+	/**
+	 * Constructor used to create a CTR mode instance.
+	 * 
+	 * @param cipher
+	 *            is the keyed cipher used to encrypt the counters
+	 * @param iv
+	 *            is the 16-bit initial counter
+	 */
+	public CtrMode(KeyedCipher cipher, int iv) {
+		this.cipher = cipher;
+		this.iv = iv & 0xffff;
+	}
+
+	/**
+	 * Getter method that returns the initial counter.
+	 * 
+	 * @return the 16-bit initial counter
+	 */
+	public int getIv() {
+		return iv;
+	}
+
+	/**
+	 * Encrypts the next len bytes of the message, continuing from where the
+	 * previous call stopped.
+	 * 
+	 * @param in
+	 *            the plaintext
+	 * @param off
+	 *            the offset of the first plaintext byte
+	 * @param out
+	 *            the array the ciphertext is written to
+	 * @param outOff
+	 *            the offset of the first ciphertext byte
+	 * @param len
+	 *            the number of bytes
+	 * @throws IllegalStateException
+	 *             if the message would exceed @see CtrMode#MAX_LENGTH bytes, so
+	 *             that the keystream would be reused
+	 */
+	public void encrypt(byte[] in, int off, byte[] out, int outOff, int len) {
+		long position;
+		synchronized (this) {
+			position = encrypted;
+			if (len < 0 || position + len > MAX_LENGTH) {
+				throw new IllegalStateException("The counter would wrap around after " + MAX_LENGTH
+						+ "B, which would reuse the keystream.");
+			}
+			encrypted = position + len;
+		}
+		apply(position, in, off, out, outOff, len);
+	}
+
+	/**
+	 * Decrypts len bytes of the message starting at the given position, at a
+	 * cost proportional to len.
+	 * 
+	 * @param position
+	 *            the position of the first byte in the message
+	 * @param in
+	 *            the ciphertext
+	 * @param off
+	 *            the offset of the first ciphertext byte
+	 * @param out
+	 *            the array the plaintext is written to
+	 * @param outOff
+	 *            the offset of the first plaintext byte
+	 * @param len
+	 *            the number of bytes
+	 */
+	public void decrypt(long position, byte[] in, int off, byte[] out, int outOff, int len) {
+		apply(position, in, off, out, outOff, len);
+	}
+
+	/**
+	 * Decrypts the remaining bytes of src into dst, starting at the given
+	 * position of the message, and advances the position of both buffers.
+	 * Direct buffers are read and written in place, with no copy to the heap
+	 * and one keystream block for each 2-byte block.
+	 * 
+	 * @param position
+	 *            the position of the first byte in the message
+	 * @param src
+	 *            the ciphertext
+	 * @param dst
+	 *            the buffer the plaintext is written to
+	 */
+	public void decrypt(long position, ByteBuffer src, ByteBuffer dst) {
+		int len = src.remaining();
+		checkRange(position, len);
+		if (dst.remaining() < len) {
+			throw new BufferOverflowException();
+		}
+		int p = src.position();
+		int q = dst.position();
+		if (src.hasArray() && dst.hasArray() && !dst.isReadOnly()) {
+			apply(position, src.array(), src.arrayOffset() + p, dst.array(), dst.arrayOffset() + q, len);
+		} else {
+			int i = 0;
+			if ((position & 1) != 0 && len > 0) {
+				// Finish the block the position starts in
+				dst.put(q, (byte) (src.get(p) ^ keystreamBlock(position >>> 1)));
+				i = 1;
+			}
+			for (; i + 1 < len; i += 2) {
+				int ks = keystreamBlock((position + i) >>> 1);
+				byte a = src.get(p + i);
+				byte b = src.get(p + i + 1);
+				dst.put(q + i, (byte) (a ^ (ks >>> 8)));
+				dst.put(q + i + 1, (byte) (b ^ ks));
+			}
+			if (i < len) {
+				dst.put(q + i, (byte) (src.get(p + i) ^ (keystreamBlock((position + i) >>> 1) >>> 8)));
+			}
+		}
+		src.position(p + len);
+		dst.position(q + len);
+	}
+
+	/**
+	 * Writes len bytes of the keystream, starting at the given position of the
+	 * message, into out.
+	 * 
+	 * @param position
+	 *            the position of the first byte in the message
+	 * @param out
+	 *            the array the keystream is written to
+	 * @param outOff
+	 *            the offset of the first keystream byte
+	 * @param len
+	 *            the number of bytes
+	 */
+	public void keystream(long position, byte[] out, int outOff, int len) {
+		checkRange(position, len);
+		run(position, null, 0, out, outOff, len);
+	}
+
+	private void apply(long position, byte[] in, int off, byte[] out, int outOff, int len) {
+		checkRange(position, len);
+		run(position, in, off, out, outOff, len);
+	}
+
+	private void run(long position, byte[] in, int off, byte[] out, int outOff, int len) {
+		if (len >= PARALLEL_THRESHOLD) {
+			ForkJoinPool.commonPool().invoke(new KeystreamTask(position, in, off, out, outOff, len));
+		} else {
+			xorKeystream(position, in, off, out, outOff, len);
+		}
+	}
+
+	/**
+	 * Returns the packed keystream block of block number i of the message.
+	 * 
+	 * @param i
+	 *            the block number
+	 * @return the packed keystream block
+	 */
+	int keystreamBlock(long i) {
+		return cipher.encryptBlock((int) (iv + i) & 0xffff);
+	}
+
+	/**
+	 * Checks that a range lies within the keystream of a single message.
+	 */
+	private static void checkRange(long position, int len) {
+		if (position < 0 || len < 0 || position + len > MAX_LENGTH) {
+			throw new IllegalArgumentException("The range [" + position + ", " + (position + len)
+					+ ") is outside the " + MAX_LENGTH + "B keystream.");
+		}
+	}
+
+	/**
+	 * XORs the keystream from position into len bytes of in, or writes the
+	 * keystream itself when in is null.
+	 */
+	private void xorKeystream(long position, byte[] in, int off, byte[] out, int outOff, int len) {
+		for (int i = 0; i < len;) {
+			long p = position + i;
+			int ks = keystreamBlock(p >>> 1);
+			if ((p & 1) == 0) {
+				out[outOff + i] = (byte) ((in == null ? 0 : in[off + i]) ^ (ks >>> 8));
+				i++;
+				if (i == len) {
+					break;
+				}
+			}
+			out[outOff + i] = (byte) ((in == null ? 0 : in[off + i]) ^ ks);
+			i++;
+		}
+	}
+
+	/**
+	 * A task that splits a range of the keystream in halves until it is small
+	 * enough to run on one thread.
+	 */
+	private class KeystreamTask extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+		private final long position;
+		private final byte[] in;
+		private final int off;
+		private final byte[] out;
+		private final int outOff;
+		private final int len;
+
+		KeystreamTask(long position, byte[] in, int off, byte[] out, int outOff, int len) {
+			this.position = position;
+			this.in = in;
+			this.off = off;
+			this.out = out;
+			this.outOff = outOff;
+			this.len = len;
+		}
+
+		@Override
+		protected void compute() {
+			if (len < PARALLEL_THRESHOLD) {
+				xorKeystream(position, in, off, out, outOff, len);
+				return;
+			}
+			// Split on an even number of bytes, which is a block boundary
+			int half = (len / 2) & ~1;
+			invokeAll(new KeystreamTask(position, in, off, out, outOff, half),
+					new KeystreamTask(position + half, in, off + half, out, outOff + half, len - half));
+		}
+	}
+
+	/**
+	 * Encrypts a file in CTR mode. The output starts with the 2-byte initial
+	 * counter, followed by the ciphertext, which has the same length as the
+	 * plaintext. It can be read back with @see CtrSeekableChannel.
+	 * 
+	 * @param cipher
+	 *            is the keyed cipher
+	 * @param iv
+	 *            is the 16-bit initial counter
+	 * @param input
+	 *            is the plaintext file
+	 * @param output
+	 *            is the ciphertext file
+	 * @throws IOException
+	 *             if a read or write error occurs
+	 * @throws IllegalStateException
+	 *             if the file is longer than @see CtrMode#MAX_LENGTH bytes
+	 */
+	public static void encryptFile(KeyedCipher cipher, int iv, Path input, Path output) throws IOException {
+		if (Files.size(input) > MAX_LENGTH) {
+			throw new IllegalStateException("The file '" + input + "' is longer than the " + MAX_LENGTH
+					+ "B keystream of a key.");
+		}
+		CtrMode ctr = new CtrMode(cipher, iv);
+		byte[] buffer = new byte[BlockCipherOutputStream.BUFFER_SIZE];
+		try (InputStream in = Files.newInputStream(input); OutputStream out = Files.newOutputStream(output)) {
+			out.write(new byte[] { (byte) (iv >>> 8), (byte) iv });
+			for (int n; (n = in.read(buffer)) >= 0;) {
+				ctr.encrypt(buffer, 0, buffer, 0, n);
+				out.write(buffer, 0, n);
+			}
+		}
+	}
+}
@@ -0,0 +1,145 @@
+package blockcipher;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * A JUnit test class for CtrMode and CtrSeekableChannel, which checks round
+ * trips, random-access decryption, the refusal to wrap the counter and reading
+ * records from the middle of an encrypted file.
+ * 
+ * @author Joseph Lewis
+ *
+ */
+public class CtrModeTest {
+	private KeyedCipher cipher = KeyedCipher.of(0xb0b1);
+
+	private static byte[] randomBytes(int len) {
+		byte[] b = new byte[len];
+		new Random(len).nextBytes(b);
+		return b;
+	}
+
+	/**
+	 * Test method for @see {@link CtrMode#encrypt(byte[], int, byte[], int, int)}
+	 * and {@link CtrMode#decrypt(long, byte[], int, byte[], int, int)}.
+	 */
+	@Test
+	public void roundTripTest() {
+		byte[] plain = randomBytes((int) CtrMode.MAX_LENGTH);
+		byte[] encrypted = new byte[plain.length];
+		// Start near the top so the counter wraps within the message
+		CtrMode ctr = new CtrMode(cipher, 0xfff0);
+		ctr.encrypt(plain, 0, encrypted, 0, 1001);
+		ctr.encrypt(plain, 1001, encrypted, 1001, plain.length - 1001);
+		// The first keystream block is the encrypted initial counter
+		int ks = cipher.encryptBlock(0xfff0);
+		assertEquals((byte) (plain[0] ^ (ks >>> 8)), encrypted[0]);
+		assertEquals((byte) (plain[1] ^ ks), encrypted[1]);
+		byte[] decrypted = new byte[plain.length];
+		new CtrMode(cipher, 0xfff0).decrypt(0, encrypted, 0, decrypted, 0, plain.length);
+		assertArrayEquals(plain, decrypted);
+	}
+
+	/**
+	 * Test method for @see {@link CtrMode#decrypt(long, ByteBuffer, ByteBuffer)}
+	 * on direct buffers, in place and from odd positions, against the array
+	 * method.
+	 */
+	@Test
+	public void byteBufferTest() {
+		byte[] encrypted = randomBytes(10001);
+		byte[] expected = new byte[encrypted.length];
+		CtrMode ctr = new CtrMode(cipher, 0xfff0);
+		ctr.decrypt(0, encrypted, 0, expected, 0, encrypted.length);
+		ByteBuffer buffer = ByteBuffer.allocateDirect(encrypted.length);
+		buffer.put(encrypted).flip();
+		for (int from : new int[] { 0, 1, 2, 3, 5000, 5001 }) {
+			for (int to : new int[] { from, from + 1, from + 2, from + 3, 9999, 10000, 10001 }) {
+				ByteBuffer src = buffer.duplicate().position(from).limit(to);
+				ByteBuffer dst = ByteBuffer.allocateDirect(to - from);
+				ctr.decrypt(from, src, dst);
+				assertEquals(to, src.position());
+				assertEquals(to - from, dst.position());
+				for (int i = from; i < to; i++) {
+					assertEquals(expected[i], dst.get(i - from));
+				}
+			}
+		}
+		ctr.decrypt(0, buffer, buffer.duplicate());
+		byte[] actual = new byte[encrypted.length];
+		buffer.flip().get(actual);
+		assertArrayEquals(expected, actual);
+	}
+
+	/**
+	 * Checks that every keystream block of a full-length message is distinct,
+	 * so the keystream is never reused within a message.
+	 */
+	@Test
+	public void keystreamTest() {
+		byte[] keystream = new byte[(int) CtrMode.MAX_LENGTH];
+		new CtrMode(cipher, 0x1234).keystream(0, keystream, 0, keystream.length);
+		boolean[] seen = new boolean[CtrMode.MAX_BLOCKS];
+		for (int i = 0; i < keystream.length; i += 2) {
+			int block = ((keystream[i] & 0xff) << 8) | (keystream[i + 1] & 0xff);
+			assertFalse("Keystream block reused", seen[block]);
+			seen[block] = true;
+		}
+		// A range taken from the middle matches, starting on an odd byte
+		byte[] middle = new byte[777];
+		new CtrMode(cipher, 0x1234).keystream(40001, middle, 0, middle.length);
+		assertArrayEquals(Arrays.copyOfRange(keystream, 40001, 40001 + middle.length), middle);
+	}
+
+	/**
+	 * Test method for @see {@link CtrMode#encrypt(byte[], int, byte[], int, int)}
+	 * past the end of the keystream.
+	 */
+	@Test(expected = IllegalStateException.class)
+	public void wrapAroundTest() {
+		CtrMode ctr = new CtrMode(cipher, 0);
+		byte[] data = new byte[(int) CtrMode.MAX_LENGTH];
+		ctr.encrypt(data, 0, data, 0, data.length);
+		ctr.encrypt(data, 0, data, 0, 1);
+	}
+
+	/**
+	 * Test method for @see {@link CtrSeekableChannel}.
+	 */
+	@Test
+	public void seekableChannelTest() throws IOException {
+		byte[] plain = randomBytes(100001);
+		Path dir = Files.createTempDirectory("ctr");
+		Path plainFile = Files.write(dir.resolve("plain.txt"), plain);
+		Path cipherFile = dir.resolve("cipher.txt");
+		try {
+			CtrMode.encryptFile(cipher, 0xabcd, plainFile, cipherFile);
+			assertEquals(plain.length + CtrSeekableChannel.HEADER_LENGTH, Files.size(cipherFile));
+			try (CtrSeekableChannel channel = new CtrSeekableChannel(cipherFile, cipher)) {
+				assertEquals(plain.length, channel.size());
+				for (int start : new int[] { 0, 1, 54321, 99990 }) {
+					ByteBuffer record = ByteBuffer.allocate(100);
+					channel.position(start).read(record);
+					int n = Math.min(100, plain.length - start);
+					assertEquals(n, record.position());
+					assertArrayEquals(Arrays.copyOfRange(plain, start, start + n),
+							Arrays.copyOf(record.array(), n));
+				}
+				assertEquals(-1, channel.position(plain.length).read(ByteBuffer.allocate(1)));
+			}
+		} finally {
+			Files.deleteIfExists(plainFile);
+			Files.deleteIfExists(cipherFile);
+			Files.delete(dir);
+		}
+	}
+}
@@ -0,0 +1,126 @@
+package blockcipher;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.NonWritableChannelException;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * A read-only <code>SeekableByteChannel</code> over a file written by @see
+ * CtrMode#encryptFile(KeyedCipher, int, Path, Path), which returns the
+ * plaintext. Reading from a position only decrypts the bytes read, so a record
+ * in the middle of a file can be fetched without decrypting from the start.
+ * 
+ * @author Joseph Lewis
+ *
+ */
+public class CtrSeekableChannel implements SeekableByteChannel {
+	// The length of the initial counter at the start of the file
+	static final int HEADER_LENGTH = 2;
+
+	private final FileChannel file;
+	private final CtrMode ctr;
+	private final byte[] buffer = new byte[BlockCipherOutputStream.BUFFER_SIZE];
+	// The position in the plaintext
+	private long position;
+
+	/**
+	 * Constructor used to open an encrypted file for reading.
+	 * 
+	 * @param path
+	 *            is the encrypted file
+	 * @param cipher
+	 *            is the keyed cipher the file was encrypted with
+	 * @throws IOException
+	 *             if the file cannot be read or has no header
+	 */
+	public CtrSeekableChannel(Path path, KeyedCipher cipher) throws IOException {
+		file = FileChannel.open(path, StandardOpenOption.READ);
+		ByteBuffer header = ByteBuffer.allocate(HEADER_LENGTH);
+		while (header.hasRemaining() && file.read(header, header.position()) > 0) {
+		}
+		if (header.hasRemaining()) {
+			file.close();
+			throw new IOException("The file '" + path + "' has no CTR header.");
+		}
+		ctr = new CtrMode(cipher, ((header.get(0) & 0xff) << 8) | (header.get(1) & 0xff));
+	}
+
+	@Override
+	public int read(ByteBuffer dst) throws IOException {
+		checkOpen();
+		long size = size();
+		if (position >= size) {
+			return -1;
+		}
+		int read = 0;
+		while (dst.hasRemaining() && position < size) {
+			int n = (int) Math.min(Math.min(dst.remaining(), buffer.length), size - position);
+			ByteBuffer chunk = ByteBuffer.wrap(buffer, 0, n);
+			while (chunk.hasRemaining()) {
+				if (file.read(chunk, HEADER_LENGTH + position + chunk.position()) < 0) {
+					throw new IOException("The file ended early.");
+				}
+			}
+			ctr.decrypt(position, buffer, 0, buffer, 0, n);
+			dst.put(buffer, 0, n);
+			position += n;
+			read += n;
+		}
+		return read;
+	}
+
+	@Override
+	public int write(ByteBuffer src) {
+		throw new NonWritableChannelException();
+	}
+
+	@Override
+	public long position() throws IOException {
+		checkOpen();
+		return position;
+	}
+
+	@Override
+	public CtrSeekableChannel position(long newPosition) throws IOException {
+		checkOpen();
+		if (newPosition < 0) {
+			throw new IllegalArgumentException("The position cannot be negative.");
+		}
+		position = newPosition;
+		return this;
+	}
+
+	/**
+	 * @return the length of the plaintext
+	 */
+	@Override
+	public long size() throws IOException {
+		return Math.max(0, file.size() - HEADER_LENGTH);
+	}
+
+	@Override
+	public SeekableByteChannel truncate(long size) {
+		throw new NonWritableChannelException();
+	}
+
+	@Override
+	public boolean isOpen() {
+		return file.isOpen();
+	}
+
+	@Override
+	public void close() throws IOException {
+		file.close();
+	}
+
+	private void checkOpen() throws IOException {
+		if (!file.isOpen()) {
+			throw new ClosedChannelException();
+		}
+	}
+}
@@ -0,0 +1,472 @@
+package blockcipher;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.stream.IntStream;
+
+/**
+ * Finds the cycle structure of the permutation <code>Comp343Cipher</code>
+ * makes of the 65,536 blocks under each key: the number of cycles, the fixed
+ * points and the longest cycle, and a histogram of the cycle lengths over all
+ * the keys. Keys whose permutation is an involution, has many fixed points or
+ * has only short cycles are flagged as weak, as encrypting twice, or
+ * iterating the cipher as in OFB mode, then repeats quickly.
+ *
+ * The keys are split between the threads of a ForkJoinPool. Each thread keeps
+ * one @see CycleAnalysis.Walker, holding the codebook, a bitset of the blocks
+ * visited and its share of the histogram, and reuses them for every key it
+ * walks. The codebook is encrypted in bulk by the engine and then walked once,
+ * so a key costs a pass over its 128KB codebook, and the sweep of every key
+ * runs at the speed of the engine and the cache.
+ *
+ * @author Joseph Lewis
+ *
+ */
+public class CycleAnalysis {
+	// The number of blocks, and of keys
+	static final int BLOCKS = 1 << 16;
+	// The keys walked by each task
+	static final int KEYS_PER_TASK = 64;
+	// Keys with at least this many fixed points are flagged
+	public static final int FIXED_POINT_LIMIT = 8;
+	// Keys whose longest cycle is no longer than this are flagged
+	public static final int SHORT_CYCLE_LIMIT = 1 << 12;
+	// The flags of a weak key
+	public static final int INVOLUTION = 1;
+	public static final int FIXED_POINTS = 2;
+	public static final int SHORT_CYCLES = 4;
+	// The first int of the results file, "CYC1"
+	static final int MAGIC = 0x31435943;
+	// Every block in order, as the bytes {L, R} the engines encrypt in bulk
+	private static final byte[] PLAINTEXTS = new byte[2 * BLOCKS];
+
+	static {
+		for (int P = 0; P < BLOCKS; P++) {
+			PLAINTEXTS[2 * P] = (byte) (P >>> 8);
+			PLAINTEXTS[2 * P + 1] = (byte) P;
+		}
+	}
+
+	private final int threads;
+	private final CipherEngine engine;
+
+	/**
+	 * Constructor used to create an analysis with the default engine.
+	 *
+	 * @param threads
+	 *            is the number of worker threads, or 0 for one per core
+	 */
+	public CycleAnalysis(int threads) {
+		this(threads, CipherEngine.getDefault());
+	}
+
+	/**
+	 * Constructor used to create an analysis with the given engine.
+	 *
+	 * @param threads
+	 *            is the number of worker threads, or 0 for one per core
+	 * @param engine
+	 *            is the engine that encrypts each codebook
+	 */
+	public CycleAnalysis(int threads, CipherEngine engine) {
+		if (threads < 0) {
+			throw new IllegalArgumentException("The thread count cannot be negative.");
+		}
+		this.threads = threads == 0 ? Runtime.getRuntime().availableProcessors() : threads;
+		this.engine = engine;
+	}
+
+	/**
+	 * Walks the permutations of every key.
+	 *
+	 * @return the cycle structure of each key and the histogram
+	 */
+	public Result run() {
+		return run(0, BLOCKS);
+	}
+
+	/**
+	 * Walks the permutations of the keys in [from, to).
+	 *
+	 * @param from
+	 *            the first packed key
+	 * @param to
+	 *            the packed key after the last
+	 * @return the cycle structure of each key and the histogram
+	 */
+	public Result run(int from, int to) {
+		if (from < 0 || to > BLOCKS || from >= to) {
+			throw new IllegalArgumentException("The keys must be a non-empty range within 0 to 65536.");
+		}
+		Result result = new Result(from, to - from);
+		List<Walker> walkers = Collections.synchronizedList(new ArrayList<>());
+		ThreadLocal<Walker> walker = ThreadLocal.withInitial(() -> {
+			Walker w = new Walker(engine);
+			walkers.add(w);
+			return w;
+		});
+		ForkJoinPool pool = new ForkJoinPool(threads);
+		try {
+			pool.invoke(new KeyTask(walker, result, from, to));
+		} finally {
+			pool.shutdown();
+		}
+		// The counts are integers, so the sum does not depend on the threads
+		for (Walker w : walkers) {
+			for (int length = 1; length <= BLOCKS; length++) {
+				result.histogram[length] += w.histogram[length];
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * The buffers of one thread, reused for every key it walks, and the cycles
+	 * it has counted.
+	 */
+	static class Walker {
+		private final CipherEngine engine;
+		private final byte[] K = new byte[8];
+		private final byte[] bytes = new byte[2 * BLOCKS];
+		// The ciphertext of each block, as chars to halve the cache it takes
+		private final char[] codebook = new char[BLOCKS];
+		// One bit for each block visited
+		private final long[] visited = new long[BLOCKS / Long.SIZE];
+		// The cycles of each length walked by this thread
+		final long[] histogram = new long[BLOCKS + 1];
+		// The structure of the last permutation walked
+		int cycles;
+		int fixedPoints;
+		int longest;
+
+		Walker(CipherEngine engine) {
+			this.engine = engine;
+		}
+
+		/**
+		 * Encrypts the codebook of a key and walks it.
+		 *
+		 * @param key
+		 *            the packed key
+		 */
+		void walkKey(int key) {
+			long roundKeys = RoundKeyTable.get(key);
+			for (int i = 0; i < 8; i++) {
+				K[i] = (byte) (roundKeys >>> (i << 3));
+			}
+			engine.encryptBlocks(K, PLAINTEXTS, 0, bytes, 0, bytes.length);
+			for (int P = 0; P < BLOCKS; P++) {
+				codebook[P] = (char) (((bytes[2 * P] & 0xff) << 8) | (bytes[2 * P + 1] & 0xff));
+			}
+			walk(codebook);
+		}
+
+		/**
+		 * Walks every cycle of a permutation once, marking each block visited.
+		 *
+		 * @param permutation
+		 *            the image of each of the 65,536 blocks
+		 */
+		void walk(char[] permutation) {
+			Arrays.fill(visited, 0);
+			cycles = 0;
+			fixedPoints = 0;
+			longest = 0;
+			for (int start = 0; start < BLOCKS; start++) {
+				if ((visited[start >>> 6] & (1L << start)) != 0) {
+					continue;
+				}
+				int length = 0;
+				int x = start;
+				do {
+					visited[x >>> 6] |= 1L << x;
+					x = permutation[x];
+					length++;
+				} while (x != start);
+				histogram[length]++;
+				cycles++;
+				fixedPoints += length == 1 ? 1 : 0;
+				longest = Math.max(longest, length);
+			}
+		}
+	}
+
+	/**
+	 * A task that walks the keys in [from, to), splitting the range in halves
+	 * until it is small enough.
+	 */
+	private static class KeyTask extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+		private final ThreadLocal<Walker> walker;
+		private final Result result;
+		private final int from;
+		private final int to;
+
+		KeyTask(ThreadLocal<Walker> walker, Result result, int from, int to) {
+			this.walker = walker;
+			this.result = result;
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		protected void compute() {
+			if (to - from > KEYS_PER_TASK) {
+				int mid = (from + to) >>> 1;
+				invokeAll(new KeyTask(walker, result, from, mid), new KeyTask(walker, result, mid, to));
+				return;
+			}
+			Walker w = walker.get();
+			for (int key = from; key < to; key++) {
+				w.walkKey(key);
+				int k = key - result.firstKey;
+				result.cycles[k] = w.cycles;
+				result.fixedPoints[k] = w.fixedPoints;
+				result.longest[k] = w.longest;
+			}
+		}
+	}
+
+	/**
+	 * The cycle structure of each key of a range, and the number of cycles of
+	 * each length over them all.
+	 */
+	public static class Result {
+		// The bytes of each key's record in the results file
+		static final int RECORD_BYTES = 10;
+		public final int firstKey;
+		private final int[] cycles;
+		private final int[] fixedPoints;
+		private final int[] longest;
+		// The cycles of each length, from 1 to 65,536
+		private final long[] histogram = new long[BLOCKS + 1];
+
+		Result(int firstKey, int keys) {
+			this.firstKey = firstKey;
+			cycles = new int[keys];
+			fixedPoints = new int[keys];
+			longest = new int[keys];
+		}
+
+		public int getKeys() {
+			return cycles.length;
+		}
+
+		/**
+		 * @param key
+		 *            the packed key, within the range walked
+		 * @return the number of cycles of the key's permutation
+		 */
+		public int getCycles(int key) {
+			return cycles[key - firstKey];
+		}
+
+		/**
+		 * @param key
+		 *            the packed key, within the range walked
+		 * @return the number of blocks the key encrypts to themselves
+		 */
+		public int getFixedPoints(int key) {
+			return fixedPoints[key - firstKey];
+		}
+
+		/**
+		 * @param key
+		 *            the packed key, within the range walked
+		 * @return the length of the longest cycle of the key's permutation
+		 */
+		public int getLongest(int key) {
+			return longest[key - firstKey];
+		}
+
+		/**
+		 * Returns why a key is weak.
+		 *
+		 * @param key
+		 *            the packed key, within the range walked
+		 * @return @see CycleAnalysis#INVOLUTION, @see CycleAnalysis#FIXED_POINTS
+		 *         and @see CycleAnalysis#SHORT_CYCLES or'ed together, or 0 if
+		 *         the key is not weak
+		 */
+		public int getFlags(int key) {
+			int k = key - firstKey;
+			int flags = longest[k] <= 2 ? INVOLUTION : 0;
+			flags |= fixedPoints[k] >= FIXED_POINT_LIMIT ? FIXED_POINTS : 0;
+			flags |= longest[k] <= SHORT_CYCLE_LIMIT ? SHORT_CYCLES : 0;
+			return flags;
+		}
+
+		/**
+		 * @return the weak keys, in order
+		 */
+		public int[] getWeakKeys() {
+			return IntStream.range(firstKey, firstKey + cycles.length)
+					.filter(key -> getFlags(key) != 0).toArray();
+		}
+
+		/**
+		 * @param length
+		 *            the cycle length, from 1 to 65,536
+		 * @return the number of cycles of that length over every key
+		 */
+		public long getHistogram(int length) {
+			return histogram[length];
+		}
+
+		/**
+		 * Writes the results as a little-endian binary file: the int "CYC1",
+		 * the first key and the number of keys, then for each key its cycles
+		 * and longest cycle as ints and its fixed points as a short, saturated
+		 * at 65,535, and last the histogram as 65,536 longs for the lengths 1
+		 * to 65,536.
+		 *
+		 * @param file
+		 *            the file, which is replaced
+		 * @throws IOException
+		 *             if the file cannot be written
+		 */
+		public void write(Path file) throws IOException {
+			ByteBuffer buffer = ByteBuffer.allocate(3 * Integer.BYTES + cycles.length * RECORD_BYTES + BLOCKS * Long.BYTES)
+					.order(ByteOrder.LITTLE_ENDIAN);
+			buffer.putInt(MAGIC).putInt(firstKey).putInt(cycles.length);
+			for (int k = 0; k < cycles.length; k++) {
+				buffer.putInt(cycles[k]).putInt(longest[k]).putShort((short) Math.min(fixedPoints[k], 0xffff));
+			}
+			for (int length = 1; length <= BLOCKS; length++) {
+				buffer.putLong(histogram[length]);
+			}
+			Files.write(file, buffer.array());
+		}
+
+		/**
+		 * Reads results written by @see Result#write(Path).
+		 *
+		 * @param file
+		 *            the file
+		 * @return the results
+		 * @throws IOException
+		 *             if the file cannot be read or is not a results file
+		 */
+		public static Result read(Path file) throws IOException {
+			ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(file)).order(ByteOrder.LITTLE_ENDIAN);
+			if (buffer.remaining() < 3 * Integer.BYTES || buffer.getInt() != MAGIC) {
+				throw new IOException("'" + file + "' is not a cycle analysis file.");
+			}
+			int firstKey = buffer.getInt();
+			int keys = buffer.getInt();
+			if (firstKey < 0 || keys < 1 || firstKey + keys > BLOCKS
+					|| buffer.remaining() != keys * RECORD_BYTES + BLOCKS * Long.BYTES) {
+				throw new IOException("'" + file + "' is not a cycle analysis file.");
+			}
+			Result result = new Result(firstKey, keys);
+			for (int k = 0; k < keys; k++) {
+				result.cycles[k] = buffer.getInt();
+				result.longest[k] = buffer.getInt();
+				result.fixedPoints[k] = buffer.getShort() & 0xffff;
+			}
+			for (int length = 1; length <= BLOCKS; length++) {
+				result.histogram[length] = buffer.getLong();
+			}
+			return result;
+		}
+
+		/**
+		 * @return the mean of a per-key count
+		 */
+		private static double mean(int[] counts) {
+			long sum = 0;
+			for (int c : counts) {
+				sum += c;
+			}
+			return (double) sum / counts.length;
+		}
+
+		/**
+		 * Returns a summary of the results: the means of the per-key counts
+		 * against those of a random permutation, the weak keys, and the
+		 * histogram in bins of lengths from 2^i to 2^(i + 1) - 1.
+		 */
+		@Override
+		public String toString() {
+			// A random permutation of N points has on average H(N) cycles, one
+			// fixed point and a longest cycle of about 0.6243 N
+			double harmonic = 0;
+			for (int n = 1; n <= BLOCKS; n++) {
+				harmonic += 1.0 / n;
+			}
+			int[] weak = getWeakKeys();
+			int[] flagged = new int[3];
+			for (int key : weak) {
+				for (int f = 0; f < 3; f++) {
+					flagged[f] += (getFlags(key) >>> f) & 1;
+				}
+			}
+			StringBuilder text = new StringBuilder(String.format(Locale.ROOT,
+					"--- Cycle structure of keys 0x%04x to 0x%04x (%d keys) ---%n"
+							+ "Mean cycles: %.3f (random %.3f) | Mean fixed points: %.3f (random 1) | Mean longest cycle: %.1f (random %.1f)%n"
+							+ "Weak keys: %d | Involutions: %d | %d or more fixed points: %d | No cycle longer than %d: %d",
+					firstKey, firstKey + cycles.length - 1, cycles.length, mean(cycles), harmonic, mean(fixedPoints),
+					mean(longest), 0.6243 * BLOCKS, weak.length, flagged[0], FIXED_POINT_LIMIT, flagged[1],
+					SHORT_CYCLE_LIMIT, flagged[2]));
+			for (int i = 0; i < Math.min(weak.length, 32); i++) {
+				int key = weak[i];
+				text.append(String.format(Locale.ROOT, "%nWeak key 0x%04x: %d cycles, %d fixed points, longest %d",
+						key, getCycles(key), getFixedPoints(key), getLongest(key)));
+			}
+			if (weak.length > 32) {
+				text.append(String.format("%n... and %d more", weak.length - 32));
+			}
+			text.append(String.format("%nCycle lengths | cycles | per key | random"));
+			for (int low = 1; low <= BLOCKS; low <<= 1) {
+				long count = 0;
+				double expected = 0;
+				for (int length = low; length < low << 1 && length <= BLOCKS; length++) {
+					count += histogram[length];
+					// A random permutation has on average 1/l cycles of length l
+					expected += 1.0 / length;
+				}
+				text.append(String.format(Locale.ROOT, "%n%d-%d | %d | %.4f | %.4f", low,
+						Math.min((low << 1) - 1, BLOCKS), count, (double) count / cycles.length, expected));
+			}
+			return text.toString();
+		}
+	}
+
+	/**
+	 * Walks the permutation of every key, or of a range of keys, and writes
+	 * the results to cycles.bin and the summary to cycles.txt.
+	 *
+	 * @param args[]
+	 *            optionally contains the thread count (default 0, one per
+	 *            core), the output directory (default the current directory),
+	 *            and the first and last key in hex (default 0000 and ffff)
+	 */
+	public static void main(String args[]) throws IOException {
+		int threads = args.length > 0 ? Integer.parseInt(args[0]) : 0;
+		Path directory = Paths.get(args.length > 1 ? args[1] : ".");
+		int from = args.length > 2 ? Integer.parseInt(args[2], 16) : 0;
+		int to = args.length > 3 ? Integer.parseInt(args[3], 16) + 1 : BLOCKS;
+		CycleAnalysis analysis = new CycleAnalysis(threads);
+		long start = System.nanoTime();
+		Result result = analysis.run(from, to);
+		double seconds = (System.nanoTime() - start) / 1e9;
+		Files.createDirectories(directory);
+		result.write(directory.resolve("cycles.bin"));
+		String summary = result + String.format(Locale.ROOT, "%nWalked %d keys in %.1fs (%.0f keys/s) on %d threads",
+				result.getKeys(), seconds, result.getKeys() / seconds, analysis.threads);
+		Files.write(directory.resolve("cycles.txt"), (summary + System.lineSeparator()).getBytes(StandardCharsets.UTF_8));
+		System.out.println(summary);
+	}
+}
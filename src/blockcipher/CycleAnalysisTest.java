@@ -0,0 +1,157 @@
+package blockcipher;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.junit.Test;
+
+/**
+ * A JUnit test class to test @see CycleAnalysis.
+ *
+ * @author Joseph Lewis
+ *
+ */
+public class CycleAnalysisTest {
+
+	/**
+	 * Test method for @see CycleAnalysis.Walker#walk(char[]), on the identity,
+	 * an involution and a single cycle.
+	 */
+	@Test
+	public void walkTest() {
+		CycleAnalysis.Walker walker = new CycleAnalysis.Walker(new TableEngine());
+		char[] permutation = new char[1 << 16];
+		for (int x = 0; x < permutation.length; x++) {
+			permutation[x] = (char) x;
+		}
+		walker.walk(permutation);
+		assertEquals(1 << 16, walker.cycles);
+		assertEquals(1 << 16, walker.fixedPoints);
+		assertEquals(1, walker.longest);
+
+		for (int x = 0; x < permutation.length; x++) {
+			permutation[x] = (char) (x ^ 1);
+		}
+		walker.walk(permutation);
+		assertEquals(1 << 15, walker.cycles);
+		assertEquals(0, walker.fixedPoints);
+		assertEquals(2, walker.longest);
+
+		for (int x = 0; x < permutation.length; x++) {
+			permutation[x] = (char) (x + 1);
+		}
+		walker.walk(permutation);
+		assertEquals(1, walker.cycles);
+		assertEquals(1 << 16, walker.longest);
+		assertEquals(1 << 16, walker.histogram[1]);
+		assertEquals(1 << 15, walker.histogram[2]);
+		assertEquals(1, walker.histogram[1 << 16]);
+	}
+
+	/**
+	 * Test method for @see CycleAnalysis#run(int, int), against following the
+	 * cycles of @see Comp343Cipher#encrypt(int, int), and for the weak key 0.
+	 */
+	@Test
+	public void runTest() {
+		CycleAnalysis.Result result = new CycleAnalysis(0).run(0, 4);
+		for (int key = 0; key < 4; key++) {
+			boolean[] visited = new boolean[1 << 16];
+			int cycles = 0;
+			int fixedPoints = 0;
+			int longest = 0;
+			for (int start = 0; start < visited.length; start++) {
+				int length = 0;
+				for (int x = start; !visited[x]; x = Comp343Cipher.encrypt(key, x)) {
+					visited[x] = true;
+					length++;
+				}
+				if (length > 0) {
+					cycles++;
+					fixedPoints += length == 1 ? 1 : 0;
+					longest = Math.max(longest, length);
+				}
+			}
+			assertEquals(cycles, result.getCycles(key));
+			assertEquals(fixedPoints, result.getFixedPoints(key));
+			assertEquals(longest, result.getLongest(key));
+		}
+		// The all-zero key has many fixed points and only short cycles
+		assertEquals(CycleAnalysis.FIXED_POINTS | CycleAnalysis.SHORT_CYCLES, result.getFlags(0));
+		assertArrayEquals(new int[] { 0 }, result.getWeakKeys());
+	}
+
+	/**
+	 * Test method for @see CycleAnalysis#run(int, int), that the results do
+	 * not depend on the thread count or engine, and that the histogram covers
+	 * every block of every key.
+	 */
+	@Test
+	public void threadsTest() {
+		CycleAnalysis.Result expected = new CycleAnalysis(1, new TableEngine()).run(0x1200, 0x1290);
+		CycleAnalysis.Result actual = new CycleAnalysis(3, new BitslicedEngine()).run(0x1200, 0x1290);
+		assertEquals(0x90, actual.getKeys());
+		for (int key = 0x1200; key < 0x1290; key++) {
+			assertEquals(expected.getCycles(key), actual.getCycles(key));
+			assertEquals(expected.getFixedPoints(key), actual.getFixedPoints(key));
+			assertEquals(expected.getLongest(key), actual.getLongest(key));
+		}
+		long blocks = 0;
+		long cycles = 0;
+		for (int length = 1; length <= 1 << 16; length++) {
+			assertEquals(expected.getHistogram(length), actual.getHistogram(length));
+			blocks += length * actual.getHistogram(length);
+			cycles += actual.getHistogram(length);
+		}
+		assertEquals(0x90L << 16, blocks);
+		long sum = 0;
+		for (int key = 0x1200; key < 0x1290; key++) {
+			sum += actual.getCycles(key);
+		}
+		assertEquals(sum, cycles);
+	}
+
+	/**
+	 * Test method for @see CycleAnalysis.Result#write(Path) and @see
+	 * CycleAnalysis.Result#read(Path).
+	 */
+	@Test
+	public void writeReadTest() throws IOException {
+		CycleAnalysis.Result result = new CycleAnalysis(0).run(0xff00, 0xff08);
+		Path file = Files.createTempFile("cycles", ".bin");
+		try {
+			result.write(file);
+			assertEquals(12 + 8 * 10 + 8 * (1 << 16), Files.size(file));
+			CycleAnalysis.Result read = CycleAnalysis.Result.read(file);
+			assertEquals(0xff00, read.firstKey);
+			assertEquals(8, read.getKeys());
+			for (int key = 0xff00; key < 0xff08; key++) {
+				assertEquals(result.getCycles(key), read.getCycles(key));
+				assertEquals(result.getFixedPoints(key), read.getFixedPoints(key));
+				assertEquals(result.getLongest(key), read.getLongest(key));
+				assertEquals(result.getFlags(key), read.getFlags(key));
+			}
+			for (int length = 1; length <= 1 << 16; length++) {
+				assertEquals(result.getHistogram(length), read.getHistogram(length));
+			}
+			assertEquals(result.toString(), read.toString());
+
+			Files.write(file, new byte[] { 'n', 'o', 'p', 'e' });
+			try {
+				CycleAnalysis.Result.read(file);
+				fail("A file that is not a results file was read.");
+			} catch (IOException e) {
+			}
+		} finally {
+			Files.deleteIfExists(file);
+		}
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void rangeTest() {
+		new CycleAnalysis(0).run(5, 5);
+	}
+}
@@ -0,0 +1,26 @@
+package blockcipher;
+
+/**
+ * The Davies-Meyer construction Em(h) ^ h, which keys the cipher with the
+ * message block and feeds the chaining value forward.
+ * 
+ * @author Joseph Lewis
+ *
+ */
+public class DaviesMeyer implements CompressionFunction {
+
+	@Override
+	public int compress(int m, int h) {
+		return Comp343Cipher.encrypt(m, h) ^ h;
+	}
+
+	@Override
+	public void compress(int[] inputs, int inOff, int[] digests, int outOff, int len) {
+		for (int i = 0; i < len; i++) {
+			int x = inputs[inOff + i];
+			int m = x >>> 16;
+			int h = x & 0xffff;
+			digests[outOff + i] = Comp343Cipher.encrypt(m, h) ^ h;
+		}
+	}
+}
@@ -0,0 +1,149 @@
+package blockcipher;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.Writer;
+
+/**
+ * The difference distribution table (DDT) and linear approximation table (LAT)
+ * of the 4-bit @see Sbox and of the 8-bit round function of
+ * <code>Comp343Cipher</code>, y -> rotL(consolidate(S(hi(y)), S(lo(y))), 2).
+ *
+ * DDT[a][b] counts the inputs x with F(x) ^ F(x ^ a) = b. LAT[u][v] is the
+ * number of inputs x with u.x = v.F(x), less half of the inputs, so that the
+ * correlation of the approximation is LAT[u][v] / 2^(n - 1). Each column of
+ * the LAT is one fast Walsh-Hadamard transform of (-1)^(v.F(x)), which takes
+ * n 2^n steps rather than the 2^2n of counting every input mask.
+ *
+ * @author Joseph Lewis
+ *
+ */
+public final class DistributionTables {
+	// The width in bits of the S-box and of the round function
+	public static final int SBOX_BITS = 4;
+	public static final int ROUND_BITS = 8;
+
+	private DistributionTables() {
+	}
+
+	/**
+	 * @return a new array of the outputs of the S-box
+	 */
+	public static int[] sbox() {
+		int[] S = new int[1 << SBOX_BITS];
+		for (int x = 0; x < S.length; x++) {
+			S[x] = Sbox.getOutput(x);
+		}
+		return S;
+	}
+
+	/**
+	 * @return a new array of the outputs of the round function
+	 */
+	public static int[] roundFunction() {
+		int[] F = new int[1 << ROUND_BITS];
+		for (int y = 0; y < F.length; y++) {
+			F[y] = TableEngine.roundFunction(y);
+		}
+		return F;
+	}
+
+	/**
+	 * Computes the difference distribution table of a function.
+	 *
+	 * @param f
+	 *            the outputs of the function, of length 2^n
+	 * @return the table, indexed [input difference][output difference]
+	 */
+	public static int[][] ddt(int[] f) {
+		int size = f.length;
+		int[][] ddt = new int[size][size];
+		for (int a = 0; a < size; a++) {
+			for (int x = 0; x < size; x++) {
+				ddt[a][f[x] ^ f[x ^ a]]++;
+			}
+		}
+		return ddt;
+	}
+
+	/**
+	 * Computes the linear approximation table of a function with one fast
+	 * Walsh-Hadamard transform per output mask.
+	 *
+	 * @param f
+	 *            the outputs of the function, of length 2^n
+	 * @return the table, indexed [input mask][output mask]
+	 */
+	public static int[][] lat(int[] f) {
+		int size = f.length;
+		int[][] lat = new int[size][size];
+		int[] spectrum = new int[size];
+		for (int v = 0; v < size; v++) {
+			for (int x = 0; x < size; x++) {
+				spectrum[x] = parity(v & f[x]) == 0 ? 1 : -1;
+			}
+			WalshHadamard.transform(spectrum);
+			for (int u = 0; u < size; u++) {
+				lat[u][v] = spectrum[u] / 2;
+			}
+		}
+		return lat;
+	}
+
+	/**
+	 * @return the parity of the set bits of x, 0 or 1
+	 */
+	static int parity(int x) {
+		return Integer.bitCount(x) & 1;
+	}
+
+	/**
+	 * Writes a table as CSV, with the column indices in the header row and the
+	 * row index as the first field of each row, both in hex.
+	 *
+	 * @param table
+	 *            the table
+	 * @param out
+	 *            the writer, which is flushed but not closed
+	 * @throws IOException
+	 *             if the table cannot be written
+	 */
+	public static void writeCsv(int[][] table, Writer out) throws IOException {
+		PrintWriter csv = new PrintWriter(out);
+		StringBuilder row = new StringBuilder("in\\out");
+		for (int b = 0; b < table[0].length; b++) {
+			row.append(",0x").append(Integer.toHexString(b));
+		}
+		csv.println(row);
+		for (int a = 0; a < table.length; a++) {
+			row.setLength(0);
+			row.append("0x").append(Integer.toHexString(a));
+			for (int entry : table[a]) {
+				row.append(',').append(entry);
+			}
+			csv.println(row);
+		}
+		csv.flush();
+		if (csv.checkError()) {
+			throw new IOException("The table could not be written.");
+		}
+	}
+
+	/**
+	 * Finds the largest entry of a table outside row and column 0, in absolute
+	 * value, which is the differential or linear uniformity of the function.
+	 *
+	 * @param table
+	 *            the DDT or LAT
+	 * @return the largest absolute entry
+	 */
+	public static int maxNontrivial(int[][] table) {
+		int max = 0;
+		for (int a = 1; a < table.length; a++) {
+			for (int b = 1; b < table[a].length; b++) {
+				max = Math.max(max, Math.abs(table[a][b]));
+			}
+		}
+		return max;
+	}
+}
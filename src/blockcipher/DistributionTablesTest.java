@@ -0,0 +1,107 @@
+package blockcipher;
+
+import static org.junit.Assert.*;
+
+import java.io.StringWriter;
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * A JUnit test class to test @see DistributionTables and @see WalshHadamard.
+ *
+ * @author Joseph Lewis
+ *
+ */
+public class DistributionTablesTest {
+
+	/**
+	 * Test method for @see WalshHadamard#transform(int[]), against the sum it
+	 * computes and its own inverse.
+	 */
+	@Test
+	public void transformTest() {
+		Random random = new Random(343);
+		int[] f = new int[64];
+		for (int x = 0; x < f.length; x++) {
+			f[x] = random.nextInt(201) - 100;
+		}
+		int[] W = f.clone();
+		WalshHadamard.transform(W);
+		for (int u = 0; u < f.length; u++) {
+			int sum = 0;
+			for (int x = 0; x < f.length; x++) {
+				sum += DistributionTables.parity(u & x) == 0 ? f[x] : -f[x];
+			}
+			assertEquals(sum, W[u]);
+		}
+		WalshHadamard.transform(W);
+		for (int x = 0; x < f.length; x++) {
+			assertEquals(f[x] * f.length, W[x]);
+		}
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void transformLengthTest() {
+		WalshHadamard.transform(new int[12]);
+	}
+
+	/**
+	 * Test method for @see DistributionTables#ddt(int[]), on the S-box and the
+	 * round function.
+	 */
+	@Test
+	public void ddtTest() {
+		for (int[] f : new int[][] { DistributionTables.sbox(), DistributionTables.roundFunction() }) {
+			int[][] ddt = DistributionTables.ddt(f);
+			// A zero difference always gives a zero difference
+			assertEquals(f.length, ddt[0][0]);
+			for (int a = 0; a < f.length; a++) {
+				int sum = 0;
+				for (int entry : ddt[a]) {
+					// Inputs come in pairs x, x ^ a
+					assertEquals(0, entry % 2);
+					sum += entry;
+				}
+				assertEquals(f.length, sum);
+			}
+		}
+		// The S-box has differential uniformity 4, and the round function is
+		// the S-box applied to both nibbles, so its best entry is 16 * 4
+		assertEquals(4, DistributionTables.maxNontrivial(DistributionTables.ddt(DistributionTables.sbox())));
+		assertEquals(64, DistributionTables.maxNontrivial(DistributionTables.ddt(DistributionTables.roundFunction())));
+	}
+
+	/**
+	 * Test method for @see DistributionTables#lat(int[]), against counting
+	 * every input for every pair of masks.
+	 */
+	@Test
+	public void latTest() {
+		for (int[] f : new int[][] { DistributionTables.sbox(), DistributionTables.roundFunction() }) {
+			int[][] lat = DistributionTables.lat(f);
+			for (int u = 0; u < f.length; u++) {
+				for (int v = 0; v < f.length; v++) {
+					int count = 0;
+					for (int x = 0; x < f.length; x++) {
+						count += DistributionTables.parity((u & x) ^ (v & f[x])) ^ 1;
+					}
+					assertEquals(count - f.length / 2, lat[u][v]);
+				}
+			}
+			assertEquals(f.length / 2, lat[0][0]);
+		}
+	}
+
+	/**
+	 * Test method for @see DistributionTables#writeCsv(int[][],
+	 * java.io.Writer).
+	 */
+	@Test
+	public void writeCsvTest() throws Exception {
+		StringWriter out = new StringWriter();
+		DistributionTables.writeCsv(new int[][] { { 2, 0 }, { 0, -2 } }, out);
+		String[] lines = out.toString().split("\\R");
+		assertArrayEquals(new String[] { "in\\out,0x0,0x1", "0x0,2,0", "0x1,0,-2" }, lines);
+	}
+}
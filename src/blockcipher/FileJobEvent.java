@@ -0,0 +1,34 @@
+package blockcipher;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * A Flight Recorder event for a whole file encrypted or decrypted, recorded
+ * by @see Metrics#fileJob(FileJobEvent, long, String, long, long, int).
+ *
+ * @author Joseph Lewis
+ *
+ */
+@Name("blockcipher.FileJob")
+@Label("File Job")
+@Category("Block Cipher")
+@Description("A file encrypted or decrypted by the block cipher")
+class FileJobEvent extends jdk.jfr.Event {
+	@Label("Operation")
+	String operation;
+
+	@Label("Bytes In")
+	@DataAmount
+	long bytesIn;
+
+	@Label("Bytes Out")
+	@DataAmount
+	long bytesOut;
+
+	@Label("Threads")
+	int threads;
+}
@@ -0,0 +1,278 @@
+package blockcipher;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Recovers the key of Comp343Cipher from known (plaintext, ciphertext) block
+ * pairs by trying all 65,536 keys. The key space is split into slices that run
+ * on a ForkJoin pool. Each key's round keys are loaded from @see
+ * RoundKeyTable, without going through <code>loadKey</code> or @see
+ * Permutation#keySchedule(byte[]). Every key is filtered with the first pair,
+ * and the survivors are confirmed with the remaining pairs.
+ *
+ * @author Joseph Lewis
+ *
+ */
+public class KeyRecovery {
+	// The number of keys in the key space
+	static final int KEYS = 1 << 16;
+	// The number of keys each task tries before reporting its progress
+	static final int SLICE = 1 << 10;
+	// The most distinct pairs taken from a file, far more than are needed to
+	// single out one key
+	static final int MAX_PAIRS = 16;
+
+	/**
+	 * Receives the progress of a search. It is called from the worker threads,
+	 * so it must be thread-safe.
+	 */
+	public interface ProgressListener {
+		/**
+		 * @param keysTried
+		 *            is the number of keys tried so far
+		 * @param totalKeys
+		 *            is the number of keys in the key space
+		 * @param elapsedNanos
+		 *            is the time since the search started
+		 */
+		void progress(long keysTried, long totalKeys, long elapsedNanos);
+	}
+
+	private final int threads;
+	private final boolean findAll;
+	private final ProgressListener listener;
+
+	/**
+	 * Constructor used to create a key recovery engine that finds every
+	 * consistent key, on one thread per core and without progress reports.
+	 */
+	public KeyRecovery() {
+		this(0, true, null);
+	}
+
+	/**
+	 * Constructor used to create a key recovery engine.
+	 *
+	 * @param threads
+	 *            is the number of worker threads, or 0 for one per core
+	 * @param findAll
+	 *            is true to find every consistent key and false to stop at the
+	 *            first one
+	 * @param listener
+	 *            receives the progress after each slice of keys, or null
+	 */
+	public KeyRecovery(int threads, boolean findAll, ProgressListener listener) {
+		if (threads < 0) {
+			throw new IllegalArgumentException("The thread count cannot be negative.");
+		}
+		this.threads = threads == 0 ? Runtime.getRuntime().availableProcessors() : threads;
+		this.findAll = findAll;
+		this.listener = listener;
+	}
+
+	/**
+	 * Finds the keys that encrypt every plaintext block to its ciphertext block.
+	 *
+	 * @param plain
+	 *            are the packed plaintext blocks (L << 8) | R
+	 * @param cipher
+	 *            are the packed ciphertext blocks, in the same order
+	 * @return the consistent packed keys (k[0] << 8) | k[1] in ascending order;
+	 *         at most one when stopping at the first key
+	 */
+	public int[] recover(int[] plain, int[] cipher) {
+		if (plain.length != cipher.length || plain.length == 0) {
+			throw new IllegalArgumentException("There must be at least one pair, and as many ciphertexts as plaintexts.");
+		}
+		final int[] p = plain.clone();
+		final int[] c = cipher.clone();
+		// Every task writes only the flags of its own keys
+		final boolean[] consistent = new boolean[KEYS];
+		AttackPhaseEvent event = new AttackPhaseEvent();
+		event.begin();
+		final Search search = new Search(p, c, consistent);
+		ForkJoinPool pool = new ForkJoinPool(threads);
+		try {
+			pool.invoke(new SliceTask(search, 0, KEYS));
+		} finally {
+			pool.shutdown();
+		}
+		int count = 0;
+		int[] keys = new int[KEYS];
+		for (int k = 0; k < KEYS; k++) {
+			if (consistent[k]) {
+				keys[count++] = k;
+			}
+		}
+		Metrics.attackPhase(event, "key-recovery", "exhaustive", count, 0, threads);
+		return Arrays.copyOf(keys, findAll ? count : Math.min(count, 1));
+	}
+
+	/**
+	 * Finds the keys of a ciphertext produced by Crypt, whose plaintext starts
+	 * with a known prefix. Every file format of Crypt encrypts the plaintext
+	 * blocks in order from the start of the file, so the prefix gives one pair
+	 * per whole block.
+	 *
+	 * @param knownPrefix
+	 *            is the start of the plaintext, of at least 2 bytes
+	 * @param ciphertext
+	 *            is the start of the ciphertext, at least as long as the prefix
+	 * @return the consistent packed keys in ascending order
+	 */
+	public int[] recover(byte[] knownPrefix, byte[] ciphertext) {
+		int blocks = Math.min(knownPrefix.length, ciphertext.length) / 2;
+		if (blocks == 0) {
+			throw new IllegalArgumentException("The prefix and ciphertext must hold at least one whole block.");
+		}
+		// Repeated blocks say nothing new, so keep only the distinct pairs
+		int[] plain = new int[MAX_PAIRS];
+		int[] cipher = new int[MAX_PAIRS];
+		int pairs = 0;
+		for (int i = 0; i < blocks && pairs < MAX_PAIRS; i++) {
+			int P = ((knownPrefix[2 * i] & 0xff) << 8) | (knownPrefix[2 * i + 1] & 0xff);
+			int C = ((ciphertext[2 * i] & 0xff) << 8) | (ciphertext[2 * i + 1] & 0xff);
+			boolean seen = false;
+			for (int j = 0; j < pairs && !seen; j++) {
+				seen = plain[j] == P;
+			}
+			if (!seen) {
+				plain[pairs] = P;
+				cipher[pairs++] = C;
+			}
+		}
+		return recover(Arrays.copyOf(plain, pairs), Arrays.copyOf(cipher, pairs));
+	}
+
+	/**
+	 * Finds the keys of a ciphertext file produced by Crypt, reading only as
+	 * much of the file as the known prefix covers.
+	 *
+	 * @param knownPrefix
+	 *            is the start of the plaintext, of at least 2 bytes
+	 * @param cipherFile
+	 *            is the ciphertext file
+	 * @return the consistent packed keys in ascending order
+	 * @throws IOException
+	 *             if the file cannot be read
+	 */
+	public int[] recover(byte[] knownPrefix, Path cipherFile) throws IOException {
+		// A few kilobytes of prefix hold enough distinct blocks
+		int length = Math.min(knownPrefix.length, 1 << 12) & ~1;
+		byte[] ciphertext = new byte[length];
+		int read = 0;
+		try (InputStream in = Files.newInputStream(cipherFile)) {
+			for (int n; read < length && (n = in.read(ciphertext, read, length - read)) > 0;) {
+				read += n;
+			}
+		}
+		return recover(knownPrefix, Arrays.copyOf(ciphertext, read));
+	}
+
+	/**
+	 * The shared state of one search.
+	 */
+	private class Search {
+		final int[] plain;
+		final int[] cipher;
+		final boolean[] consistent;
+		final AtomicLong tried = new AtomicLong();
+		final long start = System.nanoTime();
+		// Set once a key is found when stopping at the first one
+		volatile boolean done;
+
+		Search(int[] plain, int[] cipher, boolean[] consistent) {
+			this.plain = plain;
+			this.cipher = cipher;
+			this.consistent = consistent;
+		}
+	}
+
+	/**
+	 * A task that tries the keys in [from, to), splitting the range in halves
+	 * until it fits in a slice.
+	 */
+	private class SliceTask extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+		private final Search search;
+		private final int from;
+		private final int to;
+
+		SliceTask(Search search, int from, int to) {
+			this.search = search;
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		protected void compute() {
+			if (search.done) {
+				return;
+			}
+			if (to - from > SLICE) {
+				int middle = (from + to) >>> 1;
+				invokeAll(new SliceTask(search, from, middle), new SliceTask(search, middle, to));
+				return;
+			}
+			int[] plain = search.plain;
+			int[] cipher = search.cipher;
+			int P = plain[0];
+			int C = cipher[0];
+			for (int k = from; k < to; k++) {
+				// Filter with the first pair, then confirm with the rest
+				if (Comp343Cipher.encrypt(k, P) != C) {
+					continue;
+				}
+				int i = 1;
+				while (i < plain.length && Comp343Cipher.encrypt(k, plain[i]) == cipher[i]) {
+					i++;
+				}
+				if (i == plain.length) {
+					search.consistent[k] = true;
+					if (!findAll) {
+						search.done = true;
+						break;
+					}
+				}
+			}
+			long tried = search.tried.addAndGet(to - from);
+			if (listener != null) {
+				listener.progress(tried, KEYS, System.nanoTime() - search.start);
+			}
+		}
+	}
+
+	/**
+	 * Audits ciphertext files produced by Crypt for a known plaintext prefix,
+	 * printing the consistent keys of each file.
+	 *
+	 * @param args[]
+	 *            contains the known plaintext prefix followed by the ciphertext
+	 *            files
+	 */
+	public static void main(String args[]) throws IOException {
+		if (args.length < 2) {
+			System.out.println("Use the syntax: java blockcipher.KeyRecovery \"known prefix\" cipher.txt...");
+			return;
+		}
+		byte[] prefix = args[0].getBytes();
+		KeyRecovery recovery = new KeyRecovery(0, true, null);
+		for (int i = 1; i < args.length; i++) {
+			long start = System.nanoTime();
+			int[] keys = recovery.recover(prefix, Crypt.getPath(args[i]));
+			StringBuilder line = new StringBuilder(args[i] + ":");
+			for (int key : keys) {
+				line.append(String.format(" 0x%04x", key));
+			}
+			double seconds = (System.nanoTime() - start) / 1e9;
+			System.out.println(line + String.format(" (%d keys, %.0f keys/s)", keys.length, KEYS / seconds));
+		}
+	}
+}
@@ -0,0 +1,93 @@
+package blockcipher;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.Test;
+
+/**
+ * A JUnit test class for KeyRecovery, which checks the recovered keys against
+ * a plain search over every key with Comp343Cipher.
+ * 
+ * @author Joseph Lewis
+ *
+ */
+public class KeyRecoveryTest {
+
+	/**
+	 * Test method for @see {@link KeyRecovery#recover(int[], int[])}.
+	 */
+	@Test
+	public void recoverTest() {
+		KeyedCipher keyed = KeyedCipher.of(0xabcd);
+		int[] plain = { 0x6162, 0x6364, 0x6566 };
+		int[] cipher = new int[plain.length];
+		for (int i = 0; i < plain.length; i++) {
+			cipher[i] = keyed.encryptBlock(plain[i]);
+		}
+		// One pair leaves every key that maps the block the same way
+		int[] expected = new int[KeyRecovery.KEYS];
+		int count = 0;
+		for (int k = 0; k < KeyRecovery.KEYS; k++) {
+			if (KeyedCipher.of(k).encryptBlock(plain[0]) == cipher[0]) {
+				expected[count++] = k;
+			}
+		}
+		assertArrayEquals(Arrays.copyOf(expected, count),
+				new KeyRecovery(2, true, null).recover(new int[] { plain[0] }, new int[] { cipher[0] }));
+		int[] keys = new KeyRecovery().recover(plain, cipher);
+		assertTrue(Arrays.binarySearch(keys, 0xabcd) >= 0);
+		for (int key : keys) {
+			for (int i = 0; i < plain.length; i++) {
+				assertEquals(cipher[i], KeyedCipher.of(key).encryptBlock(plain[i]));
+			}
+		}
+	}
+
+	/**
+	 * Checks the early exit and the progress reports.
+	 */
+	@Test
+	public void firstKeyTest() {
+		int[] plain = { 0x0102, 0x0304, 0x0506, 0x0708 };
+		int[] cipher = new int[plain.length];
+		for (int i = 0; i < plain.length; i++) {
+			cipher[i] = KeyedCipher.of(0x1234).encryptBlock(plain[i]);
+		}
+		AtomicLong reported = new AtomicLong();
+		KeyRecovery recovery = new KeyRecovery(1, false, (tried, total, nanos) -> {
+			assertEquals(KeyRecovery.KEYS, total);
+			reported.accumulateAndGet(tried, Math::max);
+		});
+		int[] keys = recovery.recover(plain, cipher);
+		assertEquals(1, keys.length);
+		assertEquals(cipher[3], KeyedCipher.of(keys[0]).encryptBlock(plain[3]));
+		// A single thread stops at the slice holding the key
+		assertTrue(reported.get() < KeyRecovery.KEYS);
+	}
+
+	/**
+	 * Test method for @see {@link KeyRecovery#recover(byte[], Path)} on a file
+	 * encrypted by Crypt.
+	 */
+	@Test
+	public void fileTest() throws IOException {
+		byte[] plain = "Dear all, the meeting moves to Tuesday at noon.".getBytes();
+		byte[] padded = Arrays.copyOf(plain, plain.length + plain.length % 2);
+		byte[] encrypted = new byte[padded.length];
+		KeyedCipher.of(0x0f0e).encrypt(padded, 0, encrypted, 0, padded.length);
+		Path file = Files.createTempFile("cipher", ".txt");
+		try {
+			Files.write(file, encrypted);
+			int[] keys = new KeyRecovery().recover("Dear all, the".getBytes(), file);
+			assertTrue(Arrays.binarySearch(keys, 0x0f0e) >= 0);
+		} finally {
+			Files.delete(file);
+		}
+	}
+}
@@ -0,0 +1,184 @@
+package blockcipher;
+
+import java.nio.ByteBuffer;
+
+/**
+ * An immutable <code>Comp343Cipher</code> bound to a single key. The round keys
+ * are computed once, when the instance is created, and there is no mutable
+ * per-call state, so one instance can be shared between any number of
+ * threads. As the key is fixed, @see KeyedCipher#loadKey(byte[]) and @see
+ * KeyedCipher#deleteKey() always fail.
+ * 
+ * @author Joseph Lewis
+ *
+ */
+public final class KeyedCipher implements Cipher {
+	// Declare the 16-bit key, packed as (k[0] << 8) | k[1]
+	private final int key;
+	// Declare the 8 round keys, which are never exposed
+	private final byte[] K;
+	// Declare the engine that runs the Feistel rounds
+	private final CipherEngine engine;
+	// Declare the codebook of the key, or null to run the engine
+	private final Codebook codebook;
+
+	private KeyedCipher(int key, CipherEngine engine, Codebook codebook) {
+		this.key = key & 0xffff;
+		this.K = RoundKeyTable.keySchedule(key);
+		this.engine = engine;
+		this.codebook = codebook;
+		Metrics.keyLoaded();
+	}
+
+	/**
+	 * Creates a cipher for the key that runs the default engine.
+	 * 
+	 * @param k
+	 *            is the 2-byte key
+	 * @return the keyed cipher
+	 */
+	public static KeyedCipher of(byte[] k) {
+		return of(((k[0] & 0xff) << 8) | (k[1] & 0xff));
+	}
+
+	/**
+	 * Creates a cipher for the key that runs the default engine.
+	 * 
+	 * @param key
+	 *            is the 16-bit key, packed as (k[0] << 8) | k[1]
+	 * @return the keyed cipher
+	 */
+	public static KeyedCipher of(int key) {
+		return of(key, CipherEngine.getDefault());
+	}
+
+	/**
+	 * Creates a cipher for the key that runs the given engine, which must be
+	 * safe to share between threads.
+	 * 
+	 * @param key
+	 *            is the 16-bit key, packed as (k[0] << 8) | k[1]
+	 * @param engine
+	 *            is the engine used to encrypt and decrypt blocks
+	 * @return the keyed cipher
+	 */
+	public static KeyedCipher of(int key, CipherEngine engine) {
+		return new KeyedCipher(key, engine, null);
+	}
+
+	/**
+	 * Creates a cipher for the key that encrypts and decrypts through the full
+	 * codebook, taken from the cache.
+	 * 
+	 * @param key
+	 *            is the 16-bit key, packed as (k[0] << 8) | k[1]
+	 * @param cache
+	 *            is the cache the codebook is taken from
+	 * @return the keyed cipher
+	 */
+	public static KeyedCipher withCodebook(int key, CodebookCache cache) {
+		CipherEngine engine = new TableEngine();
+		return new KeyedCipher(key, engine, cache.get(key, engine));
+	}
+
+	/**
+	 * The key of a keyed cipher cannot be changed.
+	 * 
+	 * @return false
+	 */
+	public boolean loadKey(byte[] k) {
+		return false;
+	}
+
+	/**
+	 * The key of a keyed cipher cannot be deleted.
+	 * 
+	 * @return false
+	 */
+	public boolean deleteKey() {
+		return false;
+	}
+
+	/**
+	 * Getter method that returns the key of the cipher.
+	 * 
+	 * @return the 16-bit key
+	 */
+	public int getKey() {
+		return key;
+	}
+
+	/**
+	 * Encrypt a packed block (L << 8) | R.
+	 * 
+	 * @param block
+	 *            the packed block of plaintext
+	 * @return the packed block of ciphertext
+	 */
+	public int encryptBlock(int block) {
+		Metrics.encrypted(1);
+		return codebook != null ? codebook.encryptBlock(block) : engine.encryptBlock(K, block);
+	}
+
+	/**
+	 * Decrypt a packed block (L << 8) | R, matching @see
+	 * Comp343Cipher#decryptBlock(int).
+	 * 
+	 * @param block
+	 *            the packed block of ciphertext
+	 * @return the packed block of plaintext
+	 */
+	public int decryptBlock(int block) {
+		Metrics.decrypted(1);
+		return codebook != null ? codebook.decryptBlock(block) : engine.decryptBlock(K, block);
+	}
+
+	/**
+	 * Decrypt a packed block of ciphertext from @see
+	 * KeyedCipher#encryptBlock(int) back to its plaintext, matching @see
+	 * Comp343Cipher#decryptInverse(int).
+	 * 
+	 * @param block
+	 *            the packed block of ciphertext
+	 * @return the packed block of plaintext
+	 */
+	public int decryptInverse(int block) {
+		return Codebook.swap(decryptBlock(Codebook.swap(block)));
+	}
+
+	public byte[] encrypt(byte[] block) {
+		int C = encryptBlock(((block[0] & 0xff) << 8) | (block[1] & 0xff));
+		return new byte[] { (byte) (C >>> 8), (byte) C };
+	}
+
+	public byte[] decrypt(byte[] block) {
+		int P = decryptBlock(((block[0] & 0xff) << 8) | (block[1] & 0xff));
+		return new byte[] { (byte) (P >>> 8), (byte) P };
+	}
+
+	@Override
+	public byte[] decryptInverse(byte[] block) {
+		int P = decryptInverse(((block[0] & 0xff) << 8) | (block[1] & 0xff));
+		return new byte[] { (byte) (P >>> 8), (byte) P };
+	}
+
+	@Override
+	public void encrypt(byte[] in, int inOff, byte[] out, int outOff, int len) {
+		BulkBlocks.encrypt(engine, K, codebook, in, inOff, out, outOff, len);
+	}
+
+	@Override
+	public void decrypt(byte[] in, int inOff, byte[] out, int outOff, int len) {
+		BulkBlocks.decrypt(engine, K, codebook, in, inOff, out, outOff, len);
+	}
+
+	@Override
+	public void encrypt(ByteBuffer src, ByteBuffer dst) {
+		BulkBlocks.encrypt(engine, K, codebook, src, dst);
+	}
+
+	@Override
+	public void decrypt(ByteBuffer src, ByteBuffer dst) {
+		BulkBlocks.decrypt(engine, K, codebook, src, dst);
+	}
+}
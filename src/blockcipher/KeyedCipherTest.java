@@ -0,0 +1,104 @@
+package blockcipher;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.Test;
+
+/**
+ * A JUnit test class for KeyedCipher, which checks it against Comp343Cipher
+ * and hammers single shared instances from every core, comparing the results
+ * with single-threaded output.
+ * 
+ * @author Joseph Lewis
+ *
+ */
+public class KeyedCipherTest {
+
+	/**
+	 * Test method for @see {@link KeyedCipher#encrypt(byte[])} and @see
+	 * {@link KeyedCipher#decrypt(byte[])}.
+	 */
+	@Test
+	public void matchesComp343CipherTest() {
+		for (int k = 0; k < 0x10000; k += 0x0f0f) {
+			byte[] key = { (byte) (k >>> 8), (byte) k };
+			Comp343Cipher blockCipher = new Comp343Cipher(key);
+			KeyedCipher keyed = KeyedCipher.of(key);
+			for (int block = 0; block < 0x10000; block += 0x33) {
+				byte[] b = { (byte) (block >>> 8), (byte) block };
+				assertArrayEquals(blockCipher.encrypt(b), keyed.encrypt(b));
+				assertArrayEquals(blockCipher.decrypt(b), keyed.decrypt(b));
+			}
+		}
+	}
+
+	/**
+	 * Test method for @see {@link KeyedCipher#loadKey(byte[])} and @see
+	 * {@link KeyedCipher#deleteKey()}.
+	 */
+	@Test
+	public void immutableKeyTest() {
+		KeyedCipher keyed = KeyedCipher.of(0xb0b1);
+		assertFalse(keyed.loadKey(new byte[] { 1, 2 }));
+		assertFalse(keyed.deleteKey());
+		assertEquals(0xb0b1, keyed.getKey());
+	}
+
+	/**
+	 * Shares each kind of keyed cipher between as many threads as there are
+	 * cores.
+	 */
+	@Test
+	public void concurrentStressTest() throws Exception {
+		stress(KeyedCipher.of(0xb0b1));
+		stress(KeyedCipher.of(0xabcd, new ReferenceEngine()));
+		stress(KeyedCipher.withCodebook(0xfc39, new CodebookCache(1)));
+	}
+
+	private void stress(final KeyedCipher keyed) throws Exception {
+		final int threads = Math.max(4, Runtime.getRuntime().availableProcessors());
+		final byte[] plain = new byte[1 << 14];
+		new Random(keyed.getKey()).nextBytes(plain);
+		// The expected output is computed on this thread
+		final byte[] expected = new byte[plain.length];
+		for (int i = 0; i < plain.length; i += 2) {
+			System.arraycopy(keyed.encrypt(new byte[] { plain[i], plain[i + 1] }), 0, expected, i, 2);
+		}
+		ExecutorService pool = Executors.newFixedThreadPool(threads);
+		try {
+			List<Future<Boolean>> results = new ArrayList<Future<Boolean>>();
+			for (int t = 0; t < threads; t++) {
+				results.add(pool.submit(new Callable<Boolean>() {
+					public Boolean call() {
+						byte[] out = new byte[plain.length];
+						byte[] back = new byte[plain.length];
+						for (int run = 0; run < 50; run++) {
+							// Constructing an S-box used to replace the shared table
+							new Sbox();
+							keyed.encrypt(plain, 0, out, 0, out.length);
+							keyed.decrypt(out, 0, back, 0, back.length);
+							if (!Arrays.equals(expected, out) || !Arrays.equals(plain, back)) {
+								return false;
+							}
+						}
+						return true;
+					}
+				}));
+			}
+			for (Future<Boolean> result : results) {
+				assertTrue("A thread saw different output", result.get());
+			}
+		} finally {
+			pool.shutdown();
+		}
+	}
+}
@@ -0,0 +1,140 @@
+package blockcipher;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A thread-safe histogram of latencies in nanoseconds with log-linear buckets,
+ * in the manner of HdrHistogram: values below 64 have a bucket each, and every
+ * power of two above is split into 32 buckets, so any recorded value is known
+ * to within about 3% from 1ns to the largest long. The 1888 buckets take 15KB
+ * and recording a value never allocates.
+ *
+ * @author Joseph Lewis
+ *
+ */
+public class LatencyHistogram {
+	// The number of buckets of each power of two, as a power of two
+	static final int SUB_BITS = 5;
+	// Values below this have a bucket each
+	static final int LINEAR = 2 << SUB_BITS;
+	static final int BUCKETS = LINEAR + (63 - (SUB_BITS + 1)) * (1 << SUB_BITS);
+
+	private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+	private final LongAdder count = new LongAdder();
+	private final LongAdder sum = new LongAdder();
+	private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+
+	/**
+	 * The bucket of a value.
+	 *
+	 * @param value
+	 *            the non-negative value
+	 * @return the index of its bucket
+	 */
+	static int bucket(long value) {
+		if (value < LINEAR) {
+			return (int) value;
+		}
+		int exponent = 63 - Long.numberOfLeadingZeros(value);
+		int sub = (int) (value >>> (exponent - SUB_BITS)) & ((1 << SUB_BITS) - 1);
+		return LINEAR + ((exponent - SUB_BITS - 1) << SUB_BITS) + sub;
+	}
+
+	/**
+	 * The smallest value of a bucket.
+	 *
+	 * @param bucket
+	 *            the index of the bucket
+	 * @return its lowest value
+	 */
+	static long lowest(int bucket) {
+		if (bucket < LINEAR) {
+			return bucket;
+		}
+		int exponent = ((bucket - LINEAR) >>> SUB_BITS) + SUB_BITS + 1;
+		long sub = (1 << SUB_BITS) + ((bucket - LINEAR) & ((1 << SUB_BITS) - 1));
+		return sub << (exponent - SUB_BITS);
+	}
+
+	/**
+	 * Records a value. Negative values are recorded as 0.
+	 *
+	 * @param nanos
+	 *            the latency in nanoseconds
+	 */
+	public void record(long nanos) {
+		long value = Math.max(nanos, 0);
+		counts.incrementAndGet(bucket(value));
+		count.increment();
+		sum.add(value);
+		max.accumulate(value);
+	}
+
+	/**
+	 * @return the number of values recorded
+	 */
+	public long getCount() {
+		return count.sum();
+	}
+
+	/**
+	 * @return the largest value recorded, or 0
+	 */
+	public long getMax() {
+		return max.get();
+	}
+
+	/**
+	 * @return the mean of the values recorded, or 0
+	 */
+	public double getMean() {
+		long n = count.sum();
+		return n == 0 ? 0 : (double) sum.sum() / n;
+	}
+
+	/**
+	 * Returns the value below which the given percentage of the recorded values
+	 * fall, as the highest value of its bucket, but no more than the maximum.
+	 *
+	 * @param percentile
+	 *            the percentage, from 0 to 100
+	 * @return the value at the percentile, or 0 when nothing is recorded
+	 */
+	public long getValueAtPercentile(double percentile) {
+		long n = count.sum();
+		if (n == 0) {
+			return 0;
+		}
+		long rank = Math.max(1, (long) Math.ceil(Math.min(percentile, 100) / 100 * n));
+		long seen = 0;
+		for (int b = 0; b < BUCKETS; b++) {
+			seen += counts.get(b);
+			if (seen >= rank) {
+				long highest = b + 1 < BUCKETS ? lowest(b + 1) - 1 : Long.MAX_VALUE;
+				return Math.min(highest, getMax());
+			}
+		}
+		return getMax();
+	}
+
+	/**
+	 * Clears the histogram. Values recorded while it is cleared may be kept in
+	 * part.
+	 */
+	public void reset() {
+		for (int b = 0; b < BUCKETS; b++) {
+			counts.set(b, 0);
+		}
+		count.reset();
+		sum.reset();
+		max.reset();
+	}
+
+	@Override
+	public String toString() {
+		return String.format("Count: %d | Mean: %.3f ms | p50: %.3f ms | p99: %.3f ms | Max: %.3f ms", getCount(),
+				getMean() / 1e6, getValueAtPercentile(50) / 1e6, getValueAtPercentile(99) / 1e6, getMax() / 1e6);
+	}
+}
@@ -0,0 +1,298 @@
+package blockcipher;
+
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+/**
+ * The runtime metrics of the cipher: counters of the blocks encrypted and
+ * decrypted, the bytes read and written by file jobs, the keys loaded and the
+ * codebook cache lookups, and a @see LatencyHistogram of the file jobs.
+ *
+ * The metrics are off unless the JVM is started with -Dblockcipher.metrics=true.
+ * The switch is a static final, so when it is off the JIT removes every call
+ * site. When it is on, the counters are LongAdders, which threads update
+ * without contention, and the bulk methods count once per call rather than
+ * once per block. The metrics are then registered over JMX as
+ * blockcipher:type=Metrics, and -Dblockcipher.metrics.report=seconds prints a
+ * @see Metrics#snapshot() to standard error at that period.
+ *
+ * The Flight Recorder events @see FileJobEvent and @see AttackPhaseEvent are
+ * committed whenever a recording enables them, whatever the switch.
+ *
+ * @author Joseph Lewis
+ *
+ */
+public final class Metrics implements MetricsMXBean {
+	// Whether the counters and histogram are updated
+	public static final boolean ENABLED = Boolean.getBoolean("blockcipher.metrics");
+	// The name the metrics are registered under
+	public static final String OBJECT_NAME = "blockcipher:type=Metrics";
+
+	static final LongAdder BLOCKS_ENCRYPTED = new LongAdder();
+	static final LongAdder BLOCKS_DECRYPTED = new LongAdder();
+	static final LongAdder BYTES_IN = new LongAdder();
+	static final LongAdder BYTES_OUT = new LongAdder();
+	static final LongAdder KEYS_LOADED = new LongAdder();
+	static final LongAdder CODEBOOK_HITS = new LongAdder();
+	static final LongAdder CODEBOOK_MISSES = new LongAdder();
+	static final LatencyHistogram FILE_JOBS = new LatencyHistogram();
+
+	private static final Metrics INSTANCE = new Metrics();
+
+	static {
+		if (ENABLED) {
+			try {
+				ManagementFactory.getPlatformMBeanServer().registerMBean(INSTANCE, new ObjectName(OBJECT_NAME));
+			} catch (JMException e) {
+				System.err.println("The metrics could not be registered: " + e.getMessage());
+			}
+			long period = Long.getLong("blockcipher.metrics.report", 0);
+			if (period > 0) {
+				startReporter(period, System.err);
+			}
+		}
+	}
+
+	private Metrics() {
+	}
+
+	/**
+	 * Getter method that returns the metrics as a management bean.
+	 *
+	 * @return the metrics
+	 */
+	public static Metrics get() {
+		return INSTANCE;
+	}
+
+	/**
+	 * Counts blocks encrypted.
+	 *
+	 * @param blocks
+	 *            the number of 2-byte blocks
+	 */
+	static void encrypted(long blocks) {
+		if (ENABLED) {
+			BLOCKS_ENCRYPTED.add(blocks);
+		}
+	}
+
+	/**
+	 * Counts blocks decrypted.
+	 *
+	 * @param blocks
+	 *            the number of 2-byte blocks
+	 */
+	static void decrypted(long blocks) {
+		if (ENABLED) {
+			BLOCKS_DECRYPTED.add(blocks);
+		}
+	}
+
+	/**
+	 * Counts a key loaded and its round keys computed.
+	 */
+	static void keyLoaded() {
+		if (ENABLED) {
+			KEYS_LOADED.increment();
+		}
+	}
+
+	/**
+	 * Counts a codebook cache lookup.
+	 *
+	 * @param hit
+	 *            whether the codebook was in the cache
+	 */
+	static void codebookLookup(boolean hit) {
+		if (ENABLED) {
+			(hit ? CODEBOOK_HITS : CODEBOOK_MISSES).increment();
+		}
+	}
+
+	/**
+	 * Returns the start time of a file job, or 0 when the metrics are off.
+	 *
+	 * @return the time in nanoseconds
+	 */
+	static long start() {
+		return ENABLED ? System.nanoTime() : 0;
+	}
+
+	/**
+	 * Records a finished file job: its bytes and latency, and its event when
+	 * Flight Recorder is recording it.
+	 *
+	 * @param event
+	 *            the event begun with the job
+	 * @param start
+	 *            the time returned by @see Metrics#start()
+	 * @param operation
+	 *            the name of the operation, such as "encrypt"
+	 * @param bytesIn
+	 *            the bytes read
+	 * @param bytesOut
+	 *            the bytes written
+	 * @param threads
+	 *            the number of threads of the job
+	 */
+	static void fileJob(FileJobEvent event, long start, String operation, long bytesIn, long bytesOut, int threads) {
+		if (ENABLED) {
+			FILE_JOBS.record(System.nanoTime() - start);
+			BYTES_IN.add(bytesIn);
+			BYTES_OUT.add(bytesOut);
+		}
+		if (event.shouldCommit()) {
+			event.operation = operation;
+			event.bytesIn = bytesIn;
+			event.bytesOut = bytesOut;
+			event.threads = threads;
+			event.commit();
+		}
+	}
+
+	/**
+	 * Commits the event of a finished attack phase when Flight Recorder is
+	 * recording it.
+	 *
+	 * @param event
+	 *            the event begun with the phase
+	 * @param attack
+	 *            the name of the attack
+	 * @param phase
+	 *            the name of the phase
+	 * @param results
+	 *            the collisions, pre-images or keys found
+	 * @param trials
+	 *            the evaluations made, or 0 when not counted
+	 * @param threads
+	 *            the number of threads of the phase
+	 */
+	static void attackPhase(AttackPhaseEvent event, String attack, String phase, long results, long trials,
+			int threads) {
+		if (event.shouldCommit()) {
+			event.attack = attack;
+			event.phase = phase;
+			event.results = results;
+			event.trials = trials;
+			event.threads = threads;
+			event.commit();
+		}
+	}
+
+	/**
+	 * Prints a snapshot of the metrics at a fixed period on a daemon thread.
+	 *
+	 * @param periodSeconds
+	 *            the period in seconds
+	 * @param out
+	 *            the stream printed to
+	 * @return the scheduler, which can be shut down to stop the reports
+	 */
+	public static ScheduledExecutorService startReporter(long periodSeconds, PrintStream out) {
+		ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+			Thread thread = new Thread(r, "blockcipher-metrics");
+			thread.setDaemon(true);
+			return thread;
+		});
+		scheduler.scheduleAtFixedRate(() -> out.println(snapshot()), periodSeconds, periodSeconds, TimeUnit.SECONDS);
+		return scheduler;
+	}
+
+	/**
+	 * Returns the metrics as text, one line for the counters and one for the
+	 * file jobs.
+	 *
+	 * @return the snapshot
+	 */
+	public static String snapshot() {
+		return "Blocks encrypted: " + BLOCKS_ENCRYPTED.sum() + " | Blocks decrypted: " + BLOCKS_DECRYPTED.sum()
+				+ " | Bytes in: " + BYTES_IN.sum() + " | Bytes out: " + BYTES_OUT.sum() + " | Keys loaded: "
+				+ KEYS_LOADED.sum() + " | Codebook hits: " + CODEBOOK_HITS.sum() + " | Codebook misses: "
+				+ CODEBOOK_MISSES.sum() + "\nFile jobs: " + FILE_JOBS;
+	}
+
+	@Override
+	public long getBlocksEncrypted() {
+		return BLOCKS_ENCRYPTED.sum();
+	}
+
+	@Override
+	public long getBlocksDecrypted() {
+		return BLOCKS_DECRYPTED.sum();
+	}
+
+	@Override
+	public long getBytesIn() {
+		return BYTES_IN.sum();
+	}
+
+	@Override
+	public long getBytesOut() {
+		return BYTES_OUT.sum();
+	}
+
+	@Override
+	public long getKeysLoaded() {
+		return KEYS_LOADED.sum();
+	}
+
+	@Override
+	public long getCodebookHits() {
+		return CODEBOOK_HITS.sum();
+	}
+
+	@Override
+	public long getCodebookMisses() {
+		return CODEBOOK_MISSES.sum();
+	}
+
+	@Override
+	public long getFileJobs() {
+		return FILE_JOBS.getCount();
+	}
+
+	@Override
+	public double getFileJobMeanMillis() {
+		return FILE_JOBS.getMean() / 1e6;
+	}
+
+	@Override
+	public double getFileJobP50Millis() {
+		return FILE_JOBS.getValueAtPercentile(50) / 1e6;
+	}
+
+	@Override
+	public double getFileJobP99Millis() {
+		return FILE_JOBS.getValueAtPercentile(99) / 1e6;
+	}
+
+	@Override
+	public double getFileJobMaxMillis() {
+		return FILE_JOBS.getMax() / 1e6;
+	}
+
+	@Override
+	public String getSnapshot() {
+		return snapshot();
+	}
+
+	/**
+	 * Clears every counter and the histogram.
+	 */
+	@Override
+	public void reset() {
+		for (LongAdder adder : new LongAdder[] { BLOCKS_ENCRYPTED, BLOCKS_DECRYPTED, BYTES_IN, BYTES_OUT, KEYS_LOADED,
+				CODEBOOK_HITS, CODEBOOK_MISSES }) {
+			adder.reset();
+		}
+		FILE_JOBS.reset();
+	}
+}
@@ -0,0 +1,39 @@
+package blockcipher;
+
+/**
+ * The management interface of @see Metrics, registered under
+ * blockcipher:type=Metrics.
+ *
+ * @author Joseph Lewis
+ *
+ */
+public interface MetricsMXBean {
+
+	long getBlocksEncrypted();
+
+	long getBlocksDecrypted();
+
+	long getBytesIn();
+
+	long getBytesOut();
+
+	long getKeysLoaded();
+
+	long getCodebookHits();
+
+	long getCodebookMisses();
+
+	long getFileJobs();
+
+	double getFileJobMeanMillis();
+
+	double getFileJobP50Millis();
+
+	double getFileJobP99Millis();
+
+	double getFileJobMaxMillis();
+
+	String getSnapshot();
+
+	void reset();
+}
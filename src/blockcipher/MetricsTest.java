@@ -0,0 +1,163 @@
+package blockcipher;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Assume;
+import org.junit.Test;
+
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+
+/**
+ * A JUnit test class for Metrics, LatencyHistogram and the Flight Recorder
+ * events.
+ * 
+ * @author Joseph Lewis
+ *
+ */
+public class MetricsTest {
+
+	/**
+	 * Checks that every value falls in its bucket and that buckets are within
+	 * about 3% of their values.
+	 */
+	@Test
+	public void bucketTest() {
+		Random random = new Random(343);
+		for (int i = 0; i < 100000; i++) {
+			long value = random.nextLong() >>> (1 + random.nextInt(63));
+			int b = LatencyHistogram.bucket(value);
+			assertTrue(b >= 0 && b < LatencyHistogram.BUCKETS);
+			assertTrue(LatencyHistogram.lowest(b) <= value);
+			if (b + 1 < LatencyHistogram.BUCKETS) {
+				assertTrue(value < LatencyHistogram.lowest(b + 1));
+			}
+			assertTrue(value - LatencyHistogram.lowest(b) <= value / 32);
+		}
+		assertEquals(LatencyHistogram.BUCKETS - 1, LatencyHistogram.bucket(Long.MAX_VALUE));
+	}
+
+	/**
+	 * Test method for the count, mean, maximum and percentiles.
+	 */
+	@Test
+	public void percentileTest() {
+		LatencyHistogram histogram = new LatencyHistogram();
+		assertEquals(0, histogram.getValueAtPercentile(99));
+		for (long v = 1; v <= 1000; v++) {
+			histogram.record(v * 1000);
+		}
+		assertEquals(1000, histogram.getCount());
+		assertEquals(1000000, histogram.getMax());
+		assertEquals(500500, histogram.getMean(), 1e-6);
+		assertEquals(500000, histogram.getValueAtPercentile(50), 500000 / 32);
+		assertEquals(990000, histogram.getValueAtPercentile(99), 990000 / 32);
+		assertEquals(1000000, histogram.getValueAtPercentile(100));
+		histogram.reset();
+		assertEquals(0, histogram.getCount());
+		assertEquals(0, histogram.getMax());
+	}
+
+	/**
+	 * Checks that the snapshot names every metric.
+	 */
+	@Test
+	public void snapshotTest() {
+		String snapshot = Metrics.snapshot();
+		for (String name : new String[] { "Blocks encrypted", "Blocks decrypted", "Bytes in", "Bytes out",
+				"Keys loaded", "Codebook hits", "Codebook misses", "File jobs" }) {
+			assertTrue(name, snapshot.contains(name + ": "));
+		}
+		assertEquals(snapshot, Metrics.get().getSnapshot());
+	}
+
+	/**
+	 * Checks the counters after a bulk encrypt, a codebook miss and hit, and a
+	 * file job. The counters are only updated when the JVM is started with
+	 * -Dblockcipher.metrics=true, as in the metrics execution of the build, so
+	 * the test is skipped otherwise.
+	 */
+	@Test
+	public void counterTest() throws IOException {
+		Assume.assumeTrue(Metrics.ENABLED);
+		KeyedCipher keyed = KeyedCipher.of(0xabcd);
+		long encrypted = Metrics.BLOCKS_ENCRYPTED.sum();
+		keyed.encrypt(new byte[64], 0, new byte[64], 0, 64);
+		assertEquals(32, Metrics.BLOCKS_ENCRYPTED.sum() - encrypted);
+
+		long hits = Metrics.CODEBOOK_HITS.sum();
+		long misses = Metrics.CODEBOOK_MISSES.sum();
+		CodebookCache cache = new CodebookCache(1);
+		cache.get(0x1234, new TableEngine());
+		assertEquals(1, Metrics.CODEBOOK_MISSES.sum() - misses);
+		assertEquals(0, Metrics.CODEBOOK_HITS.sum() - hits);
+		cache.get(0x1234, new TableEngine());
+		assertEquals(1, Metrics.CODEBOOK_HITS.sum() - hits);
+
+		Path plain = Files.createTempFile("metrics", ".txt");
+		Path cipher = Files.createTempFile("metrics", ".bin");
+		try {
+			Files.write(plain, new byte[1001]);
+			long in = Metrics.BYTES_IN.sum();
+			long out = Metrics.BYTES_OUT.sum();
+			long jobs = Metrics.FILE_JOBS.getCount();
+			new ParallelFileCipher(keyed, 2).encrypt(plain, cipher);
+			assertEquals(1001, Metrics.BYTES_IN.sum() - in);
+			assertEquals(1002, Metrics.BYTES_OUT.sum() - out);
+			assertEquals(1, Metrics.FILE_JOBS.getCount() - jobs);
+		} finally {
+			Files.delete(plain);
+			Files.delete(cipher);
+		}
+	}
+
+	/**
+	 * Checks that a file job and an attack phase are recorded by Flight
+	 * Recorder.
+	 */
+	@Test
+	public void eventTest() throws IOException {
+		Path plain = Files.createTempFile("metrics", ".txt");
+		Path cipher = Files.createTempFile("metrics", ".bin");
+		Path dump = Files.createTempFile("metrics", ".jfr");
+		try (Recording recording = new Recording()) {
+			recording.enable("blockcipher.FileJob");
+			recording.enable("blockcipher.AttackPhase");
+			recording.start();
+			Files.write(plain, new byte[1001]);
+			new ParallelFileCipher(KeyedCipher.of(0xabcd), 2).encrypt(plain, cipher);
+			new BirthdayAttack(343).findCollisions(3);
+			recording.stop();
+			recording.dump(dump);
+			List<RecordedEvent> events = RecordingFile.readAllEvents(dump);
+			boolean job = false;
+			boolean phase = false;
+			for (RecordedEvent event : events) {
+				if (event.getEventType().getName().equals("blockcipher.FileJob")) {
+					assertEquals("encrypt", event.getString("operation"));
+					assertEquals(1001, event.getLong("bytesIn"));
+					assertEquals(1002, event.getLong("bytesOut"));
+					assertEquals(2, event.getInt("threads"));
+					job = true;
+				} else if (event.getEventType().getName().equals("blockcipher.AttackPhase")) {
+					assertEquals("birthday", event.getString("attack"));
+					assertEquals(3, event.getLong("results"));
+					assertTrue(event.getLong("trials") >= 6);
+					phase = true;
+				}
+			}
+			assertTrue(job && phase);
+		} finally {
+			Files.delete(plain);
+			Files.delete(cipher);
+			Files.delete(dump);
+		}
+	}
+}
@@ -0,0 +1,174 @@
+package blockcipher;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Encrypts or decrypts a file by mapping the input and output with
+ * <code>FileChannel.map</code> and splitting them into block-aligned chunks that
+ * are processed on a ForkJoin pool. Only one chunk of each file is mapped per
+ * task, so the heap use stays flat whatever the file size, and the output file
+ * is never read. The files are laid out exactly as in @see
+ * Crypt#runCryptography(): odd-length plaintext is padded with a zero byte, and
+ * the blocks of odd-length ciphertext are aligned to the end of the file.
+ * 
+ * @author Joseph Lewis
+ *
+ */
+public class ParallelFileCipher {
+	// The size of the chunk each task maps and processes, a whole number of
+	// blocks
+	static final int CHUNK_SIZE = 1 << 20;
+
+	private final Cipher cipher;
+	private final int threads;
+
+	/**
+	 * Constructor used to create a file cipher.
+	 * 
+	 * @param cipher
+	 *            is the keyed cipher, which must be safe to share between
+	 *            threads, such as a @see KeyedCipher
+	 * @param threads
+	 *            is the number of worker threads, or 0 for one per core
+	 */
+	public ParallelFileCipher(Cipher cipher, int threads) {
+		if (threads < 0) {
+			throw new IllegalArgumentException("The thread count cannot be negative.");
+		}
+		this.cipher = cipher;
+		this.threads = threads == 0 ? Runtime.getRuntime().availableProcessors() : threads;
+	}
+
+	/**
+	 * Encrypts the input file into the output file, which is created or
+	 * truncated.
+	 * 
+	 * @param input
+	 *            is the plaintext file
+	 * @param output
+	 *            is the ciphertext file
+	 * @return the number of bytes written
+	 * @throws IOException
+	 *             if a read or write error occurs
+	 */
+	public long encrypt(Path input, Path output) throws IOException {
+		return run(input, output, true);
+	}
+
+	/**
+	 * Decrypts the input file into the output file, which is created or
+	 * truncated.
+	 * 
+	 * @param input
+	 *            is the ciphertext file
+	 * @param output
+	 *            is the plaintext file
+	 * @return the number of bytes written
+	 * @throws IOException
+	 *             if a read or write error occurs
+	 */
+	public long decrypt(Path input, Path output) throws IOException {
+		return run(input, output, false);
+	}
+
+	private long run(Path input, Path output, final boolean encrypt) throws IOException {
+		FileJobEvent event = new FileJobEvent();
+		event.begin();
+		long start = Metrics.start();
+		try (FileChannel in = FileChannel.open(input, StandardOpenOption.READ);
+				FileChannel out = FileChannel.open(output, StandardOpenOption.CREATE, StandardOpenOption.READ,
+						StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+			final long length = in.size();
+			final boolean odd = (length & 1) == 1;
+			// Odd plaintext gains a padding byte, while odd ciphertext keeps its
+			// length with the leading byte left as zero
+			final long outLength = encrypt && odd ? length + 1 : length;
+			if (outLength == 0) {
+				return 0;
+			}
+			// Size the output up front so every task can map its own chunk
+			out.write(ByteBuffer.wrap(new byte[1]), outLength - 1);
+			// The range of whole blocks that can be mapped directly
+			long from = !encrypt && odd ? 1 : 0;
+			long to = encrypt && odd ? length - 1 : length;
+			ForkJoinPool pool = new ForkJoinPool(threads);
+			try {
+				pool.invoke(new ChunkTask(in, out, encrypt, from, to));
+			} catch (UncheckedIOException e) {
+				throw e.getCause();
+			} finally {
+				pool.shutdown();
+			}
+			if (encrypt && odd) {
+				// Pad the final byte of plaintext with a zero byte
+				ByteBuffer last = ByteBuffer.allocate(2);
+				in.read(last, length - 1);
+				last.clear();
+				out.write(encryptedBlock(last), length - 1);
+			}
+			Metrics.fileJob(event, start, encrypt ? "encrypt" : "decrypt", length, outLength, threads);
+			return outLength;
+		}
+	}
+
+	private ByteBuffer encryptedBlock(ByteBuffer block) {
+		ByteBuffer result = ByteBuffer.allocate(2);
+		cipher.encrypt(block, result);
+		result.flip();
+		return result;
+	}
+
+	/**
+	 * A task that processes the whole blocks in [from, to), splitting the range
+	 * in halves until it fits in a chunk.
+	 */
+	private class ChunkTask extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+		private final FileChannel in;
+		private final FileChannel out;
+		private final boolean encrypt;
+		private final long from;
+		private final long to;
+
+		ChunkTask(FileChannel in, FileChannel out, boolean encrypt, long from, long to) {
+			this.in = in;
+			this.out = out;
+			this.encrypt = encrypt;
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		protected void compute() {
+			long length = to - from;
+			if (length > CHUNK_SIZE) {
+				// Split on a chunk boundary, which is also a block boundary
+				long middle = from + (length / CHUNK_SIZE / 2) * CHUNK_SIZE;
+				if (middle == from) {
+					middle += CHUNK_SIZE;
+				}
+				invokeAll(new ChunkTask(in, out, encrypt, from, middle), new ChunkTask(in, out, encrypt, middle, to));
+				return;
+			}
+			try {
+				MappedByteBuffer src = in.map(FileChannel.MapMode.READ_ONLY, from, length);
+				MappedByteBuffer dst = out.map(FileChannel.MapMode.READ_WRITE, from, length);
+				if (encrypt) {
+					cipher.encrypt(src, dst);
+				} else {
+					cipher.decrypt(src, dst);
+				}
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		}
+	}
+}
@@ -0,0 +1,64 @@
+package blockcipher;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * A JUnit test class for ParallelFileCipher, which checks that the mapped,
+ * multi-threaded file encryption produces the same files as the in-memory
+ * bulk encryption used by Crypt, for odd and even lengths and files spanning
+ * several chunks.
+ * 
+ * @author Joseph Lewis
+ *
+ */
+public class ParallelFileCipherTest {
+	private byte key[] = { (byte) 0xab, (byte) 0xcd };
+
+	/**
+	 * Test method for @see {@link ParallelFileCipher#encrypt(Path, Path)} and
+	 * {@link ParallelFileCipher#decrypt(Path, Path)}.
+	 */
+	@Test
+	public void roundTripTest() throws IOException {
+		int[] lengths = { 0, 1, 2, 3, 1000, 1001, ParallelFileCipher.CHUNK_SIZE * 3 + 5,
+				ParallelFileCipher.CHUNK_SIZE * 2 };
+		for (int length : lengths) {
+			for (int threads : new int[] { 1, 4 }) {
+				roundTrip(length, threads);
+			}
+		}
+	}
+
+	private void roundTrip(int length, int threads) throws IOException {
+		Path dir = Files.createTempDirectory("crypt");
+		try {
+			byte[] plain = new byte[length];
+			new Random(length).nextBytes(plain);
+			Path plainFile = Files.write(dir.resolve("plain.txt"), plain);
+			Path cipherFile = dir.resolve("cipher.txt");
+			Path decryptedFile = dir.resolve("decrypted.txt");
+			// The expected ciphertext pads odd plaintext with a zero byte
+			byte[] padded = Arrays.copyOf(plain, length + length % 2);
+			byte[] expected = new byte[padded.length];
+			new Comp343Cipher(key).encrypt(padded, 0, expected, 0, padded.length);
+			ParallelFileCipher fileCipher = new ParallelFileCipher(KeyedCipher.of(key), threads);
+			assertEquals(expected.length, fileCipher.encrypt(plainFile, cipherFile));
+			assertArrayEquals(expected, Files.readAllBytes(cipherFile));
+			fileCipher.decrypt(cipherFile, decryptedFile);
+			assertArrayEquals(padded, Files.readAllBytes(decryptedFile));
+		} finally {
+			for (String name : new String[] { "plain.txt", "cipher.txt", "decrypted.txt" }) {
+				Files.deleteIfExists(dir.resolve(name));
+			}
+			Files.delete(dir);
+		}
+	}
+}
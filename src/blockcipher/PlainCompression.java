@@ -0,0 +1,22 @@
+package blockcipher;
+
+/**
+ * The construction of @see Comp343Cipher#compression(byte[], byte[]), Eh(m),
+ * which keys the cipher with the chaining value. For every h it is a
+ * permutation of m, so a pre-image is just m = Dh(d).
+ * 
+ * @author Joseph Lewis
+ *
+ */
+public class PlainCompression implements CompressionFunction {
+
+	@Override
+	public int compress(int m, int h) {
+		return Comp343Cipher.compress(m, h);
+	}
+
+	@Override
+	public void compress(int[] inputs, int inOff, int[] digests, int outOff, int len) {
+		Comp343Cipher.compress(inputs, inOff, digests, outOff, len);
+	}
+}
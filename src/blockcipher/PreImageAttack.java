@@ -15,10 +15,8 @@ import java.util.Random;
  */
 public class PreImageAttack {
 
-	private Comp343Cipher bc;
 	private byte[] message = new byte[2];
 	private byte[] chaining_value = new byte[2];
-	private byte[] digest = new byte[2];
 	private byte[] targetDigest;
 
 	private int passAvg;
@@ -33,7 +31,6 @@ public class PreImageAttack {
 	 *            found with
 	 */
 	public PreImageAttack(byte[] H) {
-		bc = new Comp343Cipher();
 		targetDigest = H;
 		passAvg = 0;
 		find100Collisions();
@@ -44,18 +41,26 @@ public class PreImageAttack {
 	 * generated from the block given as a parameter in the constructor.
 	 */
 	public void find100Collisions() {
+		AttackPhaseEvent event = new AttackPhaseEvent();
+		event.begin();
+		long trials = 0;
 		ArrayList<Integer> attempts = new ArrayList<Integer>();
 		int passes = 0;
 		int most = -1;
 		int least = -1;
 		System.out.println("Printing the next 100 collisions with digest " + BirthdayAttack.toHex(targetDigest) + ".");
+		int target = ((targetDigest[0] & 0xff) << 8) | (targetDigest[1] & 0xff);
+		Random random = new Random();
 		while (attempts.size() < 100) {
-			new Random().nextBytes(message);
-			new Random().nextBytes(chaining_value);
-			// Generate a new digest
-			digest = bc.compression(message, chaining_value);
+			// Draw m and h in one go as the packed input (m << 16) | h
+			int x = random.nextInt();
+			passes++;
 			// If a collision has been found...
-			if (BirthdayAttack.toHex(digest).equals(BirthdayAttack.toHex(targetDigest))) {
+			if (Comp343Cipher.compress(x >>> 16, x & 0xffff) == target) {
+				message[0] = (byte) (x >>> 24);
+				message[1] = (byte) (x >>> 16);
+				chaining_value[0] = (byte) (x >>> 8);
+				chaining_value[1] = (byte) x;
 				System.out.println(
 						BirthdayAttack.toHex(message) + " " + BirthdayAttack.toHex(chaining_value) + "\ncollision");
 				// Track the most and least attempts for a collision
@@ -65,18 +70,18 @@ public class PreImageAttack {
 				if (least == -1 || passes < least) {
 					least = passes;
 				}
-				attempts.add(passes);
 				// Store the attempt where the collision was made
 				attempts.add(passes);
+				trials += passes;
 				passes = 0;
 			}
-			passes++;
 		}
 		// Calculate the average attempts
 		for (int i = 0; i < attempts.size(); i++) {
 			passAvg += attempts.get(i);
 		}
 		passAvg /= attempts.size();
+		Metrics.attackPhase(event, "pre-image", "random", attempts.size(), trials, 1);
 		// Print the statistics of the attack to the console
 		Double PIA_TC = Math.pow(2, (16));
 		String PIA_Stats = "--- Pre-Image Attack Statistics ---\n";
@@ -0,0 +1,379 @@
+package blockcipher;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Finds pre-images of a digest d under the compression function, that is the
+ * inputs (m, h) with Eh(m) = d, in two ways.
+ *
+ * The exhaustive mode walks the whole 2^32 input space in order of h, then m.
+ * The space is cut into chunks of chaining values that are scanned on a
+ * ForkJoin pool a wave at a time, with each chaining value's round keys
+ * loaded once from @see RoundKeyTable into locals, and the pre-images of each
+ * wave are handed out in order on the calling thread. The analytic mode uses
+ * the fact that Eh is a permutation for every h, so the one pre-image with
+ * chaining value h is m = Dh(d), and all 65,536 pre-images come out of one
+ * pass through the inverse cipher.
+ *
+ * The exhaustive mode also serves many targets at once: the targets are kept in
+ * a bitmap over the 16-bit digest space, so one pass over the input space costs
+ * the same whatever the number of targets, and each target can be given a
+ * budget of pre-images. It can search any @see CompressionFunction; the plain
+ * construction runs unrolled with its round keys in locals, and the others
+ * through their batch method.
+ *
+ * @author Joseph Lewis
+ *
+ */
+public class PreImageSearch {
+	// The number of chaining values scanned by one task
+	static final int CHUNK = 1 << 6;
+	// The number of chunks scanned in parallel before their pre-images are
+	// handed out
+	static final int WAVE = 1 << 6;
+	// The most pre-images a wave is expected to hold, 16MB of ints
+	static final int WAVE_INPUTS = 1 << 22;
+
+	/**
+	 * Receives the pre-images of an exhaustive search, in order of h and then
+	 * m, on the thread that called the search.
+	 */
+	public interface Consumer {
+		/**
+		 * @param m
+		 *            is the 16-bit message block
+		 * @param h
+		 *            is the 16-bit chaining value
+		 * @return true to carry on, false to stop the search
+		 */
+		boolean accept(int m, int h);
+	}
+
+	/**
+	 * Receives the pre-images of a batch search, in order of h and then m, on
+	 * the thread that called the search.
+	 */
+	public interface BatchConsumer {
+		/**
+		 * @param d
+		 *            is the 16-bit target digest
+		 * @param m
+		 *            is the 16-bit message block
+		 * @param h
+		 *            is the 16-bit chaining value
+		 * @return true to carry on, false to stop the search
+		 */
+		boolean accept(int d, int m, int h);
+	}
+
+	private final int threads;
+	private final CompressionFunction function;
+
+	/**
+	 * Constructor used to create a pre-image search of the plain compression
+	 * function.
+	 *
+	 * @param threads
+	 *            is the number of worker threads, or 0 for one per core
+	 */
+	public PreImageSearch(int threads) {
+		this(threads, new PlainCompression());
+	}
+
+	/**
+	 * Constructor used to create a pre-image search of the given compression
+	 * function.
+	 *
+	 * @param threads
+	 *            is the number of worker threads, or 0 for one per core
+	 * @param function
+	 *            is the compression function searched
+	 */
+	public PreImageSearch(int threads, CompressionFunction function) {
+		if (threads < 0) {
+			throw new IllegalArgumentException("The thread count cannot be negative.");
+		}
+		this.threads = threads == 0 ? Runtime.getRuntime().availableProcessors() : threads;
+		this.function = function;
+	}
+
+	/**
+	 * Walks the whole input space and hands every pre-image of the digest to
+	 * the consumer, until it asks to stop.
+	 *
+	 * @param d
+	 *            is the 16-bit target digest
+	 * @param consumer
+	 *            receives the pre-images in order
+	 * @return the number of pre-images handed out
+	 */
+	public long enumerate(int d, Consumer consumer) {
+		return search(new int[] { d }, Integer.MAX_VALUE, 0, (target, m, h) -> consumer.accept(m, h));
+	}
+
+	/**
+	 * Walks the input space once for all the target digests, handing each
+	 * pre-image to the consumer until every target has its budget of
+	 * pre-images, the time runs out or the consumer asks to stop.
+	 *
+	 * @param targets
+	 *            are the 16-bit target digests
+	 * @param perTarget
+	 *            is the most pre-images handed out for each target
+	 * @param timeoutNanos
+	 *            is the time after which the search stops, or 0 for no limit
+	 * @param consumer
+	 *            receives the pre-images in order
+	 * @return the number of pre-images handed out
+	 */
+	public long search(int[] targets, int perTarget, long timeoutNanos, BatchConsumer consumer) {
+		AttackPhaseEvent event = new AttackPhaseEvent();
+		event.begin();
+		long count = searchWaves(targets, perTarget, timeoutNanos, consumer);
+		Metrics.attackPhase(event, "pre-image", targets.length == 1 ? "search" : "batch-search", count, 0, threads);
+		return count;
+	}
+
+	private long searchWaves(int[] targets, int perTarget, long timeoutNanos, BatchConsumer consumer) {
+		final long[] bits = bitmap(targets);
+		int remaining = 0;
+		for (long word : bits) {
+			remaining += Long.bitCount(word);
+		}
+		if (remaining == 0 || perTarget <= 0) {
+			return 0;
+		}
+		final long deadline = timeoutNanos > 0 ? System.nanoTime() + timeoutNanos : 0;
+		// A chaining value gives on average one pre-image of each target, so a
+		// wave holds about wave * chunk * remaining of them. Shrink the chunks
+		// until a wave with one for each thread fits in WAVE_INPUTS, then take
+		// as many chunks as fit
+		int chunk = CHUNK;
+		while (chunk > 1 && (long) threads * chunk * remaining > WAVE_INPUTS) {
+			chunk >>= 1;
+		}
+		int wave = Math.max(1, Math.min(WAVE, WAVE_INPUTS / (chunk * remaining)));
+		int chunks = (1 << 16) / chunk;
+		int[] counts = new int[1 << 16];
+		long count = 0;
+		ForkJoinPool pool = new ForkJoinPool(threads);
+		try {
+			for (int first = 0; first < chunks; first += wave) {
+				int[][] results = new int[Math.min(wave, chunks - first)][];
+				pool.invoke(new WaveTask(bits, chunk, first, 0, results.length, results, deadline));
+				for (int[] inputs : results) {
+					if (inputs == null) {
+						// The time ran out in this chunk
+						return count;
+					}
+					for (int x : inputs) {
+						int m = x >>> 16;
+						int h = x & 0xffff;
+						int d = function.compress(m, h);
+						// Workers may still see a target that was just taken out
+						if (counts[d] == perTarget) {
+							continue;
+						}
+						count++;
+						if (!consumer.accept(d, m, h)) {
+							return count;
+						}
+						if (++counts[d] == perTarget) {
+							// The target is done, so take it out of the bitmap
+							bits[d >>> 6] &= ~(1L << d);
+							if (--remaining == 0) {
+								return count;
+							}
+						}
+					}
+				}
+			}
+		} finally {
+			pool.shutdown();
+		}
+		return count;
+	}
+
+	/**
+	 * A task that scans chunks [from, to) of a wave into their slots of the
+	 * results, splitting the range in halves until it is one chunk.
+	 */
+	private class WaveTask extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+		private final long[] bits;
+		private final int chunk;
+		private final int first;
+		private final int from;
+		private final int to;
+		private final int[][] results;
+		private final long deadline;
+
+		WaveTask(long[] bits, int chunk, int first, int from, int to, int[][] results, long deadline) {
+			this.bits = bits;
+			this.chunk = chunk;
+			this.first = first;
+			this.from = from;
+			this.to = to;
+			this.results = results;
+			this.deadline = deadline;
+		}
+
+		@Override
+		protected void compute() {
+			if (to - from > 1) {
+				int middle = (from + to) >>> 1;
+				invokeAll(new WaveTask(bits, chunk, first, from, middle, results, deadline),
+						new WaveTask(bits, chunk, first, middle, to, results, deadline));
+				return;
+			}
+			int h = (first + from) * chunk;
+			results[from] = scan(function, bits, h, h + chunk, deadline);
+		}
+	}
+
+	/**
+	 * Builds the membership bitmap of a set of digests.
+	 *
+	 * @param targets
+	 *            are the 16-bit digests
+	 * @return one bit per digest, set for the targets
+	 */
+	static long[] bitmap(int... targets) {
+		long[] bits = new long[(1 << 16) / 64];
+		for (int d : targets) {
+			bits[(d & 0xffff) >>> 6] |= 1L << d;
+		}
+		return bits;
+	}
+
+	/**
+	 * Finds the first pre-images of the digest in order of h and then m.
+	 *
+	 * @param d
+	 *            is the 16-bit target digest
+	 * @param limit
+	 *            is the most pre-images to find
+	 * @return the packed inputs (m << 16) | h
+	 */
+	public int[] find(int d, int limit) {
+		final int[] found = new int[Math.min(limit, 1 << 16)];
+		final int[] count = new int[1];
+		if (found.length > 0) {
+			enumerate(d, (m, h) -> {
+				found[count[0]++] = (m << 16) | h;
+				return count[0] < found.length;
+			});
+		}
+		return Arrays.copyOf(found, count[0]);
+	}
+
+	/**
+	 * Scans every message under the chaining values in [from, to) for digests
+	 * in the bitmap.
+	 *
+	 * @return the packed pre-images (m << 16) | h in order, or null if the
+	 *         deadline passed first
+	 */
+	static int[] scan(CompressionFunction function, long[] bits, int from, int to, long deadline) {
+		if (!(function instanceof PlainCompression)) {
+			return scanBatch(function, bits, from, to, deadline);
+		}
+		// A lone target is compared directly, which is cheaper than the bitmap
+		int single = -1;
+		for (int i = 0; i < bits.length; i++) {
+			if (bits[i] != 0) {
+				single = single == -1 && Long.bitCount(bits[i]) == 1 ? 64 * i + Long.numberOfTrailingZeros(bits[i]) : -2;
+			}
+		}
+		int[] found = new int[to - from];
+		int count = 0;
+		for (int h = from; h < to; h++) {
+			if (deadline != 0 && System.nanoTime() - deadline > 0) {
+				return null;
+			}
+			long roundKeys = RoundKeyTable.get(h);
+			for (int m = 0; m < 1 << 16; m++) {
+				int d = Comp343Cipher.encryptRounds(roundKeys, m);
+				if (single >= 0 ? d == single : (bits[d >>> 6] & (1L << d)) != 0) {
+					if (count == found.length) {
+						found = Arrays.copyOf(found, 2 * count);
+					}
+					found[count++] = (m << 16) | h;
+				}
+			}
+		}
+		return Arrays.copyOf(found, count);
+	}
+
+	/**
+	 * Scans every message under the chaining values in [from, to) for digests
+	 * in the bitmap, with the batch method of the compression function.
+	 *
+	 * @return the packed pre-images (m << 16) | h in order, or null if the
+	 *         deadline passed first
+	 */
+	private static int[] scanBatch(CompressionFunction function, long[] bits, int from, int to, long deadline) {
+		int[] inputs = new int[1 << 16];
+		int[] digests = new int[1 << 16];
+		int[] found = new int[to - from];
+		int count = 0;
+		for (int h = from; h < to; h++) {
+			if (deadline != 0 && System.nanoTime() - deadline > 0) {
+				return null;
+			}
+			for (int m = 0; m < 1 << 16; m++) {
+				inputs[m] = (m << 16) | h;
+			}
+			function.compress(inputs, 0, digests, 0, 1 << 16);
+			for (int m = 0; m < 1 << 16; m++) {
+				int d = digests[m];
+				if ((bits[d >>> 6] & (1L << d)) != 0) {
+					if (count == found.length) {
+						found = Arrays.copyOf(found, 2 * count);
+					}
+					found[count++] = inputs[m];
+				}
+			}
+		}
+		return Arrays.copyOf(found, count);
+	}
+
+	/**
+	 * Finds all 65,536 pre-images of the digest under the plain compression
+	 * function, one for each chaining value, with the inverse cipher.
+	 *
+	 * @param d
+	 *            is the 16-bit target digest
+	 * @return the packed inputs (m << 16) | h in order of h
+	 */
+	public static int[] invertAll(int d) {
+		int[] inputs = new int[1 << 16];
+		for (int h = 0; h < 1 << 16; h++) {
+			inputs[h] = (Comp343Cipher.decrypt(h, d) << 16) | h;
+		}
+		return inputs;
+	}
+
+	/**
+	 * Prints the throughput of the exhaustive and analytic modes for a random
+	 * digest.
+	 *
+	 * @param args[]
+	 *            optionally contains the number of threads, 0 for one per core
+	 */
+	public static void main(String args[]) {
+		int threads = args.length > 0 ? Integer.parseInt(args[0]) : 0;
+		int d = new java.util.Random().nextInt() & 0xffff;
+		long start = System.nanoTime();
+		long count = new PreImageSearch(threads).enumerate(d, (m, h) -> true);
+		double seconds = (System.nanoTime() - start) / 1e9;
+		System.out.println(String.format("Exhaustive: %d pre-images of 0x%04x in %.2fs, %.0f evaluations/s", count, d,
+				seconds, Math.pow(2, 32) / seconds));
+		start = System.nanoTime();
+		int[] inputs = invertAll(d);
+		seconds = (System.nanoTime() - start) / 1e9;
+		System.out.println(String.format("Analytic: %d pre-images of 0x%04x in %.4fs", inputs.length, d, seconds));
+	}
+}
@@ -0,0 +1,129 @@
+package blockcipher;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+/**
+ * A JUnit test class for PreImageSearch, which checks both modes against a
+ * brute-force search with the reference engine.
+ * 
+ * @author Joseph Lewis
+ *
+ */
+public class PreImageSearchTest {
+
+	/**
+	 * Test method for @see {@link PreImageSearch#scan(CompressionFunction, long[], int, int, long)} against
+	 * the reference engine on a slice of chaining values.
+	 */
+	@Test
+	public void scanTest() {
+		ReferenceEngine engine = new ReferenceEngine();
+		int d = 0x3c5a;
+		int from = 0x1200;
+		int to = 0x1210;
+		int[] expected = new int[to - from];
+		int count = 0;
+		for (int h = from; h < to; h++) {
+			byte[] K = Permutation.keySchedule(new byte[] { (byte) (h >>> 8), (byte) h });
+			for (int m = 0; m < 1 << 16; m++) {
+				if (engine.encryptBlock(K, m) == d) {
+					expected[count++] = (m << 16) | h;
+				}
+			}
+		}
+		assertEquals(to - from, count);
+		assertArrayEquals(expected, PreImageSearch.scan(new PlainCompression(), PreImageSearch.bitmap(d), from, to, 0));
+	}
+
+	/**
+	 * Test method for @see {@link PreImageSearch#enumerate(int, PreImageSearch.Consumer)}
+	 * against @see {@link PreImageSearch#invertAll(int)} over the whole input
+	 * space.
+	 */
+	@Test
+	public void completenessTest() {
+		int d = 0xbeef;
+		int[] inputs = PreImageSearch.invertAll(d);
+		final int[] next = new int[1];
+		long count = new PreImageSearch(3).enumerate(d, (m, h) -> {
+			assertEquals(inputs[next[0]++], (m << 16) | h);
+			return true;
+		});
+		assertEquals(1 << 16, count);
+	}
+
+	/**
+	 * Test method for @see {@link PreImageSearch#find(int, int)}.
+	 */
+	@Test
+	public void findTest() {
+		int[] found = new PreImageSearch(2).find(0x0001, 10);
+		assertEquals(10, found.length);
+		for (int i = 0; i < found.length; i++) {
+			assertEquals(i, found[i] & 0xffff);
+			assertEquals(0x0001, Comp343CipherTest.referenceEncrypt(found[i] & 0xffff, found[i] >>> 16));
+		}
+	}
+
+	/**
+	 * Test method for @see {@link PreImageSearch#invertAll(int)}, which must
+	 * give one pre-image under every chaining value, in order.
+	 */
+	@Test
+	public void invertAllTest() {
+		for (int d : new int[] { 0x0000, 0x3c5a, 0xffff }) {
+			int[] inputs = PreImageSearch.invertAll(d);
+			assertEquals(1 << 16, inputs.length);
+			for (int h = 0; h < 1 << 16; h++) {
+				assertEquals(h, inputs[h] & 0xffff);
+			}
+			for (int h = 0; h < 1 << 16; h += 0x0107) {
+				assertEquals(d, Comp343CipherTest.referenceEncrypt(h, inputs[h] >>> 16));
+			}
+		}
+	}
+
+	/**
+	 * Test method for @see
+	 * {@link PreImageSearch#search(int[], int, long, PreImageSearch.BatchConsumer)}
+	 * with many targets and a budget for each.
+	 */
+	@Test
+	public void batchTest() {
+		int[] targets = new int[1000];
+		for (int i = 0; i < targets.length; i++) {
+			targets[i] = (i * 0x9e37) & 0xffff;
+		}
+		long[] bits = PreImageSearch.bitmap(targets);
+		final int[] counts = new int[1 << 16];
+		final int[] last = { -1 };
+		long count = new PreImageSearch(2).search(targets, 3, 0, (d, m, h) -> {
+			assertTrue((bits[d >>> 6] & (1L << d)) != 0);
+			assertEquals(d, Comp343Cipher.encrypt(h, m));
+			// The pre-images come in order of h, then m
+			int x = (h << 16) | m;
+			assertTrue(x > last[0]);
+			last[0] = x;
+			counts[d]++;
+			return true;
+		});
+		assertEquals(3 * targets.length, count);
+		for (int d : targets) {
+			assertEquals(3, counts[d]);
+		}
+	}
+
+	/**
+	 * Checks that a search stops when its time runs out.
+	 */
+	@Test
+	public void timeoutTest() {
+		long start = System.nanoTime();
+		long count = new PreImageSearch(1).search(new int[] { 0x1234 }, Integer.MAX_VALUE, 50000000L,
+				(d, m, h) -> true);
+		assertTrue(count < 1 << 16);
+		assertTrue(System.nanoTime() - start < 5000000000L);
+	}
+}
@@ -0,0 +1,53 @@
+package blockcipher;
+
+/**
+ * The reference implementation of the Feistel rounds, which converts each byte
+ * into nibbles and looks them up in the HashMap backed <code>Sbox</code>. It is
+ * kept as the specification that faster engines are checked against.
+ * 
+ * @author Joseph Lewis
+ *
+ */
+public class ReferenceEngine implements CipherEngine {
+
+	/**
+	 * The round function: the S-box is applied to both nibbles of y, which are
+	 * then consolidated and rotated 2 positions left.
+	 * 
+	 * @param y
+	 *            is the round input, R xor K
+	 * @return the 8-bit round output
+	 */
+	public int roundFunction(int y) {
+		// Convert the bytes into nibbles
+		byte highZ = Sbox.getOutput(Permutation.convert(y)[1]);
+		byte lowZ = Sbox.getOutput(Permutation.convert(y)[0]);
+		// Consolidate the highest-order and lowest-order bits
+		byte z = Permutation.consolidate(highZ, lowZ);
+		// The permutation is a rotation of the bits of the argument by 2
+		// positions left
+		return Permutation.rotL(z, 2) & 0xff;
+	}
+
+	public int encryptBlock(byte[] K, int block) {
+		int L = (block >>> 8) & 0xff;
+		int R = block & 0xff;
+		for (int i = 0; i <= 7; i++) {
+			int t = R;
+			R = L ^ roundFunction((R ^ K[i]) & 0xff);
+			L = t;
+		}
+		return (L << 8) | R;
+	}
+
+	public int decryptBlock(byte[] K, int block) {
+		int L = (block >>> 8) & 0xff;
+		int R = block & 0xff;
+		for (int i = 0; i <= 7; i++) {
+			int t = R;
+			R = L ^ roundFunction((R ^ K[K.length - i - 1]) & 0xff);
+			L = t;
+		}
+		return (L << 8) | R;
+	}
+}
@@ -0,0 +1,341 @@
+package blockcipher;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.SplittableRandom;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Finds collisions of @see Comp343Cipher#compression(byte[], byte[]) without a
+ * pool of trials, by walking the map x -> g(Eh(m)) from a packed input
+ * x = (m << 16) | h to its digest, re-expanded to 32 bits by a salted
+ * bijection g. Two inputs that step to the same point have the same digest.
+ *
+ * A single thread detects the cycle of a walk with Brent's algorithm and
+ * returns the two inputs that join it. Several threads use the parallel
+ * collision search of van Oorschot and Wiener: each walks trails from random
+ * inputs until a distinguished digest, and two trails ending at the same
+ * distinguished digest are walked again to where they merge. The threads share
+ * only the small table of distinguished digests. Unlike the digest index of
+ * @see BirthdayAttack, the memory does not grow with the digest size. Any
+ * @see CompressionFunction can be searched in place of the plain construction.
+ *
+ * @author Joseph Lewis
+ *
+ */
+public class RhoCollisionFinder {
+	// A digest is distinguished when these low bits are all zero
+	static final int DISTINGUISHED_BITS = 4;
+	// The number of distinguished digests, and so of slots in the table
+	static final int TABLE_SIZE = 1 << (16 - DISTINGUISHED_BITS);
+	// Trails longer than this are caught in a cycle without a distinguished
+	// digest and are dropped
+	static final int MAX_TRAIL = 20 << DISTINGUISHED_BITS;
+	// The number of trails walked for each salt before a new one is drawn
+	static final int TRAILS_PER_SALT = 1 << 10;
+
+	private final Random random;
+	private final CompressionFunction function;
+	private long elapsedNanos;
+	private int threadsUsed;
+
+	/**
+	 * Constructor used to create a collision finder whose starting points and
+	 * salts are drawn from a fixed seed.
+	 *
+	 * @param seed
+	 *            is the seed of the random walks
+	 */
+	public RhoCollisionFinder(long seed) {
+		this(seed, new PlainCompression());
+	}
+
+	/**
+	 * Constructor used to create a reproducible collision finder for the given
+	 * compression function.
+	 *
+	 * @param seed
+	 *            is the seed of the random walks
+	 * @param function
+	 *            is the compression function searched
+	 */
+	public RhoCollisionFinder(long seed, CompressionFunction function) {
+		random = new Random(seed);
+		this.function = function;
+	}
+
+	/**
+	 * The digest of a packed input (m << 16) | h.
+	 *
+	 * @param function
+	 *            the compression function
+	 * @param x
+	 *            the packed input
+	 * @return the 16-bit digest
+	 */
+	static int digest(CompressionFunction function, int x) {
+		return function.compress(x >>> 16, x & 0xffff);
+	}
+
+	/**
+	 * Re-expands a digest to a packed input with a salted bijection, the
+	 * finalizer of MurmurHash3, so that every salt gives a different walk.
+	 *
+	 * @param d
+	 *            the 16-bit digest
+	 * @param salt
+	 *            the salt of the walk
+	 * @return the next packed input
+	 */
+	static int expand(int d, int salt) {
+		int x = d ^ salt;
+		x ^= x >>> 16;
+		x *= 0x85ebca6b;
+		x ^= x >>> 13;
+		x *= 0xc2b2ae35;
+		x ^= x >>> 16;
+		return x;
+	}
+
+	/**
+	 * Finds one collision on the current thread with Brent's cycle detection.
+	 *
+	 * @return the two colliding packed inputs in the high and low halves
+	 */
+	public long findCollision() {
+		long start = System.nanoTime();
+		while (true) {
+			int salt = random.nextInt();
+			int x0 = random.nextInt();
+			// Find the cycle length by doubling the distance of the tortoise
+			int power = 1;
+			int lambda = 1;
+			int tortoise = x0;
+			int hare = expand(digest(function, x0), salt);
+			while (tortoise != hare) {
+				if (power == lambda) {
+					tortoise = hare;
+					power <<= 1;
+					lambda = 0;
+				}
+				hare = expand(digest(function, hare), salt);
+				lambda++;
+			}
+			// Walk two pointers lambda apart to the start of the cycle; the
+			// points before it are the two inputs that join it
+			tortoise = x0;
+			hare = x0;
+			for (int i = 0; i < lambda; i++) {
+				hare = expand(digest(function, hare), salt);
+			}
+			int previousTortoise = 0;
+			int previousHare = 0;
+			boolean tail = false;
+			while (tortoise != hare) {
+				previousTortoise = tortoise;
+				previousHare = hare;
+				tortoise = expand(digest(function, tortoise), salt);
+				hare = expand(digest(function, hare), salt);
+				tail = true;
+			}
+			// A walk that starts on its cycle has no collision
+			if (tail) {
+				elapsedNanos = System.nanoTime() - start;
+				threadsUsed = 1;
+				return ((long) previousTortoise << 32) | (previousHare & 0xffffffffL);
+			}
+		}
+	}
+
+	/**
+	 * Finds collisions, with Brent's cycle detection on one thread and with
+	 * distinguished points on several, which returns distinct collisions.
+	 *
+	 * @param count
+	 *            is the number of collisions to find
+	 * @param threads
+	 *            is the number of worker threads, or 0 for one per core
+	 * @return the collisions, each as the two colliding packed inputs in the
+	 *         high and low halves
+	 */
+	public long[] findCollisions(int count, int threads) {
+		if (threads < 0) {
+			throw new IllegalArgumentException("The thread count cannot be negative.");
+		}
+		threads = threads == 0 ? Runtime.getRuntime().availableProcessors() : threads;
+		long[] collisions = new long[count];
+		AttackPhaseEvent event = new AttackPhaseEvent();
+		event.begin();
+		long start = System.nanoTime();
+		if (threads == 1) {
+			for (int c = 0; c < count; c++) {
+				collisions[c] = findCollision();
+			}
+		} else {
+			Set<Long> found = ConcurrentHashMap.newKeySet();
+			ForkJoinPool pool = new ForkJoinPool(threads);
+			try {
+				while (found.size() < count) {
+					Round round = new Round(function, random.nextInt(), count, found);
+					List<TrailTask> tasks = new ArrayList<TrailTask>();
+					for (int t = 0; t < threads; t++) {
+						tasks.add(new TrailTask(round, new SplittableRandom(random.nextLong())));
+					}
+					for (TrailTask task : tasks) {
+						pool.execute(task);
+					}
+					for (TrailTask task : tasks) {
+						task.join();
+					}
+				}
+			} finally {
+				pool.shutdown();
+			}
+			int c = 0;
+			for (long collision : found) {
+				if (c < count) {
+					collisions[c++] = collision;
+				}
+			}
+		}
+		elapsedNanos = System.nanoTime() - start;
+		threadsUsed = threads;
+		Metrics.attackPhase(event, "rho", threads == 1 ? "brent" : "distinguished-points", count, 0, threads);
+		return collisions;
+	}
+
+	/**
+	 * Getter method that returns the number of collisions found per second and
+	 * per thread by the last search.
+	 *
+	 * @param collisions
+	 *            is the number of collisions the search found
+	 * @return the collisions per second per thread
+	 */
+	public double getCollisionsPerSecondPerCore(int collisions) {
+		return collisions / (elapsedNanos / 1e9) / threadsUsed;
+	}
+
+	/**
+	 * The shared state of the walks with one salt.
+	 */
+	private static class Round {
+		final CompressionFunction function;
+		final int salt;
+		final int count;
+		final Set<Long> found;
+		// Each slot holds the start of the trail ending at a distinguished
+		// digest in the high half and its length in the low half
+		final AtomicLongArray table = new AtomicLongArray(TABLE_SIZE);
+		final AtomicInteger trails = new AtomicInteger();
+
+		Round(CompressionFunction function, int salt, int count, Set<Long> found) {
+			this.function = function;
+			this.salt = salt;
+			this.count = count;
+			this.found = found;
+		}
+	}
+
+	/**
+	 * A task that walks trails until the round has enough collisions or has
+	 * walked all its trails.
+	 */
+	private static class TrailTask extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+		private final Round round;
+		private final SplittableRandom random;
+
+		TrailTask(Round round, SplittableRandom random) {
+			this.round = round;
+			this.random = random;
+		}
+
+		@Override
+		protected void compute() {
+			CompressionFunction function = round.function;
+			int salt = round.salt;
+			while (round.found.size() < round.count && round.trails.getAndIncrement() < TRAILS_PER_SALT) {
+				int start = random.nextInt();
+				int x = start;
+				int length = 0;
+				int d;
+				do {
+					d = digest(function, x);
+					x = expand(d, salt);
+					length++;
+				} while ((d & ((1 << DISTINGUISHED_BITS) - 1)) != 0 && length < MAX_TRAIL);
+				if (length == MAX_TRAIL) {
+					continue;
+				}
+				long trail = ((long) start << 32) | length;
+				long other = round.table.compareAndExchange(d >>> DISTINGUISHED_BITS, 0, trail);
+				if (other != 0 && (int) (other >>> 32) != start) {
+					long collision = merge(function, start, length, (int) (other >>> 32), (int) other, salt);
+					if (collision != 0) {
+						// Store each pair once, in a fixed order
+						int a = (int) (collision >>> 32);
+						int b = (int) collision;
+						round.found.add(Integer.compareUnsigned(a, b) < 0 ? collision
+								: ((long) b << 32) | (a & 0xffffffffL));
+					}
+				}
+			}
+		}
+
+		/**
+		 * Walks two trails that end at the same distinguished digest to the
+		 * point where they merge.
+		 *
+		 * @return the two inputs that step to the merge point, or 0 if one
+		 *         trail starts on the other
+		 */
+		private static long merge(CompressionFunction function, int a, int lengthA, int b, int lengthB, int salt) {
+			// Line the trails up at the same distance from their end
+			for (; lengthA > lengthB; lengthA--) {
+				a = expand(digest(function, a), salt);
+			}
+			for (; lengthB > lengthA; lengthB--) {
+				b = expand(digest(function, b), salt);
+			}
+			if (a == b) {
+				return 0;
+			}
+			while (true) {
+				int da = digest(function, a);
+				int db = digest(function, b);
+				if (da == db) {
+					return ((long) a << 32) | (b & 0xffffffffL);
+				}
+				a = expand(da, salt);
+				b = expand(db, salt);
+			}
+		}
+	}
+
+	/**
+	 * Prints the collisions found per second per core for one thread and for
+	 * the distinguished-point search on every core (at least two).
+	 *
+	 * @param args[]
+	 *            optionally contains the number of collisions to find
+	 */
+	public static void main(String args[]) {
+		int count = args.length > 0 ? Integer.parseInt(args[0]) : 10000;
+		int cores = Runtime.getRuntime().availableProcessors();
+		RhoCollisionFinder finder = new RhoCollisionFinder(343);
+		for (int threads : new int[] { 1, Math.max(2, cores) }) {
+			// Warm up, then measure
+			finder.findCollisions(count / 10, threads);
+			finder.findCollisions(count, threads);
+			System.out.println(String.format("%d threads: %.0f collisions/s/core", threads,
+					finder.getCollisionsPerSecondPerCore(count)));
+		}
+	}
+}
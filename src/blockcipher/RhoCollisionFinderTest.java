@@ -0,0 +1,64 @@
+package blockcipher;
+
+import static org.junit.Assert.*;
+
+import java.util.HashSet;
+
+import org.junit.Test;
+
+/**
+ * A JUnit test class for RhoCollisionFinder, which checks that every reported
+ * pair is a real collision of the compression function.
+ * 
+ * @author Joseph Lewis
+ *
+ */
+public class RhoCollisionFinderTest {
+
+	/**
+	 * Test method for @see {@link RhoCollisionFinder#findCollision()}.
+	 */
+	@Test
+	public void brentTest() {
+		RhoCollisionFinder finder = new RhoCollisionFinder(1);
+		for (int i = 0; i < 200; i++) {
+			assertCollision(finder.findCollision());
+		}
+	}
+
+	/**
+	 * Test method for @see {@link RhoCollisionFinder#findCollisions(int, int)}
+	 * with distinguished points.
+	 */
+	@Test
+	public void distinguishedPointTest() {
+		for (int threads : new int[] { 2, 4 }) {
+			long[] collisions = new RhoCollisionFinder(threads).findCollisions(500, threads);
+			HashSet<Long> distinct = new HashSet<Long>();
+			for (long collision : collisions) {
+				assertCollision(collision);
+				assertTrue(distinct.add(collision));
+			}
+		}
+	}
+
+	/**
+	 * Test method for @see {@link RhoCollisionFinder#expand(int, int)}, which
+	 * must be one-to-one for a fixed salt.
+	 */
+	@Test
+	public void expandTest() {
+		HashSet<Integer> points = new HashSet<Integer>();
+		for (int d = 0; d < 0x10000; d++) {
+			assertTrue(points.add(RhoCollisionFinder.expand(d, 0x5eed)));
+		}
+	}
+
+	private static void assertCollision(long collision) {
+		int first = (int) (collision >>> 32);
+		int second = (int) collision;
+		assertNotEquals(first, second);
+		assertEquals(Comp343CipherTest.referenceEncrypt(first & 0xffff, first >>> 16),
+				Comp343CipherTest.referenceEncrypt(second & 0xffff, second >>> 16));
+	}
+}
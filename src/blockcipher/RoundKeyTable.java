@@ -0,0 +1,226 @@
+package blockcipher;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.zip.CRC32;
+
+/**
+ * The round keys of every 16-bit key, so that switching keys is a single load
+ * instead of a run of the @see Permutation#keySchedule(byte[]) recurrence. The
+ * 8 round keys of a key are packed into a long, K[i] in bits 8i to 8i + 7, and
+ * the 65,536 longs take 512KB.
+ *
+ * The table is shared and read-only, and is built on first use, in parallel
+ * when there is more than one core. With -Dblockcipher.roundkeys.cache=file
+ * it is instead mapped from that file, which is written on the first run. The
+ * file starts with a magic number and the CRC-32 of the table, so a file of
+ * the wrong size, or corrupted anywhere, is rebuilt, and a sample of its keys
+ * is checked against the recurrence, so a file from another key schedule is
+ * rebuilt too.
+ *
+ * @author Joseph Lewis
+ *
+ */
+public final class RoundKeyTable {
+	// The number of keys
+	static final int KEYS = 1 << 16;
+	// The size of the table in bytes
+	static final int BYTES = KEYS * Long.BYTES;
+	// The first int of the cache file, "RKT1"
+	static final int MAGIC = 0x31544b52;
+	// The magic number and CRC-32 before the table in the cache file
+	static final int HEADER_BYTES = 2 * Integer.BYTES;
+	// The property naming the cache file
+	public static final String CACHE_PROPERTY = "blockcipher.roundkeys.cache";
+
+	private RoundKeyTable() {
+	}
+
+	/**
+	 * Holds the table, so that it is built when first used.
+	 */
+	private static class Holder {
+		static final long[] TABLE = load();
+	}
+
+	/**
+	 * Returns the packed round keys of a key.
+	 *
+	 * @param key
+	 *            the packed key (k[0] << 8) | k[1]
+	 * @return the 8 round keys, K[i] in bits 8i to 8i + 7
+	 */
+	public static long get(int key) {
+		return Holder.TABLE[key & 0xffff];
+	}
+
+	/**
+	 * Returns the round keys of a key as @see Permutation#keySchedule(byte[])
+	 * does, for the engines.
+	 *
+	 * @param key
+	 *            the packed key (k[0] << 8) | k[1]
+	 * @return a new array of the 8 round keys
+	 */
+	public static byte[] keySchedule(int key) {
+		long roundKeys = get(key);
+		byte[] K = new byte[8];
+		for (int i = 0; i < 8; i++) {
+			K[i] = (byte) (roundKeys >>> (i << 3));
+		}
+		return K;
+	}
+
+	/**
+	 * Computes the packed round keys of a key with the recurrence.
+	 *
+	 * @param key
+	 *            the packed key (k[0] << 8) | k[1]
+	 * @return the 8 round keys, K[i] in bits 8i to 8i + 7
+	 */
+	static long schedule(int key) {
+		int a = key & 0xff;
+		int b = (key >>> 8) & 0xff;
+		long roundKeys = a | ((long) b << 8);
+		for (int i = 2; i < 8; i++) {
+			int next = step(b, a);
+			roundKeys |= (long) next << (i << 3);
+			a = b;
+			b = next;
+		}
+		return roundKeys;
+	}
+
+	/**
+	 * The key-schedule recurrence K[i] = rotL(K[i - 1], 3) ^ rotL(K[i - 2], 5)
+	 * of @see Permutation#keySchedule(byte[]) on ints.
+	 */
+	static int step(int previous, int beforePrevious) {
+		return (((previous << 3) | (previous >>> 5)) ^ ((beforePrevious << 5) | (beforePrevious >>> 3))) & 0xff;
+	}
+
+	/**
+	 * Builds the table.
+	 *
+	 * @param parallel
+	 *            whether to build it on the common pool
+	 * @return the table
+	 */
+	static long[] build(boolean parallel) {
+		long[] table = new long[KEYS];
+		if (parallel) {
+			Arrays.parallelSetAll(table, RoundKeyTable::schedule);
+		} else {
+			Arrays.setAll(table, RoundKeyTable::schedule);
+		}
+		return table;
+	}
+
+	/**
+	 * Reads the table from a cache file by mapping it, checking its size, its
+	 * magic number, the CRC-32 of the whole table and a sample of its keys.
+	 *
+	 * @param file
+	 *            the cache file
+	 * @return the table, or null if the file is not a valid table
+	 * @throws IOException
+	 *             if the file cannot be read
+	 */
+	static long[] read(Path file) throws IOException {
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+			if (channel.size() != HEADER_BYTES + BYTES) {
+				return null;
+			}
+			MappedByteBuffer map = channel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_BYTES + BYTES);
+			map.order(ByteOrder.LITTLE_ENDIAN);
+			if (map.getInt() != MAGIC) {
+				return null;
+			}
+			int crc = map.getInt();
+			if (crc != checksum(map.slice())) {
+				return null;
+			}
+			long[] table = new long[KEYS];
+			map.slice().order(ByteOrder.LITTLE_ENDIAN).asLongBuffer().get(table);
+			for (int key = 0; key < KEYS; key += 0x0fff) {
+				if (table[key] != schedule(key)) {
+					return null;
+				}
+			}
+			return table;
+		}
+	}
+
+	/**
+	 * @return the CRC-32 of the remaining bytes of a buffer
+	 */
+	static int checksum(ByteBuffer bytes) {
+		CRC32 crc = new CRC32();
+		crc.update(bytes);
+		return (int) crc.getValue();
+	}
+
+	/**
+	 * Writes the table to a cache file, after its magic number and CRC-32,
+	 * replacing it.
+	 *
+	 * @param file
+	 *            the cache file
+	 * @param table
+	 *            the table
+	 * @throws IOException
+	 *             if the file cannot be written
+	 */
+	static void write(Path file, long[] table) throws IOException {
+		ByteBuffer bytes = ByteBuffer.allocate(HEADER_BYTES + BYTES).order(ByteOrder.LITTLE_ENDIAN);
+		bytes.position(HEADER_BYTES);
+		bytes.slice().order(ByteOrder.LITTLE_ENDIAN).asLongBuffer().put(table);
+		bytes.putInt(0, MAGIC).putInt(Integer.BYTES, checksum(bytes.slice()));
+		Path temp = Files.createTempFile(file.toAbsolutePath().getParent(), "roundkeys", ".tmp");
+		try {
+			Files.write(temp, bytes.array());
+			Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING);
+		} finally {
+			Files.deleteIfExists(temp);
+		}
+	}
+
+	/**
+	 * Loads the table from the cache file when one is named, and builds it
+	 * otherwise. A cache that cannot be read or written is only reported.
+	 */
+	private static long[] load() {
+		String cache = System.getProperty(CACHE_PROPERTY);
+		boolean parallel = Runtime.getRuntime().availableProcessors() > 1;
+		if (cache == null) {
+			return build(parallel);
+		}
+		Path file = Paths.get(cache);
+		try {
+			if (Files.isRegularFile(file)) {
+				long[] table = read(file);
+				if (table != null) {
+					return table;
+				}
+			}
+		} catch (IOException e) {
+			System.err.println("The round-key cache '" + file + "' could not be read: " + e.getMessage());
+		}
+		long[] table = build(parallel);
+		try {
+			write(file, table);
+		} catch (IOException e) {
+			System.err.println("The round-key cache '" + file + "' could not be written: " + e.getMessage());
+		}
+		return table;
+	}
+}
@@ -0,0 +1,79 @@
+package blockcipher;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.junit.Test;
+
+/**
+ * A JUnit test class for RoundKeyTable, which checks every key against
+ * Permutation#keySchedule(byte[]).
+ * 
+ * @author Joseph Lewis
+ *
+ */
+public class RoundKeyTableTest {
+
+	/**
+	 * Test method for @see {@link RoundKeyTable#keySchedule(int)} over every
+	 * key.
+	 */
+	@Test
+	public void keyScheduleTest() {
+		for (int key = 0; key < RoundKeyTable.KEYS; key++) {
+			byte[] expected = Permutation.keySchedule(new byte[] { (byte) (key >>> 8), (byte) key });
+			assertArrayEquals(expected, RoundKeyTable.keySchedule(key));
+			assertEquals(RoundKeyTable.schedule(key), RoundKeyTable.get(key));
+		}
+		// Only the low 16 bits are the key
+		assertEquals(RoundKeyTable.get(0xabcd), RoundKeyTable.get(0x1abcd));
+	}
+
+	/**
+	 * Checks that the sequential and parallel builds agree.
+	 */
+	@Test
+	public void buildTest() {
+		assertArrayEquals(RoundKeyTable.build(false), RoundKeyTable.build(true));
+	}
+
+	/**
+	 * Test method for the cache file, which must round-trip and be refused
+	 * when truncated, corrupted anywhere or from another key schedule.
+	 */
+	@Test
+	public void cacheTest() throws IOException {
+		Path directory = Files.createTempDirectory("roundkeys");
+		Path file = directory.resolve("roundkeys.bin");
+		try {
+			long[] table = RoundKeyTable.build(false);
+			RoundKeyTable.write(file, table);
+			assertEquals(RoundKeyTable.HEADER_BYTES + RoundKeyTable.BYTES, Files.size(file));
+			assertArrayEquals(table, RoundKeyTable.read(file));
+			byte[] good = Files.readAllBytes(file);
+			// A key that is not in the sample, a sampled key and the header
+			for (int offset : new int[] { RoundKeyTable.HEADER_BYTES + 8 * 0x1234 + 3, RoundKeyTable.HEADER_BYTES,
+					0 }) {
+				byte[] bytes = good.clone();
+				bytes[offset] ^= 1;
+				Files.write(file, bytes);
+				assertNull(RoundKeyTable.read(file));
+			}
+			// A table with a valid checksum but the wrong round keys
+			long[] stale = table.clone();
+			for (int key = 0; key < stale.length; key++) {
+				stale[key] ^= 1L << 56;
+			}
+			RoundKeyTable.write(file, stale);
+			assertNull(RoundKeyTable.read(file));
+			Files.write(file, new byte[16]);
+			assertNull(RoundKeyTable.read(file));
+		} finally {
+			Files.deleteIfExists(file);
+			Files.delete(directory);
+		}
+	}
+}
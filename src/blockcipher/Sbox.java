@@ -1,10 +1,14 @@
 package blockcipher;
 
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.Map;
 
 /**
  * The implementation of a prescribed S-box functionality as a class. A HashMap
  * data structure is used to store 16 4-bit nibbles with corresponding keys.
+ * The table is shared and read-only, so the S-box is safe to use from several
+ * threads.
  * 
  * @author Joseph Lewis
  * 
@@ -12,35 +16,40 @@ import java.util.HashMap;
 
 public class Sbox {
 
-	// Declare the S-box
-	private static HashMap<Integer, Integer> sbox;
+	// Declare the S-box, populated once and never modified so that it can be
+	// read from any number of threads
+	private static final Map<Integer, Integer> sbox;
+
+	static {
+		// Instantiate and initialise the S-box
+		HashMap<Integer, Integer> table = new HashMap<Integer, Integer>();
+
+		table.put(0b0000, 0b0000);
+		table.put(0b0001, 0b0001);
+		table.put(0b0010, 0b1011);
+		table.put(0b0011, 0b1101);
+		table.put(0b0100, 0b1001);
+		table.put(0b0101, 0b1110);
+		table.put(0b0110, 0b0110);
+		table.put(0b0111, 0b0111);
+		table.put(0b1000, 0b1100);
+		table.put(0b1001, 0b0101);
+		table.put(0b1010, 0b1000);
+		table.put(0b1011, 0b0011);
+		table.put(0b1100, 0b1111);
+		table.put(0b1101, 0b0010);
+		table.put(0b1110, 0b0100);
+		table.put(0b1111, 0b1010);
+		sbox = Collections.unmodifiableMap(table);
+	}
 
 	/**
-	 * The constructor for the S-box that is used to create an <code>Sbox</code> instance
-	 * that initialises and populates an instance of a HashMap with a defined
-	 * S-box function. Values are put in sbox, such that sbox.put(I,O) where I
-	 * is the input and O is the respective output.
+	 * The constructor for the S-box that is used to create an <code>Sbox</code> instance.
+	 * The S-box function is defined once, when the class is initialised, with
+	 * values put in sbox, such that sbox.put(I,O) where I is the input and O is
+	 * the respective output.
 	 */
 	public Sbox() {
-		// Instantiate and initialise the instance of the S-box
-		sbox = new HashMap<Integer, Integer>();
-
-		sbox.put(0b0000, 0b0000);
-		sbox.put(0b0001, 0b0001);
-		sbox.put(0b0010, 0b1011);
-		sbox.put(0b0011, 0b1101);
-		sbox.put(0b0100, 0b1001);
-		sbox.put(0b0101, 0b1110);
-		sbox.put(0b0110, 0b0110);
-		sbox.put(0b0111, 0b0111);
-		sbox.put(0b1000, 0b1100);
-		sbox.put(0b1001, 0b0101);
-		sbox.put(0b1010, 0b1000);
-		sbox.put(0b1011, 0b0011);
-		sbox.put(0b1100, 0b1111);
-		sbox.put(0b1101, 0b0010);
-		sbox.put(0b1110, 0b0100);
-		sbox.put(0b1111, 0b1010);
 	}
 
 	/**
@@ -0,0 +1,55 @@
+package blockcipher;
+
+/**
+ * An engine that fuses the S-box lookups, the nibble consolidation and the
+ * rotation into a single 256-entry table, computed once from the reference
+ * round function. Each round is then one XOR, one array load and one XOR, with
+ * no allocation. This is the default engine of <code>Comp343Cipher</code>.
+ * 
+ * @author Joseph Lewis
+ *
+ */
+public class TableEngine implements CipherEngine {
+	// The fused round function y -> rotL(consolidate(S(hi(y)), S(lo(y))), 2)
+	static final int[] F = new int[256];
+
+	static {
+		ReferenceEngine reference = new ReferenceEngine();
+		for (int y = 0; y < 256; y++) {
+			F[y] = reference.roundFunction(y);
+		}
+	}
+
+	/**
+	 * The fused round function.
+	 * 
+	 * @param y
+	 *            is the round input, R xor K, from 0-255
+	 * @return the 8-bit round output
+	 */
+	public static int roundFunction(int y) {
+		return F[y & 0xff];
+	}
+
+	public int encryptBlock(byte[] K, int block) {
+		int L = (block >>> 8) & 0xff;
+		int R = block & 0xff;
+		for (int i = 0; i <= 7; i++) {
+			int t = R;
+			R = L ^ F[(R ^ K[i]) & 0xff];
+			L = t;
+		}
+		return (L << 8) | R;
+	}
+
+	public int decryptBlock(byte[] K, int block) {
+		int L = (block >>> 8) & 0xff;
+		int R = block & 0xff;
+		for (int i = 7; i >= 0; i--) {
+			int t = R;
+			R = L ^ F[(R ^ K[i]) & 0xff];
+			L = t;
+		}
+		return (L << 8) | R;
+	}
+}
@@ -0,0 +1,74 @@
+package blockcipher;
+
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+/**
+ * A JUnit test class for TableEngine, which checks that the fused round
+ * function table agrees with the HashMap based ReferenceEngine for every key
+ * and every block.
+ * 
+ * @author Joseph Lewis
+ *
+ */
+public class TableEngineTest {
+	private ReferenceEngine reference = new ReferenceEngine();
+	private TableEngine table = new TableEngine();
+
+	/**
+	 * Test method for @see {@link TableEngine#roundFunction(int)}.
+	 */
+	@Test
+	public void roundFunctionTest() {
+		// The engines only differ in the round function, so agreement on all
+		// 256 inputs means they agree on every key and block
+		for (int y = 0; y < 256; y++) {
+			assertEquals("Round function differs for input " + y, reference.roundFunction(y),
+					TableEngine.roundFunction(y));
+		}
+	}
+
+	/**
+	 * Test method for @see {@link TableEngine#encryptBlock(byte[], int)} and
+	 * {@link TableEngine#decryptBlock(byte[], int)} over every key.
+	 */
+	@Test
+	public void everyKeyTest() {
+		for (int k = 0; k < 0x10000; k++) {
+			byte[] K = Permutation.keySchedule(new byte[] { (byte) (k >>> 8), (byte) k });
+			for (int block = k & 0xff; block < 0x10000; block += 0x1001) {
+				assertEquals(reference.encryptBlock(K, block), table.encryptBlock(K, block));
+				assertEquals(reference.decryptBlock(K, block), table.decryptBlock(K, block));
+			}
+		}
+	}
+
+	/**
+	 * Test method for @see {@link TableEngine#encryptBlock(byte[], int)} and
+	 * {@link TableEngine#decryptBlock(byte[], int)} over every block.
+	 */
+	@Test
+	public void everyBlockTest() {
+		for (int k = 0x0123; k < 0x10000; k += 0x1111) {
+			byte[] K = Permutation.keySchedule(new byte[] { (byte) (k >>> 8), (byte) k });
+			for (int block = 0; block < 0x10000; block++) {
+				assertEquals(reference.encryptBlock(K, block), table.encryptBlock(K, block));
+				assertEquals(reference.decryptBlock(K, block), table.decryptBlock(K, block));
+			}
+		}
+	}
+
+	/**
+	 * Test method for @see {@link Comp343Cipher#encrypt(byte[])} with both
+	 * engines.
+	 */
+	@Test
+	public void cipherEngineTest() {
+		byte key[] = { (byte) 0xb0, (byte) 0xb1 };
+		Comp343Cipher referenceCipher = new Comp343Cipher(key, reference);
+		Comp343Cipher tableCipher = new Comp343Cipher(key);
+		byte[] plain = { 'a', 'b' };
+		assertArrayEquals(referenceCipher.encrypt(plain), tableCipher.encrypt(plain));
+		assertArrayEquals(referenceCipher.decrypt(plain), tableCipher.decrypt(plain));
+	}
+}
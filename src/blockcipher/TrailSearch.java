@@ -0,0 +1,379 @@
+package blockcipher;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Finds the best differential or linear trail through r rounds of the Feistel
+ * structure of <code>Comp343Cipher</code> by branch and bound, after Matsui.
+ *
+ * A trail is the 16-bit difference or mask of the packed block (L << 8) | R
+ * before each round. A round maps the difference (a, b) to (b, a ^ d), with
+ * the probability DDT[b][d] / 256 of the round function, and the mask (a, b)
+ * to (b ^ u, a), with the correlation LAT[u][a] / 128. The weight of a trail
+ * is the sum of -log2 of these, so a trail of weight w has a probability or
+ * correlation of 2^-w, assuming independent round keys.
+ *
+ * The search for r rounds first finds the best weight B(k) of every k < r
+ * rounds, then extends trails round by round, trying the cheapest round first
+ * and abandoning any trail whose weight plus B(remaining rounds) cannot beat
+ * the best trail found. The starting blocks are split between the threads,
+ * which share the best weight through an atomic.
+ *
+ * @author Joseph Lewis
+ *
+ */
+public class TrailSearch {
+	// The number of starting blocks searched by each task
+	static final int STARTS_PER_TASK = 256;
+	// The tolerance of weight comparisons, which sum logarithms
+	static final double EPSILON = 1e-9;
+
+	/**
+	 * The kinds of trail.
+	 */
+	public enum Kind {
+		DIFFERENTIAL("differential"), LINEAR("linear");
+
+		final String label;
+
+		Kind(String label) {
+			this.label = label;
+		}
+	}
+
+	private final Kind kind;
+	private final int threads;
+	// For each round-function input difference, or output mask, the output
+	// differences, or input masks, it can take, cheapest first
+	private final int[][] transitions;
+	// The weight of each transition
+	private final double[][] weights;
+	// The best trail of each number of rounds found so far, from 1
+	private final List<Trail> trails = new ArrayList<>();
+
+	/**
+	 * Constructor used to create a search over the round function of
+	 * <code>Comp343Cipher</code>.
+	 *
+	 * @param kind
+	 *            is the kind of trail
+	 * @param threads
+	 *            is the number of worker threads, or 0 for one per core
+	 */
+	public TrailSearch(Kind kind, int threads) {
+		if (threads < 0) {
+			throw new IllegalArgumentException("The thread count cannot be negative.");
+		}
+		this.kind = kind;
+		this.threads = threads == 0 ? Runtime.getRuntime().availableProcessors() : threads;
+		int[] F = DistributionTables.roundFunction();
+		int[][] table = kind == Kind.DIFFERENTIAL ? DistributionTables.ddt(F) : DistributionTables.lat(F);
+		int size = F.length;
+		transitions = new int[size][];
+		weights = new double[size][];
+		for (int x = 0; x < size; x++) {
+			// DDT rows are indexed by input difference, LAT columns by output mask
+			List<double[]> row = new ArrayList<>();
+			for (int y = 0; y < size; y++) {
+				int entry = kind == Kind.DIFFERENTIAL ? table[x][y] : Math.abs(table[y][x]);
+				if (entry != 0) {
+					double scale = kind == Kind.DIFFERENTIAL ? size : size / 2;
+					row.add(new double[] { y, log2(scale / entry) });
+				}
+			}
+			row.sort((p, q) -> Double.compare(p[1], q[1]));
+			transitions[x] = new int[row.size()];
+			weights[x] = new double[row.size()];
+			for (int i = 0; i < row.size(); i++) {
+				transitions[x][i] = (int) row.get(i)[0];
+				weights[x][i] = row.get(i)[1];
+			}
+		}
+	}
+
+	static double log2(double x) {
+		return Math.log(x) / Math.log(2);
+	}
+
+	public Kind getKind() {
+		return kind;
+	}
+
+	/**
+	 * Applies one round to a difference or mask.
+	 *
+	 * @param block
+	 *            the packed difference or mask (a << 8) | b
+	 * @param choice
+	 *            the round-function output difference, or input mask
+	 * @return the packed difference or mask after the round
+	 */
+	int step(int block, int choice) {
+		int a = block >>> 8;
+		int b = block & 0xff;
+		return kind == Kind.DIFFERENTIAL ? (b << 8) | (a ^ choice) : ((b ^ choice) << 8) | a;
+	}
+
+	/**
+	 * @return the index of the transitions of a round on a difference or mask
+	 */
+	int branch(int block) {
+		return kind == Kind.DIFFERENTIAL ? block & 0xff : block >>> 8;
+	}
+
+	/**
+	 * Finds a best trail through a number of rounds, and the best weights of
+	 * every fewer number of rounds on the way.
+	 *
+	 * @param rounds
+	 *            the number of rounds, from 1
+	 * @return a trail of the least weight
+	 */
+	public synchronized Trail search(int rounds) {
+		if (rounds < 1) {
+			throw new IllegalArgumentException("A trail has at least one round.");
+		}
+		while (trails.size() < rounds) {
+			trails.add(searchRounds(trails.size() + 1));
+		}
+		return trails.get(rounds - 1);
+	}
+
+	/**
+	 * Returns the best weight of every number of rounds up to a number.
+	 *
+	 * @param rounds
+	 *            the number of rounds
+	 * @return the weights B(1) to B(rounds)
+	 */
+	public synchronized double[] bounds(int rounds) {
+		search(rounds);
+		double[] B = new double[rounds];
+		for (int r = 0; r < rounds; r++) {
+			B[r] = trails.get(r).weight;
+		}
+		return B;
+	}
+
+	/**
+	 * Searches r rounds, given the bounds of every fewer rounds.
+	 */
+	private Trail searchRounds(int rounds) {
+		double[] B = new double[rounds];
+		for (int r = 1; r < rounds; r++) {
+			B[r] = trails.get(r - 1).weight;
+		}
+		Best best = new Best();
+		ForkJoinPool pool = new ForkJoinPool(threads);
+		try {
+			pool.invoke(new SearchTask(this, rounds, B, best, 1, 1 << 16));
+		} finally {
+			pool.shutdown();
+		}
+		return best.trail;
+	}
+
+	/**
+	 * The best trail found so far, shared by the tasks. The weight is read on
+	 * every step of every search, so it is kept apart in an atomic.
+	 */
+	private static class Best {
+		final AtomicLong weight = new AtomicLong(Double.doubleToLongBits(Double.POSITIVE_INFINITY));
+		Trail trail;
+
+		double get() {
+			// Non-negative doubles order as their bits do
+			return Double.longBitsToDouble(weight.get());
+		}
+
+		synchronized void offer(Kind kind, int[] blocks, double[] roundWeights, double total) {
+			if (total < get() - EPSILON) {
+				trail = new Trail(kind, blocks.clone(), roundWeights.clone());
+				weight.set(Double.doubleToLongBits(total));
+			}
+		}
+	}
+
+	/**
+	 * A task that searches the trails starting at the blocks in [from, to),
+	 * splitting the range in halves until it is small enough.
+	 */
+	private static class SearchTask extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+		private final TrailSearch search;
+		private final int rounds;
+		// B[k] is the best weight of k rounds
+		private final double[] B;
+		private final Best best;
+		private final int from;
+		private final int to;
+		private int[] blocks;
+		private double[] roundWeights;
+
+		SearchTask(TrailSearch search, int rounds, double[] B, Best best, int from, int to) {
+			this.search = search;
+			this.rounds = rounds;
+			this.B = B;
+			this.best = best;
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		protected void compute() {
+			if (to - from > STARTS_PER_TASK) {
+				int mid = (from + to) >>> 1;
+				invokeAll(new SearchTask(search, rounds, B, best, from, mid),
+						new SearchTask(search, rounds, B, best, mid, to));
+				return;
+			}
+			blocks = new int[rounds + 1];
+			roundWeights = new double[rounds];
+			for (int start = from; start < to; start++) {
+				blocks[0] = start;
+				extend(0, start, 0);
+			}
+		}
+
+		/**
+		 * Extends a trail through its next round in every way that can still
+		 * beat the best trail.
+		 */
+		private void extend(int round, int block, double weight) {
+			if (round == rounds) {
+				best.offer(search.kind, blocks, roundWeights, weight);
+				return;
+			}
+			int x = search.branch(block);
+			int[] choices = search.transitions[x];
+			double[] costs = search.weights[x];
+			double remaining = B[rounds - round - 1];
+			for (int i = 0; i < choices.length; i++) {
+				double w = weight + costs[i];
+				// The transitions are cheapest first, so none after this can do
+				if (w + remaining >= best.get() - EPSILON) {
+					return;
+				}
+				blocks[round + 1] = search.step(block, choices[i]);
+				roundWeights[round] = costs[i];
+				extend(round + 1, blocks[round + 1], w);
+			}
+		}
+	}
+
+	/**
+	 * A differential or linear trail: the packed difference or mask before
+	 * each round and after the last, and the weight of each round.
+	 */
+	public static class Trail {
+		public final Kind kind;
+		private final int[] blocks;
+		private final double[] roundWeights;
+		public final double weight;
+
+		Trail(Kind kind, int[] blocks, double[] roundWeights) {
+			this.kind = kind;
+			this.blocks = blocks;
+			this.roundWeights = roundWeights;
+			double sum = 0;
+			for (double w : roundWeights) {
+				sum += w;
+			}
+			weight = sum;
+		}
+
+		public int getRounds() {
+			return roundWeights.length;
+		}
+
+		/**
+		 * @return the packed difference or mask before the first round
+		 */
+		public int getInput() {
+			return blocks[0];
+		}
+
+		/**
+		 * @return the packed difference or mask after the last round
+		 */
+		public int getOutput() {
+			return blocks[blocks.length - 1];
+		}
+
+		/**
+		 * @param round
+		 *            the round, from 0, or the number of rounds for the output
+		 * @return the packed difference or mask before the round
+		 */
+		public int getBlock(int round) {
+			return blocks[round];
+		}
+
+		/**
+		 * @return the packed differences or masks before each round and after
+		 *         the last
+		 */
+		public int[] getBlocks() {
+			return blocks.clone();
+		}
+
+		/**
+		 * @return the weight of each round
+		 */
+		public double[] getRoundWeights() {
+			return roundWeights.clone();
+		}
+
+		/**
+		 * @return the probability, or absolute correlation, 2^-weight
+		 */
+		public double getProbability() {
+			return Math.pow(2, -weight);
+		}
+
+		/**
+		 * The header of the rows of @see Trail#toCsv().
+		 */
+		public static final String CSV_HEADER = "kind,rounds,round,input,output,weight";
+
+		/**
+		 * @return one CSV row per round
+		 */
+		public String toCsv() {
+			StringBuilder csv = new StringBuilder();
+			for (int r = 0; r < roundWeights.length; r++) {
+				csv.append(String.format(Locale.ROOT, "%s,%d,%d,0x%04x,0x%04x,%.4f%n", kind.label,
+						roundWeights.length, r + 1, blocks[r], blocks[r + 1], roundWeights[r]));
+			}
+			return csv.toString();
+		}
+
+		@Override
+		public String toString() {
+			StringBuilder text = new StringBuilder(String.format(Locale.ROOT,
+					"--- Best %d-round %s trail: weight %.3f (2^-%.3f) ---", roundWeights.length, kind.label, weight,
+					weight));
+			for (int r = 0; r < roundWeights.length; r++) {
+				text.append(String.format(Locale.ROOT, "%nRound %d: 0x%04x -> 0x%04x | weight %.3f", r + 1, blocks[r],
+						blocks[r + 1], roundWeights[r]));
+			}
+			return text.toString();
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			return o instanceof Trail && ((Trail) o).kind == kind && Arrays.equals(((Trail) o).blocks, blocks);
+		}
+
+		@Override
+		public int hashCode() {
+			return kind.hashCode() * 31 + Arrays.hashCode(blocks);
+		}
+	}
+}
@@ -0,0 +1,155 @@
+package blockcipher;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+/**
+ * A JUnit test class to test @see TrailSearch and @see TrailStatistics.
+ *
+ * @author Joseph Lewis
+ *
+ */
+public class TrailSearchTest {
+
+	/**
+	 * Test method for @see TrailSearch#bounds(int), with the best weights of
+	 * the cipher's round function for 1 to 8 rounds.
+	 */
+	@Test
+	public void boundsTest() {
+		assertArrayEquals(new double[] { 0, 2, 4, 6, 8, 10, 12, 14 },
+				new TrailSearch(TrailSearch.Kind.DIFFERENTIAL, 0).bounds(8), 1e-9);
+		assertArrayEquals(new double[] { 0, 1, 2, 3, 4, 5, 6, 7 },
+				new TrailSearch(TrailSearch.Kind.LINEAR, 0).bounds(8), 1e-9);
+	}
+
+	/**
+	 * Test method for @see TrailSearch#search(int), against trying every
+	 * 2-round trail.
+	 */
+	@Test
+	public void exhaustiveTest() {
+		int[] F = DistributionTables.roundFunction();
+		int[][] ddt = DistributionTables.ddt(F);
+		int[][] lat = DistributionTables.lat(F);
+		// The largest entry of each DDT row and LAT column
+		int[] maxRow = new int[256];
+		int[] maxColumn = new int[256];
+		for (int x = 0; x < 256; x++) {
+			for (int y = 0; y < 256; y++) {
+				maxRow[x] = Math.max(maxRow[x], ddt[x][y]);
+				maxColumn[x] = Math.max(maxColumn[x], Math.abs(lat[y][x]));
+			}
+		}
+		double bestDifferential = Double.POSITIVE_INFINITY;
+		double bestLinear = Double.POSITIVE_INFINITY;
+		for (int block = 1; block < 1 << 16; block++) {
+			int a = block >>> 8;
+			int b = block & 0xff;
+			for (int y = 0; y < 256; y++) {
+				if (ddt[b][y] != 0) {
+					// The second round's input difference is a ^ y
+					double w = TrailSearch.log2(256.0 / ddt[b][y]) + TrailSearch.log2(256.0 / maxRow[a ^ y]);
+					bestDifferential = Math.min(bestDifferential, w);
+				}
+				if (lat[y][a] != 0) {
+					// The second round's output mask is b ^ y
+					double w = TrailSearch.log2(128.0 / Math.abs(lat[y][a])) + TrailSearch.log2(128.0 / maxColumn[b ^ y]);
+					bestLinear = Math.min(bestLinear, w);
+				}
+			}
+		}
+		assertEquals(bestDifferential, new TrailSearch(TrailSearch.Kind.DIFFERENTIAL, 1).search(2).weight, 1e-9);
+		assertEquals(bestLinear, new TrailSearch(TrailSearch.Kind.LINEAR, 1).search(2).weight, 1e-9);
+	}
+
+	/**
+	 * Test method for @see TrailSearch.Trail, that each round of a best trail
+	 * is a transition of the round function with the weight it is given.
+	 */
+	@Test
+	public void trailTest() {
+		int[] F = DistributionTables.roundFunction();
+		int[][] ddt = DistributionTables.ddt(F);
+		int[][] lat = DistributionTables.lat(F);
+		for (TrailSearch.Kind kind : TrailSearch.Kind.values()) {
+			TrailSearch.Trail trail = new TrailSearch(kind, 2).search(8);
+			assertEquals(8, trail.getRounds());
+			assertNotEquals(0, trail.getInput());
+			double sum = 0;
+			for (int r = 0; r < 8; r++) {
+				int a = trail.getBlock(r) >>> 8;
+				int b = trail.getBlock(r) & 0xff;
+				int next = trail.getBlock(r + 1);
+				double weight;
+				if (kind == TrailSearch.Kind.DIFFERENTIAL) {
+					assertEquals(b, next >>> 8);
+					weight = TrailSearch.log2(256.0 / ddt[b][(next & 0xff) ^ a]);
+				} else {
+					assertEquals(a, next & 0xff);
+					weight = TrailSearch.log2(128.0 / Math.abs(lat[(next >>> 8) ^ b][a]));
+				}
+				assertEquals(weight, trail.getRoundWeights()[r], 1e-9);
+				sum += weight;
+			}
+			assertEquals(sum, trail.weight, 1e-9);
+		}
+	}
+
+	/**
+	 * Test method for @see TrailStatistics#measure(TrailSearch.Trail, int[]),
+	 * that a trail with one active round holds with exactly its probability or
+	 * correlation under every key.
+	 */
+	@Test
+	public void measureTest() {
+		int[] keys = TrailStatistics.spreadKeys(16);
+		TrailStatistics statistics = new TrailStatistics(0, new TableEngine());
+		for (TrailSearch.Kind kind : TrailSearch.Kind.values()) {
+			TrailSearch.Trail trail = new TrailSearch(kind, 0).search(2);
+			TrailStatistics.Measurement measurement = statistics.measure(trail, keys);
+			assertEquals(16, measurement.getKeys());
+			for (int k = 0; k < keys.length; k++) {
+				assertEquals(trail.getProbability(), Math.abs(measurement.getValue(k)), 0);
+			}
+			if (kind == TrailSearch.Kind.DIFFERENTIAL) {
+				assertEquals(trail.getProbability(), measurement.getFollowing(), 0);
+			} else {
+				assertTrue(Double.isNaN(measurement.getFollowing()));
+			}
+		}
+	}
+
+	/**
+	 * Test method for @see TrailStatistics#measure(TrailSearch.Trail, int[]),
+	 * that full trails measure the same with the bitsliced engine as with the
+	 * table engine, at any thread count, and that the rounds run for shorter
+	 * trails are those of the cipher.
+	 */
+	@Test
+	public void engineTest() {
+		int[] keys = TrailStatistics.spreadKeys(8);
+		for (TrailSearch.Kind kind : TrailSearch.Kind.values()) {
+			TrailSearch.Trail trail = new TrailSearch(kind, 0).search(8);
+			TrailStatistics.Measurement expected = new TrailStatistics(1, new TableEngine()).measure(trail, keys);
+			TrailStatistics.Measurement actual = new TrailStatistics(3, new BitslicedEngine()).measure(trail, keys);
+			long K = RoundKeyTable.get(keys[0]);
+			int differences = 0;
+			for (int P = 0; P < 1 << 16; P++) {
+				int C = TrailStatistics.rounds(K, P, 0, 8);
+				differences += C == Comp343Cipher.encrypt(keys[0], P) ? 0 : 1;
+			}
+			assertEquals(0, differences);
+			for (int k = 0; k < keys.length; k++) {
+				assertEquals(expected.getValue(k), actual.getValue(k), 0);
+			}
+			assertEquals(expected.getFollowing(), actual.getFollowing(), 0);
+		}
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void roundsTest() {
+		new TrailSearch(TrailSearch.Kind.LINEAR, 0).search(0);
+	}
+}
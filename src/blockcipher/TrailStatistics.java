@@ -0,0 +1,340 @@
+package blockcipher;
+
+import java.util.Locale;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Measures a @see TrailSearch.Trail exactly over the whole codebook of each of
+ * a set of keys, to set against the 2^-w the trail predicts.
+ *
+ * For a differential trail it counts, out of all 65,536 plaintexts P, those
+ * whose pair P, P ^ a gives the trail's output difference after its rounds,
+ * which is the probability of the differential over every trail sharing its
+ * ends, and those whose pair follows the trail through every round. For a
+ * linear trail it counts the plaintexts for which the input and output masks
+ * agree, giving the correlation of the approximation under each key.
+ *
+ * Trails of all 8 rounds are measured on the codebook encrypted in bulk by the
+ * given engine. Shorter trails, and the round-by-round counts, run the rounds
+ * of the @see TableEngine directly. The keys are split between the threads,
+ * and each writes only its keys' slots, so the results do not depend on the
+ * thread count.
+ *
+ * @author Joseph Lewis
+ *
+ */
+public class TrailStatistics {
+	// The number of rounds of the cipher
+	static final int ROUNDS = 8;
+	// The number of blocks of the codebook
+	static final int BLOCKS = 1 << 16;
+	// The keys measured by each task
+	static final int KEYS_PER_TASK = 4;
+	// Every block in order, as the bytes {L, R} the engines encrypt in bulk
+	private static final byte[] PLAINTEXTS = new byte[2 * BLOCKS];
+
+	static {
+		for (int P = 0; P < BLOCKS; P++) {
+			PLAINTEXTS[2 * P] = (byte) (P >>> 8);
+			PLAINTEXTS[2 * P + 1] = (byte) P;
+		}
+	}
+
+	private final int threads;
+	private final CipherEngine engine;
+
+	/**
+	 * Constructor used to create a measurement with the default engine.
+	 *
+	 * @param threads
+	 *            is the number of worker threads, or 0 for one per core
+	 */
+	public TrailStatistics(int threads) {
+		this(threads, CipherEngine.getDefault());
+	}
+
+	/**
+	 * Constructor used to create a measurement with the given engine.
+	 *
+	 * @param threads
+	 *            is the number of worker threads, or 0 for one per core
+	 * @param engine
+	 *            is the engine that encrypts the codebooks of full trails
+	 */
+	public TrailStatistics(int threads, CipherEngine engine) {
+		if (threads < 0) {
+			throw new IllegalArgumentException("The thread count cannot be negative.");
+		}
+		this.threads = threads == 0 ? Runtime.getRuntime().availableProcessors() : threads;
+		this.engine = engine;
+	}
+
+	/**
+	 * Returns the given number of keys, spread evenly over the 65,536.
+	 *
+	 * @param count
+	 *            the number of keys, from 1 to 65,536
+	 * @return the packed keys
+	 */
+	public static int[] spreadKeys(int count) {
+		if (count < 1 || count > BLOCKS) {
+			throw new IllegalArgumentException("Between 1 and 65536 keys can be measured.");
+		}
+		int[] keys = new int[count];
+		for (int i = 0; i < count; i++) {
+			keys[i] = (int) ((long) i * BLOCKS / count);
+		}
+		return keys;
+	}
+
+	/**
+	 * Measures a trail under each of the keys.
+	 *
+	 * @param trail
+	 *            is the trail, of at most 8 rounds
+	 * @param keys
+	 *            are the packed keys (k[0] << 8) | k[1]
+	 * @return the measurement under each key
+	 */
+	public Measurement measure(TrailSearch.Trail trail, int[] keys) {
+		if (trail.getRounds() > ROUNDS) {
+			throw new IllegalArgumentException("The cipher has only " + ROUNDS + " rounds.");
+		}
+		long[] matches = new long[keys.length];
+		long[] following = new long[keys.length];
+		ForkJoinPool pool = new ForkJoinPool(threads);
+		try {
+			pool.invoke(new KeyTask(this, trail, keys, matches, following, 0, keys.length));
+		} finally {
+			pool.shutdown();
+		}
+		return new Measurement(trail, keys, matches, following);
+	}
+
+	/**
+	 * Encrypts every block through a number of rounds.
+	 *
+	 * @param key
+	 *            the packed key
+	 * @param rounds
+	 *            the number of rounds
+	 * @param codebook
+	 *            the array the ciphertext of each block is written to
+	 * @param bytes
+	 *            a scratch array of the codebook's bytes
+	 */
+	void codebook(int key, int rounds, int[] codebook, byte[] bytes) {
+		if (rounds == ROUNDS) {
+			engine.encryptBlocks(RoundKeyTable.keySchedule(key), PLAINTEXTS, 0, bytes, 0, bytes.length);
+			for (int P = 0; P < BLOCKS; P++) {
+				codebook[P] = ((bytes[2 * P] & 0xff) << 8) | (bytes[2 * P + 1] & 0xff);
+			}
+			return;
+		}
+		long K = RoundKeyTable.get(key);
+		for (int P = 0; P < BLOCKS; P++) {
+			codebook[P] = rounds(K, P, 0, rounds);
+		}
+	}
+
+	/**
+	 * Runs rounds [from, to) of the table engine on a block.
+	 *
+	 * @param K
+	 *            the packed round keys of @see RoundKeyTable#get(int)
+	 * @param block
+	 *            the packed block (L << 8) | R
+	 * @return the packed block after the rounds
+	 */
+	static int rounds(long K, int block, int from, int to) {
+		int L = block >>> 8;
+		int R = block & 0xff;
+		for (int i = from; i < to; i++) {
+			int t = R;
+			R = L ^ TableEngine.F[(R ^ (int) (K >>> (i << 3))) & 0xff];
+			L = t;
+		}
+		return (L << 8) | R;
+	}
+
+	/**
+	 * Counts the plaintexts whose pair follows the differential trail through
+	 * every round.
+	 */
+	static long following(TrailSearch.Trail trail, long K) {
+		int[] blocks = trail.getBlocks();
+		long count = 0;
+		for (int P = 0; P < BLOCKS; P++) {
+			int x = P;
+			int y = P ^ blocks[0];
+			boolean follows = true;
+			for (int r = 0; r < blocks.length - 1 && follows; r++) {
+				x = rounds(K, x, r, r + 1);
+				y = rounds(K, y, r, r + 1);
+				follows = (x ^ y) == blocks[r + 1];
+			}
+			count += follows ? 1 : 0;
+		}
+		return count;
+	}
+
+	/**
+	 * A task that measures the keys in [from, to), splitting the range in
+	 * halves until it is small enough.
+	 */
+	private static class KeyTask extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+		private final TrailStatistics statistics;
+		private final TrailSearch.Trail trail;
+		private final int[] keys;
+		private final long[] matches;
+		private final long[] following;
+		private final int from;
+		private final int to;
+
+		KeyTask(TrailStatistics statistics, TrailSearch.Trail trail, int[] keys, long[] matches, long[] following,
+				int from, int to) {
+			this.statistics = statistics;
+			this.trail = trail;
+			this.keys = keys;
+			this.matches = matches;
+			this.following = following;
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		protected void compute() {
+			if (to - from > KEYS_PER_TASK) {
+				int mid = (from + to) >>> 1;
+				invokeAll(new KeyTask(statistics, trail, keys, matches, following, from, mid),
+						new KeyTask(statistics, trail, keys, matches, following, mid, to));
+				return;
+			}
+			int[] C = new int[BLOCKS];
+			byte[] bytes = new byte[2 * BLOCKS];
+			int in = trail.getInput();
+			int out = trail.getOutput();
+			boolean differential = trail.kind == TrailSearch.Kind.DIFFERENTIAL;
+			for (int k = from; k < to; k++) {
+				statistics.codebook(keys[k], trail.getRounds(), C, bytes);
+				long count = 0;
+				for (int P = 0; P < BLOCKS; P++) {
+					if (differential) {
+						count += (C[P] ^ C[P ^ in]) == out ? 1 : 0;
+					} else {
+						count += DistributionTables.parity((P & in) ^ (C[P] & out)) ^ 1;
+					}
+				}
+				matches[k] = count;
+				if (differential) {
+					following[k] = TrailStatistics.following(trail, RoundKeyTable.get(keys[k]));
+				}
+			}
+		}
+	}
+
+	/**
+	 * The counts of a trail under each key, with the probability or correlation
+	 * they give.
+	 */
+	public static class Measurement {
+		public final TrailSearch.Trail trail;
+		private final int[] keys;
+		// The plaintexts giving the output difference, or agreeing with the masks
+		private final long[] matches;
+		// The plaintexts following the differential trail through every round
+		private final long[] following;
+
+		Measurement(TrailSearch.Trail trail, int[] keys, long[] matches, long[] following) {
+			this.trail = trail;
+			this.keys = keys.clone();
+			this.matches = matches;
+			this.following = following;
+		}
+
+		public int getKeys() {
+			return keys.length;
+		}
+
+		/**
+		 * Returns the probability of the differential, or the signed
+		 * correlation of the linear approximation, under one key.
+		 *
+		 * @param index
+		 *            the index of the key
+		 * @return the probability or correlation
+		 */
+		public double getValue(int index) {
+			double fraction = (double) matches[index] / BLOCKS;
+			return trail.kind == TrailSearch.Kind.DIFFERENTIAL ? fraction : 2 * fraction - 1;
+		}
+
+		/**
+		 * @return the mean probability of the differential, or the mean
+		 *         absolute correlation of the linear approximation, over the keys
+		 */
+		public double getMean() {
+			double sum = 0;
+			for (int k = 0; k < keys.length; k++) {
+				sum += Math.abs(getValue(k));
+			}
+			return sum / keys.length;
+		}
+
+		/**
+		 * @return the largest probability, or absolute correlation, of any key
+		 */
+		public double getMax() {
+			double max = 0;
+			for (int k = 0; k < keys.length; k++) {
+				max = Math.max(max, Math.abs(getValue(k)));
+			}
+			return max;
+		}
+
+		/**
+		 * @return the mean fraction of pairs following the differential trail
+		 *         through every round, or NaN for a linear trail
+		 */
+		public double getFollowing() {
+			if (trail.kind != TrailSearch.Kind.DIFFERENTIAL) {
+				return Double.NaN;
+			}
+			long sum = 0;
+			for (long f : following) {
+				sum += f;
+			}
+			return (double) sum / keys.length / BLOCKS;
+		}
+
+		/**
+		 * The header of the rows of @see Measurement#toCsv().
+		 */
+		public static final String CSV_HEADER = "kind,rounds,input,output,weight,predicted,keys,mean,max,following";
+
+		/**
+		 * @return the measurement as one CSV row
+		 */
+		public String toCsv() {
+			return String.format(Locale.ROOT, "%s,%d,0x%04x,0x%04x,%.4f,%.6g,%d,%.6g,%.6g,%.6g", trail.kind.label,
+					trail.getRounds(), trail.getInput(), trail.getOutput(), trail.weight, trail.getProbability(),
+					keys.length, getMean(), getMax(), getFollowing());
+		}
+
+		@Override
+		public String toString() {
+			String measured = trail.kind == TrailSearch.Kind.DIFFERENTIAL ? "probability" : "|correlation|";
+			String text = String.format(Locale.ROOT,
+					"--- %d-round %s 0x%04x -> 0x%04x over %d keys ---\nPredicted: 2^-%.3f | Mean %s: 2^%.3f | Max: 2^%.3f",
+					trail.getRounds(), trail.kind.label, trail.getInput(), trail.getOutput(), keys.length,
+					trail.weight, measured, TrailSearch.log2(getMean()), TrailSearch.log2(getMax()));
+			if (trail.kind == TrailSearch.Kind.DIFFERENTIAL) {
+				text += String.format(Locale.ROOT, " | Following the trail: 2^%.3f",
+						TrailSearch.log2(getFollowing()));
+			}
+			return text;
+		}
+	}
+}
@@ -0,0 +1,104 @@
+package blockcipher;
+
+import jdk.incubator.vector.ByteVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorShuffle;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * An engine built on the Java Vector API that runs the 8 Feistel rounds on a
+ * full SIMD register of blocks per iteration. The blocks are kept in their
+ * byte order {L, R, L, R, ...}: each round XORs the key into every lane, looks
+ * up both nibbles with a lane-wise select from the 16-entry S-box, rotates the
+ * lanes by 2 and then swaps each L with its R while XORing the round output
+ * into the new R. The widest species with at least 16 byte lanes is chosen at
+ * runtime, and the tail that does not fill a register runs on @see
+ * TableEngine.
+ * <p>
+ * The Vector API is an incubator module, so this engine needs
+ * <code>--add-modules jdk.incubator.vector</code> when compiling and running.
+ * 
+ * @author Joseph Lewis
+ *
+ */
+public class VectorEngine implements CipherEngine {
+	// The widest species that can hold the 16-entry S-box in its lanes
+	static final VectorSpecies<Byte> SPECIES = ByteVector.SPECIES_PREFERRED.length() >= 16
+			? ByteVector.SPECIES_PREFERRED
+			: ByteVector.SPECIES_128;
+	// The S-box repeated across every lane
+	private static final ByteVector SBOX;
+	// Selects the R lanes, which receive the round output
+	private static final VectorMask<Byte> RIGHT;
+	// Swaps each L lane with its R lane
+	private static final VectorShuffle<Byte> SWAP = VectorShuffle.fromOp(SPECIES, i -> i ^ 1);
+
+	static {
+		byte[] sbox = new byte[SPECIES.length()];
+		boolean[] right = new boolean[SPECIES.length()];
+		for (int i = 0; i < sbox.length; i++) {
+			sbox[i] = Sbox.getOutput(i & 0x0f);
+			right[i] = (i & 1) == 1;
+		}
+		SBOX = ByteVector.fromArray(SPECIES, sbox, 0);
+		RIGHT = VectorMask.fromArray(SPECIES, right, 0);
+	}
+
+	// The engine used for single blocks and the tail
+	private final TableEngine scalar = new TableEngine();
+
+	public int encryptBlock(byte[] K, int block) {
+		return scalar.encryptBlock(K, block);
+	}
+
+	public int decryptBlock(byte[] K, int block) {
+		return scalar.decryptBlock(K, block);
+	}
+
+	@Override
+	public void encryptBlocks(byte[] K, byte[] in, int inOff, byte[] out, int outOff, int len) {
+		int whole = SPECIES.loopBound(len);
+		for (int i = 0; i < whole; i += SPECIES.length()) {
+			rounds(K, ByteVector.fromArray(SPECIES, in, inOff + i), false).intoArray(out, outOff + i);
+		}
+		scalar.encryptBlocks(K, in, inOff + whole, out, outOff + whole, len - whole);
+	}
+
+	@Override
+	public void decryptBlocks(byte[] K, byte[] in, int inOff, byte[] out, int outOff, int len) {
+		int whole = SPECIES.loopBound(len);
+		for (int i = 0; i < whole; i += SPECIES.length()) {
+			// Decrypt the swapped halves and swap them back
+			ByteVector v = ByteVector.fromArray(SPECIES, in, inOff + i).rearrange(SWAP);
+			rounds(K, v, true).rearrange(SWAP).intoArray(out, outOff + i);
+		}
+		scalar.decryptBlocks(K, in, inOff + whole, out, outOff + whole, len - whole);
+	}
+
+	/**
+	 * Runs the 8 rounds on a register of blocks.
+	 * 
+	 * @param K
+	 *            the 8 round keys
+	 * @param v
+	 *            the blocks, in the order {L, R, L, R, ...}
+	 * @param decrypt
+	 *            is true to run the round keys in reverse order
+	 * @return the blocks after the rounds
+	 */
+	static ByteVector rounds(byte[] K, ByteVector v, boolean decrypt) {
+		for (int i = 0; i <= 7; i++) {
+			ByteVector y = v.lanewise(VectorOperators.XOR, K[decrypt ? 7 - i : i]);
+			// Look up the lowest-order and highest-order nibbles in the S-box
+			ByteVector low = y.lanewise(VectorOperators.AND, (byte) 0x0f).selectFrom(SBOX);
+			ByteVector high = y.lanewise(VectorOperators.LSHR, 4).selectFrom(SBOX);
+			ByteVector z = high.lanewise(VectorOperators.LSHL, 4).lanewise(VectorOperators.OR, low)
+					.lanewise(VectorOperators.ROL, 2);
+			// L' = R and R' = L ^ rotL(z, 2), where z was computed from R in
+			// the R lanes
+			v = v.rearrange(SWAP).lanewise(VectorOperators.XOR, z, RIGHT);
+		}
+		return v;
+	}
+}
@@ -0,0 +1,77 @@
+package blockcipher;
+
+import static org.junit.Assert.*;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * A JUnit test class for VectorEngine, which cross-checks its bulk methods
+ * against the table engine over every block, including lengths that leave a
+ * scalar tail.
+ * 
+ * @author Joseph Lewis
+ *
+ */
+public class VectorEngineTest {
+	private VectorEngine vector = new VectorEngine();
+	private TableEngine table = new TableEngine();
+
+	/**
+	 * Test method for @see
+	 * {@link VectorEngine#encryptBlocks(byte[], byte[], int, byte[], int, int)}
+	 * and {@link VectorEngine#decryptBlocks(byte[], byte[], int, byte[], int, int)}
+	 * over every block.
+	 */
+	@Test
+	public void everyBlockTest() {
+		byte[] blocks = new byte[0x20000];
+		for (int block = 0; block < 0x10000; block++) {
+			blocks[2 * block] = (byte) (block >>> 8);
+			blocks[2 * block + 1] = (byte) block;
+		}
+		for (int k = 0; k < 0x10000; k += 0x0ff1) {
+			byte[] K = Permutation.keySchedule(new byte[] { (byte) (k >>> 8), (byte) k });
+			byte[] expected = new byte[blocks.length];
+			byte[] actual = new byte[blocks.length];
+			table.encryptBlocks(K, blocks, 0, expected, 0, blocks.length);
+			vector.encryptBlocks(K, blocks, 0, actual, 0, blocks.length);
+			assertArrayEquals(expected, actual);
+			table.decryptBlocks(K, blocks, 0, expected, 0, blocks.length);
+			vector.decryptBlocks(K, blocks, 0, actual, 0, blocks.length);
+			assertArrayEquals(expected, actual);
+		}
+	}
+
+	/**
+	 * Checks lengths and offsets that do not fill the last register.
+	 */
+	@Test
+	public void tailTest() {
+		byte[] K = Permutation.keySchedule(new byte[] { (byte) 0xb0, (byte) 0xb1 });
+		byte[] plain = new byte[600];
+		new Random(1).nextBytes(plain);
+		for (int len = 0; len <= 500; len += 14) {
+			byte[] expected = new byte[len + 3];
+			byte[] actual = new byte[len + 3];
+			table.encryptBlocks(K, plain, 5, expected, 3, len);
+			vector.encryptBlocks(K, plain, 5, actual, 3, len);
+			assertArrayEquals(expected, actual);
+			vector.decryptBlocks(K, actual, 3, actual, 3, len);
+			for (int i = 0; i < len; i++) {
+				assertEquals(plain[i + 5], actual[i + 3]);
+			}
+		}
+	}
+
+	/**
+	 * Test method for @see {@link CipherEngine#forName(String)}.
+	 */
+	@Test
+	public void forNameTest() {
+		assertTrue(CipherEngine.forName("vector") instanceof VectorEngine);
+		KeyedCipher keyed = KeyedCipher.of(0xabcd, CipherEngine.forName("vector"));
+		assertEquals(KeyedCipher.of(0xabcd).encryptBlock(0x6162), keyed.encryptBlock(0x6162));
+	}
+}
@@ -0,0 +1,40 @@
+package blockcipher;
+
+/**
+ * The fast Walsh-Hadamard transform, W(u) = sum over x of f(x) (-1)^(u.x), in
+ * place on an array of length 2^n with n 2^(n - 1) butterflies.
+ *
+ * @author Joseph Lewis
+ *
+ */
+public final class WalshHadamard {
+
+	private WalshHadamard() {
+	}
+
+	/**
+	 * Transforms the values in place. Applying the transform twice multiplies
+	 * every value by the length.
+	 *
+	 * @param values
+	 *            the values f(x), of a length that is a power of 2
+	 * @throws IllegalArgumentException
+	 *             if the length is not a power of 2
+	 */
+	public static void transform(int[] values) {
+		int n = values.length;
+		if (Integer.bitCount(n) != 1) {
+			throw new IllegalArgumentException("The length must be a power of 2.");
+		}
+		for (int half = 1; half < n; half <<= 1) {
+			for (int i = 0; i < n; i += half << 1) {
+				for (int j = i; j < i + half; j++) {
+					int a = values[j];
+					int b = values[j + half];
+					values[j] = a + b;
+					values[j + half] = a - b;
+				}
+			}
+		}
+	}
+}